@@ -0,0 +1,59 @@
+package it.eng.idsa.dataapp.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Benchmark payloads of requested size, built by repeating bundled CSV data files
+ *
+ */
+final class BenchmarkData {
+	
+	private static final String DATA_FILE = "dataFiles/Prop8_New_NoUnits_OUT_full.csv";
+	
+	private static byte[] source;
+	
+	private BenchmarkData() {
+	}
+	
+	static synchronized byte[] source() throws IOException {
+		if (source == null) {
+			try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(DATA_FILE)) {
+				source = IOUtils.toByteArray(in);
+			}
+		}
+		return source;
+	}
+	
+	static byte[] bytes(int size) throws IOException {
+		byte[] data = source();
+		byte[] bytes = new byte[size];
+		for (int position = 0; position < size; position += data.length) {
+			System.arraycopy(data, 0, bytes, position, Math.min(data.length, size - position));
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Writes file of requested size without holding it in memory
+	 */
+	static void writeFile(Path file, long size) throws IOException {
+		byte[] data = source();
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (long position = 0; position < size; position += data.length) {
+				out.write(data, 0, (int) Math.min(data.length, size - position));
+			}
+		}
+	}
+	
+	static String base64(int size) throws IOException {
+		return Base64.getEncoder().encodeToString(bytes(size));
+	}
+
+}
@@ -0,0 +1,111 @@
+package it.eng.idsa.dataapp.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.eng.idsa.dataapp.exception.EmptyFileException;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.impl.ArtifactCacheServiceImpl;
+import it.eng.idsa.dataapp.service.impl.ArtifactLockServiceImpl;
+import it.eng.idsa.dataapp.service.impl.FileReaderServiceImpl;
+import it.eng.idsa.dataapp.service.impl.MetricsServiceImpl;
+import it.eng.idsa.dataapp.service.impl.RecreateFileServiceImpl;
+
+/**
+ * File hot paths: reading and encoding artifact on provider, decoding and saving it on consumer</br>
+ * Measured as time per operation, since large sizes take seconds per operation
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class FileTransferBenchmark {
+	
+	private static final String ARTIFACT = "benchmark.csv";
+	
+	@Param({ "1024", "1048576", "104857600", "524288000" })
+	private long payloadSize;
+	
+	/**
+	 * Serve repeated reads from encoded artifact cache
+	 */
+	@Param({ "false", "true" })
+	private boolean cached;
+	
+	@Param({ "false", "true" })
+	private boolean compressed;
+	
+	private Path directory;
+	private FileReaderServiceImpl fileReaderService;
+	private RecreateFileServiceImpl recreateFileService;
+	private String encodedPayload;
+	private File targetFile;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException, ReadFileLockedException, EmptyFileException {
+		directory = Files.createTempDirectory("dataapp-benchmark");
+		BenchmarkData.writeFile(directory.resolve(ARTIFACT), payloadSize);
+		targetFile = directory.resolve("received.csv").toFile();
+		
+		ArtifactLockServiceImpl artifactLockService = new ArtifactLockServiceImpl();
+		artifactLockService.init();
+		ArtifactCacheServiceImpl artifactCacheService = new ArtifactCacheServiceImpl();
+		ReflectionTestUtils.setField(artifactCacheService, "maxBytes", cached ? Long.MAX_VALUE : 0L);
+		ReflectionTestUtils.setField(artifactCacheService, "maxEntryBytes", Long.MAX_VALUE);
+		// meters are recorded as in production, so their cost is part of measurement
+		MetricsServiceImpl metricsService = new MetricsServiceImpl();
+		ReflectionTestUtils.setField(metricsService, "meterRegistry", new SimpleMeterRegistry());
+		
+		fileReaderService = new FileReaderServiceImpl();
+		ReflectionTestUtils.setField(fileReaderService, "artifactLockService", artifactLockService);
+		ReflectionTestUtils.setField(fileReaderService, "artifactCacheService", artifactCacheService);
+		ReflectionTestUtils.setField(fileReaderService, "dataLakeDirectory", directory);
+		ReflectionTestUtils.setField(fileReaderService, "metricsService", metricsService);
+		
+		recreateFileService = new RecreateFileServiceImpl();
+		ReflectionTestUtils.setField(recreateFileService, "artifactLockService", artifactLockService);
+		ReflectionTestUtils.setField(recreateFileService, "metricsService", metricsService);
+		
+		encodedPayload = fileReaderService.readRequestedArtifact(null, ARTIFACT, compressed);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory.toFile());
+	}
+	
+	@Benchmark
+	public String readRequestedArtifact() throws IOException, ReadFileLockedException, EmptyFileException {
+		return fileReaderService.readRequestedArtifact(null, ARTIFACT, compressed);
+	}
+	
+	@Benchmark
+	public long recreateTheFile() throws IOException {
+		recreateFileService.recreateTheFile(encodedPayload, targetFile, compressed);
+		return targetFile.length();
+	}
+
+}
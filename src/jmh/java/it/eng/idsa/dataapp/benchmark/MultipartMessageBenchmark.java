@@ -0,0 +1,145 @@
+package it.eng.idsa.dataapp.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.NotificationMessageBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.service.impl.MultiPartMessageServiceImpl;
+import it.eng.idsa.dataapp.service.impl.SerializerServiceImpl;
+import it.eng.idsa.multipart.builder.MultipartMessageBuilder;
+import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
+import it.eng.idsa.multipart.util.DateUtil;
+
+/**
+ * Message hot paths: parsing of multipart message, response header and token handling
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MultipartMessageBenchmark {
+	
+	private static final String TOKEN = "eyJ0eXAiOiJKV1QiLCJraWQiOiJkZWZhdWx0IiwiYWxnIjoiUlMyNTYifQ";
+	
+	/**
+	 * Size of decoded payload in bytes, same sizes as in {@link FileTransferBenchmark}</br>
+	 * Message of largest payload is held as string together with the payload parsed from it, hence larger heap
+	 */
+	@Param({ "1024", "1048576", "104857600", "524288000" })
+	private int payloadSize;
+	
+	private MultiPartMessageServiceImpl service;
+	
+	private Message artifactRequestMessage;
+	/**
+	 * Message received with token of another connector, token is replaced before forwarding
+	 */
+	private Message artifactRequestMessageWithToken;
+	private Message notificationMessage;
+	private String multipartMessage;
+	private String messageWithToken;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		SerializerServiceImpl serializerService = new SerializerServiceImpl();
+		serializerService.warmUp();
+		service = new MultiPartMessageServiceImpl();
+		ReflectionTestUtils.setField(service, "serializerService", serializerService);
+		ReflectionTestUtils.setField(service, "informationModelVersion", "4.0.0");
+		
+		artifactRequestMessage = new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))
+				._modelVersion_("4.0.0")
+				._requestedArtifact_(new ArtifactRequest("Prop8_New_NoUnits_OUT.csv").toRequestedArtifact())
+				.build();
+		artifactRequestMessageWithToken = new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))
+				._modelVersion_("4.0.0")
+				._requestedArtifact_(new ArtifactRequest("Prop8_New_NoUnits_OUT.csv").toRequestedArtifact())
+				._securityToken_(new DynamicAttributeTokenBuilder()
+						._tokenFormat_(TokenFormat.JWT)
+						._tokenValue_(TOKEN.toLowerCase()).build())
+				.build();
+		notificationMessage = new NotificationMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))
+				._modelVersion_("4.0.0")
+				.build();
+		multipartMessage = MultipartMessageProcessor.multipartMessagetoString(new MultipartMessageBuilder()
+				.withHeaderContent(artifactRequestMessage)
+				.withPayloadContent(BenchmarkData.base64(payloadSize))
+				.build(), false);
+		messageWithToken = service.addToken(artifactRequestMessage, TOKEN);
+	}
+	
+	@Benchmark
+	public Message parse() {
+		return service.parseMultipartMessage(multipartMessage).getMessage();
+	}
+	
+	@Benchmark
+	public String getHeader() {
+		return service.getHeader(multipartMessage);
+	}
+	
+	@Benchmark
+	public String getPayload() {
+		return service.getPayload(multipartMessage);
+	}
+	
+	@Benchmark
+	public String responseHeaderArtifactRequest() {
+		return service.getResponseHeader(artifactRequestMessage);
+	}
+	
+	@Benchmark
+	public String responseHeaderNotification() {
+		return service.getResponseHeader(notificationMessage);
+	}
+	
+	@Benchmark
+	public String addToken() {
+		return service.addToken(artifactRequestMessage, TOKEN);
+	}
+	
+	@Benchmark
+	public String replaceToken() {
+		return service.addToken(artifactRequestMessageWithToken, TOKEN);
+	}
+	
+	@Benchmark
+	public String removeToken() {
+		return service.removeToken(artifactRequestMessage);
+	}
+	
+	@Benchmark
+	public String getToken() {
+		return service.getToken(messageWithToken);
+	}
+
+}
@@ -0,0 +1,79 @@
+package it.eng.idsa.dataapp.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.service.impl.SerializerServiceImpl;
+import it.eng.idsa.multipart.util.DateUtil;
+
+/**
+ * Serializer created for every message, as before SerializerService, compared with serializer reused per thread</br>
+ * Run with 4 threads, so reused serializers are measured under concurrent requests as well
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class SerializerBenchmark {
+	
+	private SerializerServiceImpl serializerService;
+	
+	private Message message;
+	private String serializedMessage;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		serializerService = new SerializerServiceImpl();
+		serializerService.warmUp();
+		message = new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))
+				._modelVersion_("4.0.0")
+				._requestedArtifact_(new ArtifactRequest("Prop8_New_NoUnits_OUT.csv").toRequestedArtifact())
+				.build();
+		serializedMessage = serializerService.serialize(message);
+	}
+	
+	@Benchmark
+	public String serializeNewSerializer() throws IOException {
+		return new Serializer().serialize(message);
+	}
+	
+	@Benchmark
+	public String serializeReused() throws IOException {
+		return serializerService.serialize(message);
+	}
+	
+	@Benchmark
+	public Message deserializeNewSerializer() throws IOException {
+		return new Serializer().deserialize(serializedMessage, Message.class);
+	}
+	
+	@Benchmark
+	public Message deserializeReused() throws IOException {
+		return serializerService.deserialize(serializedMessage, Message.class);
+	}
+
+}
@@ -0,0 +1,15 @@
+package it.eng.idsa.dataapp.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduled tasks are enabled only when dataset synchronization is
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "application.sync.enabled", havingValue = "true")
+public class SchedulingConfig {
+
+}
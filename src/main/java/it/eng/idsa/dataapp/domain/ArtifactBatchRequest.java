@@ -0,0 +1,38 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Artifacts requested in one batch</br>
+ * Patterns are globs, e.g. <i>*.csv</i>, matched against artifact catalog of provider
+ *
+ */
+public class ArtifactBatchRequest {
+	
+	private List<String> artifacts = new ArrayList<>();
+	private List<String> patterns = new ArrayList<>();
+	private boolean force;
+	
+	public List<String> getArtifacts() {
+		return artifacts;
+	}
+	public void setArtifacts(List<String> artifacts) {
+		this.artifacts = artifacts;
+	}
+	public List<String> getPatterns() {
+		return patterns;
+	}
+	public void setPatterns(List<String> patterns) {
+		this.patterns = patterns;
+	}
+	/**
+	 * Request artifacts even when provider has the versions received last time
+	 */
+	public boolean isForce() {
+		return force;
+	}
+	public void setForce(boolean force) {
+		this.force = force;
+	}
+}
@@ -0,0 +1,68 @@
+package it.eng.idsa.dataapp.domain;
+
+/**
+ * Byte range of an artifact, sent as payload of ArtifactResponseMessage in chunked transfer mode</br>
+ * Checksum is CRC32 (hex) of decoded chunk content, totalSize and lastModified identify version of the artifact chunk was read from
+ *
+ */
+public class ArtifactChunk {
+	
+	private String artifact;
+	private long offset;
+	private int length;
+	private long totalSize;
+	private long lastModified;
+	private String checksum;
+	private String data;
+	
+	public String getArtifact() {
+		return artifact;
+	}
+	public void setArtifact(String artifact) {
+		this.artifact = artifact;
+	}
+	public long getOffset() {
+		return offset;
+	}
+	public void setOffset(long offset) {
+		this.offset = offset;
+	}
+	public int getLength() {
+		return length;
+	}
+	public void setLength(int length) {
+		this.length = length;
+	}
+	public long getTotalSize() {
+		return totalSize;
+	}
+	public void setTotalSize(long totalSize) {
+		this.totalSize = totalSize;
+	}
+	/**
+	 * Last modification of the artifact in milliseconds, 0 if provider does not send it
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
+	public String getChecksum() {
+		return checksum;
+	}
+	public void setChecksum(String checksum) {
+		this.checksum = checksum;
+	}
+	public String getData() {
+		return data;
+	}
+	public void setData(String data) {
+		this.data = data;
+	}
+	
+	public boolean isLast() {
+		return offset + length >= totalSize;
+	}
+	
+}
@@ -0,0 +1,54 @@
+package it.eng.idsa.dataapp.domain;
+
+/**
+ * Catalog entry of an artifact in data lake directory</br>
+ * Row count is number of data rows, without header line, and is set only for CSV files
+ *
+ */
+public class ArtifactDescriptor {
+	
+	private String name;
+	private long size;
+	private long lastModified;
+	private String sha256;
+	private String mimeType;
+	private Long rowCount;
+	
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public long getSize() {
+		return size;
+	}
+	public void setSize(long size) {
+		this.size = size;
+	}
+	public long getLastModified() {
+		return lastModified;
+	}
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
+	public String getSha256() {
+		return sha256;
+	}
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+	public String getMimeType() {
+		return mimeType;
+	}
+	public void setMimeType(String mimeType) {
+		this.mimeType = mimeType;
+	}
+	public Long getRowCount() {
+		return rowCount;
+	}
+	public void setRowCount(Long rowCount) {
+		this.rowCount = rowCount;
+	}
+	
+}
@@ -0,0 +1,180 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Artifact requested by ArtifactRequestMessage</br>
+ * File name is the last path segment of requestedArtifact URI, query parameters carry transfer options, 
+ * for example <i>http://w3id.org/engrd/connector/artifact/data.csv?offset=0&amp;length=1024</i>
+ *
+ */
+public class ArtifactRequest {
+	
+	public static final String ARTIFACT_URI_PREFIX = "http://w3id.org/engrd/connector/artifact/";
+	
+	public static final String OFFSET = "offset";
+	public static final String LENGTH = "length";
+	/**
+	 * SHA-256 of the copy consumer already has, provider answers without payload if artifact did not change
+	 */
+	public static final String IF_NONE_MATCH = "ifNoneMatch";
+	/**
+	 * Payload encoding accepted by consumer, provider may compress payload before Base64 encoding
+	 */
+	public static final String ENCODING = "encoding";
+	public static final String ENCODING_GZIP = "gzip";
+	/**
+	 * Transfer mode accepted by consumer, binary payload is sent as application/octet-stream part without Base64
+	 */
+	public static final String TRANSFER = "transfer";
+	public static final String TRANSFER_BINARY = "binary";
+	/**
+	 * Comma separated names of CSV columns to return, see {@link CsvSelection}
+	 */
+	public static final String COLUMNS = "columns";
+	/**
+	 * Range of CSV data rows to return, e.g. 100-199, see {@link CsvSelection}
+	 */
+	public static final String ROWS = "rows";
+	/**
+	 * Filter expression of CSV rows to return, e.g. CLL = 8 AND REA &gt; 40, see {@link CsvSelection}
+	 */
+	public static final String FILTER = "filter";
+	
+	private final String fileName;
+	private final Map<String, String> parameters;
+	
+	public ArtifactRequest(String fileName) {
+		this(fileName, new LinkedHashMap<>());
+	}
+	
+	private ArtifactRequest(String fileName, Map<String, String> parameters) {
+		this.fileName = fileName;
+		this.parameters = parameters;
+	}
+	
+	public static ArtifactRequest fromRequestedArtifact(URI requestedArtifact) {
+		String path = requestedArtifact.getPath();
+		String fileName = path.substring(path.lastIndexOf('/') + 1);
+		Map<String, String> parameters = new LinkedHashMap<>();
+		String query = requestedArtifact.getRawQuery();
+		if (query != null && !query.isEmpty()) {
+			for (String parameter : query.split("&")) {
+				int separator = parameter.indexOf('=');
+				if (separator > 0) {
+					parameters.put(decode(parameter.substring(0, separator)), decode(parameter.substring(separator + 1)));
+				} else if (!parameter.isEmpty()) {
+					parameters.put(decode(parameter), "");
+				}
+			}
+		}
+		return new ArtifactRequest(fileName, parameters);
+	}
+	
+	public URI toRequestedArtifact() {
+		if (parameters.isEmpty()) {
+			return URI.create(ARTIFACT_URI_PREFIX + fileName);
+		}
+		String query = parameters.entrySet().stream()
+				.map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+				.collect(Collectors.joining("&"));
+		return URI.create(ARTIFACT_URI_PREFIX + fileName + "?" + query);
+	}
+	
+	public ArtifactRequest withParameter(String name, Object value) {
+		Map<String, String> copy = new LinkedHashMap<>(parameters);
+		copy.put(name, String.valueOf(value));
+		return new ArtifactRequest(fileName, copy);
+	}
+	
+	/**
+	 * Request for selected columns and rows of CSV artifact
+	 */
+	public ArtifactRequest withSelection(CsvSelection selection) {
+		Map<String, String> copy = new LinkedHashMap<>(parameters);
+		if (selection.getColumnsParameter() != null) {
+			copy.put(COLUMNS, selection.getColumnsParameter());
+		}
+		if (selection.getRowsParameter() != null) {
+			copy.put(ROWS, selection.getRowsParameter());
+		}
+		if (selection.getFilter() != null) {
+			copy.put(FILTER, selection.getFilter());
+		}
+		return new ArtifactRequest(fileName, copy);
+	}
+	
+	public String getFileName() {
+		return fileName;
+	}
+	
+	public Map<String, String> getParameters() {
+		return Collections.unmodifiableMap(parameters);
+	}
+	
+	public String getParameter(String name) {
+		return parameters.get(name);
+	}
+	
+	public long getLongParameter(String name, long defaultValue) {
+		String value = parameters.get(name);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Parameter %s is not a number: %s", name, value));
+		}
+	}
+	
+	/**
+	 * @return true if only byte range of the artifact is requested
+	 */
+	public boolean isChunkRequest() {
+		return parameters.containsKey(OFFSET);
+	}
+	
+	/**
+	 * @return selection of columns and rows, null if whole artifact is requested
+	 * @throws IllegalArgumentException if row range is not valid
+	 */
+	public CsvSelection getCsvSelection() {
+		return CsvSelection.of(parameters.get(COLUMNS), parameters.get(ROWS), parameters.get(FILTER));
+	}
+	
+	public boolean isGzipAccepted() {
+		return ENCODING_GZIP.equalsIgnoreCase(parameters.get(ENCODING));
+	}
+	
+	public boolean isBinaryAccepted() {
+		return TRANSFER_BINARY.equalsIgnoreCase(parameters.get(TRANSFER));
+	}
+	
+	/**
+	 * Artifacts stored compressed are sent as they are, without additional compression
+	 */
+	public static boolean isCompressedArtifact(String fileName) {
+		return fileName.toLowerCase().endsWith(".gz");
+	}
+	
+	private static String decode(String value) {
+		return URLDecoder.decode(value, StandardCharsets.UTF_8);
+	}
+	
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	public String toString() {
+		return toRequestedArtifact().toString();
+	}
+}
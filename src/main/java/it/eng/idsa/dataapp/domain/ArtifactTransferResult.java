@@ -0,0 +1,104 @@
+package it.eng.idsa.dataapp.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import de.fraunhofer.iais.eis.Message;
+
+/**
+ * Outcome of requesting one artifact from provider, entry of batch request manifest
+ *
+ */
+public class ArtifactTransferResult {
+	
+	public enum Status {
+		/** new version saved, upload to CKAN submitted */
+		SAVED, 
+		/** provider has the version received last time */
+		NOT_MODIFIED, 
+		/** response did not contain artifact */
+		NOT_SAVED, 
+		FAILED
+	}
+	
+	private String artifact;
+	private Status status;
+	private String fileName;
+	private String uploadId;
+	private UploadStatus.State uploadState;
+	private String error;
+	private long durationMillis;
+	private SelectionReport selectionReport;
+	@JsonIgnore
+	private Message responseMessage;
+	
+	public ArtifactTransferResult() {
+	}
+	
+	public ArtifactTransferResult(String artifact) {
+		this.artifact = artifact;
+	}
+	
+	public String getArtifact() {
+		return artifact;
+	}
+	public void setArtifact(String artifact) {
+		this.artifact = artifact;
+	}
+	public Status getStatus() {
+		return status;
+	}
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+	/**
+	 * Name of saved file in destination directory
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+	public String getUploadId() {
+		return uploadId;
+	}
+	public void setUploadId(String uploadId) {
+		this.uploadId = uploadId;
+	}
+	public UploadStatus.State getUploadState() {
+		return uploadState;
+	}
+	public void setUploadState(UploadStatus.State uploadState) {
+		this.uploadState = uploadState;
+	}
+	public String getError() {
+		return error;
+	}
+	public void setError(String error) {
+		this.error = error;
+	}
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+	/**
+	 * Rows and pruned blocks of requested selection, reported by provider
+	 */
+	public SelectionReport getSelectionReport() {
+		return selectionReport;
+	}
+	public void setSelectionReport(SelectionReport selectionReport) {
+		this.selectionReport = selectionReport;
+	}
+	/**
+	 * Response header received from provider
+	 */
+	public Message getResponseMessage() {
+		return responseMessage;
+	}
+	public void setResponseMessage(Message responseMessage) {
+		this.responseMessage = responseMessage;
+	}
+}
@@ -0,0 +1,132 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Part of CSV artifact requested by consumer - columns selected by header name, range of data rows and filter of rows</br>
+ * Carried in requestedArtifact query, e.g. <i>data.csv?columns=LOC,CLL,REA&amp;rows=100-199&amp;filter=CLL = 8 AND REA &gt; 40</i>, 
+ * rows are numbered from 0, header row is not counted and is always returned. Filter is applied to rows in the range
+ *
+ */
+public class CsvSelection {
+	
+	private final List<String> columns;
+	private final long firstRow;
+	private final long lastRow;
+	private final String filter;
+	
+	public CsvSelection(List<String> columns, long firstRow, long lastRow) {
+		this(columns, firstRow, lastRow, null);
+	}
+	
+	public CsvSelection(List<String> columns, long firstRow, long lastRow, String filter) {
+		if (firstRow < 0 || lastRow < firstRow) {
+			throw new IllegalArgumentException(String.format("Invalid row range %d-%d", firstRow, lastRow));
+		}
+		this.columns = columns != null ? Collections.unmodifiableList(columns) : Collections.emptyList();
+		this.firstRow = firstRow;
+		this.lastRow = lastRow;
+		this.filter = filter != null && !filter.trim().isEmpty() ? filter.trim() : null;
+	}
+	
+	public static CsvSelection of(String columns, String rows) {
+		return of(columns, rows, null);
+	}
+	
+	/**
+	 * @param columns comma separated column names, null or empty for all columns
+	 * @param rows <i>first-last</i>, <i>first-</i> or single row number, null or empty for all rows
+	 * @param filter expression rows must match, null or empty for all rows
+	 * @return selection, null if neither columns, rows nor filter are given
+	 */
+	public static CsvSelection of(String columns, String rows, String filter) {
+		boolean hasColumns = columns != null && !columns.trim().isEmpty();
+		boolean hasRows = rows != null && !rows.trim().isEmpty();
+		boolean hasFilter = filter != null && !filter.trim().isEmpty();
+		if (!hasColumns && !hasRows && !hasFilter) {
+			return null;
+		}
+		List<String> columnList = hasColumns 
+				? Arrays.stream(columns.split(",")).map(String::trim).filter(c -> !c.isEmpty()).collect(Collectors.toList())
+				: null;
+		long first = 0;
+		long last = Long.MAX_VALUE;
+		if (hasRows) {
+			String range = rows.trim();
+			int separator = range.indexOf('-');
+			try {
+				if (separator < 0) {
+					first = Long.parseLong(range);
+					last = first;
+				} else {
+					first = separator > 0 ? Long.parseLong(range.substring(0, separator).trim()) : 0;
+					String end = range.substring(separator + 1).trim();
+					last = end.isEmpty() ? Long.MAX_VALUE : Long.parseLong(end);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid row range: " + rows);
+			}
+		}
+		return new CsvSelection(columnList, first, last, filter);
+	}
+	
+	/**
+	 * @return selected column names in requested order, empty if all columns are selected
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+	
+	public long getFirstRow() {
+		return firstRow;
+	}
+	
+	/**
+	 * @return last selected row, inclusive, Long.MAX_VALUE when range is open
+	 */
+	public long getLastRow() {
+		return lastRow;
+	}
+	
+	/**
+	 * @return filter expression, e.g. <i>CLL = 8 AND REA &gt; 40</i>, null if rows are not filtered
+	 */
+	public String getFilter() {
+		return filter;
+	}
+	
+	public boolean isAllColumns() {
+		return columns.isEmpty();
+	}
+	
+	public boolean isAllRows() {
+		return firstRow == 0 && lastRow == Long.MAX_VALUE;
+	}
+	
+	/**
+	 * @return value of <i>columns</i> query parameter, null if all columns are selected
+	 */
+	public String getColumnsParameter() {
+		return isAllColumns() ? null : String.join(",", columns);
+	}
+	
+	/**
+	 * @return value of <i>rows</i> query parameter, null if all rows are selected
+	 */
+	public String getRowsParameter() {
+		if (isAllRows()) {
+			return null;
+		}
+		return lastRow == Long.MAX_VALUE ? firstRow + "-" : firstRow + "-" + lastRow;
+	}
+	
+	@Override
+	public String toString() {
+		return "columns=" + (isAllColumns() ? "*" : getColumnsParameter()) 
+				+ ", rows=" + (isAllRows() ? "*" : getRowsParameter())
+				+ (filter != null ? ", filter=" + filter : "");
+	}
+}
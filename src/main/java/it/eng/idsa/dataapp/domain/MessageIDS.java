@@ -1,6 +1,8 @@
 package it.eng.idsa.dataapp.domain;
 
+import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * 
@@ -15,6 +17,10 @@ public class MessageIDS {
 	private String contentType;
 	private String header;
 	private String payload;
+	private int payloadLength;
+	private boolean payloadTruncated;
+	@JsonIgnore
+	private LocalDateTime receivedAt;
 	
 	public String getContentType() {
 		return contentType;
@@ -46,5 +52,23 @@ public class MessageIDS {
 	public void setTime(String time) {
 		this.time = time;
 	}
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+	public void setPayloadLength(int payloadLength) {
+		this.payloadLength = payloadLength;
+	}
+	public boolean isPayloadTruncated() {
+		return payloadTruncated;
+	}
+	public void setPayloadTruncated(boolean payloadTruncated) {
+		this.payloadTruncated = payloadTruncated;
+	}
+	public LocalDateTime getReceivedAt() {
+		return receivedAt;
+	}
+	public void setReceivedAt(LocalDateTime receivedAt) {
+		this.receivedAt = receivedAt;
+	}
 	
 }
@@ -0,0 +1,135 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.time.Instant;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.Lob;
+import javax.persistence.OneToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Received message, as stored in persistent message journal</br>
+ * Payload is stored out of line and loaded only when requested
+ *
+ */
+@Entity
+@Table(name = "message_journal", indexes = {
+		@Index(name = "idx_message_journal_received_at", columnList = "received_at"),
+		@Index(name = "idx_message_journal_message_id", columnList = "message_id"),
+		@Index(name = "idx_message_journal_correlation", columnList = "correlation_message") })
+public class MessageJournalEntry {
+	
+	/**
+	 * Sequence with allocation size matching batch size, so ids do not prevent JDBC insert batching
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_journal_seq")
+	@SequenceGenerator(name = "message_journal_seq", sequenceName = "message_journal_seq", allocationSize = 50)
+	private Long id;
+	
+	@Column(name = "received_at", nullable = false)
+	private Instant receivedAt;
+	
+	@Column(name = "message_id", length = 1024)
+	private String messageId;
+	
+	@Column(name = "correlation_message", length = 1024)
+	private String correlationMessage;
+	
+	@Column(name = "message_type")
+	private String messageType;
+	
+	@Column(name = "content_type")
+	private String contentType;
+	
+	@Lob
+	@Column(name = "header")
+	private String header;
+	
+	@Column(name = "payload_length")
+	private long payloadLength;
+	
+	/**
+	 * Stored payload is only the beginning of received payload of payloadLength
+	 */
+	@Column(name = "payload_truncated")
+	private boolean payloadTruncated;
+	
+	@JsonIgnore
+	@OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+	@JoinColumn(name = "payload_id")
+	private MessageJournalPayload payload;
+	
+	public Long getId() {
+		return id;
+	}
+	public void setId(Long id) {
+		this.id = id;
+	}
+	public Instant getReceivedAt() {
+		return receivedAt;
+	}
+	public void setReceivedAt(Instant receivedAt) {
+		this.receivedAt = receivedAt;
+	}
+	public String getMessageId() {
+		return messageId;
+	}
+	public void setMessageId(String messageId) {
+		this.messageId = messageId;
+	}
+	public String getCorrelationMessage() {
+		return correlationMessage;
+	}
+	public void setCorrelationMessage(String correlationMessage) {
+		this.correlationMessage = correlationMessage;
+	}
+	public String getMessageType() {
+		return messageType;
+	}
+	public void setMessageType(String messageType) {
+		this.messageType = messageType;
+	}
+	public String getContentType() {
+		return contentType;
+	}
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+	public String getHeader() {
+		return header;
+	}
+	public void setHeader(String header) {
+		this.header = header;
+	}
+	public long getPayloadLength() {
+		return payloadLength;
+	}
+	public void setPayloadLength(long payloadLength) {
+		this.payloadLength = payloadLength;
+	}
+	public boolean isPayloadTruncated() {
+		return payloadTruncated;
+	}
+	public void setPayloadTruncated(boolean payloadTruncated) {
+		this.payloadTruncated = payloadTruncated;
+	}
+	public MessageJournalPayload getPayload() {
+		return payload;
+	}
+	public void setPayload(MessageJournalPayload payload) {
+		this.payload = payload;
+	}
+	
+}
@@ -0,0 +1,52 @@
+package it.eng.idsa.dataapp.domain;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * Payload of journaled message, kept in separate table so queries over journal do not read payloads
+ *
+ */
+@Entity
+@Table(name = "message_journal_payload")
+public class MessageJournalPayload {
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_journal_payload_seq")
+	@SequenceGenerator(name = "message_journal_payload_seq", sequenceName = "message_journal_payload_seq", allocationSize = 50)
+	private Long id;
+	
+	@Lob
+	@Basic(fetch = FetchType.LAZY)
+	@Column(name = "content")
+	private String content;
+	
+	public MessageJournalPayload() {
+	}
+	
+	public MessageJournalPayload(String content) {
+		this.content = content;
+	}
+	
+	public Long getId() {
+		return id;
+	}
+	public void setId(Long id) {
+		this.id = id;
+	}
+	public String getContent() {
+		return content;
+	}
+	public void setContent(String content) {
+		this.content = content;
+	}
+	
+}
@@ -0,0 +1,54 @@
+package it.eng.idsa.dataapp.domain;
+
+import de.fraunhofer.iais.eis.Message;
+import it.eng.idsa.multipart.domain.MultipartMessage;
+import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
+
+/**
+ * Multipart message received as String</br>
+ * Body is parsed on first access and only once, header and payload are served from parsed message afterwards
+ *
+ */
+public class ParsedMultipartMessage {
+	
+	private final String body;
+	private volatile MultipartMessage multipartMessage;
+	
+	public ParsedMultipartMessage(String body) {
+		this.body = body;
+	}
+	
+	public String getBody() {
+		return body;
+	}
+	
+	public String getHeader() {
+		return parsed().getHeaderContentString();
+	}
+	
+	public Message getMessage() {
+		return parsed().getHeaderContent();
+	}
+	
+	public String getPayload() {
+		return parsed().getPayloadContent();
+	}
+	
+	public MultipartMessage getMultipartMessage() {
+		return parsed();
+	}
+	
+	private MultipartMessage parsed() {
+		MultipartMessage parsed = multipartMessage;
+		if (parsed == null) {
+			synchronized (this) {
+				parsed = multipartMessage;
+				if (parsed == null) {
+					parsed = MultipartMessageProcessor.parseMultipartMessage(body);
+					multipartMessage = parsed;
+				}
+			}
+		}
+		return parsed;
+	}
+}
@@ -0,0 +1,83 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Last version of an artifact received by consumer
+ *
+ */
+@Entity
+@Table(name = "received_artifact")
+public class ReceivedArtifact {
+	
+	/**
+	 * Name of artifact as requested from provider
+	 */
+	@Id
+	@Column(name = "artifact", length = 1024)
+	private String artifact;
+	
+	@Column(name = "sha256", length = 64)
+	private String sha256;
+	
+	/**
+	 * Name of the saved copy in destination directory
+	 */
+	@Column(name = "file_name", length = 1024)
+	private String fileName;
+	
+	@Column(name = "size")
+	private long size;
+	
+	@Column(name = "received_at")
+	private Instant receivedAt;
+	
+	/**
+	 * Last time provider confirmed that artifact did not change
+	 */
+	@Column(name = "checked_at")
+	private Instant checkedAt;
+	
+	public String getArtifact() {
+		return artifact;
+	}
+	public void setArtifact(String artifact) {
+		this.artifact = artifact;
+	}
+	public String getSha256() {
+		return sha256;
+	}
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+	public String getFileName() {
+		return fileName;
+	}
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+	public long getSize() {
+		return size;
+	}
+	public void setSize(long size) {
+		this.size = size;
+	}
+	public Instant getReceivedAt() {
+		return receivedAt;
+	}
+	public void setReceivedAt(Instant receivedAt) {
+		this.receivedAt = receivedAt;
+	}
+	public Instant getCheckedAt() {
+		return checkedAt;
+	}
+	public void setCheckedAt(Instant checkedAt) {
+		this.checkedAt = checkedAt;
+	}
+	
+}
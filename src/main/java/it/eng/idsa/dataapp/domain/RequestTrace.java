@@ -0,0 +1,128 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Timings of one request, keyed by IDS message @id, so traces of consumer and provider can be matched</br>
+ * Spans can be added from several threads and also after trace is finished, e.g. by asynchronous CKAN upload
+ *
+ */
+public class RequestTrace {
+
+	private final String traceId;
+	private final String name;
+	private final Instant startedAt;
+	private final long startNanos;
+	private final Map<String, String> attributes = new ConcurrentHashMap<>();
+	private final List<Span> spans = new CopyOnWriteArrayList<>();
+	private volatile long finishedNanos;
+
+	public RequestTrace(String traceId, String name, long startNanos) {
+		this.traceId = traceId;
+		this.name = name;
+		this.startNanos = startNanos;
+		this.startedAt = Instant.now().minusNanos(System.nanoTime() - startNanos);
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+	public String getName() {
+		return name;
+	}
+	public Instant getStartedAt() {
+		return startedAt;
+	}
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+	public List<Span> getSpans() {
+		return new ArrayList<>(spans);
+	}
+	public boolean isFinished() {
+		return finishedNanos != 0;
+	}
+
+	/**
+	 * Until the end of the last span, or current time while trace is not finished
+	 */
+	public long getDurationMillis() {
+		long end = isFinished() ? finishedNanos : System.nanoTime();
+		for (Span span : spans) {
+			end = Math.max(end, startNanos + TimeUnit.MILLISECONDS.toNanos(span.getStartOffsetMillis() + span.getDurationMillis()));
+		}
+		return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+	}
+
+	public RequestTrace attribute(String key, String value) {
+		if (value != null) {
+			attributes.put(key, value);
+		}
+		return this;
+	}
+
+	public Span addSpan(String spanName, long spanStartNanos, long spanEndNanos) {
+		Span span = new Span(spanName, TimeUnit.NANOSECONDS.toMillis(spanStartNanos - startNanos),
+				TimeUnit.NANOSECONDS.toMillis(spanEndNanos - spanStartNanos), Thread.currentThread().getName());
+		spans.add(span);
+		return span;
+	}
+
+	public void finish() {
+		finishedNanos = System.nanoTime();
+	}
+
+	@JsonIgnore
+	public String getSpanSummary() {
+		StringBuilder summary = new StringBuilder();
+		for (Span span : spans) {
+			if (summary.length() > 0) {
+				summary.append(", ");
+			}
+			summary.append(span.getName()).append('=').append(span.getDurationMillis()).append(" ms");
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * One stage of request
+	 */
+	public static class Span {
+
+		private final String name;
+		private final long startOffsetMillis;
+		private final long durationMillis;
+		private final String thread;
+
+		public Span(String name, long startOffsetMillis, long durationMillis, String thread) {
+			this.name = name;
+			this.startOffsetMillis = startOffsetMillis;
+			this.durationMillis = durationMillis;
+			this.thread = thread;
+		}
+
+		public String getName() {
+			return name;
+		}
+		/**
+		 * Start of span relative to start of trace
+		 */
+		public long getStartOffsetMillis() {
+			return startOffsetMillis;
+		}
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+		public String getThread() {
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package it.eng.idsa.dataapp.domain;
+
+/**
+ * Outcome of selection from CSV artifact, sent to consumer as <i>selectionReport</i> of ArtifactResponseMessage header</br>
+ * Blocks are counted only for filtered selection served from columnar sidecar
+ *
+ */
+public class SelectionReport {
+	
+	private long rows;
+	private boolean columnar;
+	private long scannedBlocks;
+	private long prunedBlocks;
+	
+	/**
+	 * Data rows in selection, header excluded
+	 */
+	public long getRows() {
+		return rows;
+	}
+	public void setRows(long rows) {
+		this.rows = rows;
+	}
+	/**
+	 * True if selection was served from columnar sidecar, false if it was read from CSV file
+	 */
+	public boolean isColumnar() {
+		return columnar;
+	}
+	public void setColumnar(boolean columnar) {
+		this.columnar = columnar;
+	}
+	public long getScannedBlocks() {
+		return scannedBlocks;
+	}
+	public void setScannedBlocks(long scannedBlocks) {
+		this.scannedBlocks = scannedBlocks;
+	}
+	/**
+	 * Blocks skipped by min/max of filtered columns, without being read
+	 */
+	public long getPrunedBlocks() {
+		return prunedBlocks;
+	}
+	public void setPrunedBlocks(long prunedBlocks) {
+		this.prunedBlocks = prunedBlocks;
+	}
+	
+	@Override
+	public String toString() {
+		return columnar ? String.format("%d rows, %d of %d blocks pruned", rows, prunedBlocks, scannedBlocks + prunedBlocks)
+				: String.format("%d rows", rows);
+	}
+	
+}
@@ -0,0 +1,64 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+/**
+ * Multipart body written by callback directly to the output stream</br>
+ * Unlike InputStreamBody, known length lets multipart entity have Content-Length, 
+ * length -1 means it is not known upfront and is not checked
+ *
+ */
+public class StreamingContentBody extends AbstractContentBody {
+	
+	private final String filename;
+	private final long contentLength;
+	private final ContentWriter writer;
+	
+	public StreamingContentBody(ContentType contentType, String filename, long contentLength, ContentWriter writer) {
+		super(contentType);
+		this.filename = filename;
+		this.contentLength = contentLength;
+		this.writer = writer;
+	}
+
+	@Override
+	public String getFilename() {
+		return filename;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		long written = writer.writeTo(out);
+		if (contentLength >= 0 && written != contentLength) {
+			throw new IOException(String.format("Content of %s changed while sending, %d bytes written instead of %d", 
+					filename, written, contentLength));
+		}
+	}
+
+	@Override
+	public String getTransferEncoding() {
+		return MIME.ENC_BINARY;
+	}
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+	
+	@FunctionalInterface
+	public interface ContentWriter {
+		
+		/**
+		 * @param out
+		 * @return number of written bytes
+		 * @throws IOException
+		 */
+		long writeTo(OutputStream out) throws IOException;
+	}
+
+}
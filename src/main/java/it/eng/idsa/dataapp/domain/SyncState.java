@@ -0,0 +1,133 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Result of last scheduled synchronization of an artifact, with provider's catalog entry it was based on
+ *
+ */
+@Entity
+@Table(name = "sync_state")
+public class SyncState {
+	
+	public enum Status {
+		/** new version received and published */
+		UPDATED, 
+		/** provider version did not change */
+		UNCHANGED, 
+		/** artifact is not in provider catalog */
+		MISSING, 
+		FAILED
+	}
+	
+	@Id
+	@Column(name = "artifact", length = 1024)
+	private String artifact;
+	
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", length = 16)
+	private Status status;
+	
+	@Column(name = "provider_size")
+	private Long providerSize;
+	
+	@Column(name = "provider_last_modified")
+	private Long providerLastModified;
+	
+	@Column(name = "provider_sha256", length = 64)
+	private String providerSha256;
+	
+	@Column(name = "last_sync_at")
+	private Instant lastSyncAt;
+	
+	@Column(name = "last_change_at")
+	private Instant lastChangeAt;
+	
+	@Column(name = "failures")
+	private int failures;
+	
+	@Column(name = "error", length = 2048)
+	private String error;
+	
+	public SyncState() {
+	}
+	
+	public SyncState(String artifact) {
+		this.artifact = artifact;
+	}
+	
+	/**
+	 * Provider's catalog entry is the same as in last successful synchronization
+	 */
+	public boolean matches(ArtifactDescriptor descriptor) {
+		return providerSha256 != null && providerSha256.equalsIgnoreCase(descriptor.getSha256())
+				&& providerSize != null && providerSize == descriptor.getSize()
+				&& providerLastModified != null && providerLastModified == descriptor.getLastModified();
+	}
+	
+	public String getArtifact() {
+		return artifact;
+	}
+	public void setArtifact(String artifact) {
+		this.artifact = artifact;
+	}
+	public Status getStatus() {
+		return status;
+	}
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+	public Long getProviderSize() {
+		return providerSize;
+	}
+	public void setProviderSize(Long providerSize) {
+		this.providerSize = providerSize;
+	}
+	public Long getProviderLastModified() {
+		return providerLastModified;
+	}
+	public void setProviderLastModified(Long providerLastModified) {
+		this.providerLastModified = providerLastModified;
+	}
+	public String getProviderSha256() {
+		return providerSha256;
+	}
+	public void setProviderSha256(String providerSha256) {
+		this.providerSha256 = providerSha256;
+	}
+	public Instant getLastSyncAt() {
+		return lastSyncAt;
+	}
+	public void setLastSyncAt(Instant lastSyncAt) {
+		this.lastSyncAt = lastSyncAt;
+	}
+	public Instant getLastChangeAt() {
+		return lastChangeAt;
+	}
+	public void setLastChangeAt(Instant lastChangeAt) {
+		this.lastChangeAt = lastChangeAt;
+	}
+	/**
+	 * Failed synchronizations in a row
+	 */
+	public int getFailures() {
+		return failures;
+	}
+	public void setFailures(int failures) {
+		this.failures = failures;
+	}
+	public String getError() {
+		return error;
+	}
+	public void setError(String error) {
+		this.error = error;
+	}
+	
+}
@@ -0,0 +1,65 @@
+package it.eng.idsa.dataapp.domain;
+
+import java.time.Instant;
+
+/**
+ * Status of asynchronous upload to Open Data service</br>
+ * Updated by upload worker, fields are volatile so status can be polled from request threads
+ *
+ */
+public class UploadStatus {
+	
+	public enum State {
+		QUEUED, RUNNING, RETRYING, COMPLETED, SKIPPED, FAILED, REJECTED
+	}
+	
+	private final String id;
+	private final String fileName;
+	private final Instant submitted;
+	private volatile State state;
+	private volatile int attempts;
+	private volatile Instant finished;
+	private volatile String error;
+	
+	public UploadStatus(String id, String fileName) {
+		this.id = id;
+		this.fileName = fileName;
+		this.submitted = Instant.now();
+		this.state = State.QUEUED;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	public String getFileName() {
+		return fileName;
+	}
+	public Instant getSubmitted() {
+		return submitted;
+	}
+	public State getState() {
+		return state;
+	}
+	public void setState(State state) {
+		this.state = state;
+	}
+	public int getAttempts() {
+		return attempts;
+	}
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+	public Instant getFinished() {
+		return finished;
+	}
+	public void setFinished(Instant finished) {
+		this.finished = finished;
+	}
+	public String getError() {
+		return error;
+	}
+	public void setError(String error) {
+		this.error = error;
+	}
+	
+}
@@ -0,0 +1,18 @@
+package it.eng.idsa.dataapp.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import it.eng.idsa.dataapp.domain.MessageJournalEntry;
+
+@Repository
+public interface MessageJournalRepository extends JpaRepository<MessageJournalEntry, Long> {
+	
+	Page<MessageJournalEntry> findByReceivedAtBetween(Instant from, Instant to, Pageable pageable);
+	
+	Page<MessageJournalEntry> findByCorrelationMessage(String correlationMessage, Pageable pageable);
+}
@@ -0,0 +1,11 @@
+package it.eng.idsa.dataapp.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import it.eng.idsa.dataapp.domain.ReceivedArtifact;
+
+@Repository
+public interface ReceivedArtifactRepository extends JpaRepository<ReceivedArtifact, String> {
+
+}
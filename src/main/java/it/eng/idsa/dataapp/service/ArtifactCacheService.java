@@ -0,0 +1,30 @@
+package it.eng.idsa.dataapp.service;
+
+import java.nio.file.Path;
+
+/**
+ * Cache of encoded artifact payloads</br>
+ * Entry is valid only for the same last modified time and size of the artifact
+ *
+ */
+public interface ArtifactCacheService {
+	
+	String VARIANT_BASE64 = "base64";
+	String VARIANT_GZIP_BASE64 = "gzip+base64";
+	
+	/**
+	 * @param artifact
+	 * @param lastModified last modified time in millis
+	 * @param size size in bytes
+	 * @param variant encoding of cached payload
+	 * @return cached payload or null
+	 */
+	String get(Path artifact, long lastModified, long size, String variant);
+	
+	void put(Path artifact, long lastModified, long size, String variant, String payload);
+	
+	void invalidate(Path artifact);
+	
+	void invalidateAll();
+
+}
@@ -0,0 +1,51 @@
+package it.eng.idsa.dataapp.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+
+/**
+ * In memory index of artifacts in data lake directory, kept up to date by data lake watcher
+ *
+ */
+public interface ArtifactCatalogService {
+	
+	/**
+	 * @param name file name of the artifact
+	 * @return descriptor, empty if artifact is not (yet) indexed
+	 */
+	Optional<ArtifactDescriptor> getArtifact(String name);
+	
+	/**
+	 * Descriptor of current version of the artifact, answered from memory while data lake is watched</br>
+	 * Artifact with change reported by watcher, but not yet indexed, is not current. When data lake is not watched, 
+	 * descriptor is checked against size and last modified time of the file instead
+	 * @param name file name of the artifact
+	 * @return descriptor, empty if artifact is not indexed or changed since indexing
+	 */
+	Optional<ArtifactDescriptor> getCurrentArtifact(String name);
+	
+	/**
+	 * @param name file name of the artifact
+	 * @param sha256 hash of the copy consumer already has
+	 * @return true if current version of the artifact has the same hash
+	 */
+	boolean isNotModified(String name, String sha256);
+	
+	/**
+	 * @return all indexed artifacts, ordered by name
+	 */
+	List<ArtifactDescriptor> getArtifacts();
+	
+	/**
+	 * @return true once initial scan of data lake directory is finished
+	 */
+	boolean isReady();
+	
+	/**
+	 * Index whole data lake directory again
+	 */
+	void refresh();
+
+}
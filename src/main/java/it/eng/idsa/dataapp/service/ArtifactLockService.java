@@ -0,0 +1,35 @@
+package it.eng.idsa.dataapp.service;
+
+import java.nio.file.Path;
+
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+
+/**
+ * Service responsible for coordinating concurrent access to artifacts</br>
+ * Readers of the same artifact share the lock, writers get exclusive access
+ * 
+ */
+public interface ArtifactLockService {
+	
+	/**
+	 * Acquire shared lock for reading artifact
+	 * @param artifact
+	 * @return lock handle, to be closed when reading is done
+	 * @throws ReadFileLockedException if lock could not be acquired within configured timeout
+	 */
+	ArtifactLock lockForRead(Path artifact) throws ReadFileLockedException;
+	
+	/**
+	 * Acquire exclusive lock for writing artifact
+	 * @param artifact
+	 * @return lock handle, to be closed when writing is done
+	 * @throws ReadFileLockedException if lock could not be acquired within configured timeout
+	 */
+	ArtifactLock lockForWrite(Path artifact) throws ReadFileLockedException;
+	
+	interface ArtifactLock extends AutoCloseable {
+		
+		@Override
+		void close();
+	}
+}
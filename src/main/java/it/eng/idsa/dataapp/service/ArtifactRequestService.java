@@ -0,0 +1,59 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+
+/**
+ * Consumer side of artifact exchange over WebSocket - request artifact from provider, save it and submit upload to CKAN
+ *
+ */
+public interface ArtifactRequestService {
+
+	/**
+	 * Request one artifact, unless <i>force</i> is set the request is conditional -</br>
+	 * if provider still has the version received last time, nothing is transferred, saved or uploaded
+	 * @param forwardToInternal
+	 * @param forwardTo
+	 * @param requestedArtifact
+	 * @param force
+	 * @param payload payload of request message, can be null
+	 * @return result with response message received from provider
+	 * @throws IOException if message could not be exchanged with provider or artifact could not be saved
+	 */
+	ArtifactTransferResult requestArtifact(String forwardToInternal, String forwardTo, String requestedArtifact,
+			boolean force, String payload) throws IOException;
+
+	/**
+	 * Request selected columns and rows of CSV artifact</br>
+	 * Selection is not a version of the artifact, so request is not conditional and received version is not recorded.
+	 * Selection is saved as <i>name_selection_timestamp.csv</i> and not uploaded to CKAN
+	 * @param selection columns and rows, null to request whole artifact
+	 */
+	ArtifactTransferResult requestArtifact(String forwardToInternal, String forwardTo, String requestedArtifact,
+			CsvSelection selection, boolean force, String payload) throws IOException;
+
+	/**
+	 * Request artifacts one after another, each artifact is saved and its upload submitted as soon as it is received
+	 * @param artifacts names of artifacts
+	 * @param patterns globs expanded against artifact catalog of provider, can be empty
+	 * @return result for each artifact, in order of artifacts followed by artifacts matched by patterns
+	 * @throws IOException if patterns are given and catalog could not be received from provider
+	 */
+	List<ArtifactTransferResult> requestArtifacts(String forwardToInternal, String forwardTo, List<String> artifacts,
+			List<String> patterns, boolean force) throws IOException;
+
+	/**
+	 * Artifact catalog of provider, requested with DescriptionRequestMessage
+	 */
+	List<ArtifactDescriptor> requestCatalog(String forwardToInternal, String forwardTo) throws IOException;
+
+	/**
+	 * Name of file artifact is saved to, with timestamp added before extension
+	 */
+	String addTimestampToFileName(String requestedArtifact);
+
+}
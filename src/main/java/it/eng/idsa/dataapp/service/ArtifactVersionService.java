@@ -0,0 +1,35 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import it.eng.idsa.dataapp.domain.ReceivedArtifact;
+
+/**
+ * Keeps track of artifact versions received by consumer, used for conditional artifact requests
+ *
+ */
+public interface ArtifactVersionService {
+	
+	Optional<ReceivedArtifact> getReceivedArtifact(String artifact);
+	
+	/**
+	 * @param artifact
+	 * @return SHA-256 of the last received copy, null if artifact was never received or the copy no longer exists
+	 */
+	String getLastHash(String artifact);
+	
+	/**
+	 * Record new version of artifact, hash is computed from saved file</br>
+	 * When content equals the recorded copy that still exists, the recorded copy is kept and only check time is updated
+	 * @param artifact name of artifact as requested from provider
+	 * @param savedFile copy saved in destination directory
+	 * @return record pointing to the current copy
+	 * @throws IOException
+	 */
+	ReceivedArtifact recordReceived(String artifact, Path savedFile) throws IOException;
+	
+	void recordNotModified(String artifact);
+
+}
@@ -0,0 +1,23 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Service requesting artifact over HTTP in binary payload mode</br>
+ * Payload is received as application/octet-stream part and written to file as it arrives, 
+ * Base64 payload from provider without binary support is accepted as well
+ *
+ */
+public interface BinaryTransferService {
+	
+	/**
+	 * @param forwardTo URL receiving multipart/mixed ArtifactRequestMessage
+	 * @param requestedArtifact
+	 * @param targetFile
+	 * @return size of saved artifact in bytes
+	 * @throws IOException if request failed or provider rejected it
+	 */
+	long requestArtifact(String forwardTo, String requestedArtifact, Path targetFile) throws IOException;
+
+}
@@ -0,0 +1,28 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Service responsible for requesting artifact from provider chunk by chunk</br>
+ * Received chunks are verified against their checksum and appended to partial file, 
+ * so interrupted transfer is resumed from the last received byte instead of from the beginning</br>
+ * Partial file is resumed only if provider still has the same version (size and last modification) of the artifact
+ *
+ */
+public interface ChunkedTransferService {
+	
+	/**
+	 * Request artifact in chunks and save it to target file
+	 * @param forwardToInternal
+	 * @param forwardTo
+	 * @param requestedArtifact
+	 * @param chunkSize size of requested chunks in bytes, default one used if null
+	 * @param targetFile file where complete artifact is moved after last chunk is received
+	 * @return number of bytes of the artifact
+	 * @throws IOException if chunk could not be received after configured number of retries, request was rejected
+	 * or the same artifact is already being transferred
+	 * @throws IllegalArgumentException if name of artifact leaves destination directory
+	 */
+	long requestArtifact(String forwardToInternal, String forwardTo, String requestedArtifact, Integer chunkSize, Path targetFile) throws IOException;
+}
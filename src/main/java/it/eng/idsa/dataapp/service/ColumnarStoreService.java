@@ -0,0 +1,46 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.SelectionReport;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+
+/**
+ * Columnar copies (sidecars) of CSV artifacts, kept next to them in data lake directory as hidden <i>.name.csv.col</i> files</br>
+ * Sidecars are written in background when CSV artifact is created or modified, selections are then served from typed 
+ * column blocks instead of parsing CSV text
+ *
+ */
+public interface ColumnarStoreService {
+	
+	/**
+	 * @return path of sidecar of CSV file
+	 */
+	Path sidecarOf(Path csvFile);
+	
+	/**
+	 * Write sidecar of CSV file, unless there already is one built from its current version</br>
+	 * CSV file whose records do not all have as many fields as header gets no sidecar, and is selected from CSV
+	 * @return true if sidecar was written
+	 * @throws IOException also if CSV file has records of other field count than header
+	 * @throws ReadFileLockedException if CSV file is being written
+	 */
+	boolean convert(Path csvFile) throws IOException, ReadFileLockedException;
+	
+	/**
+	 * @return true if sidecar exists and was built from current version of CSV file, caller should hold read lock of CSV file
+	 */
+	boolean isCurrent(Path csvFile);
+	
+	/**
+	 * Same CSV as {@link CsvService#select(Path, CsvSelection, OutputStream)}, reconstructed from sidecar</br>
+	 * Blocks outside of row range are not read and only selected columns are decoded. Blocks whose min/max of filtered columns
+	 * exclude any match of filter are not read either. Caller should hold read lock of CSV file and check that sidecar is current
+	 * @return number of data rows written and, for filtered selection, of blocks scanned and pruned
+	 */
+	SelectionReport select(Path csvFile, CsvSelection selection, OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,33 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import it.eng.idsa.dataapp.domain.CsvSelection;
+
+/**
+ * Evaluates selections of columns and rows over CSV artifacts</br>
+ * First row of CSV file is the header with column names
+ *
+ */
+public interface CsvService {
+	
+	/**
+	 * Writes header and selected rows with selected columns, in single streaming pass over the file</br>
+	 * Rows before the range are skipped without being split into fields, reading stops after last selected row.
+	 * Rows in the range not matching filter of selection are left out. Caller must hold read lock of the file
+	 * @param csvFile
+	 * @param selection
+	 * @param out receives selected CSV, records separated by LF, not closed by this method
+	 * @return number of data rows written
+	 * @throws IOException
+	 * @throws IllegalArgumentException if selected or filtered column is not in the header, or filter is not valid
+	 */
+	long select(Path csvFile, CsvSelection selection, OutputStream out) throws IOException;
+	
+	static boolean isCsv(String fileName) {
+		return fileName.toLowerCase().endsWith(".csv");
+	}
+
+}
@@ -0,0 +1,32 @@
+package it.eng.idsa.dataapp.service;
+
+import java.nio.file.Path;
+
+/**
+ * Watches data lake directory and notifies listeners about created, modified and deleted artifacts
+ *
+ */
+public interface DataLakeWatchService {
+	
+	void addListener(DataLakeListener listener);
+	
+	/**
+	 * @return true while data lake directory is watched, so listeners are notified about every change
+	 */
+	boolean isWatching();
+	
+	interface DataLakeListener {
+		
+		/**
+		 * Artifact was created, modified or deleted, in data lake directory or one of its subdirectories
+		 * @param artifact absolute path of the artifact
+		 */
+		void artifactChanged(Path artifact);
+		
+		/**
+		 * Some events were lost, listener should consider every artifact changed
+		 */
+		void overflow();
+	}
+
+}
@@ -0,0 +1,29 @@
+package it.eng.idsa.dataapp.service;
+
+import java.util.List;
+
+import it.eng.idsa.dataapp.domain.SyncState;
+
+/**
+ * Periodically requests configured artifacts from provider, so consumer copy and CKAN stay up to date</br>
+ * Artifacts whose catalog entry did not change since last synchronization are not requested at all
+ *
+ */
+public interface DatasetSyncService {
+	
+	/**
+	 * Run synchronization of all configured artifacts now
+	 * @return state of each artifact after synchronization
+	 * @throws IllegalStateException if synchronization is already running
+	 */
+	List<SyncState> sync();
+	
+	/**
+	 * Run synchronization of all configured artifacts in background, as soon as scheduler thread is free
+	 * @throws IllegalStateException if synchronization is already running
+	 */
+	void submitSync();
+	
+	List<SyncState> getSyncStates();
+
+}
@@ -1,12 +1,104 @@
 package it.eng.idsa.dataapp.service;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 
 import de.fraunhofer.iais.eis.Message;
+import it.eng.idsa.dataapp.domain.ArtifactChunk;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.SelectionReport;
 import it.eng.idsa.dataapp.exception.EmptyFileException;
 import it.eng.idsa.dataapp.exception.ReadFileLockedException;
 
 public interface FileReaderService {
 	
 	String  readRequestedArtifact(Message requestMessage, String requestedArtifact) throws IOException, ReadFileLockedException, EmptyFileException;
+	
+	/**
+	 * Reads requested artifact, compressed with gzip before Base64 encoding when <i>compress</i> is set</br>
+	 * Artifacts stored compressed (.gz) are not compressed again
+	 * @param requestMessage
+	 * @param requestedArtifact
+	 * @param compress true if consumer accepts gzip encoded payload
+	 * @return Base64 encoded payload
+	 * @throws IOException
+	 * @throws ReadFileLockedException
+	 * @throws EmptyFileException
+	 */
+	String readRequestedArtifact(Message requestMessage, String requestedArtifact, boolean compress) throws IOException, ReadFileLockedException, EmptyFileException;
+	
+	/**
+	 * Reads only selected columns and rows of CSV artifact, in single pass over the file</br>
+	 * Selected content is not cached
+	 * @param requestMessage
+	 * @param requestedArtifact
+	 * @param selection columns and rows to return
+	 * @param compress true if consumer accepts gzip encoded payload
+	 * @param report filled with number of selected rows and of blocks scanned and pruned by filter, for response to consumer
+	 * @return Base64 encoded selected CSV
+	 * @throws IOException
+	 * @throws ReadFileLockedException
+	 * @throws EmptyFileException
+	 * @throws IllegalArgumentException if artifact is not CSV or selected column does not exist
+	 */
+	String readRequestedArtifact(Message requestMessage, String requestedArtifact, CsvSelection selection, boolean compress, 
+			SelectionReport report) throws IOException, ReadFileLockedException, EmptyFileException;
+	
+	/**
+	 * Streams requested artifact, Base64 encoded, into provided output stream</br>
+	 * File is read in fixed size chunks, so heap usage does not depend on file size
+	 * @param requestMessage
+	 * @param requestedArtifact
+	 * @param out stream receiving Base64 encoded content, not closed by this method
+	 * @return number of bytes read from the artifact
+	 * @throws IOException
+	 * @throws ReadFileLockedException
+	 * @throws EmptyFileException
+	 */
+	long writeRequestedArtifact(Message requestMessage, String requestedArtifact, OutputStream out) throws IOException, ReadFileLockedException, EmptyFileException;
+	
+	/**
+	 * Same as {@link #writeRequestedArtifact(Message, String, OutputStream)}, content is compressed with gzip before encoding when <i>compress</i> is set
+	 */
+	long writeRequestedArtifact(Message requestMessage, String requestedArtifact, OutputStream out, boolean compress) throws IOException, ReadFileLockedException, EmptyFileException;
+	
+	/**
+	 * @param compress true if consumer accepts gzip encoded payload
+	 * @return true if content of the artifact is compressed with gzip before Base64 encoding
+	 */
+	boolean isCompressed(String requestedArtifact, boolean compress);
+	
+	/**
+	 * @param compress true if consumer accepts gzip encoded payload
+	 * @return encoding of Base64 payload, announced to consumer in response header
+	 */
+	String getPayloadEncoding(String requestedArtifact, boolean compress);
+	
+	/**
+	 * Transfers raw artifact content to target channel using {@link java.nio.channels.FileChannel#transferTo}</br>
+	 * When target is a socket channel, bytes are sent from page cache without being copied to the heap
+	 * @param requestMessage
+	 * @param requestedArtifact
+	 * @param target channel receiving content, not closed by this method
+	 * @return number of bytes transferred
+	 * @throws IOException
+	 * @throws ReadFileLockedException
+	 * @throws EmptyFileException
+	 */
+	long transferRequestedArtifact(Message requestMessage, String requestedArtifact, WritableByteChannel target) throws IOException, ReadFileLockedException, EmptyFileException;
+	
+	/**
+	 * Reads byte range of requested artifact, used for chunked and resumable transfer</br>
+	 * Length is capped by configured maximum chunk size
+	 * @param requestMessage
+	 * @param requestedArtifact
+	 * @param offset position of first byte
+	 * @param length requested number of bytes
+	 * @return chunk with Base64 encoded content and its checksum
+	 * @throws IOException
+	 * @throws ReadFileLockedException
+	 * @throws EmptyFileException
+	 */
+	ArtifactChunk readRequestedArtifactChunk(Message requestMessage, String requestedArtifact, long offset, int length) throws IOException, ReadFileLockedException, EmptyFileException;
 }
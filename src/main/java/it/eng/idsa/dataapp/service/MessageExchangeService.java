@@ -0,0 +1,28 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+
+/**
+ * Consumer side exchange of multipart messages with provider over WebSocket</br>
+ * Sender of WebSocket streamer and its Forward-To target are shared by the whole application and responses are not
+ * matched to requests, so exchanges are sent one at a time
+ *
+ */
+public interface MessageExchangeService {
+
+	/**
+	 * Send message and wait for response of provider
+	 * @param forwardToInternal WebSocket endpoint of connector
+	 * @param forwardTo provider connector
+	 * @param header request message
+	 * @param payload can be null
+	 * @return multipart response message
+	 * @throws IOException if message could not be exchanged
+	 */
+	String send(String forwardToInternal, String forwardTo, String header, String payload) throws IOException;
+
+	/**
+	 * Send whole multipart message and wait for response of provider
+	 */
+	String send(String forwardToInternal, String forwardTo, String multipartMessage) throws IOException;
+}
@@ -0,0 +1,46 @@
+package it.eng.idsa.dataapp.service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.data.domain.Page;
+
+import it.eng.idsa.dataapp.domain.MessageJournalEntry;
+
+/**
+ * Persistent journal of received messages</br>
+ * Messages are appended asynchronously and written to database in batches
+ *
+ */
+public interface MessageJournalService {
+	
+	/**
+	 * Queue message for writing to journal, does not block on database
+	 * @param contentType
+	 * @param header
+	 * @param payload
+	 * @return false if message was dropped because write queue is full
+	 */
+	boolean append(String contentType, String header, String payload);
+	
+	/**
+	 * Page of journal entries, newest first, without payloads
+	 * @param page zero based page index
+	 * @param size page size
+	 * @param from if not null, only messages received at or after this time
+	 * @param to if not null, only messages received before this time
+	 * @return
+	 */
+	Page<MessageJournalEntry> getEntries(int page, int size, Instant from, Instant to);
+	
+	Page<MessageJournalEntry> getEntriesByCorrelationMessage(String correlationMessage, int page, int size);
+	
+	Optional<String> getPayload(Long entryId);
+	
+	/**
+	 * Write all queued messages to database
+	 * @return number of written messages
+	 */
+	int flush();
+
+}
@@ -1,5 +1,6 @@
 package it.eng.idsa.dataapp.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import it.eng.idsa.dataapp.domain.MessageIDS;
@@ -14,6 +15,16 @@ public interface MessageService {
 	
 	public List<MessageIDS> getMessages();
 	
+	/**
+	 * Page of stored messages, oldest first
+	 * @param page zero based page index
+	 * @param size page size
+	 * @param from if not null, only messages received at or after this time
+	 * @param to if not null, only messages received before this time
+	 * @return
+	 */
+	public List<MessageIDS> getMessages(int page, int size, LocalDateTime from, LocalDateTime to);
+	
 	public void setMessage(String contentType, String header, String payload);
 	
 }
@@ -0,0 +1,79 @@
+package it.eng.idsa.dataapp.service;
+
+import de.fraunhofer.iais.eis.Message;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records timers and counters of message handling, artifact reads and writes and CKAN uploads</br>
+ * Meters are published on /actuator/prometheus
+ */
+public interface MetricsService {
+
+	String OUTCOME_SUCCESS = "success";
+	String OUTCOME_REJECTED = "rejected";
+	String OUTCOME_ERROR = "error";
+	String OUTCOME_FAILED = "failed";
+	String OUTCOME_SKIPPED = "skipped";
+
+	String READ_ENCODED = "encoded";
+	String READ_CACHED = "cached";
+	String READ_STREAMED = "streamed";
+	String READ_BINARY = "binary";
+	String READ_CHUNK = "chunk";
+	String READ_SELECTED = "selected";
+	String READ_COLUMNAR = "columnar";
+
+	Timer.Sample startTimer();
+
+	/**
+	 * Handling time of one incoming message, tagged by endpoint, message type, outcome and rejection reason
+	 * @param sample started when message was received
+	 * @param endpoint router endpoint or websocket
+	 * @param request incoming message, null when it could not be parsed
+	 * @param rejection RejectionMessage sent as response, null when request was answered
+	 */
+	void recordMessage(Timer.Sample sample, String endpoint, Message request, Message rejection);
+
+	/**
+	 * Same as {@link #recordMessage(Timer.Sample, String, Message, Message)} for messages known only by type name,
+	 * or handled with an error
+	 */
+	void recordMessage(Timer.Sample sample, String endpoint, String messageType, String outcome);
+
+	/**
+	 * @param mode one of READ_* constants
+	 * @param bytes bytes read from disk, 0 on failure
+	 */
+	void recordArtifactRead(Timer.Sample sample, String mode, boolean success, long bytes);
+
+	void recordArtifactWrite(Timer.Sample sample, boolean success, long bytes);
+
+	/**
+	 * @param outcome one of OUTCOME_* constants
+	 * @param retries attempts made after the first one
+	 */
+	void recordUpload(Timer.Sample sample, String outcome, int retries);
+
+	/**
+	 * Blocks of columnar sidecar considered by filtered selection
+	 * @param scanned blocks read and evaluated row by row
+	 * @param pruned blocks skipped by min/max of their columns, without being read
+	 */
+	void recordFilterBlocks(long scanned, long pruned);
+
+	/**
+	 * Simple name of message interface, e.g. ArtifactRequestMessage
+	 */
+	static String messageType(Message message) {
+		if (message == null) {
+			return "unknown";
+		}
+		for (Class<?> type : message.getClass().getInterfaces()) {
+			if (Message.class.isAssignableFrom(type)) {
+				return type.getSimpleName();
+			}
+		}
+		String name = message.getClass().getSimpleName();
+		return name.endsWith("Impl") ? name.substring(0, name.length() - 4) : name;
+	}
+}
@@ -1,8 +1,11 @@
 package it.eng.idsa.dataapp.service;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.entity.mime.content.ContentBody;
 
 import de.fraunhofer.iais.eis.Message;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.SelectionReport;
 
 /**
  * 
@@ -14,6 +17,12 @@ import de.fraunhofer.iais.eis.Message;
  * Service Interface for managing MultiPartMessage.
  */
 public interface MultiPartMessageService {
+	/**
+	 * Wrap multipart message so it is parsed once, no matter how many parts are read from it
+	 * @param body
+	 * @return
+	 */
+	ParsedMultipartMessage parseMultipartMessage(String body);
 	String getHeader(String body);
 	String getPayload(String body);
 
@@ -21,10 +30,47 @@ public interface MultiPartMessageService {
 	Message getMessage(Object header);
 	String addToken(Message message, String token);
 	HttpEntity createMultipartMessage(String header, String payload/*, String boundary, String contentType*/);
+	/**
+	 * Multipart/mixed message with binary payload part, payload is streamed when entity is written</br>
+	 * Entity has Content-Length when payload length is known
+	 * @param header
+	 * @param payload payload part, null for message without payload
+	 * @return
+	 */
+	HttpEntity createBinaryMultipartMessage(String header, ContentBody payload);
 	String getToken(String message);
 	String removeToken(Message message);
 	String getResponseHeader(Message header);
 	String getResponseHeader(String header);
+	
+	/**
+	 * Add report of CSV selection to serialized response header, as <i>selectionReport</i> field
+	 * @param header serialized response header
+	 * @param report
+	 * @return serialized header with report, unchanged header if it is not JSON object
+	 */
+	String addSelectionReport(String header, SelectionReport report);
+	
+	/**
+	 * @param header serialized response header
+	 * @return report of CSV selection, null if header has none
+	 */
+	SelectionReport getSelectionReport(String header);
+	
+	/**
+	 * Add encoding applied to Base64 payload to serialized response header, as <i>payloadEncoding</i> field
+	 * @param header serialized response header
+	 * @param encoding {@link ArtifactCacheService#VARIANT_BASE64} or {@link ArtifactCacheService#VARIANT_GZIP_BASE64}
+	 * @return serialized header with encoding, unchanged header if it is not JSON object
+	 */
+	String addPayloadEncoding(String header, String encoding);
+	
+	/**
+	 * @param header serialized response header
+	 * @return encoding applied to payload, null if header has none, e.g. from provider which never compresses payload
+	 */
+	String getPayloadEncoding(String header);
+	
 	Message createRejectionMessageLocalIssues(Message header);
 	
 	/**
@@ -34,5 +80,18 @@ public interface MultiPartMessageService {
 	 */
 	Message createRejectionCommunicationLocalIssues(Message header);
 	
+	/**
+	 * Temporarily not available reason, e.g. request could not be queued
+	 * @param header request message, can be null
+	 * @return
+	 */
+	Message createRejectionTemporarilyNotAvailable(Message header);
+	
+	/**
+	 * Internal recipient error reason, e.g. handling of request failed
+	 * @param header request message, can be null
+	 */
+	Message createRejectionInternalError(Message header);
+	
 
 }
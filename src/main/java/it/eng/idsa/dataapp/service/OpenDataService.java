@@ -2,6 +2,8 @@ package it.eng.idsa.dataapp.service;
 
 import java.io.IOException;
 
+import it.eng.idsa.dataapp.domain.UploadStatus;
+
 /**
  * Service responsible for uplaoding file to Open Data service</br>
  * Idea is to have various implementations for service, based on configuration/property
@@ -11,4 +13,18 @@ import java.io.IOException;
 public interface OpenDataService {
 	
 	void uploadData(String fileName) throws IOException;
+	
+	/**
+	 * Queue file for asynchronous upload, so caller does not wait for Open Data service round trip</br>
+	 * If upload queue is full, returned status is REJECTED
+	 * @param fileName
+	 * @return status of the upload, to be polled with {@link #getUploadStatus(String)}
+	 */
+	UploadStatus submitUpload(String fileName);
+	
+	/**
+	 * @param uploadId
+	 * @return status of the upload, or null if upload is not known (anymore)
+	 */
+	UploadStatus getUploadStatus(String uploadId);
 }
@@ -2,6 +2,7 @@ package it.eng.idsa.dataapp.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * 
@@ -28,5 +29,33 @@ public interface RecreateFileService {
 	 * @throws IOException
 	 */
 	void recreateTheFile(String payload, File targetFile) throws IOException;
+	
+	/**
+	 * Decode Base64 encoded stream and save it to provided file</br>
+	 * Content is written to temporary file first and renamed when complete
+	 * @param encodedPayload
+	 * @param targetFile
+	 * @throws IOException
+	 */
+	void recreateTheFile(InputStream encodedPayload, File targetFile) throws IOException;
+	
+	/**
+	 * Save file with provided fileName and path, payload is decompressed if it was compressed with gzip before encoding
+	 * @param payload
+	 * @param targetFile
+	 * @param compressed
+	 * @throws IOException
+	 */
+	void recreateTheFile(String payload, File targetFile, boolean compressed) throws IOException;
+	
+	void recreateTheFile(InputStream encodedPayload, File targetFile, boolean compressed) throws IOException;
+	
+	/**
+	 * Save raw (not encoded) content to provided file, stream is read to the end but not closed
+	 * @param content
+	 * @param targetFile
+	 * @throws IOException
+	 */
+	void recreateTheFileFromBinary(InputStream content, File targetFile) throws IOException;
 
 }
@@ -0,0 +1,28 @@
+package it.eng.idsa.dataapp.service;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs incoming requests on worker threads, so slow request does not block the thread receiving messages</br>
+ * Every dispatched request gets exactly one response, a rejection when it could not be queued or its handler failed.</br>
+ * Responses can be delivered in the same order in which requests were dispatched. Transport does not correlate
+ * responses with requests, so ordered delivery is needed for consumer with more requests in flight to match them, 
+ * at the cost of head-of-line blocking - response finished early waits until responses of all earlier requests are sent
+ *
+ */
+public interface RequestDispatcher {
+	
+	String REQUEST_ID = "requestId";
+	
+	/**
+	 * Dispatch request to worker thread
+	 * @param handler creates response, runs on worker thread with request id in logging context
+	 * @param overloaded creates response when request cannot be queued, runs on calling thread, should be cheap
+	 * @param failed creates response when handler throws, runs on worker thread
+	 * @param responder sends response, called once for each created response
+	 * @return request id, used in logs
+	 */
+	String dispatch(Supplier<String> handler, Supplier<String> overloaded, Supplier<String> failed, Consumer<String> responder);
+
+}
@@ -0,0 +1,29 @@
+package it.eng.idsa.dataapp.service;
+
+import java.io.IOException;
+
+/**
+ * Shared access to IDS information model serializer</br>
+ * Serializer is expensive to create, implementation reuses pre-warmed instances instead of creating one per message
+ *
+ */
+public interface SerializerService {
+	
+	/**
+	 * Serialize to JSON-LD
+	 * @param instance
+	 * @return
+	 * @throws IOException
+	 */
+	String serialize(Object instance) throws IOException;
+	
+	/**
+	 * Serialize to plain JSON, without JSON-LD context
+	 * @param instance
+	 * @return
+	 * @throws IOException
+	 */
+	String serializePlainJson(Object instance) throws IOException;
+	
+	<T> T deserialize(String serialized, Class<T> valueType) throws IOException;
+}
@@ -0,0 +1,64 @@
+package it.eng.idsa.dataapp.service;
+
+import java.util.List;
+
+import it.eng.idsa.dataapp.domain.RequestTrace;
+
+/**
+ * Span style tracing of requests, keyed by IDS message @id</br>
+ * Current trace is bound to thread and its id is put in logging context, finished traces are kept in memory
+ * and listed by <i>/actuator/slowrequests</i>
+ */
+public interface TraceService {
+
+	String TRACE_ID = "traceId";
+
+	/**
+	 * Start trace and bind it to current thread
+	 * @param traceId IDS message @id
+	 * @param name kind of request, e.g. consumer.artifactRequest
+	 * @param startNanos System.nanoTime() when request was received
+	 */
+	RequestTrace start(String traceId, String name, long startNanos);
+
+	/**
+	 * @return trace bound to current thread, null if there is none
+	 */
+	RequestTrace current();
+
+	/**
+	 * Span of current trace, ended when scope is closed</br>
+	 * Without current trace nothing is recorded
+	 */
+	SpanScope span(String name);
+
+	/**
+	 * Bind trace to current thread, e.g. in worker continuing request
+	 */
+	void attach(RequestTrace trace);
+
+	void detach();
+
+	/**
+	 * Logs stage timings and keeps trace in history, unbinds it from current thread
+	 */
+	void finish(RequestTrace trace);
+
+	/**
+	 * Recently finished traces, slowest first
+	 * @param minDurationMillis only traces taking at least this long
+	 * @param limit maximum number of traces
+	 */
+	List<RequestTrace> getRecentTraces(long minDurationMillis, int limit);
+
+	/**
+	 * @param traceId IDS message @id, or only its last segment, so it can be used in URL path
+	 */
+	List<RequestTrace> getTraces(String traceId);
+
+	interface SpanScope extends AutoCloseable {
+
+		@Override
+		void close();
+	}
+}
@@ -0,0 +1,212 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import it.eng.idsa.dataapp.service.ArtifactCacheService;
+import it.eng.idsa.dataapp.service.DataLakeWatchService;
+import it.eng.idsa.dataapp.service.DataLakeWatchService.DataLakeListener;
+
+/**
+ * LRU cache bounded by total payload size, entries are removed when data lake watcher reports change</br>
+ * Payloads are ASCII, so String length is used as its size in bytes
+ *
+ */
+@Service
+public class ArtifactCacheServiceImpl implements ArtifactCacheService, DataLakeListener, MeterBinder {
+	
+	private static final Logger logger = LogManager.getLogger(ArtifactCacheServiceImpl.class);
+	
+	@Autowired(required = false)
+	private DataLakeWatchService dataLakeWatchService;
+	
+	/**
+	 * 0 disables cache
+	 */
+	@Value("${application.artifactCache.maxBytes:268435456}")
+	private long maxBytes = 256 * 1024 * 1024;
+	
+	/**
+	 * Larger payloads are not cached, so single artifact cannot flush whole cache
+	 */
+	@Value("${application.artifactCache.maxEntryBytes:33554432}")
+	private long maxEntryBytes = 32 * 1024 * 1024;
+	
+	private final LinkedHashMap<CacheKey, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private long currentBytes;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	
+	@PostConstruct
+	public void init() {
+		if (dataLakeWatchService != null) {
+			dataLakeWatchService.addListener(this);
+		}
+	}
+
+	@Override
+	public String get(Path artifact, long lastModified, long size, String variant) {
+		String payload;
+		synchronized (entries) {
+			payload = entries.get(new CacheKey(artifact, lastModified, size, variant));
+		}
+		if (payload != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return payload;
+	}
+
+	@Override
+	public void put(Path artifact, long lastModified, long size, String variant, String payload) {
+		long payloadBytes = payload.length();
+		if (payloadBytes > maxEntryBytes || payloadBytes > maxBytes) {
+			return;
+		}
+		CacheKey key = new CacheKey(artifact, lastModified, size, variant);
+		synchronized (entries) {
+			// older versions of the same artifact can not be requested any more
+			removeIf(artifact, key);
+			String previous = entries.put(key, payload);
+			if (previous != null) {
+				currentBytes -= previous.length();
+			}
+			currentBytes += payloadBytes;
+			Iterator<String> eldest = entries.values().iterator();
+			while (currentBytes > maxBytes && eldest.hasNext()) {
+				currentBytes -= eldest.next().length();
+				eldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public void invalidate(Path artifact) {
+		synchronized (entries) {
+			removeIf(artifact, null);
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+			currentBytes = 0;
+		}
+	}
+	
+	@Override
+	public void artifactChanged(Path artifact) {
+		logger.debug("Invalidating cached payloads of {}", artifact);
+		invalidate(artifact);
+	}
+	
+	@Override
+	public void overflow() {
+		invalidateAll();
+	}
+	
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("dataapp.artifact.cache.hits", hits, AtomicLong::get).register(registry);
+		FunctionCounter.builder("dataapp.artifact.cache.misses", misses, AtomicLong::get).register(registry);
+		FunctionCounter.builder("dataapp.artifact.cache.evictions", evictions, AtomicLong::get).register(registry);
+		Gauge.builder("dataapp.artifact.cache.size", this, c -> c.getCurrentBytes()).baseUnit("bytes").register(registry);
+		Gauge.builder("dataapp.artifact.cache.entries", this, c -> c.getEntryCount()).register(registry);
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	public long getCurrentBytes() {
+		synchronized (entries) {
+			return currentBytes;
+		}
+	}
+	
+	public int getEntryCount() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * Removes entries of the artifact, except those of the same version as kept key, must be called holding lock
+	 */
+	private void removeIf(Path artifact, CacheKey keep) {
+		Path normalized = artifact.toAbsolutePath().normalize();
+		Iterator<Map.Entry<CacheKey, String>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<CacheKey, String> entry = iterator.next();
+			CacheKey key = entry.getKey();
+			if (key.artifact.equals(normalized) 
+					&& (keep == null || key.lastModified != keep.lastModified || key.size != keep.size)) {
+				currentBytes -= entry.getValue().length();
+				iterator.remove();
+			}
+		}
+	}
+	
+	private static final class CacheKey {
+		private final Path artifact;
+		private final long lastModified;
+		private final long size;
+		private final String variant;
+		
+		CacheKey(Path artifact, long lastModified, long size, String variant) {
+			this.artifact = artifact.toAbsolutePath().normalize();
+			this.lastModified = lastModified;
+			this.size = size;
+			this.variant = variant;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(artifact, lastModified, size, variant);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return lastModified == other.lastModified && size == other.size 
+					&& artifact.equals(other.artifact) && Objects.equals(variant, other.variant);
+		}
+	}
+
+}
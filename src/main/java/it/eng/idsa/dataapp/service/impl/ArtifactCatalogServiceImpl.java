@@ -0,0 +1,308 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactCatalogService;
+import it.eng.idsa.dataapp.service.ArtifactLockService;
+import it.eng.idsa.dataapp.service.ArtifactLockService.ArtifactLock;
+import it.eng.idsa.dataapp.service.DataLakeWatchService;
+import it.eng.idsa.dataapp.service.DataLakeWatchService.DataLakeListener;
+
+/**
+ * Catalog is built by background scan at startup and updated for each watcher event</br>
+ * Events for the same artifact are coalesced, so artifact being written is hashed once after writing settles</br>
+ * Lookups do not touch the file system while data lake is watched
+ *
+ */
+@Service
+public class ArtifactCatalogServiceImpl implements ArtifactCatalogService, DataLakeListener {
+	
+	private static final Logger logger = LogManager.getLogger(ArtifactCatalogServiceImpl.class);
+	
+	private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+	private static final String CSV_MIME_TYPE = "text/csv";
+	
+	@Autowired
+	private ArtifactLockService artifactLockService;
+	
+	@Autowired(required = false)
+	private DataLakeWatchService dataLakeWatchService;
+	
+	@Value("${application.dataLakeDirectory}")
+	private Path dataLakeDirectory;
+	
+	@Value("${application.artifactCatalog.debounceMillis:500}")
+	private long debounceMillis = 500;
+	
+	@Value("${application.fileReader.bufferSize:65536}")
+	private int bufferSize = 65536;
+	
+	private final Map<String, ArtifactDescriptor> artifacts = new ConcurrentHashMap<>();
+	
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * Number of watcher events of each artifact changed since it was indexed
+	 */
+	private final Map<String, Long> changes = new ConcurrentHashMap<>();
+	
+	/**
+	 * Catalog is not current from lost watcher events until rescan started after them finishes
+	 */
+	private final AtomicLong overflows = new AtomicLong();
+	private volatile long scannedOverflows;
+	
+	private volatile boolean ready;
+	
+	private ScheduledExecutorService indexer;
+	
+	@PostConstruct
+	public void init() {
+		indexer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "artifact-catalog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (dataLakeWatchService != null) {
+			dataLakeWatchService.addListener(this);
+		}
+		indexer.execute(this::scan);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		indexer.shutdownNow();
+	}
+
+	@Override
+	public Optional<ArtifactDescriptor> getArtifact(String name) {
+		return Optional.ofNullable(artifacts.get(name));
+	}
+
+	@Override
+	public Optional<ArtifactDescriptor> getCurrentArtifact(String name) {
+		ArtifactDescriptor descriptor = artifacts.get(name);
+		if (descriptor == null) {
+			return Optional.empty();
+		}
+		if (dataLakeWatchService != null && dataLakeWatchService.isWatching()) {
+			boolean current = !changes.containsKey(name) && scannedOverflows == overflows.get();
+			return current ? Optional.of(descriptor) : Optional.empty();
+		}
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(dataLakeDirectory.resolve(name), BasicFileAttributes.class);
+			if (attributes.size() == descriptor.getSize() 
+					&& attributes.lastModifiedTime().toMillis() == descriptor.getLastModified()) {
+				return Optional.of(descriptor);
+			}
+		} catch (IOException e) {
+			logger.debug("Could not read attributes of {}: {}", name, e.getMessage());
+		}
+		return Optional.empty();
+	}
+
+	@Override
+	public boolean isNotModified(String name, String sha256) {
+		return getCurrentArtifact(name)
+				.map(ArtifactDescriptor::getSha256)
+				.filter(sha256::equalsIgnoreCase)
+				.isPresent();
+	}
+
+	@Override
+	public List<ArtifactDescriptor> getArtifacts() {
+		List<ArtifactDescriptor> list = new ArrayList<>(artifacts.values());
+		list.sort(Comparator.comparing(ArtifactDescriptor::getName));
+		return list;
+	}
+	
+	@Override
+	public boolean isReady() {
+		return ready;
+	}
+
+	@Override
+	public void refresh() {
+		indexer.execute(this::scan);
+	}
+	
+	@Override
+	public void artifactChanged(Path artifact) {
+		String name = artifact.getFileName().toString();
+		if (isIgnored(name)) {
+			return;
+		}
+		if (!dataLakeDirectory.toAbsolutePath().equals(artifact.toAbsolutePath().getParent())) {
+			// only artifacts directly in data lake directory
+			return;
+		}
+		changes.merge(name, 1L, Long::sum);
+		if (pending.add(name)) {
+			indexer.schedule(() -> {
+				pending.remove(name);
+				Long indexedChanges = changes.get(name);
+				index(dataLakeDirectory.resolve(name));
+				if (indexedChanges != null) {
+					// change reported while indexing keeps artifact not current until it is indexed again
+					changes.remove(name, indexedChanges);
+				}
+			}, debounceMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	@Override
+	public void overflow() {
+		overflows.incrementAndGet();
+		refresh();
+	}
+	
+	private void scan() {
+		long scanOverflows = overflows.get();
+		if (dataLakeDirectory == null || !Files.isDirectory(dataLakeDirectory)) {
+			logger.info("Data lake directory {} does not exist, catalog is empty", dataLakeDirectory);
+			scannedOverflows = scanOverflows;
+			ready = true;
+			return;
+		}
+		long start = System.currentTimeMillis();
+		Set<String> found = new HashSet<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataLakeDirectory)) {
+			for (Path artifact : stream) {
+				String name = artifact.getFileName().toString();
+				if (!isIgnored(name) && index(artifact)) {
+					found.add(name);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not scan data lake directory " + dataLakeDirectory, e);
+			return;
+		}
+		artifacts.keySet().retainAll(found);
+		scannedOverflows = scanOverflows;
+		ready = true;
+		logger.info("Artifact catalog built, {} artifacts in {} ms", artifacts.size(), System.currentTimeMillis() - start);
+	}
+	
+	/**
+	 * @return true if artifact is in catalog after indexing
+	 */
+	boolean index(Path artifact) {
+		String name = artifact.getFileName().toString();
+		try (ArtifactLock lock = artifactLockService.lockForRead(artifact)) {
+			BasicFileAttributes attributes = Files.readAttributes(artifact, BasicFileAttributes.class);
+			if (!attributes.isRegularFile()) {
+				artifacts.remove(name);
+				return false;
+			}
+			ArtifactDescriptor current = artifacts.get(name);
+			if (current != null && current.getSize() == attributes.size() 
+					&& current.getLastModified() == attributes.lastModifiedTime().toMillis()) {
+				return true;
+			}
+			artifacts.put(name, describe(artifact, attributes));
+			logger.debug("Artifact {} indexed", name);
+			return true;
+		} catch (NoSuchFileException e) {
+			artifacts.remove(name);
+			logger.debug("Artifact {} removed from catalog", name);
+		} catch (IOException | ReadFileLockedException e) {
+			logger.warn("Could not index artifact {}: {}", name, e.getMessage());
+		}
+		return false;
+	}
+	
+	/**
+	 * Hash and row count are computed in single pass over the file
+	 */
+	private ArtifactDescriptor describe(Path artifact, BasicFileAttributes attributes) throws IOException {
+		String name = artifact.getFileName().toString();
+		String mimeType = mimeType(artifact);
+		boolean csv = CSV_MIME_TYPE.equals(mimeType);
+		MessageDigest digest = Sha256.newDigest();
+		long lines = 0;
+		int lastByte = '\n';
+		try (FileChannel channel = FileChannel.open(artifact, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+			byte[] array = buffer.array();
+			int read;
+			while ((read = channel.read(buffer)) != -1) {
+				digest.update(array, 0, read);
+				if (csv) {
+					for (int i = 0; i < read; i++) {
+						if (array[i] == '\n') {
+							lines++;
+						}
+					}
+					if (read > 0) {
+						lastByte = array[read - 1];
+					}
+				}
+				buffer.clear();
+			}
+		}
+		ArtifactDescriptor descriptor = new ArtifactDescriptor();
+		descriptor.setName(name);
+		descriptor.setSize(attributes.size());
+		descriptor.setLastModified(attributes.lastModifiedTime().toMillis());
+		descriptor.setSha256(Sha256.toHex(digest.digest()));
+		descriptor.setMimeType(mimeType);
+		if (csv) {
+			// last line without line terminator, header line is not a row
+			long totalLines = lastByte != '\n' ? lines + 1 : lines;
+			descriptor.setRowCount(Math.max(0, totalLines - 1));
+		}
+		return descriptor;
+	}
+	
+	private String mimeType(Path artifact) {
+		if (artifact.getFileName().toString().toLowerCase().endsWith(".csv")) {
+			return CSV_MIME_TYPE;
+		}
+		try {
+			String probed = Files.probeContentType(artifact);
+			return probed != null ? probed : DEFAULT_MIME_TYPE;
+		} catch (IOException e) {
+			return DEFAULT_MIME_TYPE;
+		}
+	}
+	
+	/**
+	 * Hidden files, such as temporary files of file recreation, are not artifacts
+	 */
+	private boolean isIgnored(String name) {
+		return name.startsWith(".") || name.endsWith(".part") || name.endsWith(".tmp");
+	}
+	
+}
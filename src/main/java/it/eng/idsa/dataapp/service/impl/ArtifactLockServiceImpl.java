@@ -0,0 +1,200 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactLockService;
+
+/**
+ * In-process read/write locking, striped by artifact path</br>
+ * Optionally backs locks with {@link FileChannel#lock} to exclude other processes working on the same data lake
+ *
+ */
+@Service
+public class ArtifactLockServiceImpl implements ArtifactLockService {
+	
+	private static final Logger logger = LogManager.getLogger(ArtifactLockService.class);
+	
+	@Value("${application.artifactLock.stripes:64}")
+	private int stripes = 64;
+	
+	@Value("${application.artifactLock.timeoutMillis:30000}")
+	private long timeoutMillis = 30000;
+	
+	@Value("${application.artifactLock.fileChannel:false}")
+	private boolean fileChannelLock;
+	
+	private ReentrantReadWriteLock[] locks;
+	
+	/**
+	 * JVM holds one FileLock per file, so shared file locks are reference counted between readers
+	 */
+	private final Map<Path, SharedFileLock> sharedFileLocks = new ConcurrentHashMap<>();
+	
+	@PostConstruct
+	public void init() {
+		locks = new ReentrantReadWriteLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	@Override
+	public ArtifactLock lockForRead(Path artifact) throws ReadFileLockedException {
+		Path key = artifact.toAbsolutePath().normalize();
+		Lock lock = stripe(key).readLock();
+		acquire(lock, key);
+		if (!fileChannelLock) {
+			return lock::unlock;
+		}
+		SharedFileLock sharedFileLock;
+		try {
+			sharedFileLock = acquireSharedFileLock(key);
+		} catch (ReadFileLockedException e) {
+			lock.unlock();
+			throw e;
+		}
+		return () -> {
+			releaseSharedFileLock(sharedFileLock);
+			lock.unlock();
+		};
+	}
+
+	@Override
+	public ArtifactLock lockForWrite(Path artifact) throws ReadFileLockedException {
+		Path key = artifact.toAbsolutePath().normalize();
+		Lock lock = stripe(key).writeLock();
+		acquire(lock, key);
+		// writers replace files by rename, only existing file has to be protected from other processes
+		if (!fileChannelLock || !Files.isRegularFile(key)) {
+			return lock::unlock;
+		}
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(key, StandardOpenOption.WRITE);
+			FileLock fileLock = tryFileLock(channel, false, key);
+			FileChannel lockedChannel = channel;
+			return () -> {
+				close(fileLock, lockedChannel, key);
+				lock.unlock();
+			};
+		} catch (IOException | ReadFileLockedException e) {
+			close(null, channel, key);
+			lock.unlock();
+			logger.error("Could not acquire file lock for writing {}", key, e);
+			throw new ReadFileLockedException(String.format("Could not lock %s for writing", key));
+		}
+	}
+	
+	private ReentrantReadWriteLock stripe(Path key) {
+		return locks[Math.floorMod(key.hashCode(), locks.length)];
+	}
+	
+	private void acquire(Lock lock, Path key) throws ReadFileLockedException {
+		try {
+			if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				logger.info("Timeout while waiting for lock on {}", key);
+				throw new ReadFileLockedException(String.format("Artifact %s is locked", key));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ReadFileLockedException(String.format("Interrupted while waiting for lock on %s", key));
+		}
+	}
+	
+	private SharedFileLock acquireSharedFileLock(Path key) throws ReadFileLockedException {
+		while (true) {
+			SharedFileLock sharedFileLock = sharedFileLocks.computeIfAbsent(key, SharedFileLock::new);
+			synchronized (sharedFileLock) {
+				if (sharedFileLock.released) {
+					// lost race with last holder releasing it, use the new one
+					continue;
+				}
+				if (sharedFileLock.holders == 0) {
+					try {
+						sharedFileLock.channel = FileChannel.open(key, StandardOpenOption.READ);
+						sharedFileLock.fileLock = tryFileLock(sharedFileLock.channel, true, key);
+					} catch (IOException | ReadFileLockedException e) {
+						close(null, sharedFileLock.channel, key);
+						sharedFileLock.released = true;
+						sharedFileLocks.remove(key, sharedFileLock);
+						logger.error("Could not acquire file lock for reading {}", key, e);
+						throw new ReadFileLockedException(String.format("Could not lock %s for reading", key));
+					}
+				}
+				sharedFileLock.holders++;
+				return sharedFileLock;
+			}
+		}
+	}
+	
+	private void releaseSharedFileLock(SharedFileLock sharedFileLock) {
+		synchronized (sharedFileLock) {
+			if (--sharedFileLock.holders == 0) {
+				close(sharedFileLock.fileLock, sharedFileLock.channel, sharedFileLock.path);
+				sharedFileLock.released = true;
+				sharedFileLocks.remove(sharedFileLock.path, sharedFileLock);
+			}
+		}
+	}
+	
+	private FileLock tryFileLock(FileChannel channel, boolean shared, Path key) throws IOException, ReadFileLockedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		FileLock fileLock;
+		while ((fileLock = channel.tryLock(0, Long.MAX_VALUE, shared)) == null) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new ReadFileLockedException(String.format("Artifact %s is locked by another process", key));
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ReadFileLockedException(String.format("Interrupted while waiting for lock on %s", key));
+			}
+		}
+		return fileLock;
+	}
+	
+	private void close(FileLock fileLock, FileChannel channel, Path key) {
+		try {
+			if (fileLock != null) {
+				fileLock.release();
+			}
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			logger.error("Error while releasing file lock on {}", key, e);
+		}
+	}
+	
+	private static class SharedFileLock {
+		
+		private final Path path;
+		private FileChannel channel;
+		private FileLock fileLock;
+		private int holders;
+		private boolean released;
+		
+		SharedFileLock(Path path) {
+			this.path = path;
+		}
+	}
+}
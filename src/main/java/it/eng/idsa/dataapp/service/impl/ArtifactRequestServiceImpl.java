@@ -0,0 +1,362 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.ArtifactResponseMessage;
+import de.fraunhofer.iais.eis.DescriptionRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DescriptionResponseMessage;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionMessage;
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult.Status;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.ReceivedArtifact;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.domain.SelectionReport;
+import it.eng.idsa.dataapp.domain.UploadStatus;
+import it.eng.idsa.dataapp.service.ArtifactCacheService;
+import it.eng.idsa.dataapp.service.ArtifactRequestService;
+import it.eng.idsa.dataapp.service.ArtifactVersionService;
+import it.eng.idsa.dataapp.service.MessageExchangeService;
+import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.OpenDataService;
+import it.eng.idsa.dataapp.service.RecreateFileService;
+import it.eng.idsa.dataapp.service.SerializerService;
+import it.eng.idsa.dataapp.service.TraceService;
+import it.eng.idsa.dataapp.service.TraceService.SpanScope;
+import it.eng.idsa.multipart.util.DateUtil;
+
+@Service
+public class ArtifactRequestServiceImpl implements ArtifactRequestService {
+
+	private static final Logger logger = LogManager.getLogger(ArtifactRequestService.class);
+
+	private static final URI ISSUER_CONNECTOR = URI.create("http://w3id.org/engrd/connector");
+
+	/**
+	 * Added to name of file with selected columns and rows, so it is not mistaken for the whole artifact
+	 */
+	private static final String SELECTION_SUFFIX = "_selection";
+
+	private static final String BATCH_TRACE_PREFIX = "batch/";
+
+	@Autowired
+	private MultiPartMessageService multiPartMessageService;
+
+	@Autowired
+	private MessageExchangeService messageExchangeService;
+
+	@Autowired
+	private RecreateFileService recreateFileService;
+
+	@Autowired
+	private OpenDataService opendataService;
+
+	@Autowired
+	private SerializerService serializerService;
+
+	@Autowired
+	private ArtifactVersionService artifactVersionService;
+
+	@Autowired
+	private TraceService traceService;
+
+	@Value("${application.dataLakeDirectory.destination}")
+	private Path dataLakeDirectoryDestination;
+
+	@Value("${application.opendata.ckan.datetimePattern:YYYYMMdd_HHmmss}")
+	private String dateTimePattern;
+
+	/**
+	 * Ask provider for gzip compressed payload
+	 */
+	@Value("${application.compression.request:true}")
+	private boolean requestCompression;
+
+	@Value("${application.batch.maxArtifacts:1000}")
+	private int maxArtifacts;
+
+	private final Gson gson = new GsonBuilder().create();
+
+	@Override
+	public ArtifactTransferResult requestArtifact(String forwardToInternal, String forwardTo, String requestedArtifact,
+			boolean force, String payload) throws IOException {
+		return requestArtifact(forwardToInternal, forwardTo, requestedArtifact, null, force, payload);
+	}
+
+	@Override
+	public ArtifactTransferResult requestArtifact(String forwardToInternal, String forwardTo, String requestedArtifact,
+			CsvSelection selection, boolean force, String payload) throws IOException {
+		long receivedNanos = System.nanoTime();
+		RequestTrace batchTrace = traceService.current();
+		ArtifactRequest artifactRequest = new ArtifactRequest(requestedArtifact);
+		String lastHash = force || selection != null ? null : artifactVersionService.getLastHash(requestedArtifact);
+		if (selection != null) {
+			artifactRequest = artifactRequest.withSelection(selection);
+		}
+		if (lastHash != null) {
+			artifactRequest = artifactRequest.withParameter(ArtifactRequest.IF_NONE_MATCH, lastHash);
+		}
+		if (requestCompression) {
+			artifactRequest = artifactRequest.withParameter(ArtifactRequest.ENCODING, ArtifactRequest.ENCODING_GZIP);
+		}
+		Message artifactRequestMessage = new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(ISSUER_CONNECTOR)._modelVersion_("4.0.0")
+				._requestedArtifact_(artifactRequest.toRequestedArtifact()).build();
+		// traced under @id of request message, the same id provider traces it with
+		RequestTrace trace = traceService.start(artifactRequestMessage.getId().toString(), "consumer.artifactRequest", receivedNanos)
+				.attribute("artifact", requestedArtifact);
+		if (selection != null) {
+			trace.attribute("selection", selection.toString());
+		}
+		if (batchTrace != null) {
+			trace.attribute("batch", batchTrace.getTraceId());
+		}
+		ArtifactTransferResult result = new ArtifactTransferResult(requestedArtifact);
+		try {
+			String requestMessage = serializerService.serialize(artifactRequestMessage);
+			ParsedMultipartMessage responseMessage;
+			// round trip over WebSocket, provider records its own spans under the same trace id
+			try (SpanScope span = traceService.span("consumer.exchange")) {
+				responseMessage = multiPartMessageService.parseMultipartMessage(messageExchangeService.send(forwardToInternal, forwardTo, requestMessage, payload));
+			}
+			Message responseMsg = responseMessage.getMessage();
+			result.setResponseMessage(responseMsg);
+			if (responseMsg != null && responseMsg.getId() != null) {
+				trace.attribute("responseMessage", responseMsg.getId().toString());
+			}
+
+			if (lastHash != null && responseMsg instanceof ArtifactResponseMessage && responseMessage.getPayload() == null) {
+				logger.info("Artifact {} not modified since last request", requestedArtifact);
+				artifactVersionService.recordNotModified(requestedArtifact);
+				result.setStatus(Status.NOT_MODIFIED);
+			} else if (responseMsg instanceof RejectionMessage) {
+				logger.info("Request for artifact {} rejected by provider", requestedArtifact);
+				result.setStatus(Status.FAILED);
+				result.setError("Request rejected by provider");
+			} else {
+				String fileNameSaved;
+				try (SpanScope span = traceService.span("consumer.save")) {
+					fileNameSaved = saveFileToDisk(responseMessage, artifactRequestMessage);
+				}
+				if (fileNameSaved != null) {
+					Path savedFile = dataLakeDirectoryDestination.resolve(fileNameSaved);
+					result.setFileName(fileNameSaved);
+					if (selection != null) {
+						// part of the artifact, must not be published as if it was the whole artifact
+						SelectionReport report = multiPartMessageService.getSelectionReport(responseMessage.getHeader());
+						if (report != null) {
+							trace.attribute("selectionReport", report.toString());
+						}
+						result.setSelectionReport(report);
+						logger.info("Selection of artifact {} saved to {}, not published ({})", requestedArtifact, savedFile, report);
+						result.setStatus(Status.SAVED);
+						return result;
+					}
+					ReceivedArtifact received = artifactVersionService.recordReceived(requestedArtifact, savedFile);
+					if (lastHash != null && lastHash.equalsIgnoreCase(received.getSha256())) {
+						// provider sent the same content again, e.g. it does not support conditional requests
+						logger.info("Artifact {} received without changes, not published", requestedArtifact);
+						if (!fileNameSaved.equals(received.getFileName())) {
+							Files.deleteIfExists(savedFile);
+						}
+						result.setFileName(received.getFileName());
+						result.setStatus(Status.NOT_MODIFIED);
+					} else {
+						logger.info("About to send file {}", savedFile);
+						UploadStatus uploadStatus = opendataService.submitUpload(savedFile.toString());
+						result.setStatus(Status.SAVED);
+						result.setUploadId(uploadStatus.getId());
+						result.setUploadState(uploadStatus.getState());
+					}
+				} else {
+					result.setStatus(Status.NOT_SAVED);
+				}
+			}
+			return result;
+		} finally {
+			result.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedNanos));
+			traceService.finish(trace);
+		}
+	}
+
+	@Override
+	public List<ArtifactTransferResult> requestArtifacts(String forwardToInternal, String forwardTo, List<String> artifacts,
+			List<String> patterns, boolean force) throws IOException {
+		long start = System.nanoTime();
+		// batch has no message of its own, trace of each artifact refers to it with batch attribute
+		RequestTrace trace = traceService.start(BATCH_TRACE_PREFIX + UUID.randomUUID(), "consumer.batch", start);
+		try {
+			Set<String> requestedArtifacts = artifacts != null ? new LinkedHashSet<>(artifacts) : new LinkedHashSet<>();
+			if (patterns != null && !patterns.isEmpty()) {
+				try (SpanScope span = traceService.span("consumer.catalog")) {
+					requestedArtifacts.addAll(match(requestCatalog(forwardToInternal, forwardTo), patterns));
+				}
+			}
+			if (requestedArtifacts.size() > maxArtifacts) {
+				throw new IllegalArgumentException(String.format("Batch of %d artifacts exceeds limit of %d artifacts",
+						requestedArtifacts.size(), maxArtifacts));
+			}
+			logger.info("Requesting batch of {} artifacts", requestedArtifacts.size());
+			List<ArtifactTransferResult> results = new ArrayList<>(requestedArtifacts.size());
+			try (SpanScope span = traceService.span("consumer.artifacts")) {
+				// exchanges with provider are sent one at a time, upload of each saved artifact runs in CKAN upload queue
+				for (String artifact : requestedArtifacts) {
+					results.add(requestArtifactQuietly(forwardToInternal, forwardTo, artifact, force, trace));
+				}
+			}
+			long saved = count(results, Status.SAVED);
+			long notModified = count(results, Status.NOT_MODIFIED);
+			trace.attribute("artifacts", String.valueOf(results.size()))
+					.attribute("saved", String.valueOf(saved))
+					.attribute("notModified", String.valueOf(notModified))
+					.attribute("failed", String.valueOf(results.size() - saved - notModified));
+			logger.info("Batch of {} artifacts finished in {} ms: {} saved, {} not modified, {} failed", results.size(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), saved, notModified, results.size() - saved - notModified);
+			return results;
+		} finally {
+			traceService.finish(trace);
+		}
+	}
+
+	/**
+	 * Batch trace is bound again before each artifact, finished trace of previous artifact unbinds it
+	 */
+	private ArtifactTransferResult requestArtifactQuietly(String forwardToInternal, String forwardTo, String artifact, boolean force,
+			RequestTrace batchTrace) {
+		long start = System.nanoTime();
+		traceService.attach(batchTrace);
+		try {
+			return requestArtifact(forwardToInternal, forwardTo, artifact, force, null);
+		} catch (Exception e) {
+			logger.error("Request for artifact {} failed", artifact, e);
+			ArtifactTransferResult result = new ArtifactTransferResult(artifact);
+			result.setStatus(Status.FAILED);
+			result.setError(e.getMessage());
+			result.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			return result;
+		}
+	}
+
+	private long count(List<ArtifactTransferResult> results, Status status) {
+		return results.stream().filter(result -> result.getStatus() == status).count();
+	}
+
+	/**
+	 * Names matching any of glob patterns, in order of names
+	 */
+	static List<String> match(List<ArtifactDescriptor> catalog, List<String> patterns) {
+		List<PathMatcher> matchers = patterns.stream()
+				.map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern))
+				.collect(Collectors.toList());
+		return catalog.stream()
+				.map(ArtifactDescriptor::getName)
+				.filter(name -> matchers.stream().anyMatch(matcher -> matcher.matches(Paths.get(name))))
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<ArtifactDescriptor> requestCatalog(String forwardToInternal, String forwardTo) throws IOException {
+		Message descriptionRequestMessage = new DescriptionRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(ISSUER_CONNECTOR)._modelVersion_("4.0.0")
+				.build();
+		ParsedMultipartMessage response = multiPartMessageService.parseMultipartMessage(
+				messageExchangeService.send(forwardToInternal, forwardTo, serializerService.serialize(descriptionRequestMessage), null));
+		if (!(response.getMessage() instanceof DescriptionResponseMessage) || response.getPayload() == null) {
+			throw new IOException("Provider did not send artifact catalog");
+		}
+		try {
+			ArtifactDescriptor[] catalog = gson.fromJson(response.getPayload(), ArtifactDescriptor[].class);
+			if (catalog == null) {
+				throw new IOException("Payload is not an artifact catalog");
+			}
+			logger.info("Received catalog of {} artifacts from provider", catalog.length);
+			return new ArrayList<>(Arrays.asList(catalog));
+		} catch (JsonParseException e) {
+			throw new IOException("Payload is not an artifact catalog", e);
+		}
+	}
+
+	/**
+	 * Save payload content to file on file system</br>
+	 * If payload is null - skips creating file and returns null as file name
+	 */
+	private String saveFileToDisk(ParsedMultipartMessage responseMessage, Message requestMessage) throws IOException {
+		Message responseMsg = responseMessage.getMessage();
+
+		String requestedArtifact = null;
+		if (requestMessage instanceof ArtifactRequestMessage && responseMsg instanceof ArtifactResponseMessage) {
+			String payload = responseMessage.getPayload();
+			if(payload != null) {
+				ArtifactRequest artifactRequest = ArtifactRequest.fromRequestedArtifact(((ArtifactRequestMessage) requestMessage).getRequestedArtifact());
+				requestedArtifact = artifactRequest.getFileName();
+				// provider announces encoding in response header, provider without compression support sends none
+				boolean compressed = ArtifactCacheService.VARIANT_GZIP_BASE64.equals(
+						multiPartMessageService.getPayloadEncoding(responseMessage.getHeader()));
+				logger.info("About to save file {}{}", requestedArtifact, compressed ? ", payload compressed with gzip" : "");
+				String finalFileName = addTimestampToFileName(artifactRequest.getCsvSelection() != null 
+						? Files.getNameWithoutExtension(requestedArtifact) + SELECTION_SUFFIX + "." + Files.getFileExtension(requestedArtifact)
+						: requestedArtifact);
+				recreateFileService.recreateTheFile(payload, dataLakeDirectoryDestination.resolve(finalFileName).toFile(), compressed);
+				requestedArtifact = finalFileName;
+				logger.info("File saved");
+			} else {
+				logger.info("Artifact response Message received, but no payload");
+				requestedArtifact = null;
+			}
+		} else {
+			logger.info("Did not have ArtifactRequestMessage and ResponseMessage - nothing to save");
+			requestedArtifact = null;
+		}
+
+		return requestedArtifact;
+	}
+
+	@Override
+	public String addTimestampToFileName(String requestedArtifact) {
+		DateFormat formatter = new SimpleDateFormat(dateTimePattern);
+		String formattedDate = formatter.format(new Date());
+		String extension = Files.getFileExtension(requestedArtifact);
+		String fileName = Files.getNameWithoutExtension(requestedArtifact);
+		String finalFileName = fileName + "_" + formattedDate + "." + extension;
+		return finalFileName;
+	}
+
+}
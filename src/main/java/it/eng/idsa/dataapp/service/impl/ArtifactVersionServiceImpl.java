@@ -0,0 +1,78 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.eng.idsa.dataapp.domain.ReceivedArtifact;
+import it.eng.idsa.dataapp.repository.ReceivedArtifactRepository;
+import it.eng.idsa.dataapp.service.ArtifactVersionService;
+
+@Service
+public class ArtifactVersionServiceImpl implements ArtifactVersionService {
+	
+	private static final Logger logger = LogManager.getLogger(ArtifactVersionServiceImpl.class);
+	
+	@Autowired
+	private ReceivedArtifactRepository receivedArtifactRepository;
+	
+	@Value("${application.dataLakeDirectory.destination}")
+	private Path dataLakeDirectoryDestination;
+	
+	@Override
+	public Optional<ReceivedArtifact> getReceivedArtifact(String artifact) {
+		return receivedArtifactRepository.findById(artifact);
+	}
+
+	@Override
+	public String getLastHash(String artifact) {
+		Optional<ReceivedArtifact> receivedArtifact = receivedArtifactRepository.findById(artifact);
+		if (receivedArtifact.isPresent() && !isSaved(receivedArtifact.get())) {
+			// copy was deleted or moved, artifact must be transferred again
+			logger.info("Copy {} of artifact {} no longer exists", receivedArtifact.get().getFileName(), artifact);
+			return null;
+		}
+		return receivedArtifact.map(ReceivedArtifact::getSha256).orElse(null);
+	}
+	
+	private boolean isSaved(ReceivedArtifact receivedArtifact) {
+		return receivedArtifact.getFileName() != null 
+				&& Files.isRegularFile(dataLakeDirectoryDestination.resolve(receivedArtifact.getFileName()));
+	}
+
+	@Override
+	public ReceivedArtifact recordReceived(String artifact, Path savedFile) throws IOException {
+		ReceivedArtifact receivedArtifact = receivedArtifactRepository.findById(artifact).orElseGet(ReceivedArtifact::new);
+		String sha256 = Sha256.of(savedFile);
+		if (sha256.equals(receivedArtifact.getSha256()) && isSaved(receivedArtifact)) {
+			// same content as the recorded copy, which stays the current one
+			receivedArtifact.setCheckedAt(Instant.now());
+			logger.info("Artifact {} received again without changes", artifact);
+			return receivedArtifactRepository.save(receivedArtifact);
+		}
+		receivedArtifact.setArtifact(artifact);
+		receivedArtifact.setSha256(sha256);
+		receivedArtifact.setFileName(savedFile.getFileName().toString());
+		receivedArtifact.setSize(Files.size(savedFile));
+		receivedArtifact.setReceivedAt(Instant.now());
+		receivedArtifact.setCheckedAt(receivedArtifact.getReceivedAt());
+		logger.info("Received version {} of artifact {}", receivedArtifact.getSha256(), artifact);
+		return receivedArtifactRepository.save(receivedArtifact);
+	}
+
+	@Override
+	@Transactional
+	public void recordNotModified(String artifact) {
+		receivedArtifactRepository.findById(artifact).ifPresent(a -> a.setCheckedAt(Instant.now()));
+	}
+
+}
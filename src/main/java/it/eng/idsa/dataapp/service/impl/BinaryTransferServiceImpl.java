@@ -0,0 +1,216 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.ArtifactResponseMessage;
+import de.fraunhofer.iais.eis.Message;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.service.BinaryTransferService;
+import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.RecreateFileService;
+import it.eng.idsa.dataapp.service.SerializerService;
+import it.eng.idsa.dataapp.service.TraceService;
+import it.eng.idsa.dataapp.service.TraceService.SpanScope;
+import it.eng.idsa.multipart.util.DateUtil;
+
+@Service
+public class BinaryTransferServiceImpl implements BinaryTransferService {
+	
+	private static final Logger logger = LogManager.getLogger(BinaryTransferServiceImpl.class);
+	
+	@Autowired
+	private MultiPartMessageService multiPartMessageService;
+	
+	@Autowired
+	private SerializerService serializerService;
+	
+	@Autowired
+	private RecreateFileService recreateFileService;
+	
+	@Autowired
+	private TraceService traceService;
+	
+	@Value("${application.binaryTransfer.connectTimeoutMillis:10000}")
+	private int connectTimeoutMillis;
+	
+	/**
+	 * Longest pause between two packets of the response, not the time of the whole transfer
+	 */
+	@Value("${application.binaryTransfer.socketTimeoutMillis:60000}")
+	private int socketTimeoutMillis;
+	
+	private CloseableHttpClient httpClient;
+	
+	@PostConstruct
+	public void init() {
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeoutMillis)
+				.setConnectionRequestTimeout(connectTimeoutMillis)
+				.setSocketTimeout(socketTimeoutMillis)
+				.build();
+		httpClient = HttpClients.custom()
+				.useSystemProperties()
+				.setDefaultRequestConfig(requestConfig)
+				.build();
+	}
+	
+	@PreDestroy
+	public void shutdown() throws IOException {
+		httpClient.close();
+	}
+
+	@Override
+	public long requestArtifact(String forwardTo, String requestedArtifact, Path targetFile) throws IOException {
+		ArtifactRequest artifactRequest = new ArtifactRequest(requestedArtifact)
+				.withParameter(ArtifactRequest.TRANSFER, ArtifactRequest.TRANSFER_BINARY);
+		Message artifactRequestMessage = new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))._modelVersion_("4.0.0")
+				._requestedArtifact_(artifactRequest.toRequestedArtifact()).build();
+		HttpPost post = new HttpPost(forwardTo);
+		post.setEntity(multiPartMessageService.createBinaryMultipartMessage(serializerService.serialize(artifactRequestMessage), null));
+		// traced under @id of request message, the same id provider traces it with
+		RequestTrace trace = traceService.start(artifactRequestMessage.getId().toString(), "consumer.binaryRequest", System.nanoTime())
+				.attribute("artifact", requestedArtifact);
+		try {
+			CloseableHttpResponse response;
+			// until response headers are received, payload is read while saving
+			try (SpanScope span = traceService.span("consumer.exchange")) {
+				response = httpClient.execute(post);
+			}
+			try (response; SpanScope span = traceService.span("consumer.save")) {
+				receive(response, requestedArtifact, targetFile);
+			}
+		} finally {
+			traceService.finish(trace);
+		}
+		return Files.size(targetFile);
+	}
+	
+	private void receive(CloseableHttpResponse response, String requestedArtifact, Path targetFile) throws IOException {
+		HttpEntity entity = response.getEntity();
+		if (response.getStatusLine().getStatusCode() >= 300 || entity == null) {
+			throw new IOException("Artifact request failed with status " + response.getStatusLine());
+		}
+		String boundary = boundary(entity);
+		try (InputStream in = new BufferedInputStream(entity.getContent())) {
+			readHeaderPart(in, boundary);
+			Map<String, String> partHeaders = readPartHeaders(in);
+			String contentLength = partHeaders.get("content-length");
+			String contentType = partHeaders.getOrDefault("content-type", "");
+			if (contentType.startsWith(ContentType.APPLICATION_OCTET_STREAM.getMimeType()) && contentLength != null) {
+				long length = Long.parseLong(contentLength.trim());
+				BoundedInputStream payload = new BoundedInputStream(in, length);
+				payload.setPropagateClose(false);
+				recreateFileService.recreateTheFileFromBinary(payload, targetFile.toFile());
+				long received = Files.size(targetFile);
+				if (received != length) {
+					Files.deleteIfExists(targetFile);
+					throw new IOException(String.format("Artifact %s truncated, %d bytes received instead of %d",
+							requestedArtifact, received, length));
+				}
+				logger.info("Artifact {} received as binary payload, {} bytes", requestedArtifact, length);
+			} else {
+				// provider without binary support, Base64 encoded payload
+				logger.info("Artifact {} received Base64 encoded", requestedArtifact);
+				recreateFileService.recreateTheFile(readUntilBoundary(in, boundary), targetFile.toFile());
+			}
+		}
+	}
+	
+	private String boundary(HttpEntity entity) throws IOException {
+		ContentType contentType = ContentType.get(entity);
+		if (contentType != null) {
+			for (NameValuePair parameter : contentType.getParameters()) {
+				if ("boundary".equalsIgnoreCase(parameter.getName())) {
+					return parameter.getValue();
+				}
+			}
+		}
+		throw new IOException("Response is not multipart message: " + entity.getContentType());
+	}
+	
+	/**
+	 * Reads header part and checks that provider sent the artifact
+	 */
+	private void readHeaderPart(InputStream in, String boundary) throws IOException {
+		readUntilBoundary(in, boundary); // preamble
+		readPartHeaders(in);
+		String header = readUntilBoundary(in, boundary);
+		Message responseMessage = multiPartMessageService.getMessage((Object) header);
+		if (!(responseMessage instanceof ArtifactResponseMessage)) {
+			throw new IOException("Artifact not received, response message " + header);
+		}
+	}
+	
+	static Map<String, String> readPartHeaders(InputStream in) throws IOException {
+		Map<String, String> headers = new HashMap<>();
+		String line;
+		while ((line = readLine(in)) != null && !line.isEmpty()) {
+			int separator = line.indexOf(':');
+			if (separator > 0) {
+				headers.put(line.substring(0, separator).trim().toLowerCase(), line.substring(separator + 1).trim());
+			}
+		}
+		return headers;
+	}
+	
+	/**
+	 * Text part content, without line separators</br>
+	 * Stream ending before the boundary means truncated response
+	 */
+	static String readUntilBoundary(InputStream in, String boundary) throws IOException {
+		StringBuilder content = new StringBuilder();
+		String line;
+		while ((line = readLine(in)) != null && !line.startsWith("--" + boundary)) {
+			content.append(line);
+		}
+		if (line == null) {
+			throw new IOException("Multipart response ended before boundary " + boundary);
+		}
+		return content.toString();
+	}
+	
+	static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+		while ((b = in.read()) != -1 && b != '\n') {
+			line.write(b);
+		}
+		if (b == -1 && line.size() == 0) {
+			return null;
+		}
+		String value = line.toString(StandardCharsets.UTF_8);
+		return value.endsWith("\r") ? value.substring(0, value.length() - 1) : value;
+	}
+
+}
@@ -2,11 +2,24 @@ package it.eng.idsa.dataapp.service.impl;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.FormBodyPart;
@@ -15,15 +28,27 @@ import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 
+import io.micrometer.core.instrument.Timer;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.domain.UploadStatus;
+import it.eng.idsa.dataapp.domain.UploadStatus.State;
+import it.eng.idsa.dataapp.service.MetricsService;
 import it.eng.idsa.dataapp.service.OpenDataService;
+import it.eng.idsa.dataapp.service.TraceService;
+import it.eng.idsa.dataapp.service.TraceService.SpanScope;
 
 @Service
 @ConditionalOnProperty(name = "application.opendata.version", havingValue = "ckan")
@@ -45,47 +70,226 @@ public class CKANOpenDataServiceImpl implements OpenDataService {
 
 	@Value("${application.opendata.ckan.upload:true}")
 	private boolean uploadToCkan;
+	
+	@Value("${application.opendata.ckan.workers:2}")
+	private int workers;
+	
+	@Value("${application.opendata.ckan.queueCapacity:100}")
+	private int queueCapacity;
+	
+	@Value("${application.opendata.ckan.maxConnections:10}")
+	private int maxConnections;
+	
+	@Value("${application.opendata.ckan.connectTimeoutMillis:10000}")
+	private int connectTimeoutMillis;
+	
+	/**
+	 * Longest pause between two packets, CKAN that stops responding fails the attempt, which is then retried
+	 */
+	@Value("${application.opendata.ckan.socketTimeoutMillis:60000}")
+	private int socketTimeoutMillis;
+	
+	@Value("${application.opendata.ckan.maxRetries:3}")
+	private int maxRetries;
+	
+	@Value("${application.opendata.ckan.initialBackoffMillis:1000}")
+	private long initialBackoffMillis;
+	
+	@Value("${application.opendata.ckan.maxBackoffMillis:30000}")
+	private long maxBackoffMillis;
+	
+	@Value("${application.opendata.ckan.statusHistorySize:1000}")
+	private int statusHistorySize;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Autowired
+	private TraceService traceService;
+	
+	private CloseableHttpClient httpClient;
+	
+	private ThreadPoolExecutor uploadExecutor;
+	
+	private Map<String, UploadStatus> uploads;
+	
+	@PostConstruct
+	public void init() {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		// connection request timeout bounds waiting for a pooled connection, when all of them are taken
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeoutMillis)
+				.setConnectionRequestTimeout(connectTimeoutMillis)
+				.setSocketTimeout(socketTimeoutMillis)
+				.build();
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+				.evictIdleConnections(30, TimeUnit.SECONDS)
+				.build();
+		
+		AtomicInteger threadNumber = new AtomicInteger();
+		// bounded queue - when it is full, new uploads are rejected instead of piling up
+		uploadExecutor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<>(queueCapacity), 
+				r -> new Thread(r, "ckan-upload-" + threadNumber.incrementAndGet()));
+		
+		uploads = Collections.synchronizedMap(new LinkedHashMap<String, UploadStatus>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, UploadStatus> eldest) {
+				return size() > statusHistorySize;
+			}
+		});
+	}
+	
+	@PreDestroy
+	public void shutdown() throws IOException {
+		uploadExecutor.shutdown();
+		try {
+			if (!uploadExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+				logger.info("Pending uploads to CKAN not finished, {} dropped", uploadExecutor.getQueue().size());
+				uploadExecutor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			uploadExecutor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		httpClient.close();
+	}
 
 	@Override
 	public void uploadData(String fileName) throws IOException {
-		if (uploadToCkan) {
-			HttpPost httpPost = new HttpPost(ckanURL);
-			httpPost.addHeader("Authorization", token);
-
-			MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create()
-					.setMode(HttpMultipartMode.STRICT);
+		upload(fileName, new UploadStatus(UUID.randomUUID().toString(), fileName));
+	}
+	
+	@Override
+	public UploadStatus submitUpload(String fileName) {
+		UploadStatus status = new UploadStatus(UUID.randomUUID().toString(), fileName);
+		uploads.put(status.getId(), status);
+		// upload continues trace of request which submitted it
+		RequestTrace trace = traceService.current();
+		try {
+			uploadExecutor.execute(() -> {
+				traceService.attach(trace);
+				try {
+					upload(fileName, status);
+				} catch (IOException | RestClientException e) {
+					logger.error("Upload {} of file {} to CKAN failed", status.getId(), fileName, e);
+				} finally {
+					traceService.detach();
+				}
+			});
+			logger.info("File {} queued for upload to CKAN with id {}", fileName, status.getId());
+		} catch (RejectedExecutionException e) {
+			logger.error("Upload queue full, rejecting upload of file {}", fileName);
+			status.setState(State.REJECTED);
+			status.setError("Upload queue full");
+			status.setFinished(Instant.now());
+		}
+		return status;
+	}
+	
+	@Override
+	public UploadStatus getUploadStatus(String uploadId) {
+		return uploads.get(uploadId);
+	}
+	
+	private void upload(String fileName, UploadStatus status) throws IOException {
+		Timer.Sample sample = metricsService.startTimer();
+		try (SpanScope span = traceService.span("ckan.upload")) {
+			uploadWithRetries(fileName, status);
+		} finally {
+			metricsService.recordUpload(sample, uploadOutcome(status.getState()), Math.max(0, status.getAttempts() - 1));
+		}
+	}
+	
+	private String uploadOutcome(State state) {
+		if (state == State.COMPLETED) {
+			return MetricsService.OUTCOME_SUCCESS;
+		}
+		return state == State.SKIPPED ? MetricsService.OUTCOME_SKIPPED : MetricsService.OUTCOME_FAILED;
+	}
+	
+	private void uploadWithRetries(String fileName, UploadStatus status) throws IOException {
+		if (!uploadToCkan) {
+			logger.info("Skipped uplaodin to ckan - check property to enable it");
+			finish(status, State.SKIPPED, null);
+			return;
+		}
+		long backoff = initialBackoffMillis;
+		while (true) {
+			status.setAttempts(status.getAttempts() + 1);
+			status.setState(State.RUNNING);
+			try {
+				int statusCode = sendFile(fileName);
+				if (statusCode < 300) {
+					logger.info("File {} uploaded to CKAN", fileName);
+					finish(status, State.COMPLETED, null);
+					return;
+				}
+				if (statusCode < 500 || status.getAttempts() > maxRetries) {
+					finish(status, State.FAILED, "CKAN responded with status " + statusCode);
+					throw new RestClientException("Error while calling CKAN");
+				}
+				logger.info("CKAN responded with status {}, retrying upload of {}", statusCode, fileName);
+			} catch (IOException e) {
+				if (status.getAttempts() > maxRetries) {
+					logger.error("Error while making call to CKAN using URL {}\n {}", ckanURL, e);
+					finish(status, State.FAILED, e.getMessage());
+					throw new IOException(e);
+				}
+				logger.info("Error while making call to CKAN, retrying upload of {}: {}", fileName, e.getMessage());
+			}
+			status.setState(State.RETRYING);
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				finish(status, State.FAILED, "Interrupted");
+				throw new IOException("Interrupted while waiting to retry upload", e);
+			}
+			backoff = Math.min(backoff * 2, maxBackoffMillis);
+		}
+	}
+	
+	private int sendFile(String fileName) throws IOException {
+		HttpPost httpPost = new HttpPost(ckanURL);
+		httpPost.addHeader("Authorization", token);
 
-			HttpClient httpclient = HttpClients.custom().build();
+		MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create()
+				.setMode(HttpMultipartMode.STRICT);
 
-			ContentBody packageIdBody = new StringBody(packageId, ContentType.DEFAULT_TEXT);
-			FormBodyPart packagePayloadPart = FormBodyPartBuilder.create("package_id", packageIdBody).build();
-			multipartEntityBuilder.addPart(packagePayloadPart);
+		ContentBody packageIdBody = new StringBody(packageId, ContentType.DEFAULT_TEXT);
+		FormBodyPart packagePayloadPart = FormBodyPartBuilder.create("package_id", packageIdBody).build();
+		multipartEntityBuilder.addPart(packagePayloadPart);
 
-			ContentBody nameBody = new StringBody(FilenameUtils.getName(fileName), ContentType.DEFAULT_TEXT);
-			FormBodyPart namePayloadPart = FormBodyPartBuilder.create("name", nameBody).build();
-			multipartEntityBuilder.addPart(namePayloadPart);
+		ContentBody nameBody = new StringBody(FilenameUtils.getName(fileName), ContentType.DEFAULT_TEXT);
+		FormBodyPart namePayloadPart = FormBodyPartBuilder.create("name", nameBody).build();
+		multipartEntityBuilder.addPart(namePayloadPart);
 
-			HttpEntity httpEntity = multipartEntityBuilder.addBinaryBody("upload",
-					dataLakeDirectory.resolve(fileName).toFile(), ContentType.create("text/csv"), fileName).build();
+		HttpEntity httpEntity = multipartEntityBuilder.addBinaryBody("upload",
+				dataLakeDirectory.resolve(fileName).toFile(), ContentType.create("text/csv"), fileName).build();
 
-			httpPost.setEntity(httpEntity);
+		httpPost.setEntity(httpEntity);
 
-			HttpResponse response = null;
-			logger.info("Sending file part to CKAN...");
-			try {
-				response = httpclient.execute(httpPost);
-			} catch (IOException e) {
-				logger.error("Error while making call to CKAN using URL {}\n {}", ckanURL, e);
-				throw new IOException(e);
-			}
-			logger.info("Received response from CKAN {}", response);
-			if (response.getStatusLine().getStatusCode() >= 300) {
-				throw new RestClientException("Error while calling CKAN");
-			}
-			logger.info("File {} uploaded to CKAN", fileName);
-		} else {
-			logger.info("Skipped uplaodin to ckan - check property to enable it");
+		logger.info("Sending file part to CKAN...");
+		// response has to be consumed and closed, so connection is returned to the pool
+		try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+			logger.info("Received response from CKAN {}", response.getStatusLine());
+			EntityUtils.consume(response.getEntity());
+			return response.getStatusLine().getStatusCode();
 		}
 	}
+	
+	private void finish(UploadStatus status, State state, String error) {
+		status.setError(error);
+		status.setFinished(Instant.now());
+		status.setState(state);
+	}
 
 }
@@ -0,0 +1,328 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.GregorianCalendar;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.ArtifactResponseMessage;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionMessage;
+import it.eng.idsa.dataapp.domain.ArtifactChunk;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactLockService;
+import it.eng.idsa.dataapp.service.ArtifactLockService.ArtifactLock;
+import it.eng.idsa.dataapp.service.ChunkedTransferService;
+import it.eng.idsa.dataapp.service.MessageExchangeService;
+import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.SerializerService;
+import it.eng.idsa.dataapp.service.TraceService;
+
+@Service
+public class ChunkedTransferServiceImpl implements ChunkedTransferService {
+	
+	private static final Logger logger = LogManager.getLogger(ChunkedTransferService.class);
+	
+	public static final String PART_FILE_SUFFIX = ".part";
+	
+	/**
+	 * Next to partial file, holds version of the artifact its content was received from
+	 */
+	public static final String VERSION_FILE_SUFFIX = ".version";
+	
+	private static final String MESSAGE_ID_PREFIX = "https://w3id.org/idsa/autogen/artifactRequestMessage/";
+	
+	@Autowired
+	private MultiPartMessageService multiPartMessageService;
+	
+	@Autowired
+	private SerializerService serializerService;
+	
+	@Autowired
+	private MessageExchangeService messageExchangeService;
+	
+	@Autowired
+	private ArtifactLockService artifactLockService;
+	
+	@Autowired
+	private TraceService traceService;
+	
+	@Value("${application.dataLakeDirectory.destination}")
+	private Path dataLakeDirectoryDestination;
+	
+	@Value("${application.chunkedTransfer.chunkSize:4194304}")
+	private int defaultChunkSize;
+	
+	@Value("${application.chunkedTransfer.maxRetries:3}")
+	private int maxRetries;
+	
+	@Value("${application.chunkedTransfer.retryDelayMillis:1000}")
+	private long retryDelayMillis;
+	
+	private final Gson gson = new GsonBuilder().create();
+
+	@Override
+	public long requestArtifact(String forwardToInternal, String forwardTo, String requestedArtifact, Integer chunkSize, 
+			Path targetFile) throws IOException {
+		int size = chunkSize != null && chunkSize > 0 ? chunkSize : defaultChunkSize;
+		Path partFile = partFileOf(requestedArtifact);
+		Path versionFile = partFile.resolveSibling(partFile.getFileName() + VERSION_FILE_SUFFIX);
+		// traced under @id of the first chunk request, the same id provider traces that chunk with
+		URI firstRequestId = URI.create(MESSAGE_ID_PREFIX + UUID.randomUUID());
+		RequestTrace trace = traceService.start(firstRequestId.toString(), "consumer.chunkedRequest", System.nanoTime())
+				.attribute("artifact", requestedArtifact);
+		ChunkTimings timings = new ChunkTimings();
+		long totalSize;
+		// concurrent transfers of the same artifact would write to the same partial file
+		try (ArtifactLock lock = artifactLockService.lockForWrite(partFile)) {
+			try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				String version = readVersion(versionFile);
+				long offset = version != null ? channel.size() : 0;
+				if (offset > 0) {
+					logger.info("Resuming transfer of {} from offset {}", requestedArtifact, offset);
+				}
+				boolean resumed = offset > 0;
+				while (true) {
+					VerifiedChunk chunk;
+					long exchangeStart = System.nanoTime();
+					try {
+						chunk = requestChunk(forwardToInternal, forwardTo, requestedArtifact, offset, size, 
+								timings.chunks == 0 ? firstRequestId : null);
+					} catch (ChunkRejectedException e) {
+						if (!resumed) {
+							throw e;
+						}
+						// e.g. artifact is now shorter than partial file
+						chunk = null;
+					} finally {
+						timings.chunks++;
+						timings.exchangeNanos += System.nanoTime() - exchangeStart;
+					}
+					if (chunk == null || !chunk.version.equals(version)) {
+						if (resumed) {
+							// partial file holds another version of the artifact, appending to it would mix them
+							logger.info("Artifact {} changed since partial file was written, restarting transfer", requestedArtifact);
+							resumed = false;
+							offset = 0;
+							version = null;
+							channel.truncate(0);
+							continue;
+						}
+						if (offset > 0) {
+							throw new IOException(String.format("Artifact %s changed during transfer, repeat request to transfer it again", 
+									requestedArtifact));
+						}
+						channel.truncate(0);
+						writeVersion(versionFile, chunk.version);
+						version = chunk.version;
+					}
+					long writeStart = System.nanoTime();
+					ByteBuffer buffer = ByteBuffer.wrap(chunk.data);
+					while (buffer.hasRemaining()) {
+						offset += channel.write(buffer, offset);
+					}
+					timings.writeNanos += System.nanoTime() - writeStart;
+					totalSize = chunk.totalSize;
+					logger.debug("Received {} of {} bytes of {}", offset, totalSize, requestedArtifact);
+					if (offset >= totalSize) {
+						break;
+					}
+				}
+				channel.force(true);
+			}
+			moveToTarget(partFile, targetFile);
+			Files.deleteIfExists(versionFile);
+		} catch (ReadFileLockedException e) {
+			throw new IOException(String.format("Transfer of %s is already in progress", requestedArtifact), e);
+		} finally {
+			// spans of each chunk would flood the trace, stages are summed up instead
+			trace.attribute("chunks", String.valueOf(timings.chunks))
+					.attribute("exchangeMillis", String.valueOf(TimeUnit.NANOSECONDS.toMillis(timings.exchangeNanos)))
+					.attribute("writeMillis", String.valueOf(TimeUnit.NANOSECONDS.toMillis(timings.writeNanos)));
+			traceService.finish(trace);
+		}
+		logger.info("Artifact {} received in chunks, {} bytes", requestedArtifact, totalSize);
+		return totalSize;
+	}
+	
+	/**
+	 * Partial file in destination directory, name of artifact must not leave it
+	 */
+	private Path partFileOf(String requestedArtifact) {
+		Path directory = dataLakeDirectoryDestination.toAbsolutePath().normalize();
+		Path partFile = directory.resolve(requestedArtifact + PART_FILE_SUFFIX).normalize();
+		if (!partFile.getParent().equals(directory)) {
+			throw new IllegalArgumentException(String.format("Invalid artifact name %s", requestedArtifact));
+		}
+		return partFile;
+	}
+	
+	private String readVersion(Path versionFile) throws IOException {
+		if (!Files.isRegularFile(versionFile)) {
+			return null;
+		}
+		return new String(Files.readAllBytes(versionFile), StandardCharsets.UTF_8).trim();
+	}
+	
+	private void writeVersion(Path versionFile, String version) throws IOException {
+		Files.write(versionFile, version.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * @param messageId @id of the first request message, null to generate it
+	 */
+	private VerifiedChunk requestChunk(String forwardToInternal, String forwardTo, String requestedArtifact, 
+			long offset, int length, URI messageId) throws IOException {
+		Exception lastError = null;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0) {
+				logger.info("Retrying chunk of {} at offset {}, attempt {}", requestedArtifact, offset, attempt);
+				sleep(retryDelayMillis * attempt);
+			}
+			try {
+				return verify(sendChunkRequest(forwardToInternal, forwardTo, requestedArtifact, offset, length, 
+						attempt == 0 ? messageId : null), offset);
+			} catch (ChunkRejectedException e) {
+				// provider will reject the same request again
+				throw e;
+			} catch (Exception e) {
+				logger.warn("Could not receive chunk of {} at offset {}: {}", requestedArtifact, offset, e.getMessage());
+				lastError = e;
+			}
+		}
+		throw new IOException(String.format("Could not receive chunk of %s at offset %d after %d attempts, transfer can be resumed", 
+				requestedArtifact, offset, maxRetries + 1), lastError);
+	}
+	
+	private String sendChunkRequest(String forwardToInternal, String forwardTo, String requestedArtifact, 
+			long offset, int length, URI messageId) throws Exception {
+		URI requestedArtifactURI = new ArtifactRequest(requestedArtifact)
+				.withParameter(ArtifactRequest.OFFSET, offset)
+				.withParameter(ArtifactRequest.LENGTH, length)
+				.toRequestedArtifact();
+		Message artifactRequestMessage = (messageId != null ? new ArtifactRequestMessageBuilder(messageId) : new ArtifactRequestMessageBuilder())
+				._issued_(now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))._modelVersion_("4.0.0")
+				._requestedArtifact_(requestedArtifactURI).build();
+		String requestMessage = serializerService.serialize(artifactRequestMessage);
+		return messageExchangeService.send(forwardToInternal, forwardTo, requestMessage, null);
+	}
+	
+	private VerifiedChunk verify(String responseMessage, long offset) throws IOException {
+		ParsedMultipartMessage response = multiPartMessageService.parseMultipartMessage(responseMessage);
+		if (response.getMessage() instanceof RejectionMessage) {
+			throw new ChunkRejectedException(String.format("Request for chunk at offset %d rejected by provider", offset));
+		}
+		if (!(response.getMessage() instanceof ArtifactResponseMessage)) {
+			throw new IOException("Did not receive ArtifactResponseMessage");
+		}
+		String payload = response.getPayload();
+		if (payload == null) {
+			throw new IOException("Artifact response message received, but no payload");
+		}
+		ArtifactChunk chunk;
+		try {
+			chunk = gson.fromJson(payload, ArtifactChunk.class);
+		} catch (JsonParseException e) {
+			throw new IOException("Payload is not an artifact chunk", e);
+		}
+		if (chunk.getOffset() != offset) {
+			throw new IOException(String.format("Expected chunk at offset %d but received %d", offset, chunk.getOffset()));
+		}
+		byte[] data = Base64.getDecoder().decode(chunk.getData());
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		if (data.length != chunk.getLength() || !Long.toHexString(crc.getValue()).equals(chunk.getChecksum())) {
+			throw new IOException(String.format("Checksum mismatch for chunk at offset %d", offset));
+		}
+		if (data.length == 0 && offset < chunk.getTotalSize()) {
+			throw new IOException(String.format("Empty chunk received at offset %d", offset));
+		}
+		return new VerifiedChunk(data, chunk.getTotalSize(), chunk.getTotalSize() + ":" + chunk.getLastModified());
+	}
+	
+	private void moveToTarget(Path partFile, Path targetFile) throws IOException {
+		try {
+			Files.move(partFile, targetFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(partFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private XMLGregorianCalendar now() throws DatatypeConfigurationException {
+		return DatatypeFactory.newInstance().newXMLGregorianCalendar(new GregorianCalendar());
+	}
+	
+	private void sleep(long millis) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to retry chunk request", e);
+		}
+	}
+	
+	private static class VerifiedChunk {
+		
+		private final byte[] data;
+		private final long totalSize;
+		/**
+		 * Size and last modification of the artifact at provider
+		 */
+		private final String version;
+		
+		VerifiedChunk(byte[] data, long totalSize, String version) {
+			this.data = data;
+			this.totalSize = totalSize;
+			this.version = version;
+		}
+	}
+	
+	/**
+	 * Stages of all chunk requests of one transfer
+	 */
+	private static class ChunkTimings {
+		
+		private int chunks;
+		private long exchangeNanos;
+		private long writeNanos;
+	}
+	
+	private static class ChunkRejectedException extends IOException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		ChunkRejectedException(String message) {
+			super(message);
+		}
+	}
+}
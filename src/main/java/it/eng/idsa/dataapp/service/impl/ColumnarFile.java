@@ -0,0 +1,346 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar copy of CSV artifact, read through memory mapped file</br>
+ * Layout: header (magic, version, size and last modified time of source CSV), column chunks of each block 
+ * and footer with column names and position, encoding and min/max of every chunk, followed by footer offset and magic.
+ * Header and footer are big endian, chunk content is little endian, so uncompressed chunks are read as primitive buffers in place</br>
+ * Open file is shared by concurrent selections, it is closed when the last of its references is closed
+ *
+ */
+class ColumnarFile implements Closeable {
+	
+	static final int MAGIC = 0x49445343;
+	static final int VERSION = 1;
+	static final int HEADER_LENGTH = 24;
+	static final int TRAILER_LENGTH = 12;
+	
+	static final byte LONG = 1;
+	static final byte DOUBLE = 2;
+	static final byte DICTIONARY = 3;
+	
+	/**
+	 * Integral doubles below this value are written without fraction, and are exact
+	 */
+	static final double MAX_EXACT_INTEGER = 1e15;
+	
+	private final FileChannel channel;
+	/**
+	 * Whole file mapped once, null if file is too large for one mapping and chunks are read one by one
+	 */
+	private final MappedByteBuffer mapped;
+	private final long sourceSize;
+	private final long sourceLastModified;
+	private final String[] columns;
+	private final long rowCount;
+	private final int[] blockRows;
+	private final ChunkInfo[][] chunks;
+	/**
+	 * Reference of opener included
+	 */
+	private final AtomicInteger references = new AtomicInteger(1);
+	
+	private ColumnarFile(FileChannel channel, long sourceSize, long sourceLastModified, String[] columns, long rowCount, 
+			int[] blockRows, ChunkInfo[][] chunks) throws IOException {
+		this.channel = channel;
+		this.mapped = channel.size() <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()) : null;
+		this.sourceSize = sourceSize;
+		this.sourceLastModified = sourceLastModified;
+		this.columns = columns;
+		this.rowCount = rowCount;
+		this.blockRows = blockRows;
+		this.chunks = chunks;
+	}
+	
+	static ColumnarFile open(Path sidecar) throws IOException {
+		FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			ByteBuffer header = readHeader(channel);
+			long sourceSize = header.getLong();
+			long sourceLastModified = header.getLong();
+			ByteBuffer trailer = read(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+			long footerOffset = trailer.getLong();
+			if (trailer.getInt() != MAGIC || footerOffset < HEADER_LENGTH || footerOffset > size - TRAILER_LENGTH) {
+				throw new IOException("Columnar file " + sidecar + " is not complete");
+			}
+			ByteBuffer footer = read(channel, footerOffset, (int) (size - TRAILER_LENGTH - footerOffset));
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+			String[] columns = new String[in.readInt()];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = in.readUTF();
+			}
+			long rowCount = in.readLong();
+			int[] blockRows = new int[in.readInt()];
+			ChunkInfo[][] chunks = new ChunkInfo[blockRows.length][columns.length];
+			for (int block = 0; block < blockRows.length; block++) {
+				blockRows[block] = in.readInt();
+				for (int column = 0; column < columns.length; column++) {
+					chunks[block][column] = new ChunkInfo(in.readByte(), in.readBoolean(), in.readLong(), 
+							in.readInt(), in.readInt(), in.readDouble(), in.readDouble());
+				}
+			}
+			return new ColumnarFile(channel, sourceSize, sourceLastModified, columns, rowCount, blockRows, chunks);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return true if sidecar exists and was built from CSV file of given size and last modified time
+	 */
+	static boolean isBuiltFrom(Path sidecar, long sourceSize, long sourceLastModified) throws IOException {
+		try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+			ByteBuffer header = readHeader(channel);
+			return header.getLong() == sourceSize && header.getLong() == sourceLastModified;
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * @return header positioned after magic and version
+	 */
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		if (channel.size() < HEADER_LENGTH + TRAILER_LENGTH) {
+			throw new IOException("Columnar file is truncated");
+		}
+		ByteBuffer header = read(channel, 0, HEADER_LENGTH);
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IOException("Not a columnar file of version " + VERSION);
+		}
+		return header;
+	}
+	
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Columnar file is truncated");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * @return true if file was built from CSV file of given size and last modified time
+	 */
+	boolean isBuiltFrom(long size, long lastModified) {
+		return sourceSize == size && sourceLastModified == lastModified;
+	}
+	
+	/**
+	 * Adds reference to open file, each reference is released by {@link #close()}
+	 * @return this file, still open
+	 */
+	ColumnarFile retain() {
+		references.incrementAndGet();
+		return this;
+	}
+	
+	String[] getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * @return index of column with given name, -1 if there is no such column
+	 */
+	int columnIndex(String name) {
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	long getRowCount() {
+		return rowCount;
+	}
+	
+	int getBlockCount() {
+		return blockRows.length;
+	}
+	
+	int getBlockRows(int block) {
+		return blockRows[block];
+	}
+	
+	/**
+	 * Minimum of numeric chunk, NaN for dictionary chunk
+	 */
+	double getMin(int block, int column) {
+		return chunks[block][column].min;
+	}
+	
+	double getMax(int block, int column) {
+		return chunks[block][column].max;
+	}
+	
+	/**
+	 * Uncompressed chunk is read in place from mapped file, compressed chunk is inflated from mapped region</br>
+	 * Chunks of file too large for one mapping are read into heap buffers
+	 */
+	ColumnChunk read(int block, int column) throws IOException {
+		ChunkInfo info = chunks[block][column];
+		ByteBuffer stored;
+		if (mapped != null) {
+			stored = mapped.duplicate().position((int) info.offset).limit((int) info.offset + info.storedLength).slice();
+		} else {
+			stored = read(channel, info.offset, info.storedLength);
+		}
+		ByteBuffer content;
+		if (info.compressed) {
+			content = ByteBuffer.allocate(info.rawLength);
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(stored);
+				while (content.hasRemaining() && !inflater.finished()) {
+					if (inflater.inflate(content) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new IOException("Columnar chunk is truncated");
+					}
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Columnar chunk is corrupted", e);
+			} finally {
+				inflater.end();
+			}
+			content.flip();
+		} else {
+			content = stored;
+		}
+		return new ColumnChunk(info.encoding, blockRows[block], content.order(ByteOrder.LITTLE_ENDIAN));
+	}
+	
+	/**
+	 * Releases one reference, channel is closed with the last one
+	 */
+	@Override
+	public void close() throws IOException {
+		if (references.decrementAndGet() == 0) {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Text of double value, integral values are written without fraction
+	 */
+	static String formatDouble(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_INTEGER) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+	
+	private static class ChunkInfo {
+		
+		final byte encoding;
+		final boolean compressed;
+		final long offset;
+		final int storedLength;
+		final int rawLength;
+		final double min;
+		final double max;
+		
+		ChunkInfo(byte encoding, boolean compressed, long offset, int storedLength, int rawLength, double min, double max) {
+			this.encoding = encoding;
+			this.compressed = compressed;
+			this.offset = offset;
+			this.storedLength = storedLength;
+			this.rawLength = rawLength;
+			this.min = min;
+			this.max = max;
+		}
+	}
+	
+	/**
+	 * Values of one column in one block
+	 */
+	static class ColumnChunk {
+		
+		private final byte encoding;
+		private final int size;
+		private LongBuffer longs;
+		private DoubleBuffer doubles;
+		private IntBuffer codes;
+		private String[] dictionary;
+		
+		ColumnChunk(byte encoding, int size, ByteBuffer content) {
+			this.encoding = encoding;
+			this.size = size;
+			if (encoding == LONG) {
+				longs = content.asLongBuffer();
+			} else if (encoding == DOUBLE) {
+				doubles = content.asDoubleBuffer();
+			} else {
+				dictionary = new String[content.getInt()];
+				for (int i = 0; i < dictionary.length; i++) {
+					byte[] value = new byte[content.getInt()];
+					content.get(value);
+					dictionary[i] = new String(value, StandardCharsets.UTF_8);
+				}
+				codes = content.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			}
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		boolean isNumeric() {
+			return encoding != DICTIONARY;
+		}
+		
+		/**
+		 * @return numeric value, NaN for dictionary chunk
+		 */
+		double getDouble(int row) {
+			if (encoding == LONG) {
+				return longs.get(row);
+			}
+			return encoding == DOUBLE ? doubles.get(row) : Double.NaN;
+		}
+		
+		/**
+		 * @return value as it was in CSV, without quotes
+		 */
+		String getText(int row) {
+			if (encoding == LONG) {
+				return Long.toString(longs.get(row));
+			}
+			return encoding == DOUBLE ? formatDouble(doubles.get(row)) : dictionary[codes.get(row)];
+		}
+		
+		/**
+		 * Dictionary code of value, values of dictionary chunk are compared by code
+		 */
+		int getCode(int row) {
+			return codes.get(row);
+		}
+		
+		String[] getDictionary() {
+			return dictionary;
+		}
+	}
+}
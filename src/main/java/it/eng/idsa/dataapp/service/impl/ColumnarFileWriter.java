@@ -0,0 +1,327 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Writes {@link ColumnarFile} in single pass over CSV, block by block, so memory used does not depend on file size</br>
+ * Column chunk is stored as longs or doubles when every value of the chunk is restored to exactly the same text,
+ * otherwise as dictionary of strings. CSV with records of other field count than header is not converted, 
+ * such records are selected from CSV as they are, which sidecar could not reproduce
+ *
+ */
+class ColumnarFileWriter {
+	
+	private final int blockRows;
+	private final int compressionLevel;
+	
+	/**
+	 * @param blockRows rows in one block
+	 * @param compressionLevel deflate level of chunks, 0 to store chunks uncompressed
+	 */
+	ColumnarFileWriter(int blockRows, int compressionLevel) {
+		this.blockRows = blockRows;
+		this.compressionLevel = compressionLevel;
+	}
+	
+	/**
+	 * @return number of data rows written
+	 * @throws IOException also if some record has more or less fields than header
+	 */
+	long write(CsvRecordReader reader, long sourceSize, long sourceLastModified, Path target) throws IOException {
+		if (!reader.next()) {
+			throw new IOException("CSV file has no header");
+		}
+		String[] columns = new String[reader.getFieldCount()];
+		ColumnBuilder[] builders = new ColumnBuilder[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = reader.field(i);
+			builders[i] = new ColumnBuilder(blockRows);
+		}
+		Deflater deflater = compressionLevel > 0 ? new Deflater(compressionLevel) : null;
+		try (CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(target)));
+				DataOutputStream out = new DataOutputStream(counting)) {
+			out.writeInt(ColumnarFile.MAGIC);
+			out.writeInt(ColumnarFile.VERSION);
+			out.writeLong(sourceSize);
+			out.writeLong(sourceLastModified);
+			
+			List<Block> blocks = new ArrayList<>();
+			long rowCount = 0;
+			int rows = 0;
+			while (reader.next()) {
+				if (reader.getFieldCount() != columns.length) {
+					throw new IOException(String.format("Record %d has %d fields, header has %d", 
+							rowCount + 1, reader.getFieldCount(), columns.length));
+				}
+				for (int column = 0; column < builders.length; column++) {
+					builders[column].add(reader.field(column));
+				}
+				rowCount++;
+				if (++rows == blockRows) {
+					blocks.add(writeBlock(builders, rows, out, counting, deflater));
+					rows = 0;
+				}
+			}
+			if (rows > 0) {
+				blocks.add(writeBlock(builders, rows, out, counting, deflater));
+			}
+			
+			long footerOffset = counting.getByteCount();
+			out.writeInt(columns.length);
+			for (String column : columns) {
+				out.writeUTF(column);
+			}
+			out.writeLong(rowCount);
+			out.writeInt(blocks.size());
+			for (Block block : blocks) {
+				out.writeInt(block.rows);
+				for (Chunk chunk : block.chunks) {
+					out.writeByte(chunk.encoding);
+					out.writeBoolean(chunk.compressed);
+					out.writeLong(chunk.offset);
+					out.writeInt(chunk.storedLength);
+					out.writeInt(chunk.rawLength);
+					out.writeDouble(chunk.min);
+					out.writeDouble(chunk.max);
+				}
+			}
+			out.writeLong(footerOffset);
+			out.writeInt(ColumnarFile.MAGIC);
+			return rowCount;
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+	
+	private Block writeBlock(ColumnBuilder[] builders, int rows, DataOutputStream out, CountingOutputStream counting, 
+			Deflater deflater) throws IOException {
+		Block block = new Block(rows, builders.length);
+		for (int column = 0; column < builders.length; column++) {
+			ColumnBuilder builder = builders[column];
+			byte[] raw = builder.toBytes();
+			byte[] stored = deflater != null ? compress(raw, deflater) : null;
+			Chunk chunk = new Chunk();
+			chunk.encoding = builder.encoding;
+			chunk.offset = counting.getByteCount();
+			chunk.rawLength = raw.length;
+			// chunks which do not compress are kept as they are, and read in place
+			chunk.compressed = stored != null && stored.length < raw.length;
+			chunk.storedLength = chunk.compressed ? stored.length : raw.length;
+			out.write(chunk.compressed ? stored : raw);
+			chunk.min = builder.min();
+			chunk.max = builder.max();
+			block.chunks[column] = chunk;
+			builder.reset();
+		}
+		return block;
+	}
+	
+	private static byte[] compress(byte[] raw, Deflater deflater) {
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int length = deflater.deflate(buffer);
+			compressed.write(buffer, 0, length);
+		}
+		return compressed.toByteArray();
+	}
+	
+	/**
+	 * Values of one column in current block, starting as longs and widened to doubles and strings as needed
+	 */
+	private static class ColumnBuilder {
+		
+		private final long[] longs;
+		private double[] doubles;
+		private int[] codes;
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+		private byte encoding = ColumnarFile.LONG;
+		private int size;
+		
+		ColumnBuilder(int capacity) {
+			longs = new long[capacity];
+		}
+		
+		void add(String text) {
+			if (encoding == ColumnarFile.LONG) {
+				if (isLong(text)) {
+					longs[size++] = Long.parseLong(text);
+					return;
+				}
+				toDouble();
+			}
+			if (encoding == ColumnarFile.DOUBLE) {
+				double value = parseDouble(text);
+				if (!Double.isNaN(value)) {
+					doubles[size++] = value;
+					return;
+				}
+				toDictionary();
+			}
+			codes[size++] = code(text);
+		}
+		
+		private void toDouble() {
+			for (int i = 0; i < size; i++) {
+				if (Math.abs(longs[i]) >= ColumnarFile.MAX_EXACT_INTEGER) {
+					toDictionary();
+					return;
+				}
+			}
+			if (doubles == null) {
+				doubles = new double[longs.length];
+			}
+			for (int i = 0; i < size; i++) {
+				doubles[i] = longs[i];
+			}
+			encoding = ColumnarFile.DOUBLE;
+		}
+		
+		private void toDictionary() {
+			if (codes == null) {
+				codes = new int[longs.length];
+			}
+			for (int i = 0; i < size; i++) {
+				codes[i] = code(encoding == ColumnarFile.LONG ? Long.toString(longs[i]) : ColumnarFile.formatDouble(doubles[i]));
+			}
+			encoding = ColumnarFile.DICTIONARY;
+		}
+		
+		private int code(String text) {
+			Integer code = dictionary.get(text);
+			if (code == null) {
+				code = values.size();
+				dictionary.put(text, code);
+				values.add(text);
+			}
+			return code;
+		}
+		
+		byte[] toBytes() {
+			ByteBuffer buffer;
+			if (encoding == ColumnarFile.LONG) {
+				buffer = ByteBuffer.allocate(size * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.asLongBuffer().put(longs, 0, size);
+			} else if (encoding == ColumnarFile.DOUBLE) {
+				buffer = ByteBuffer.allocate(size * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.asDoubleBuffer().put(doubles, 0, size);
+			} else {
+				byte[][] encoded = new byte[values.size()][];
+				int length = Integer.BYTES + size * Integer.BYTES;
+				for (int i = 0; i < encoded.length; i++) {
+					encoded[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+					length += Integer.BYTES + encoded[i].length;
+				}
+				buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(encoded.length);
+				for (byte[] value : encoded) {
+					buffer.putInt(value.length);
+					buffer.put(value);
+				}
+				buffer.asIntBuffer().put(codes, 0, size);
+			}
+			return buffer.array();
+		}
+		
+		double min() {
+			if (encoding == ColumnarFile.LONG) {
+				return size > 0 ? Arrays.stream(longs, 0, size).min().getAsLong() : Double.NaN;
+			}
+			return encoding == ColumnarFile.DOUBLE && size > 0 ? Arrays.stream(doubles, 0, size).min().getAsDouble() : Double.NaN;
+		}
+		
+		double max() {
+			if (encoding == ColumnarFile.LONG) {
+				return size > 0 ? Arrays.stream(longs, 0, size).max().getAsLong() : Double.NaN;
+			}
+			return encoding == ColumnarFile.DOUBLE && size > 0 ? Arrays.stream(doubles, 0, size).max().getAsDouble() : Double.NaN;
+		}
+		
+		void reset() {
+			encoding = ColumnarFile.LONG;
+			size = 0;
+			dictionary.clear();
+			values.clear();
+		}
+		
+		/**
+		 * Integer in canonical form - no sign other than minus, no leading zeros
+		 */
+		private static boolean isLong(String text) {
+			int length = text.length();
+			int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+			if (length == start || length - start > 18 || (text.charAt(start) == '0' && (length - start > 1 || start == 1))) {
+				return false;
+			}
+			for (int i = start; i < length; i++) {
+				char c = text.charAt(i);
+				if (c < '0' || c > '9') {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * @return value, NaN if text is not a number written the way it is formatted back
+		 */
+		private static double parseDouble(String text) {
+			if (text.isEmpty()) {
+				return Double.NaN;
+			}
+			char first = text.charAt(0);
+			if ((first < '0' || first > '9') && first != '-' && first != '.') {
+				return Double.NaN;
+			}
+			try {
+				double value = Double.parseDouble(text);
+				return ColumnarFile.formatDouble(value).equals(text) ? value : Double.NaN;
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		}
+	}
+	
+	private static class Block {
+		
+		final int rows;
+		final Chunk[] chunks;
+		
+		Block(int rows, int columns) {
+			this.rows = rows;
+			this.chunks = new Chunk[columns];
+		}
+	}
+	
+	private static class Chunk {
+		byte encoding;
+		boolean compressed;
+		long offset;
+		int storedLength;
+		int rawLength;
+		double min;
+		double max;
+	}
+}
@@ -0,0 +1,455 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.SelectionReport;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactLockService;
+import it.eng.idsa.dataapp.service.ArtifactLockService.ArtifactLock;
+import it.eng.idsa.dataapp.service.ColumnarStoreService;
+import it.eng.idsa.dataapp.service.CsvService;
+import it.eng.idsa.dataapp.service.DataLakeWatchService;
+import it.eng.idsa.dataapp.service.DataLakeWatchService.DataLakeListener;
+import it.eng.idsa.dataapp.service.MetricsService;
+import it.eng.idsa.dataapp.service.impl.ColumnarFile.ColumnChunk;
+
+/**
+ * Sidecars are written by single background converter, after startup scan and for each watcher event</br>
+ * Events for the same artifact are coalesced, so CSV being written is converted once after writing settles</br>
+ * Sidecar is opened and mapped once per version and shared by selections, replaced or deleted sidecar is closed
+ *
+ */
+@Service
+public class ColumnarStoreServiceImpl implements ColumnarStoreService, DataLakeListener {
+	
+	private static final Logger logger = LogManager.getLogger(ColumnarStoreServiceImpl.class);
+	
+	private static final String SIDECAR_EXTENSION = ".col";
+	private static final byte LF = '\n';
+	
+	@Autowired
+	private ArtifactLockService artifactLockService;
+	
+	@Autowired(required = false)
+	private DataLakeWatchService dataLakeWatchService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Value("${application.dataLakeDirectory}")
+	private Path dataLakeDirectory;
+	
+	@Value("${application.columnar.enabled:true}")
+	private boolean enabled = true;
+	
+	@Value("${application.columnar.blockRows:8192}")
+	private int blockRows = 8192;
+	
+	/**
+	 * Deflate level of column chunks, 0 keeps chunks uncompressed so they are read in place from mapped file
+	 */
+	@Value("${application.columnar.compressionLevel:1}")
+	private int compressionLevel = 1;
+	
+	@Value("${application.artifactCatalog.debounceMillis:500}")
+	private long debounceMillis = 500;
+	
+	@Value("${application.csv.delimiter:,}")
+	private char delimiter = ',';
+	
+	@Value("${application.fileReader.bufferSize:65536}")
+	private int bufferSize = 65536;
+	
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	
+	/**
+	 * Open sidecars by path, each holding its cache reference
+	 */
+	private final Map<Path, ColumnarFile> openFiles = new ConcurrentHashMap<>();
+	
+	private ScheduledExecutorService converter;
+	
+	@PostConstruct
+	public void init() {
+		if (!enabled) {
+			logger.info("Columnar sidecars disabled");
+			return;
+		}
+		converter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "columnar-converter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (dataLakeWatchService != null) {
+			dataLakeWatchService.addListener(this);
+		}
+		converter.execute(this::scan);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (converter != null) {
+			converter.shutdownNow();
+		}
+		for (Path sidecar : openFiles.keySet()) {
+			release(sidecar);
+		}
+	}
+	
+	@Override
+	public void artifactChanged(Path artifact) {
+		String name = artifact.getFileName().toString();
+		if (name.startsWith(".") || !CsvService.isCsv(name)) {
+			return;
+		}
+		if (!dataLakeDirectory.toAbsolutePath().equals(artifact.toAbsolutePath().getParent())) {
+			// only artifacts directly in data lake directory
+			return;
+		}
+		if (pending.add(name)) {
+			converter.schedule(() -> {
+				pending.remove(name);
+				update(dataLakeDirectory.resolve(name));
+			}, debounceMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	@Override
+	public void overflow() {
+		converter.execute(this::scan);
+	}
+	
+	@Override
+	public Path sidecarOf(Path csvFile) {
+		return csvFile.resolveSibling("." + csvFile.getFileName().toString() + SIDECAR_EXTENSION);
+	}
+	
+	@Override
+	public boolean convert(Path csvFile) throws IOException, ReadFileLockedException {
+		try (ArtifactLock lock = artifactLockService.lockForRead(csvFile)) {
+			BasicFileAttributes attributes = Files.readAttributes(csvFile, BasicFileAttributes.class);
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			Path sidecar = sidecarOf(csvFile);
+			if (isBuiltFrom(sidecar, attributes.size(), lastModified)) {
+				return false;
+			}
+			long start = System.nanoTime();
+			Path temp = sidecar.resolveSibling(sidecar.getFileName().toString() + ".tmp");
+			try (InputStream in = Files.newInputStream(csvFile)) {
+				long rows = new ColumnarFileWriter(blockRows, compressionLevel)
+						.write(new CsvRecordReader(in, (byte) delimiter, bufferSize), attributes.size(), lastModified, temp);
+				// readers never see partially written sidecar
+				Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				release(sidecar);
+				logger.info("Columnar sidecar of {} written, {} rows, {} bytes of {} in {} ms", csvFile.getFileName(), rows, 
+						Files.size(sidecar), attributes.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(temp);
+				throw e;
+			}
+			return true;
+		}
+	}
+	
+	@Override
+	public boolean isCurrent(Path csvFile) {
+		if (!enabled) {
+			return false;
+		}
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(csvFile, BasicFileAttributes.class);
+			return isBuiltFrom(sidecarOf(csvFile), attributes.size(), attributes.lastModifiedTime().toMillis());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	@Override
+	public SelectionReport select(Path csvFile, CsvSelection selection, OutputStream target) throws IOException {
+		SelectionReport report = new SelectionReport();
+		report.setColumnar(true);
+		long written = 0;
+		OutputStream out = new BufferedOutputStream(target, bufferSize);
+		try (ColumnarFile file = open(csvFile)) {
+			int[] projection = projection(file, selection, csvFile);
+			CsvFilter filter = null;
+			int[] filterColumns = new int[0];
+			if (selection.getFilter() != null) {
+				filter = CsvFilter.parse(selection.getFilter());
+				filter.bind(file::columnIndex);
+				Set<Integer> columns = new TreeSet<>();
+				filter.collectColumns(columns);
+				filterColumns = columns.stream().mapToInt(Integer::intValue).toArray();
+			}
+			for (int i = 0; i < projection.length; i++) {
+				if (i > 0) {
+					out.write(delimiter);
+				}
+				writeValue(file.getColumns()[projection[i]], out);
+			}
+			out.write(LF);
+			long blockStart = 0;
+			long scanned = 0;
+			long pruned = 0;
+			for (int block = 0; block < file.getBlockCount() && blockStart <= selection.getLastRow(); block++) {
+				int rows = file.getBlockRows(block);
+				long start = blockStart;
+				blockStart += rows;
+				if (start + rows <= selection.getFirstRow()) {
+					// block before range is not read at all
+					continue;
+				}
+				if (filter != null && !filter.mayMatch(blockStats(file, block))) {
+					pruned++;
+					continue;
+				}
+				scanned++;
+				int from = (int) Math.max(0, selection.getFirstRow() - start);
+				int to = (int) Math.min(rows - 1, selection.getLastRow() - start);
+				ChunkRow values = new ChunkRow(file.getColumns().length);
+				// filter columns are decoded first, selected columns only if some row matches
+				BitSet matching = new BitSet(rows);
+				matching.set(from, to + 1);
+				if (filter != null) {
+					for (int column : filterColumns) {
+						values.chunks[column] = file.read(block, column);
+					}
+					for (int row = from; row <= to; row++) {
+						values.row = row;
+						matching.set(row, filter.matches(values));
+					}
+					if (matching.isEmpty()) {
+						continue;
+					}
+				}
+				ColumnChunk[] chunks = new ColumnChunk[projection.length];
+				for (int i = 0; i < projection.length; i++) {
+					if (values.chunks[projection[i]] == null) {
+						values.chunks[projection[i]] = file.read(block, projection[i]);
+					}
+					chunks[i] = values.chunks[projection[i]];
+				}
+				for (int row = matching.nextSetBit(0); row >= 0; row = matching.nextSetBit(row + 1)) {
+					for (int i = 0; i < chunks.length; i++) {
+						if (i > 0) {
+							out.write(delimiter);
+						}
+						writeValue(chunks[i].getText(row), out);
+					}
+					out.write(LF);
+					written++;
+				}
+			}
+			if (filter != null) {
+				logger.info("Filter {} pruned {} of {} blocks of {}", filter, pruned, scanned + pruned, csvFile.getFileName());
+				metricsService.recordFilterBlocks(scanned, pruned);
+				report.setScannedBlocks(scanned);
+				report.setPrunedBlocks(pruned);
+			}
+		} finally {
+			out.flush();
+		}
+		logger.info("Selected {} rows of {} from columnar sidecar ({})", written, csvFile.getFileName(), selection);
+		report.setRows(written);
+		return report;
+	}
+	
+	private void scan() {
+		if (dataLakeDirectory == null || !Files.isDirectory(dataLakeDirectory)) {
+			return;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dataLakeDirectory)) {
+			for (Path artifact : stream) {
+				String name = artifact.getFileName().toString();
+				if (!name.startsWith(".") && CsvService.isCsv(name)) {
+					update(artifact);
+				} else if (name.startsWith(".") && name.endsWith(SIDECAR_EXTENSION)) {
+					deleteOrphan(artifact, name);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not scan data lake directory " + dataLakeDirectory, e);
+		}
+	}
+	
+	/**
+	 * Convert changed CSV, delete sidecar of deleted one
+	 */
+	private void update(Path csvFile) {
+		try {
+			if (Files.isRegularFile(csvFile)) {
+				convert(csvFile);
+			} else if (Files.deleteIfExists(sidecarOf(csvFile))) {
+				release(sidecarOf(csvFile));
+				logger.info("Columnar sidecar of deleted artifact {} removed", csvFile.getFileName());
+			}
+		} catch (NoSuchFileException e) {
+			logger.debug("Artifact {} deleted while converting", csvFile.getFileName());
+		} catch (IOException | ReadFileLockedException | RuntimeException e) {
+			logger.warn("Could not write columnar sidecar of {}: {}", csvFile.getFileName(), e.getMessage());
+		}
+	}
+	
+	private void deleteOrphan(Path sidecar, String name) throws IOException {
+		Path csvFile = sidecar.resolveSibling(name.substring(1, name.length() - SIDECAR_EXTENSION.length()));
+		if (!Files.exists(csvFile)) {
+			Files.deleteIfExists(sidecar);
+			release(sidecar);
+		}
+	}
+	
+	/**
+	 * Open sidecar of current version of CSV file, shared with other selections
+	 * @return reference to open sidecar, to be closed by caller
+	 */
+	private ColumnarFile open(Path csvFile) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(csvFile, BasicFileAttributes.class);
+		long size = attributes.size();
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		try {
+			return openFiles.compute(sidecarOf(csvFile), (sidecar, cached) -> {
+				// referenced while still in cache, so it cannot be closed by concurrent release
+				if (cached != null && cached.isBuiltFrom(size, lastModified)) {
+					return cached.retain();
+				}
+				try {
+					ColumnarFile file = ColumnarFile.open(sidecar).retain();
+					if (cached != null) {
+						cached.close();
+					}
+					return file;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Drop cache reference to open sidecar, selections still reading it keep it open
+	 */
+	private void release(Path sidecar) {
+		ColumnarFile file = openFiles.remove(sidecar);
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				logger.debug("Could not close columnar sidecar {}: {}", sidecar.getFileName(), e.getMessage());
+			}
+		}
+	}
+	
+	private boolean isBuiltFrom(Path sidecar, long size, long lastModified) {
+		try {
+			return ColumnarFile.isBuiltFrom(sidecar, size, lastModified);
+		} catch (IOException e) {
+			logger.debug("Columnar sidecar {} not usable: {}", sidecar.getFileName(), e.getMessage());
+			return false;
+		}
+	}
+	
+	private CsvFilter.BlockStats blockStats(ColumnarFile file, int block) {
+		return new CsvFilter.BlockStats() {
+			
+			@Override
+			public double min(int column) {
+				return file.getMin(block, column);
+			}
+			
+			@Override
+			public double max(int column) {
+				return file.getMax(block, column);
+			}
+		};
+	}
+	
+	private int[] projection(ColumnarFile file, CsvSelection selection, Path csvFile) {
+		if (selection.isAllColumns()) {
+			int[] projection = new int[file.getColumns().length];
+			for (int i = 0; i < projection.length; i++) {
+				projection[i] = i;
+			}
+			return projection;
+		}
+		int[] projection = new int[selection.getColumns().size()];
+		for (int i = 0; i < projection.length; i++) {
+			projection[i] = file.columnIndex(selection.getColumns().get(i));
+			if (projection[i] < 0) {
+				throw new IllegalArgumentException(String.format("Column %s not found in %s", 
+						selection.getColumns().get(i), csvFile.getFileName()));
+			}
+		}
+		return projection;
+	}
+	
+	/**
+	 * Values containing delimiter, quote or line break are quoted
+	 */
+	private void writeValue(String value, OutputStream out) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+		}
+		if (quote) {
+			value = "\"" + value.replace("\"", "\"\"") + "\"";
+		}
+		out.write(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Row of decoded chunks of one block
+	 */
+	private static class ChunkRow implements CsvFilter.Row {
+		
+		private final ColumnChunk[] chunks;
+		private int row;
+		
+		ChunkRow(int columns) {
+			chunks = new ColumnChunk[columns];
+		}
+		
+		@Override
+		public double number(int column) {
+			ColumnChunk chunk = chunks[column];
+			return chunk.isNumeric() ? chunk.getDouble(row) : CsvFilter.parseNumber(chunk.getText(row));
+		}
+		
+		@Override
+		public String text(int column) {
+			return chunks[column].getText(row);
+		}
+	}
+
+}
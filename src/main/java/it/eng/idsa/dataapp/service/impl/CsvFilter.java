@@ -0,0 +1,415 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Filter of CSV rows, e.g. <i>CLL = 8 AND REA &gt; 40</i></br>
+ * Comparisons (=, !=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=) of column with number, or (=, !=, &lt;&gt;) with 'quoted' string, 
+ * combined with AND, OR, NOT and parentheses. Column names containing other characters than letters, digits, _ and . are written in double quotes.
+ * Number is compared with numeric value of the column, values which are not numbers never match; string is compared with text of the value
+ *
+ */
+abstract class CsvFilter {
+	
+	/**
+	 * Values of one row, by column index
+	 */
+	interface Row {
+		
+		/**
+		 * @return numeric value, NaN if value is not a number
+		 */
+		double number(int column);
+		
+		String text(int column);
+	}
+	
+	/**
+	 * Minimum and maximum of numeric columns in a block of rows
+	 */
+	interface BlockStats {
+		
+		/**
+		 * @return minimum, NaN if not known
+		 */
+		double min(int column);
+		
+		/**
+		 * @return maximum, NaN if not known
+		 */
+		double max(int column);
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if expression is not valid
+	 */
+	static CsvFilter parse(String expression) {
+		Parser parser = new Parser(expression);
+		CsvFilter filter = parser.or();
+		if (parser.peek() != null) {
+			throw new IllegalArgumentException(String.format("Unexpected '%s' in filter: %s", parser.peek(), expression));
+		}
+		return filter;
+	}
+	
+	/**
+	 * Resolve column names to indexes
+	 * @throws IllegalArgumentException if column does not exist
+	 */
+	abstract void bind(ToIntFunction<String> columnIndex);
+	
+	/**
+	 * Add indexes of columns filter reads, filter must be bound
+	 */
+	abstract void collectColumns(Set<Integer> columns);
+	
+	abstract boolean matches(Row row);
+	
+	/**
+	 * @return false if no row of the block can match, true if some can or it is not known
+	 */
+	abstract boolean mayMatch(BlockStats stats);
+	
+	/**
+	 * @return numeric value of text, NaN if it is not a number
+	 */
+	static double parseNumber(String text) {
+		if (text.isEmpty()) {
+			return Double.NaN;
+		}
+		char first = text.charAt(0);
+		if ((first < '0' || first > '9') && first != '-' && first != '+' && first != '.') {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+	
+	private static class Comparison extends CsvFilter {
+		
+		private final String column;
+		private final String operator;
+		private final String text;
+		private final double number;
+		private int index = -1;
+		
+		Comparison(String column, String operator, String text, double number) {
+			this.column = column;
+			this.operator = operator;
+			this.text = text;
+			this.number = number;
+		}
+		
+		@Override
+		void bind(ToIntFunction<String> columnIndex) {
+			index = columnIndex.applyAsInt(column);
+			if (index < 0) {
+				throw new IllegalArgumentException(String.format("Column %s in filter not found", column));
+			}
+		}
+		
+		@Override
+		void collectColumns(Set<Integer> columns) {
+			columns.add(index);
+		}
+		
+		@Override
+		boolean matches(Row row) {
+			if (text != null) {
+				return test(row.text(index).equals(text) ? 0 : 1);
+			}
+			double value = row.number(index);
+			return !Double.isNaN(value) && test(Double.compare(value, number));
+		}
+		
+		private boolean test(int comparison) {
+			switch (operator) {
+			case "=":
+				return comparison == 0;
+			case "!=":
+				return comparison != 0;
+			case "<":
+				return comparison < 0;
+			case "<=":
+				return comparison <= 0;
+			case ">":
+				return comparison > 0;
+			default:
+				return comparison >= 0;
+			}
+		}
+		
+		@Override
+		boolean mayMatch(BlockStats stats) {
+			double min = stats.min(index);
+			double max = stats.max(index);
+			if (text != null || Double.isNaN(min) || Double.isNaN(max)) {
+				return true;
+			}
+			switch (operator) {
+			case "=":
+				return min <= number && number <= max;
+			case "!=":
+				return min != number || max != number;
+			case "<":
+				return min < number;
+			case "<=":
+				return min <= number;
+			case ">":
+				return max > number;
+			default:
+				return max >= number;
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return column + " " + operator + " " + (text != null ? "'" + text + "'" : ColumnarFile.formatDouble(number));
+		}
+	}
+	
+	/**
+	 * AND or OR of operands
+	 */
+	private static class Junction extends CsvFilter {
+		
+		private final List<CsvFilter> operands;
+		private final boolean and;
+		
+		Junction(List<CsvFilter> operands, boolean and) {
+			this.operands = operands;
+			this.and = and;
+		}
+		
+		@Override
+		void bind(ToIntFunction<String> columnIndex) {
+			operands.forEach(operand -> operand.bind(columnIndex));
+		}
+		
+		@Override
+		void collectColumns(Set<Integer> columns) {
+			operands.forEach(operand -> operand.collectColumns(columns));
+		}
+		
+		@Override
+		boolean matches(Row row) {
+			for (CsvFilter operand : operands) {
+				if (operand.matches(row) != and) {
+					return !and;
+				}
+			}
+			return and;
+		}
+		
+		@Override
+		boolean mayMatch(BlockStats stats) {
+			for (CsvFilter operand : operands) {
+				if (operand.mayMatch(stats) != and) {
+					return !and;
+				}
+			}
+			return and;
+		}
+		
+		@Override
+		public String toString() {
+			List<String> texts = new ArrayList<>();
+			operands.forEach(operand -> texts.add(operand.toString()));
+			return "(" + String.join(and ? " AND " : " OR ", texts) + ")";
+		}
+	}
+	
+	private static class Not extends CsvFilter {
+		
+		private final CsvFilter operand;
+		
+		Not(CsvFilter operand) {
+			this.operand = operand;
+		}
+		
+		@Override
+		void bind(ToIntFunction<String> columnIndex) {
+			operand.bind(columnIndex);
+		}
+		
+		@Override
+		void collectColumns(Set<Integer> columns) {
+			operand.collectColumns(columns);
+		}
+		
+		@Override
+		boolean matches(Row row) {
+			return !operand.matches(row);
+		}
+		
+		@Override
+		boolean mayMatch(BlockStats stats) {
+			// min and max tell only if operand can match, not if it matches every row
+			return true;
+		}
+		
+		@Override
+		public String toString() {
+			return "NOT " + operand;
+		}
+	}
+	
+	/**
+	 * Recursive descent parser, OR binds weaker than AND, AND weaker than NOT
+	 */
+	private static class Parser {
+		
+		private final String expression;
+		private final List<String> tokens = new ArrayList<>();
+		private int position;
+		
+		Parser(String expression) {
+			this.expression = expression;
+			tokenize();
+		}
+		
+		CsvFilter or() {
+			List<CsvFilter> operands = new ArrayList<>();
+			operands.add(and());
+			while ("OR".equalsIgnoreCase(peek())) {
+				position++;
+				operands.add(and());
+			}
+			return operands.size() == 1 ? operands.get(0) : new Junction(operands, false);
+		}
+		
+		private CsvFilter and() {
+			List<CsvFilter> operands = new ArrayList<>();
+			operands.add(not());
+			while ("AND".equalsIgnoreCase(peek())) {
+				position++;
+				operands.add(not());
+			}
+			return operands.size() == 1 ? operands.get(0) : new Junction(operands, true);
+		}
+		
+		private CsvFilter not() {
+			if ("NOT".equalsIgnoreCase(peek())) {
+				position++;
+				return new Not(not());
+			}
+			if ("(".equals(peek())) {
+				position++;
+				CsvFilter filter = or();
+				expect(")");
+				return filter;
+			}
+			return comparison();
+		}
+		
+		private CsvFilter comparison() {
+			String column = next("column");
+			if (column.startsWith("\"")) {
+				column = column.substring(1, column.length() - 1).replace("\"\"", "\"");
+			} else if (!Character.isLetter(column.charAt(0)) && column.charAt(0) != '_') {
+				throw invalid("column", column);
+			}
+			String operator = next("operator");
+			if ("<>".equals(operator)) {
+				operator = "!=";
+			}
+			if (!operator.matches("=|!=|<|<=|>|>=")) {
+				throw invalid("operator", operator);
+			}
+			String value = next("value");
+			if (value.startsWith("'")) {
+				if (!"=".equals(operator) && !"!=".equals(operator)) {
+					throw new IllegalArgumentException(String.format("String %s can be compared only with = or != in filter: %s", value, expression));
+				}
+				return new Comparison(column, operator, value.substring(1, value.length() - 1).replace("''", "'"), Double.NaN);
+			}
+			double number = parseNumber(value);
+			if (Double.isNaN(number)) {
+				throw invalid("number", value);
+			}
+			return new Comparison(column, operator, null, number);
+		}
+		
+		String peek() {
+			return position < tokens.size() ? tokens.get(position) : null;
+		}
+		
+		private String next(String expected) {
+			String token = peek();
+			if (token == null) {
+				throw new IllegalArgumentException(String.format("Missing %s at the end of filter: %s", expected, expression));
+			}
+			position++;
+			return token;
+		}
+		
+		private void expect(String token) {
+			if (!token.equals(next(token))) {
+				throw invalid("'" + token + "'", tokens.get(position - 1));
+			}
+		}
+		
+		private IllegalArgumentException invalid(String expected, String token) {
+			return new IllegalArgumentException(String.format("Expected %s instead of '%s' in filter: %s", expected, token, expression));
+		}
+		
+		/**
+		 * Names, numbers and keywords, quoted names and strings, operators and parentheses
+		 */
+		private void tokenize() {
+			int i = 0;
+			int length = expression.length();
+			while (i < length) {
+				char c = expression.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '(' || c == ')') {
+					tokens.add(String.valueOf(c));
+					i++;
+				} else if (c == '\'' || c == '"') {
+					int end = i + 1;
+					while (true) {
+						if (end >= length) {
+							throw new IllegalArgumentException("Unterminated quote in filter: " + expression);
+						}
+						if (expression.charAt(end) == c) {
+							// doubled quote is escaped quote
+							if (end + 1 < length && expression.charAt(end + 1) == c) {
+								end += 2;
+								continue;
+							}
+							break;
+						}
+						end++;
+					}
+					tokens.add(expression.substring(i, end + 1));
+					i = end + 1;
+				} else if ("=!<>".indexOf(c) >= 0) {
+					int end = i + 1;
+					if (end < length && (expression.charAt(end) == '=' || (c == '<' && expression.charAt(end) == '>'))) {
+						end++;
+					}
+					tokens.add(expression.substring(i, end));
+					i = end;
+				} else {
+					int end = i;
+					while (end < length && (Character.isLetterOrDigit(expression.charAt(end)) 
+							|| "_.-+".indexOf(expression.charAt(end)) >= 0)) {
+						end++;
+					}
+					if (end == i) {
+						throw new IllegalArgumentException(String.format("Unexpected '%s' in filter: %s", c, expression));
+					}
+					tokens.add(expression.substring(i, end));
+					i = end;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads CSV records from byte stream into reused record buffer, fields are kept as byte ranges of the buffer</br>
+ * Quoted fields may contain delimiters and line breaks, field bytes are kept as they are, including quotes,
+ * so selected fields can be written out without re-encoding
+ *
+ */
+class CsvRecordReader {
+	
+	private static final byte QUOTE = '"';
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+	
+	private final InputStream in;
+	private final byte delimiter;
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	
+	private byte[] record = new byte[4096];
+	private int recordLength;
+	private int[] fieldStarts = new int[64];
+	private int[] fieldEnds = new int[64];
+	private int fieldCount;
+	
+	CsvRecordReader(InputStream in, byte delimiter, int bufferSize) {
+		this.in = in;
+		this.delimiter = delimiter;
+		this.buffer = new byte[bufferSize];
+	}
+	
+	/**
+	 * Reads next record, line terminator (LF or CRLF) is not part of the record
+	 * @return false at end of input
+	 */
+	boolean next() throws IOException {
+		if (position == limit && !fill()) {
+			return false;
+		}
+		recordLength = 0;
+		fieldCount = 0;
+		int fieldStart = 0;
+		boolean quoted = false;
+		while (true) {
+			if (position == limit && !fill()) {
+				break;
+			}
+			byte b = buffer[position++];
+			if (quoted) {
+				// escaped quote "" closes and opens quoted section again
+				quoted = b != QUOTE;
+			} else if (b == QUOTE) {
+				quoted = true;
+			} else if (b == delimiter) {
+				addField(fieldStart, recordLength);
+				fieldStart = recordLength + 1;
+			} else if (b == LF) {
+				break;
+			}
+			if (recordLength == record.length) {
+				record = Arrays.copyOf(record, record.length * 2);
+			}
+			record[recordLength++] = b;
+		}
+		if (recordLength > fieldStart && record[recordLength - 1] == CR) {
+			recordLength--;
+		}
+		addField(fieldStart, recordLength);
+		return true;
+	}
+	
+	/**
+	 * Skips next record without copying it
+	 * @return false at end of input
+	 */
+	boolean skip() throws IOException {
+		if (position == limit && !fill()) {
+			return false;
+		}
+		boolean quoted = false;
+		while (true) {
+			if (position == limit && !fill()) {
+				return true;
+			}
+			byte b = buffer[position++];
+			if (b == QUOTE) {
+				quoted = !quoted;
+			} else if (b == LF && !quoted) {
+				return true;
+			}
+		}
+	}
+	
+	int getFieldCount() {
+		return fieldCount;
+	}
+	
+	byte[] getRecord() {
+		return record;
+	}
+	
+	int getRecordLength() {
+		return recordLength;
+	}
+	
+	int fieldStart(int field) {
+		return fieldStarts[field];
+	}
+	
+	int fieldEnd(int field) {
+		return fieldEnds[field];
+	}
+	
+	/**
+	 * @return field value, without enclosing quotes and with escaped quotes unescaped, empty if record has less fields
+	 */
+	String field(int field) {
+		if (field >= fieldCount) {
+			return "";
+		}
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		if (end - start >= 2 && record[start] == QUOTE && record[end - 1] == QUOTE) {
+			return new String(record, start + 1, end - start - 2, StandardCharsets.UTF_8).replace("\"\"", "\"");
+		}
+		return new String(record, start, end - start, StandardCharsets.UTF_8);
+	}
+	
+	private void addField(int start, int end) {
+		if (fieldCount == fieldStarts.length) {
+			fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+			fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+		}
+		fieldStarts[fieldCount] = start;
+		fieldEnds[fieldCount] = end;
+		fieldCount++;
+	}
+	
+	private boolean fill() throws IOException {
+		int read = in.read(buffer);
+		while (read == 0) {
+			read = in.read(buffer);
+		}
+		if (read < 0) {
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+}
@@ -0,0 +1,121 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.service.CsvService;
+
+@Service
+public class CsvServiceImpl implements CsvService {
+	
+	private static final Logger logger = LogManager.getLogger(CsvServiceImpl.class);
+	
+	private static final byte LF = '\n';
+	
+	@Value("${application.csv.delimiter:,}")
+	private char delimiter = ',';
+	
+	@Value("${application.fileReader.bufferSize:65536}")
+	private int bufferSize = 65536;
+	
+	@Override
+	public long select(Path csvFile, CsvSelection selection, OutputStream target) throws IOException {
+		long written = 0;
+		// many small field writes, encoder behind target gets them in full buffers
+		OutputStream out = new BufferedOutputStream(target, bufferSize);
+		try (InputStream in = Files.newInputStream(csvFile)) {
+			CsvRecordReader reader = new CsvRecordReader(in, (byte) delimiter, bufferSize);
+			if (!reader.next()) {
+				return 0;
+			}
+			int[] projection = selection.isAllColumns() ? null : projection(reader, selection.getColumns(), csvFile);
+			CsvFilter filter = null;
+			if (selection.getFilter() != null) {
+				filter = CsvFilter.parse(selection.getFilter());
+				filter.bind(name -> columnIndex(reader, name));
+			}
+			writeRecord(reader, projection, out);
+			CsvFilter.Row values = new CsvFilter.Row() {
+				
+				@Override
+				public double number(int column) {
+					return CsvFilter.parseNumber(reader.field(column));
+				}
+				
+				@Override
+				public String text(int column) {
+					return reader.field(column);
+				}
+			};
+			long row = 0;
+			while (row < selection.getFirstRow() && reader.skip()) {
+				row++;
+			}
+			while (row <= selection.getLastRow() && reader.next()) {
+				if (filter == null || filter.matches(values)) {
+					writeRecord(reader, projection, out);
+					written++;
+				}
+				row++;
+			}
+		} finally {
+			out.flush();
+		}
+		logger.info("Selected {} rows of {} ({})", written, csvFile.getFileName(), selection);
+		return written;
+	}
+	
+	/**
+	 * Indexes of selected columns in header, in order of selection
+	 */
+	private int[] projection(CsvRecordReader header, List<String> columns, Path csvFile) {
+		int[] projection = new int[columns.size()];
+		for (int i = 0; i < projection.length; i++) {
+			projection[i] = columnIndex(header, columns.get(i));
+			if (projection[i] < 0) {
+				throw new IllegalArgumentException(String.format("Column %s not found in %s", columns.get(i), csvFile.getFileName()));
+			}
+		}
+		return projection;
+	}
+	
+	private int columnIndex(CsvRecordReader header, String column) {
+		for (int field = 0; field < header.getFieldCount(); field++) {
+			if (column.equals(header.field(field))) {
+				return field;
+			}
+		}
+		return -1;
+	}
+	
+	private void writeRecord(CsvRecordReader reader, int[] projection, OutputStream out) throws IOException {
+		byte[] record = reader.getRecord();
+		if (projection == null) {
+			out.write(record, 0, reader.getRecordLength());
+		} else {
+			for (int i = 0; i < projection.length; i++) {
+				if (i > 0) {
+					out.write(delimiter);
+				}
+				// short rows have empty values in missing columns
+				int field = projection[i];
+				if (field < reader.getFieldCount()) {
+					out.write(record, reader.fieldStart(field), reader.fieldEnd(field) - reader.fieldStart(field));
+				}
+			}
+		}
+		out.write(LF);
+	}
+
+}
@@ -0,0 +1,174 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.service.DataLakeWatchService;
+
+/**
+ * WatchService on data lake directory and its subdirectories, events are delivered to listeners from single daemon thread</br>
+ * Subdirectory created later is registered when its creation is delivered
+ *
+ */
+@Service
+public class DataLakeWatchServiceImpl implements DataLakeWatchService {
+	
+	private static final Logger logger = LogManager.getLogger(DataLakeWatchServiceImpl.class);
+	
+	@Value("${application.dataLakeDirectory}")
+	private Path dataLakeDirectory;
+	
+	@Value("${application.dataLakeWatch.enabled:true}")
+	private boolean enabled = true;
+	
+	private final List<DataLakeListener> listeners = new CopyOnWriteArrayList<>();
+	
+	private WatchService watchService;
+	
+	private volatile boolean watching;
+	
+	/**
+	 * Absolute path of watched directory for each registration
+	 */
+	private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+	
+	@PostConstruct
+	public void start() {
+		if (!enabled || dataLakeDirectory == null || !Files.isDirectory(dataLakeDirectory)) {
+			logger.info("Data lake directory is not watched");
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			register(dataLakeDirectory.toAbsolutePath());
+		} catch (IOException e) {
+			logger.error("Could not watch data lake directory " + dataLakeDirectory, e);
+			return;
+		}
+		Thread watcher = new Thread(this::watch, "data-lake-watcher");
+		watcher.setDaemon(true);
+		watching = true;
+		watcher.start();
+		logger.info("Watching data lake directory {}", dataLakeDirectory);
+	}
+	
+	@PreDestroy
+	public void stop() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+		}
+	}
+
+	@Override
+	public void addListener(DataLakeListener listener) {
+		listeners.add(listener);
+	}
+	
+	@Override
+	public boolean isWatching() {
+		return watching;
+	}
+	
+	/**
+	 * Registers directory with all its subdirectories
+	 */
+	private void register(Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+				directories.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+	
+	private void watch() {
+		Path root = dataLakeDirectory.toAbsolutePath();
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Path directory = directories.get(key);
+				if (directory == null) {
+					key.cancel();
+					continue;
+				}
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						logger.warn("Data lake watch events lost");
+						listeners.forEach(this::notifyOverflow);
+					} else {
+						Path artifact = directory.resolve((Path) event.context());
+						logger.debug("{} {}", event.kind().name(), artifact);
+						if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(artifact, LinkOption.NOFOLLOW_LINKS)) {
+							try {
+								register(artifact);
+							} catch (IOException e) {
+								logger.error("Could not watch directory " + artifact, e);
+							}
+						}
+						listeners.forEach(l -> notifyChanged(l, artifact));
+					}
+				}
+				if (!key.reset()) {
+					directories.remove(key);
+					if (directory.equals(root)) {
+						logger.warn("Data lake directory {} is no longer accessible", directory);
+						// listeners must not rely on events from now on
+						watching = false;
+						listeners.forEach(this::notifyOverflow);
+						return;
+					}
+					logger.debug("Directory {} is no longer watched", directory);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			logger.debug("Data lake watch service closed");
+		} finally {
+			watching = false;
+		}
+	}
+	
+	private void notifyChanged(DataLakeListener listener, Path artifact) {
+		try {
+			listener.artifactChanged(artifact);
+		} catch (RuntimeException e) {
+			logger.error("Data lake listener failed", e);
+		}
+	}
+	
+	private void notifyOverflow(DataLakeListener listener) {
+		try {
+			listener.overflow();
+		} catch (RuntimeException e) {
+			logger.error("Data lake listener failed", e);
+		}
+	}
+
+}
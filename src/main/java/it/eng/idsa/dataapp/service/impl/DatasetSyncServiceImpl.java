@@ -0,0 +1,213 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult;
+import it.eng.idsa.dataapp.domain.SyncState;
+import it.eng.idsa.dataapp.domain.SyncState.Status;
+import it.eng.idsa.dataapp.repository.SyncStateRepository;
+import it.eng.idsa.dataapp.service.ArtifactRequestService;
+import it.eng.idsa.dataapp.service.ArtifactVersionService;
+import it.eng.idsa.dataapp.service.DatasetSyncService;
+
+@Service
+@ConditionalOnProperty(name = "application.sync.enabled", havingValue = "true")
+public class DatasetSyncServiceImpl implements DatasetSyncService {
+	
+	private static final Logger logger = LogManager.getLogger(DatasetSyncServiceImpl.class);
+	
+	private static final int MAX_ERROR_LENGTH = 2048;
+	
+	@Autowired
+	private ArtifactRequestService artifactRequestService;
+	
+	@Autowired
+	private ArtifactVersionService artifactVersionService;
+	
+	@Autowired
+	private SyncStateRepository syncStateRepository;
+	
+	@Autowired
+	private TaskScheduler taskScheduler;
+	
+	@Value("${application.sync.forwardTo}")
+	private String forwardTo;
+	
+	@Value("${application.sync.forwardToInternal}")
+	private String forwardToInternal;
+	
+	@Value("${application.sync.artifacts:}")
+	private String[] artifacts;
+	
+	@Value("${application.sync.patterns:}")
+	private String[] patterns;
+	
+	@Value("${application.sync.jitterMillis:5000}")
+	private long jitterMillis;
+	
+	private final AtomicBoolean running = new AtomicBoolean();
+	
+	@Scheduled(initialDelayString = "${application.sync.initialDelayMillis:60000}", 
+			fixedDelayString = "${application.sync.intervalMillis:3600000}")
+	public void scheduledSync() {
+		try {
+			sync();
+		} catch (IllegalStateException e) {
+			logger.warn(e.getMessage());
+		}
+	}
+	
+	@Override
+	public List<SyncState> sync() {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("Synchronization is already running");
+		}
+		try {
+			return doSync();
+		} finally {
+			running.set(false);
+		}
+	}
+	
+	@Override
+	public void submitSync() {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("Synchronization is already running");
+		}
+		try {
+			taskScheduler.schedule(() -> {
+				try {
+					doSync();
+				} catch (RuntimeException e) {
+					logger.error("Synchronization failed", e);
+				} finally {
+					running.set(false);
+				}
+			}, new Date());
+		} catch (RuntimeException e) {
+			running.set(false);
+			throw e;
+		}
+	}
+	
+	@Override
+	public List<SyncState> getSyncStates() {
+		return syncStateRepository.findAll();
+	}
+	
+	private List<SyncState> doSync() {
+		Map<String, ArtifactDescriptor> catalog = null;
+		try {
+			catalog = artifactRequestService.requestCatalog(forwardToInternal, forwardTo).stream()
+					.collect(Collectors.toMap(ArtifactDescriptor::getName, Function.identity(), (a, b) -> a));
+		} catch (IOException e) {
+			// without catalog configured artifacts are still requested, conditionally
+			logger.warn("Could not get artifact catalog from provider, requesting all configured artifacts", e);
+		}
+		Set<String> names = new LinkedHashSet<>(nonBlank(artifacts));
+		List<String> globs = nonBlank(patterns);
+		if (!globs.isEmpty() && catalog != null) {
+			names.addAll(ArtifactRequestServiceImpl.match(new ArrayList<>(catalog.values()), globs));
+		}
+		logger.info("Synchronizing {} artifacts from {}", names.size(), forwardTo);
+		
+		List<SyncState> states = new ArrayList<>();
+		for (String artifact : names) {
+			try {
+				states.add(syncArtifact(artifact, catalog));
+			} catch (InterruptedException e) {
+				logger.warn("Synchronization interrupted");
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		logger.info("Synchronization finished - {}", states.stream()
+				.collect(Collectors.groupingBy(SyncState::getStatus, Collectors.counting())));
+		return states;
+	}
+	
+	private SyncState syncArtifact(String artifact, Map<String, ArtifactDescriptor> catalog) throws InterruptedException {
+		SyncState state = syncStateRepository.findById(artifact).orElseGet(() -> new SyncState(artifact));
+		ArtifactDescriptor descriptor = catalog != null ? catalog.get(artifact) : null;
+		state.setLastSyncAt(Instant.now());
+		if (catalog != null && descriptor == null) {
+			logger.warn("Artifact {} is not in provider catalog", artifact);
+			state.setStatus(Status.MISSING);
+			return syncStateRepository.save(state);
+		}
+		if (descriptor != null && state.matches(descriptor) && artifactVersionService.getLastHash(artifact) != null) {
+			logger.debug("Artifact {} not changed on provider, skipping", artifact);
+			state.setStatus(Status.UNCHANGED);
+			state.setFailures(0);
+			state.setError(null);
+			return syncStateRepository.save(state);
+		}
+		if (jitterMillis > 0) {
+			// spread requests of consumers started at the same time
+			Thread.sleep(ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+		}
+		try {
+			ArtifactTransferResult result = artifactRequestService.requestArtifact(forwardToInternal, forwardTo, artifact, false, null);
+			switch (result.getStatus()) {
+			case SAVED:
+				state.setStatus(Status.UPDATED);
+				state.setLastChangeAt(Instant.now());
+				break;
+			case NOT_MODIFIED:
+				state.setStatus(Status.UNCHANGED);
+				break;
+			default:
+				fail(state, result.getError() != null ? result.getError() : "Artifact not saved");
+				return syncStateRepository.save(state);
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.error("Synchronization of artifact {} failed", artifact, e);
+			fail(state, e.getMessage());
+			return syncStateRepository.save(state);
+		}
+		state.setFailures(0);
+		state.setError(null);
+		if (descriptor != null) {
+			state.setProviderSize(descriptor.getSize());
+			state.setProviderLastModified(descriptor.getLastModified());
+			state.setProviderSha256(descriptor.getSha256());
+		}
+		return syncStateRepository.save(state);
+	}
+	
+	private void fail(SyncState state, String error) {
+		state.setStatus(Status.FAILED);
+		state.setFailures(state.getFailures() + 1);
+		state.setError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+	}
+	
+	private static List<String> nonBlank(String[] values) {
+		if (values == null) {
+			return new ArrayList<>();
+		}
+		return Arrays.stream(values).map(String::trim).filter(v -> !v.isEmpty()).collect(Collectors.toList());
+	}
+
+}
@@ -1,77 +1,442 @@
 package it.eng.idsa.dataapp.service.impl;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
-import org.apache.commons.io.IOUtils;
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import de.fraunhofer.iais.eis.Message;
+import io.micrometer.core.instrument.Timer;
+import it.eng.idsa.dataapp.domain.ArtifactChunk;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.SelectionReport;
 import it.eng.idsa.dataapp.exception.EmptyFileException;
 import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactCacheService;
+import it.eng.idsa.dataapp.service.ArtifactLockService;
+import it.eng.idsa.dataapp.service.ArtifactLockService.ArtifactLock;
+import it.eng.idsa.dataapp.service.ColumnarStoreService;
+import it.eng.idsa.dataapp.service.CsvService;
 import it.eng.idsa.dataapp.service.FileReaderService;
+import it.eng.idsa.dataapp.service.MetricsService;
 
 @Service
 public class FileReaderServiceImpl implements FileReaderService {
 	
 	private static final Logger logger = LogManager.getLogger(FileReaderService.class);
 
-	public static final String READ_LOCK_FILE = "read.lock";
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	
+	@Autowired
+	private ArtifactLockService artifactLockService;
+	
+	@Autowired
+	private ArtifactCacheService artifactCacheService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Autowired
+	private CsvService csvService;
+	
+	@Autowired
+	private ColumnarStoreService columnarStoreService;
 	
 	@Value("${application.dataLakeDirectory}")
 	private Path dataLakeDirectory;
 	
+	@Value("${application.fileReader.bufferSize:65536}")
+	private int bufferSize = 65536;
+	
+	/**
+	 * Files of this size and larger are read through memory mapped regions instead of heap buffered reads
+	 */
+	@Value("${application.fileReader.mappedThreshold:16777216}")
+	private long mappedThreshold = 16 * 1024 * 1024;
+	
+	@Value("${application.fileReader.mappedRegionSize:67108864}")
+	private int mappedRegionSize = 64 * 1024 * 1024;
+	
+	/**
+	 * Serve gzip compressed payloads to consumers accepting them
+	 */
+	@Value("${application.compression.enabled:true}")
+	private boolean compressionEnabled = true;
+	
+	/**
+	 * Deflate level, 0 (stored) to 9 (smallest), 1 is fastest
+	 */
+	@Value("${application.compression.level:6}")
+	private int compressionLevel = 6;
+	
+	/**
+	 * Upper bound of a single chunk in chunked transfer mode
+	 */
+	@Value("${application.fileReader.maxChunkSize:8388608}")
+	private int maxChunkSize = 8 * 1024 * 1024;
+	
+	@PostConstruct
+	public void init() {
+		if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException(String.format("application.compression.level must be %d to %d, not %d", 
+					Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION, compressionLevel));
+		}
+	}
+	
 	@Override
 	public String readRequestedArtifact(Message requestMessage, String requestedArtifact) 
 			throws IOException, ReadFileLockedException, EmptyFileException {
+		return readRequestedArtifact(requestMessage, requestedArtifact, false);
+	}
+	
+	/**
+	 * Encoded payload is cached, repeated requests for unchanged artifact are served from memory
+	 */
+	@Override
+	public String readRequestedArtifact(Message requestMessage, String requestedArtifact, boolean compress) 
+			throws IOException, ReadFileLockedException, EmptyFileException {
 		
-		logger.info("Reading file from file system: " + requestedArtifact);
-		String encodedFile = null;
-		createReadLock();
-		InputStream is = null;
-		try {
-			is = Files.newInputStream(dataLakeDirectory.resolve(requestedArtifact));
-			if(dataLakeDirectory.resolve(requestedArtifact).toFile().length() == 0) {
-				logger.info("Artifact with name {} is empty", dataLakeDirectory.resolve(requestedArtifact).toString());
-				throw new EmptyFileException(String.format("File %s is empty", 
-						dataLakeDirectory.resolve(requestedArtifact).toString()));
+		Path artifactPath = dataLakeDirectory.resolve(requestedArtifact);
+		boolean gzip = isCompressed(requestedArtifact, compress);
+		String variant = getPayloadEncoding(requestedArtifact, compress);
+		Timer.Sample sample = metricsService.startTimer();
+		String mode = MetricsService.READ_ENCODED;
+		long bytesRead = 0;
+		boolean success = false;
+		try (ArtifactLock lock = artifactLockService.lockForRead(artifactPath)) {
+			// attributes read under lock, so cached payload matches the version it is stored for
+			BasicFileAttributes attributes = Files.readAttributes(artifactPath, BasicFileAttributes.class);
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			String cached = artifactCacheService.get(artifactPath, lastModified, attributes.size(), variant);
+			if (cached != null) {
+				logger.debug("Artifact {} served from cache", requestedArtifact);
+				mode = MetricsService.READ_CACHED;
+				success = true;
+				return cached;
 			}
-			String message = IOUtils.toString(is, "UTF8");
-			encodedFile = Base64.getEncoder().encodeToString(message.getBytes());
-			logger.info("File read from disk.");
+			long encodedLength = 4 * ((attributes.size() + 2) / 3);
+			if (encodedLength > MAX_ARRAY_SIZE && !gzip) {
+				throw new IOException(String.format("File %s is too large to be encoded in memory", artifactPath.toString()));
+			}
+			// sized upfront, so encoded content is not copied while buffer grows, compressed size is only estimated
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream((int) Math.min(MAX_ARRAY_SIZE, gzip ? encodedLength / 4 : encodedLength));
+			// compressed size is known only while encoding
+			bytesRead = encode(artifactPath, new LimitedOutputStream(encoded, MAX_ARRAY_SIZE, 
+					String.format("File %s is too large to be encoded in memory", artifactPath.toString())), gzip);
+			String payload = encoded.toString(StandardCharsets.US_ASCII);
+			artifactCacheService.put(artifactPath, lastModified, attributes.size(), variant, payload);
+			success = true;
+			return payload;
 		} finally {
-			if (is != null) {
-				is.close();
+			metricsService.recordArtifactRead(sample, mode, success, bytesRead);
+		}
+	}
+	
+	@Override
+	public String readRequestedArtifact(Message requestMessage, String requestedArtifact, CsvSelection selection, boolean compress, 
+			SelectionReport report) throws IOException, ReadFileLockedException, EmptyFileException {
+		
+		if (!CsvService.isCsv(requestedArtifact)) {
+			throw new IllegalArgumentException(String.format("Columns and rows can be selected only from CSV artifacts, not %s", requestedArtifact));
+		}
+		Path artifactPath = dataLakeDirectory.resolve(requestedArtifact);
+		boolean gzip = isCompressed(requestedArtifact, compress);
+		Timer.Sample sample = metricsService.startTimer();
+		String mode = MetricsService.READ_SELECTED;
+		long bytesSelected = 0;
+		boolean success = false;
+		try (ArtifactLock lock = artifactLockService.lockForRead(artifactPath)) {
+			long size = Files.size(artifactPath);
+			if (size == 0) {
+				logger.info("Artifact with name {} is empty", artifactPath.toString());
+				throw new EmptyFileException(String.format("File %s is empty", artifactPath.toString()));
+			}
+			// size of selection is not known upfront, buffer grows from a fraction of the file
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream((int) Math.min(MAX_ARRAY_SIZE, Math.max(bufferSize, size / 8)));
+			OutputStream encoder = Base64.getEncoder().wrap(new LimitedOutputStream(encoded, MAX_ARRAY_SIZE, 
+					String.format("Selection of file %s is too large to be encoded in memory", artifactPath.toString())));
+			if (gzip) {
+				encoder = new LevelGZIPOutputStream(encoder, bufferSize, compressionLevel);
+			}
+			CountingOutputStream selected = new CountingOutputStream(encoder);
+			// CSV text is parsed only until background converter writes columnar sidecar of current version
+			if (columnarStoreService.isCurrent(artifactPath)) {
+				mode = MetricsService.READ_COLUMNAR;
+				SelectionReport columnarReport = columnarStoreService.select(artifactPath, selection, selected);
+				report.setColumnar(true);
+				report.setRows(columnarReport.getRows());
+				report.setScannedBlocks(columnarReport.getScannedBlocks());
+				report.setPrunedBlocks(columnarReport.getPrunedBlocks());
+			} else {
+				report.setRows(csvService.select(artifactPath, selection, selected));
 			}
-			releaseReadLock();
+			selected.close();
+			bytesSelected = selected.getByteCount();
+			logger.info("Selected {} of {} bytes of {}{}", bytesSelected, size, requestedArtifact, gzip ? ", encoded with gzip" : "");
+			success = true;
+			return encoded.toString(StandardCharsets.US_ASCII);
+		} finally {
+			metricsService.recordArtifactRead(sample, mode, success, bytesSelected);
 		}
-		return encodedFile;
 	}
-
-	private void createReadLock() throws ReadFileLockedException {
-		try {
-			Files.write(Paths.get(READ_LOCK_FILE), new ArrayList<>(), StandardCharsets.UTF_8);
-		} catch (IOException e) {
-			logger.error("Could not create read lock file {}, {}", READ_LOCK_FILE, e);
-			throw new ReadFileLockedException("Could not create read.lock");
+	
+	@Override
+	public long writeRequestedArtifact(Message requestMessage, String requestedArtifact, OutputStream out)
+			throws IOException, ReadFileLockedException, EmptyFileException {
+		return writeRequestedArtifact(requestMessage, requestedArtifact, out, false);
+	}
+	
+	@Override
+	public long writeRequestedArtifact(Message requestMessage, String requestedArtifact, OutputStream out, boolean compress)
+			throws IOException, ReadFileLockedException, EmptyFileException {
+		
+		Path artifactPath = dataLakeDirectory.resolve(requestedArtifact);
+		Timer.Sample sample = metricsService.startTimer();
+		long bytesRead = 0;
+		boolean success = false;
+		try (ArtifactLock lock = artifactLockService.lockForRead(artifactPath)) {
+			bytesRead = encode(artifactPath, out, isCompressed(requestedArtifact, compress));
+			success = true;
+			return bytesRead;
+		} finally {
+			metricsService.recordArtifactRead(sample, MetricsService.READ_STREAMED, success, bytesRead);
 		}
 	}
-
-	private void releaseReadLock() {
-		File f = new File(READ_LOCK_FILE);
-		if (f.isFile()) {
-			logger.info("{} exists - deleting it...", READ_LOCK_FILE);
-			f.delete();
+	
+	@Override
+	public boolean isCompressed(String requestedArtifact, boolean compress) {
+		return compress && compressionEnabled && !ArtifactRequest.isCompressedArtifact(requestedArtifact);
+	}
+	
+	@Override
+	public String getPayloadEncoding(String requestedArtifact, boolean compress) {
+		return isCompressed(requestedArtifact, compress) ? ArtifactCacheService.VARIANT_GZIP_BASE64 : ArtifactCacheService.VARIANT_BASE64;
+	}
+	
+	/**
+	 * Encodes artifact to Base64, optionally compressing it first, caller must hold read lock
+	 */
+	private long encode(Path artifactPath, OutputStream out, boolean gzip) throws IOException, EmptyFileException {
+		logger.info("Reading file from file system: " + artifactPath);
+		long bytesRead;
+		try (FileChannel channel = openArtifact(artifactPath)) {
+			boolean mapped = channel.size() >= mappedThreshold;
+			// closing encoder writes padding, but must not close target stream
+			OutputStream encoder = Base64.getEncoder().wrap(new CloseShieldOutputStream(out));
+			if (gzip) {
+				LevelGZIPOutputStream compressor = new LevelGZIPOutputStream(encoder, bufferSize, compressionLevel);
+				bytesRead = mapped ? compressMapped(channel, compressor) : encodeBuffered(channel, compressor);
+				compressor.close();
+			} else {
+				bytesRead = mapped ? encodeMapped(channel, encoder) : encodeBuffered(channel, encoder);
+				encoder.close();
+			}
+			logger.info("File read from disk, {} bytes encoded{}.", bytesRead, gzip ? " with gzip" : "");
+		}
+		return bytesRead;
+	}
+	
+	@Override
+	public long transferRequestedArtifact(Message requestMessage, String requestedArtifact, WritableByteChannel target)
+			throws IOException, ReadFileLockedException, EmptyFileException {
+		
+		logger.info("Transferring file from file system: " + requestedArtifact);
+		Path artifactPath = dataLakeDirectory.resolve(requestedArtifact);
+		Timer.Sample sample = metricsService.startTimer();
+		long transferred = 0;
+		boolean success = false;
+		try (ArtifactLock lock = artifactLockService.lockForRead(artifactPath);
+				FileChannel channel = openArtifact(artifactPath)) {
+			long size = channel.size();
+			// transferTo may transfer less than requested, and nothing once file or target can not go on
+			while (transferred < size) {
+				long count = channel.transferTo(transferred, size - transferred, target);
+				if (count <= 0) {
+					throw new IOException(String.format("Transfer of file %s stopped after %d of %d bytes", 
+							artifactPath.toString(), transferred, size));
+				}
+				transferred += count;
+			}
+			logger.info("File transferred from disk, {} bytes.", transferred);
+			success = true;
+		} finally {
+			metricsService.recordArtifactRead(sample, MetricsService.READ_BINARY, success, transferred);
+		}
+		return transferred;
+	}
+	
+	@Override
+	public ArtifactChunk readRequestedArtifactChunk(Message requestMessage, String requestedArtifact, long offset, int length)
+			throws IOException, ReadFileLockedException, EmptyFileException {
+		
+		logger.info("Reading chunk of {} from offset {}", requestedArtifact, offset);
+		Path artifactPath = dataLakeDirectory.resolve(requestedArtifact);
+		ArtifactChunk chunk = new ArtifactChunk();
+		Timer.Sample sample = metricsService.startTimer();
+		boolean success = false;
+		try (ArtifactLock lock = artifactLockService.lockForRead(artifactPath);
+				FileChannel channel = openArtifact(artifactPath)) {
+			long size = channel.size();
+			if (offset < 0 || offset > size || length < 0) {
+				throw new IOException(String.format("Invalid range offset=%d, length=%d for file %s of size %d", 
+						offset, length, artifactPath.toString(), size));
+			}
+			int chunkLength = (int) Math.min(Math.min(length, maxChunkSize), size - offset);
+			ByteBuffer buffer = ByteBuffer.allocate(chunkLength);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset + buffer.position()) == -1) {
+					throw new IOException(String.format("File %s truncated while reading", artifactPath.toString()));
+				}
+			}
+			CRC32 crc = new CRC32();
+			crc.update(buffer.array());
+			chunk.setArtifact(requestedArtifact);
+			chunk.setOffset(offset);
+			chunk.setLength(chunkLength);
+			chunk.setTotalSize(size);
+			chunk.setLastModified(Files.getLastModifiedTime(artifactPath).toMillis());
+			chunk.setChecksum(Long.toHexString(crc.getValue()));
+			chunk.setData(Base64.getEncoder().encodeToString(buffer.array()));
+			success = true;
+		} finally {
+			metricsService.recordArtifactRead(sample, MetricsService.READ_CHUNK, success, chunk.getLength());
+		}
+		return chunk;
+	}
+	
+	private FileChannel openArtifact(Path artifactPath) throws IOException, EmptyFileException {
+		FileChannel channel = FileChannel.open(artifactPath, StandardOpenOption.READ);
+		if(channel.size() == 0) {
+			channel.close();
+			logger.info("Artifact with name {} is empty", artifactPath.toString());
+			throw new EmptyFileException(String.format("File %s is empty", 
+					artifactPath.toString()));
+		}
+		return channel;
+	}
+	
+	private long encodeBuffered(FileChannel channel, OutputStream encoder) throws IOException {
+		long bytesRead = 0;
+		byte[] buffer = new byte[bufferSize];
+		ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+		int read;
+		while ((read = channel.read(byteBuffer)) != -1) {
+			encoder.write(buffer, 0, read);
+			bytesRead += read;
+			byteBuffer.clear();
+		}
+		return bytesRead;
+	}
+	
+	/**
+	 * Copies from page cache region by region in bulk, JDK encoder then encodes whole buffers at once</br>
+	 * Region is unmapped once it is garbage collected
+	 */
+	private long encodeMapped(FileChannel channel, OutputStream encoder) throws IOException {
+		long size = channel.size();
+		byte[] buffer = new byte[bufferSize];
+		for (long position = 0; position < size; position += mappedRegionSize) {
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mappedRegionSize, size - position));
+			while (region.hasRemaining()) {
+				int length = Math.min(buffer.length, region.remaining());
+				region.get(buffer, 0, length);
+				encoder.write(buffer, 0, length);
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Deflates straight from page cache, region by region, compressed output is written to encoder
+	 */
+	private long compressMapped(FileChannel channel, LevelGZIPOutputStream compressor) throws IOException {
+		long size = channel.size();
+		for (long position = 0; position < size; position += mappedRegionSize) {
+			compressor.write(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mappedRegionSize, size - position)));
+		}
+		return size;
+	}
+	
+	/**
+	 * Fails once more than limit bytes are written, before ByteArrayOutputStream would overflow
+	 */
+	private static class LimitedOutputStream extends FilterOutputStream {
+		
+		private final long limit;
+		private final String message;
+		private long count;
+		
+		LimitedOutputStream(OutputStream out, long limit, String message) {
+			super(out);
+			this.limit = limit;
+			this.message = message;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			checkLimit(1);
+			out.write(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkLimit(len);
+			out.write(b, off, len);
+		}
+		
+		private void checkLimit(int length) throws IOException {
+			count += length;
+			if (count > limit) {
+				throw new IOException(message);
+			}
+		}
+	}
+	
+	/**
+	 * GZIPOutputStream with configurable deflate level, also deflating directly from byte buffers
+	 */
+	private static class LevelGZIPOutputStream extends GZIPOutputStream {
+		
+		LevelGZIPOutputStream(OutputStream out, int size, int level) throws IOException {
+			super(out, size);
+			def.setLevel(level);
+		}
+		
+		/**
+		 * Same as {@link #write(byte[], int, int)}, direct buffer is read in place
+		 */
+		void write(ByteBuffer src) throws IOException {
+			int position = src.position();
+			crc.update(src);
+			src.position(position);
+			def.setInput(src);
+			while (!def.needsInput()) {
+				deflate();
+			}
 		}
 	}
 }
@@ -0,0 +1,64 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.service.MessageExchangeService;
+import it.eng.idsa.streamer.WebSocketClientManager;
+import it.eng.idsa.streamer.websocket.receiver.server.FileRecreatorBeanExecutor;
+
+/**
+ * Forward-To is set on singleton FileRecreatorBeanExecutor and response is read from the shared sender,
+ * so both are held under one fair lock for the whole round trip - concurrent callers could otherwise swap targets
+ * or receive response to another request
+ *
+ */
+@Service
+public class MessageExchangeServiceImpl implements MessageExchangeService {
+
+	private final Lock exchangeLock = new ReentrantLock(true);
+
+	@Override
+	public String send(String forwardToInternal, String forwardTo, String header, String payload) throws IOException {
+		lock();
+		try {
+			FileRecreatorBeanExecutor.getInstance().setForwardTo(forwardTo);
+			return WebSocketClientManager.getMessageWebSocketSender()
+					.sendMultipartMessageWebSocketOverHttps(header, payload, forwardToInternal);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Could not exchange message with provider: " + e.getMessage(), e);
+		} finally {
+			exchangeLock.unlock();
+		}
+	}
+
+	@Override
+	public String send(String forwardToInternal, String forwardTo, String multipartMessage) throws IOException {
+		lock();
+		try {
+			FileRecreatorBeanExecutor.getInstance().setForwardTo(forwardTo);
+			return WebSocketClientManager.getMessageWebSocketSender()
+					.sendMultipartMessageWebSocketOverHttps(multipartMessage, forwardToInternal);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Could not exchange message with provider: " + e.getMessage(), e);
+		} finally {
+			exchangeLock.unlock();
+		}
+	}
+
+	private void lock() throws IOException {
+		try {
+			exchangeLock.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for exchange with provider", e);
+		}
+	}
+}
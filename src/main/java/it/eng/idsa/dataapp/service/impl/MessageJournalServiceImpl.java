@@ -0,0 +1,264 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import it.eng.idsa.dataapp.domain.MessageJournalEntry;
+import it.eng.idsa.dataapp.domain.MessageJournalPayload;
+import it.eng.idsa.dataapp.repository.MessageJournalRepository;
+import it.eng.idsa.dataapp.service.MessageJournalService;
+
+/**
+ * Journal writer, collects received messages in bounded queue and saves them in batches,</br>
+ * one transaction per batch, from single background thread</br>
+ * Queue is bounded both by number of messages and by their size, long payloads are truncated before they are queued,
+ * so large artifacts are never held in memory by the journal
+ *
+ */
+@Service
+@ConditionalOnProperty(
+		value="application.messageJournal.enabled",
+		havingValue = "true",
+		matchIfMissing = true)
+public class MessageJournalServiceImpl implements MessageJournalService {
+	
+	private static final Logger logger = LogManager.getLogger(MessageJournalServiceImpl.class);
+	
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	
+	private static final Instant MIN_INSTANT = Instant.EPOCH;
+	private static final Instant MAX_INSTANT = Instant.parse("9999-12-31T23:59:59Z");
+	
+	@Autowired
+	private MessageJournalRepository messageJournalRepository;
+	
+	/**
+	 * Should match hibernate.jdbc.batch_size
+	 */
+	@Value("${application.messageJournal.batchSize:50}")
+	private int batchSize = 50;
+	
+	@Value("${application.messageJournal.flushIntervalMillis:1000}")
+	private long flushIntervalMillis = 1000;
+	
+	@Value("${application.messageJournal.queueCapacity:10000}")
+	private int queueCapacity = 10000;
+	
+	/**
+	 * Size of queued headers and payloads, counted in characters
+	 */
+	@Value("${application.messageJournal.queueCapacityBytes:67108864}")
+	private long queueCapacityBytes = 67108864;
+	
+	/**
+	 * Negative value keeps whole payload
+	 */
+	@Value("${application.messageJournal.maxPayloadLength:65536}")
+	private int maxPayloadLength = 65536;
+	
+	private BlockingQueue<MessageJournalEntry> queue;
+	
+	private final AtomicLong queuedBytes = new AtomicLong();
+	
+	private ScheduledExecutorService flusher;
+	
+	private final AtomicLong dropped = new AtomicLong();
+	
+	@PostConstruct
+	public void init() {
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "message-journal-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(flushIntervalMillis * 2, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flushQuietly();
+	}
+
+	@Override
+	public boolean append(String contentType, String header, String payload) {
+		MessageJournalEntry entry = new MessageJournalEntry();
+		entry.setReceivedAt(Instant.now());
+		entry.setContentType(contentType);
+		entry.setHeader(header);
+		readHeaderFields(header, entry);
+		if (payload != null) {
+			entry.setPayloadLength(payload.length());
+			if (maxPayloadLength >= 0 && payload.length() > maxPayloadLength) {
+				entry.setPayload(new MessageJournalPayload(payload.substring(0, maxPayloadLength)));
+				entry.setPayloadTruncated(true);
+			} else {
+				entry.setPayload(new MessageJournalPayload(payload));
+			}
+		}
+		long size = sizeOf(entry);
+		if (queuedBytes.addAndGet(size) > queueCapacityBytes) {
+			queuedBytes.addAndGet(-size);
+			return drop();
+		}
+		if (!queue.offer(entry)) {
+			queuedBytes.addAndGet(-size);
+			return drop();
+		}
+		if (queue.size() >= batchSize && !flusher.isShutdown()) {
+			flusher.execute(this::flushQuietly);
+		}
+		return true;
+	}
+
+	private boolean drop() {
+		if (dropped.incrementAndGet() % 100 == 1) {
+			logger.warn("Message journal queue is full, {} messages dropped so far", dropped.get());
+		}
+		return false;
+	}
+	
+	private static long sizeOf(MessageJournalEntry entry) {
+		long size = entry.getHeader() != null ? entry.getHeader().length() : 0;
+		if (entry.getPayload() != null && entry.getPayload().getContent() != null) {
+			size += entry.getPayload().getContent().length();
+		}
+		return size;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Page<MessageJournalEntry> getEntries(int page, int size, Instant from, Instant to) {
+		return messageJournalRepository.findByReceivedAtBetween(from != null ? from : MIN_INSTANT,
+				to != null ? to : MAX_INSTANT, PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "receivedAt")));
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public Page<MessageJournalEntry> getEntriesByCorrelationMessage(String correlationMessage, int page, int size) {
+		return messageJournalRepository.findByCorrelationMessage(correlationMessage,
+				PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "receivedAt")));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Optional<String> getPayload(Long entryId) {
+		return messageJournalRepository.findById(entryId)
+				.map(MessageJournalEntry::getPayload)
+				.map(MessageJournalPayload::getContent);
+	}
+
+	/**
+	 * saveAll runs in its own transaction, so each batch is committed at once
+	 */
+	@Override
+	public synchronized int flush() {
+		int written = 0;
+		List<MessageJournalEntry> batch = new ArrayList<>(batchSize);
+		while (queue.drainTo(batch, batchSize) > 0) {
+			queuedBytes.addAndGet(-batch.stream().mapToLong(MessageJournalServiceImpl::sizeOf).sum());
+			messageJournalRepository.saveAll(batch);
+			written += batch.size();
+			batch.clear();
+		}
+		if (written > 0) {
+			logger.debug("{} messages written to journal", written);
+		}
+		return written;
+	}
+	
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			logger.error("Could not write messages to journal", e);
+		}
+	}
+	
+	/**
+	 * Reads message id, type and correlation message from top level of header, without building object tree
+	 */
+	static void readHeaderFields(String header, MessageJournalEntry entry) {
+		if (header == null || header.isEmpty()) {
+			return;
+		}
+		try (JsonParser parser = JSON_FACTORY.createParser(header)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("@id".equals(field) && value == JsonToken.VALUE_STRING) {
+					entry.setMessageId(parser.getText());
+				} else if ("@type".equals(field) && value == JsonToken.VALUE_STRING) {
+					entry.setMessageType(parser.getText());
+				} else if (field.endsWith("correlationMessage")) {
+					entry.setCorrelationMessage(readId(parser, value));
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("Could not read header fields for journal: {}", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Reference is either plain string or object with @id
+	 */
+	private static String readId(JsonParser parser, JsonToken value) throws IOException {
+		if (value == JsonToken.VALUE_STRING) {
+			return parser.getText();
+		}
+		String id = null;
+		if (value == JsonToken.START_OBJECT) {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("@id".equals(field)) {
+					id = parser.getText();
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} else {
+			parser.skipChildren();
+		}
+		return id;
+	}
+
+}
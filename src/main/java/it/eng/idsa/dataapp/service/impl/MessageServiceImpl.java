@@ -2,13 +2,23 @@ package it.eng.idsa.dataapp.service.impl;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import it.eng.idsa.dataapp.domain.MessageIDS;
+import it.eng.idsa.dataapp.service.MessageJournalService;
 import it.eng.idsa.dataapp.service.MessageService;
 
 /**
@@ -17,26 +27,94 @@ import it.eng.idsa.dataapp.service.MessageService;
  *
  */
 
+/**
+ * Keeps last received messages in bounded buffer, oldest message is evicted when buffer is full</br>
+ * Payloads longer than configured length are truncated, so memory usage does not depend on artifact size</br>
+ * Complete messages are written to persistent journal, when enabled
+ */
 @Service
-@Transactional
 public class MessageServiceImpl implements MessageService {
 	
-	private List<MessageIDS> messages = new ArrayList<>();
+	private static final Logger logger = LogManager.getLogger(MessageService.class);
+	
+	@Value("${application.messageStore.capacity:1000}")
+	private int capacity = 1000;
+	
+	/**
+	 * Negative value keeps whole payload
+	 */
+	@Value("${application.messageStore.maxPayloadLength:4096}")
+	private int maxPayloadLength = 4096;
+	
+	@Autowired(required = false)
+	private MessageJournalService messageJournalService;
+	
+	private final Deque<MessageIDS> messages = new ArrayDeque<>();
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private final AtomicLong evicted = new AtomicLong();
 
 	@Override
 	public List<MessageIDS> getMessages() {
-		return messages;
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(messages);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public List<MessageIDS> getMessages(int page, int size, LocalDateTime from, LocalDateTime to) {
+		lock.readLock().lock();
+		try {
+			return messages.stream()
+					.filter(m -> from == null || !m.getReceivedAt().isBefore(from))
+					.filter(m -> to == null || m.getReceivedAt().isBefore(to))
+					.skip((long) page * size)
+					.limit(size)
+					.collect(Collectors.toList());
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public void setMessage(String contentType, String header, String payload) {
+		if (messageJournalService != null) {
+			messageJournalService.append(contentType, header, payload);
+		}
+		LocalDateTime now = LocalDateTime.now();
 		MessageIDS messageIDS = new MessageIDS();
-		messageIDS.setDate(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
-		messageIDS.setTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_TIME));
+		messageIDS.setReceivedAt(now);
+		messageIDS.setDate(now.format(DateTimeFormatter.ISO_LOCAL_DATE));
+		messageIDS.setTime(now.format(DateTimeFormatter.ISO_LOCAL_TIME));
 		messageIDS.setContentType(contentType);
 		messageIDS.setHeader(header);
-		messageIDS.setPayload(payload);
-		messages.add(messageIDS);
+		if (payload != null) {
+			messageIDS.setPayloadLength(payload.length());
+			if (maxPayloadLength >= 0 && payload.length() > maxPayloadLength) {
+				messageIDS.setPayload(payload.substring(0, maxPayloadLength));
+				messageIDS.setPayloadTruncated(true);
+			} else {
+				messageIDS.setPayload(payload);
+			}
+		}
+		lock.writeLock().lock();
+		try {
+			while (messages.size() >= capacity && !messages.isEmpty()) {
+				messages.removeFirst();
+				if (evicted.incrementAndGet() % capacity == 0) {
+					logger.info("{} messages evicted from message store", evicted.get());
+				}
+			}
+			if (capacity > 0) {
+				messages.addLast(messageIDS);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 }
@@ -0,0 +1,131 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.eng.idsa.dataapp.service.MetricsService;
+
+@Service
+public class MetricsServiceImpl implements MetricsService {
+
+	private static final String NONE = "none";
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Override
+	public Timer.Sample startTimer() {
+		return Timer.start(meterRegistry);
+	}
+
+	@Override
+	public void recordMessage(Timer.Sample sample, String endpoint, Message request, Message rejection) {
+		String messageType = MetricsService.messageType(request);
+		String outcome = OUTCOME_SUCCESS;
+		String rejectionReason = NONE;
+		if (rejection instanceof RejectionMessage) {
+			outcome = OUTCOME_REJECTED;
+			rejectionReason = rejectionReason((RejectionMessage) rejection);
+			Counter.builder("dataapp.message.rejections")
+					.description("Rejection messages sent as response")
+					.tag("endpoint", endpoint)
+					.tag("messageType", messageType)
+					.tag("rejectionReason", rejectionReason)
+					.register(meterRegistry)
+					.increment();
+		}
+		stopMessageTimer(sample, endpoint, messageType, outcome, rejectionReason);
+	}
+
+	@Override
+	public void recordMessage(Timer.Sample sample, String endpoint, String messageType, String outcome) {
+		stopMessageTimer(sample, endpoint, messageType != null ? messageType : "unknown", outcome, NONE);
+	}
+
+	private void stopMessageTimer(Timer.Sample sample, String endpoint, String messageType, String outcome, String rejectionReason) {
+		sample.stop(Timer.builder("dataapp.message.handling")
+				.description("Time from receiving message until response is created")
+				.tag("endpoint", endpoint)
+				.tag("messageType", messageType)
+				.tag("outcome", outcome)
+				.tag("rejectionReason", rejectionReason)
+				.register(meterRegistry));
+	}
+
+	@Override
+	public void recordArtifactRead(Timer.Sample sample, String mode, boolean success, long bytes) {
+		String outcome = success ? OUTCOME_SUCCESS : OUTCOME_ERROR;
+		sample.stop(Timer.builder("dataapp.artifact.read")
+				.description("Time to read and encode artifact from data lake")
+				.tag("mode", mode)
+				.tag("outcome", outcome)
+				.register(meterRegistry));
+		if (success) {
+			DistributionSummary.builder("dataapp.artifact.read.bytes")
+					.baseUnit("bytes")
+					.tag("mode", mode)
+					.register(meterRegistry)
+					.record(bytes);
+		}
+	}
+
+	@Override
+	public void recordArtifactWrite(Timer.Sample sample, boolean success, long bytes) {
+		sample.stop(Timer.builder("dataapp.artifact.write")
+				.description("Time to decode and write received artifact")
+				.tag("outcome", success ? OUTCOME_SUCCESS : OUTCOME_ERROR)
+				.register(meterRegistry));
+		if (success) {
+			DistributionSummary.builder("dataapp.artifact.write.bytes")
+					.baseUnit("bytes")
+					.register(meterRegistry)
+					.record(bytes);
+		}
+	}
+
+	@Override
+	public void recordUpload(Timer.Sample sample, String outcome, int retries) {
+		sample.stop(Timer.builder("dataapp.ckan.upload")
+				.description("Time of upload to CKAN, including retries")
+				.tag("outcome", outcome)
+				.register(meterRegistry));
+		if (retries > 0) {
+			Counter.builder("dataapp.ckan.upload.retries")
+					.tag("outcome", outcome)
+					.register(meterRegistry)
+					.increment(retries);
+		}
+	}
+
+	@Override
+	public void recordFilterBlocks(long scanned, long pruned) {
+		Counter.builder("dataapp.filter.blocks")
+				.description("Blocks of columnar sidecars considered by filters")
+				.tag("result", "scanned")
+				.register(meterRegistry)
+				.increment(scanned);
+		Counter.builder("dataapp.filter.blocks")
+				.description("Blocks of columnar sidecars considered by filters")
+				.tag("result", "pruned")
+				.register(meterRegistry)
+				.increment(pruned);
+	}
+
+	/**
+	 * Last segment of reason URI, e.g. NOT_FOUND
+	 */
+	static String rejectionReason(RejectionMessage rejectionMessage) {
+		if (rejectionMessage.getRejectionReason() == null) {
+			return NONE;
+		}
+		String reason = rejectionMessage.getRejectionReason().toString();
+		int separator = Math.max(reason.lastIndexOf('/'), reason.lastIndexOf(':'));
+		return reason.substring(separator + 1);
+	}
+}
@@ -6,6 +6,7 @@ import static de.fraunhofer.iais.eis.util.Util.asList;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 
@@ -19,19 +20,22 @@ import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
 import de.fraunhofer.iais.eis.ArtifactRequestMessage;
 import de.fraunhofer.iais.eis.ArtifactResponseMessageBuilder;
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
+import de.fraunhofer.iais.eis.DescriptionResponseMessageBuilder;
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.iais.eis.NotificationMessageBuilder;
 import de.fraunhofer.iais.eis.RejectionMessageBuilder;
@@ -40,9 +44,10 @@ import de.fraunhofer.iais.eis.ResultMessageBuilder;
 import de.fraunhofer.iais.eis.Token;
 import de.fraunhofer.iais.eis.TokenBuilder;
 import de.fraunhofer.iais.eis.TokenFormat;
-import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.SelectionReport;
 import it.eng.idsa.dataapp.service.MultiPartMessageService;
-import it.eng.idsa.multipart.domain.MultipartMessage;
+import it.eng.idsa.dataapp.service.SerializerService;
 import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
 import it.eng.idsa.multipart.util.DateUtil;
 
@@ -57,47 +62,54 @@ import it.eng.idsa.multipart.util.DateUtil;
  * Service Implementation for managing MultiPartMessage.
  */
 @Service
-@Transactional
 public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 
 	private static final Logger logger = LogManager.getLogger(MultiPartMessageServiceImpl.class);
 	
+	private static final URI AUTO_GENERATED = URI.create("auto-generated");
+	
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final String SECURITY_TOKEN = "securityToken";
+	private static final String SECURITY_TOKEN_FIELD = "\"" + SECURITY_TOKEN + "\"";
+	private static final String SELECTION_REPORT = "selectionReport";
+	private static final String PAYLOAD_ENCODING = "payloadEncoding";
+	
+	private final Gson gson = new GsonBuilder().create();
+	
+	private volatile SerializedToken lastSerializedToken;
+	
 	@Value("${information.model.version}")
 	private String informationModelVersion;
+	
+	@Autowired
+	private SerializerService serializerService;
+
+	@Override
+	public ParsedMultipartMessage parseMultipartMessage(String body) {
+		return new ParsedMultipartMessage(body);
+	}
 
 	@Override
 	public String getHeader(String body) {
-		MultipartMessage deserializedMultipartMessage = MultipartMessageProcessor.parseMultipartMessage(body);
-		return deserializedMultipartMessage.getHeaderContentString();
+		return parseMultipartMessage(body).getHeader();
 	}
 
 	@Override
 	public String getPayload(String body) {
-		MultipartMessage deserializedMultipartMessage = MultipartMessageProcessor.parseMultipartMessage(body);
-		return deserializedMultipartMessage.getPayloadContent();
+		return parseMultipartMessage(body).getPayload();
 	}
 
 	@Override
 	public Message getMessage(String body) {
-		MultipartMessage deserializedMultipartMessage = MultipartMessageProcessor.parseMultipartMessage(body);
-		return deserializedMultipartMessage.getHeaderContent();
+		return parseMultipartMessage(body).getMessage();
 	}
 
 	@Override
 	public String addToken(Message message, String token) {
 		String output = null;
 		try {
-			String msgSerialized = serializeMessage(message);
-			Token tokenJsonValue = new TokenBuilder()
-					._tokenFormat_(TokenFormat.JWT)
-					._tokenValue_(token).build();
-			String tokenValueSerialized=serializeMessage(tokenJsonValue);
-			JSONParser parser = new JSONParser();
-			JSONObject jsonObject = (JSONObject) parser.parse(msgSerialized);
-			JSONObject jsonObjectToken = (JSONObject) parser.parse(tokenValueSerialized);
-			jsonObject.put("securityToken",jsonObjectToken);
-			output=serializeMessage(jsonObject);
-		} catch (ParseException | IOException e) {
+			output = patchSecurityToken(serializeMessage(message), serializeToken(token));
+		} catch (IOException e) {
 			logger.error("Error while parsing token - add", e);
 		}
 		return output;
@@ -107,17 +119,148 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 	public String removeToken(Message message) {
 		String output = null;
 		try {
-			String msgSerialized = serializeMessage(message);
-			JSONParser parser = new JSONParser();
-			JSONObject jsonObject = (JSONObject) parser.parse(msgSerialized);
-			jsonObject.remove("securityToken");
-			output=serializeMessage(jsonObject);
-		} catch (ParseException | IOException e) {
+			output = patchSecurityToken(serializeMessage(message), null);
+		} catch (IOException e) {
 			logger.error("Error while parsing token - remove", e);
 		}
 		return output;
 	}
 
+	/**
+	 * Replace or remove securityToken of serialized message</br>
+	 * Message without token is patched in place, otherwise it is copied token by token with Jackson streaming API, 
+	 * skipping existing token, so message is never deserialized
+	 * @param messageJson serialized message
+	 * @param tokenJson serialized token, or null to remove token
+	 * @return
+	 * @throws IOException
+	 */
+	private String patchSecurityToken(String messageJson, String tokenJson) throws IOException {
+		if (messageJson.indexOf(SECURITY_TOKEN_FIELD) == -1) {
+			return tokenJson != null ? insertField(messageJson, SECURITY_TOKEN, tokenJson) : messageJson;
+		}
+		StringWriter writer = new StringWriter(messageJson.length() + (tokenJson != null ? tokenJson.length() : 0));
+		try (JsonParser parser = JSON_FACTORY.createParser(messageJson);
+				JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Serialized message is not JSON object");
+			}
+			generator.writeStartObject();
+			if (tokenJson != null) {
+				generator.writeFieldName(SECURITY_TOKEN);
+				generator.writeRawValue(tokenJson);
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				if (SECURITY_TOKEN.equals(fieldName)) {
+					parser.skipChildren();
+				} else {
+					generator.writeFieldName(fieldName);
+					generator.copyCurrentStructure(parser);
+				}
+			}
+			generator.writeEndObject();
+		}
+		return writer.toString();
+	}
+	
+	/**
+	 * Insert field at the beginning of serialized JSON object, which is not parsed
+	 * @param valueJson serialized value of the field
+	 */
+	private static String insertField(String json, String fieldName, String valueJson) throws IOException {
+		int objectStart = json.indexOf('{');
+		if (objectStart == -1) {
+			throw new IOException("Serialized message is not JSON object");
+		}
+		boolean emptyObject = json.substring(objectStart + 1).trim().startsWith("}");
+		return new StringBuilder(json.length() + fieldName.length() + valueJson.length() + 4)
+				.append(json, 0, objectStart + 1)
+				.append('"').append(fieldName).append("\":").append(valueJson)
+				.append(emptyObject ? "" : ",")
+				.append(json, objectStart + 1, json.length())
+				.toString();
+	}
+	
+	@Override
+	public String addSelectionReport(String header, SelectionReport report) {
+		try {
+			return insertField(header, SELECTION_REPORT, gson.toJson(report));
+		} catch (IOException e) {
+			logger.error("Error while adding selection report to header", e);
+			return header;
+		}
+	}
+	
+	@Override
+	public SelectionReport getSelectionReport(String header) {
+		String report = copyField(header, SELECTION_REPORT, JsonToken.START_OBJECT);
+		return report != null ? gson.fromJson(report, SelectionReport.class) : null;
+	}
+	
+	@Override
+	public String addPayloadEncoding(String header, String encoding) {
+		try {
+			return insertField(header, PAYLOAD_ENCODING, gson.toJson(encoding));
+		} catch (IOException e) {
+			logger.error("Error while adding payload encoding to header", e);
+			return header;
+		}
+	}
+	
+	@Override
+	public String getPayloadEncoding(String header) {
+		String encoding = copyField(header, PAYLOAD_ENCODING, JsonToken.VALUE_STRING);
+		return encoding != null ? gson.fromJson(encoding, String.class) : null;
+	}
+	
+	/**
+	 * Only value of top level field is copied out of the serialized header, rest of it is skipped
+	 * @param valueToken expected type of the value
+	 * @return serialized value, null if header has no such field
+	 */
+	private String copyField(String header, String fieldName, JsonToken valueToken) {
+		if (header == null) {
+			return null;
+		}
+		try (JsonParser parser = JSON_FACTORY.createParser(header)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (fieldName.equals(name) && value == valueToken) {
+					StringWriter copy = new StringWriter();
+					try (JsonGenerator generator = JSON_FACTORY.createGenerator(copy)) {
+						generator.copyCurrentStructure(parser);
+					}
+					return copy.toString();
+				}
+				parser.skipChildren();
+			}
+		} catch (IOException e) {
+			logger.error("Error while parsing field " + fieldName + " of header", e);
+		}
+		return null;
+	}
+	
+	/**
+	 * Same token is used for many messages, so serialized form of the last one is reused
+	 */
+	private String serializeToken(String token) throws IOException {
+		SerializedToken cached = lastSerializedToken;
+		if (cached != null && cached.tokenValue.equals(token)) {
+			return cached.json;
+		}
+		Token tokenJsonValue = new TokenBuilder()
+				._tokenFormat_(TokenFormat.JWT)
+				._tokenValue_(token).build();
+		String json = serializeMessage(tokenJsonValue);
+		lastSerializedToken = new SerializedToken(token, json);
+		return json;
+	}
 
     @Override
     public String getResponseHeader(String header) {
@@ -137,6 +280,8 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
                 header = new NotificationMessageBuilder().build();
             if (header instanceof ArtifactRequestMessage){
                 output = serializeMessage(createArtifactResponseMessage((ArtifactRequestMessage) header));
+            } else if (header instanceof DescriptionRequestMessage) {
+                output = serializeMessage(createDescriptionResponseMessage(header));
             } else {
                 output = serializeMessage(createResultMessage(header));
             }
@@ -152,7 +297,7 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 	public Message getMessage(Object header) {
 		Message message = null;
 		try {
-			message = new Serializer().deserialize(String.valueOf(header), Message.class);
+			message = serializerService.deserialize(String.valueOf(header), Message.class);
 		} catch (IOException e) {
 			logger.error(e);
 		}
@@ -165,7 +310,7 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 	public Message getIDSMessage(String header) {
 		Message message = null;
 		try {
-			message = new Serializer().deserialize(String.valueOf(header), Message.class);
+			message = serializerService.deserialize(String.valueOf(header), Message.class);
 		} catch (IOException e) {
 			logger.error(e);
 		}
@@ -241,12 +386,51 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 		return multipartEntityBuilder.build();
 	}
 
+	@Override
+	public HttpEntity createBinaryMultipartMessage(String header, ContentBody payload) {
+		MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create()
+				.setMode(HttpMultipartMode.STRICT)
+				.setMimeSubtype("mixed");
+		FormBodyPart bodyHeaderPart = FormBodyPartBuilder.create("header", new StringBody(header, ContentType.APPLICATION_JSON)).build();
+		multipartEntityBuilder.addPart(bodyHeaderPart);
+		if (payload != null) {
+			FormBodyPart bodyPayloadPart = FormBodyPartBuilder.create("payload", payload).build();
+			if (payload.getContentLength() >= 0) {
+				// lets receiver stream payload without searching for boundary
+				bodyPayloadPart.addField("Content-Length", String.valueOf(payload.getContentLength()));
+			}
+			multipartEntityBuilder.addPart(bodyPayloadPart);
+		}
+		return multipartEntityBuilder.build();
+	}
+
 	@Override
 	public String getToken(String message) {
-		JsonObject messageObject = new JsonParser().parse(message).getAsJsonObject();
-		JsonObject authorizationTokenObject = messageObject.get("securityToken").getAsJsonObject();
-		String token = authorizationTokenObject.get("tokenValue").getAsString();
-		return token;
+		// streams through message until tokenValue is found, without building the tree
+		try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (SECURITY_TOKEN.equals(fieldName) && value == JsonToken.START_OBJECT) {
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						String tokenField = parser.getCurrentName();
+						parser.nextToken();
+						if ("tokenValue".equals(tokenField)) {
+							return parser.getValueAsString();
+						}
+						parser.skipChildren();
+					}
+					return null;
+				}
+				parser.skipChildren();
+			}
+		} catch (IOException e) {
+			logger.error("Error while parsing token - get", e);
+		}
+		return null;
 	}
 
 	public Message createResultMessage(Message header) {
@@ -269,6 +453,15 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 				.build();
 	}
 
+	public Message createDescriptionResponseMessage(Message header) {
+		return new DescriptionResponseMessageBuilder()
+				._issuerConnector_(whoIAm())
+				._issued_(DateUtil.now())
+				._modelVersion_(informationModelVersion)
+				._recipientConnector_(asList(header.getIssuerConnector()))
+				._correlationMessage_(header.getId())
+				.build();
+	}
 
 	public Message createRejectionMessage(Message header) {
 		return new RejectionMessageBuilder()
@@ -293,16 +486,16 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 	}
 
 	private URI whoIAm() {
-		return URI.create("auto-generated");
+		return AUTO_GENERATED;
 	}
 
 	public Message createRejectionMessageLocalIssues(Message header) {
 		return new RejectionMessageBuilder()
-				._issuerConnector_(URI.create("auto-generated"))
+				._issuerConnector_(AUTO_GENERATED)
 				._issued_(DateUtil.now())
 				._modelVersion_(informationModelVersion)
 				//._recipientConnectors_(header!=null?asList(header.getIssuerConnector()):asList(URI.create("auto-generated")))
-				._correlationMessage_(URI.create("auto-generated"))
+				._correlationMessage_(AUTO_GENERATED)
 				._rejectionReason_(RejectionReason.MALFORMED_MESSAGE)
 				.build();
 	}
@@ -330,8 +523,41 @@ public class MultiPartMessageServiceImpl implements MultiPartMessageService {
 				.build();
 	}
 
+	public Message createRejectionTemporarilyNotAvailable(Message header) {
+		return new RejectionMessageBuilder()
+				._issuerConnector_(whoIAm())
+				._issued_(DateUtil.now())
+				._modelVersion_(informationModelVersion)
+				._recipientConnector_(header!=null?asList(header.getIssuerConnector()):asList(URI.create("auto-generated")))
+				._correlationMessage_(header!=null?header.getId():URI.create(""))
+				._rejectionReason_(RejectionReason.TEMPORARILY_NOT_AVAILABLE)
+				.build();
+	}
+
+	public Message createRejectionInternalError(Message header) {
+		return new RejectionMessageBuilder()
+				._issuerConnector_(whoIAm())
+				._issued_(DateUtil.now())
+				._modelVersion_(informationModelVersion)
+				._recipientConnector_(header!=null?asList(header.getIssuerConnector()):asList(URI.create("auto-generated")))
+				._correlationMessage_(header!=null?header.getId():URI.create(""))
+				._rejectionReason_(RejectionReason.INTERNAL_RECIPIENT_ERROR)
+				.build();
+	}
+
     public static String serializeMessage(Object message) throws IOException {
         return MultipartMessageProcessor.serializeToPlainJson(message);
     }
+	
+	private static class SerializedToken {
+		
+		private final String tokenValue;
+		private final String json;
+		
+		SerializedToken(String tokenValue, String json) {
+			this.tokenValue = tokenValue;
+			this.json = json;
+		}
+	}
 
 }
@@ -1,13 +1,33 @@
 package it.eng.idsa.dataapp.service.impl;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.input.CharSequenceInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import io.micrometer.core.instrument.Timer;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactLockService;
+import it.eng.idsa.dataapp.service.ArtifactLockService.ArtifactLock;
+import it.eng.idsa.dataapp.service.MetricsService;
 import it.eng.idsa.dataapp.service.RecreateFileService;
 
 /**
@@ -21,48 +41,137 @@ import it.eng.idsa.dataapp.service.RecreateFileService;
  * Service Implementation for managing RecreateFileService.
  */
 @Service
-@Transactional
 public class RecreateFileServiceImpl implements RecreateFileService {
 	
+	private static final Logger logger = LogManager.getLogger(RecreateFileService.class);
+	
 	private static final String FILE_PATH = "src\\main\\resources\\received-fiels\\";
 	private static final String FILE_NAME = "Engineering-COPY.pdf";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	
+	@Autowired
+	private ArtifactLockService artifactLockService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Value("${application.recreateFile.bufferSize:65536}")
+	private int bufferSize = 65536;
 	
 	@Override
 	public void recreateTheFile(String payload) throws IOException {
 		File targetFile = new File(FILE_PATH + FILE_NAME);
-		saveToFile(payload, targetFile);
+		recreateTheFile(payload, targetFile);
 	}
 
 	@Override
 	public void recreateTheFile(String payload, File targetFile) throws IOException {
-		saveToFileNoSpaceHandling(payload, targetFile);
+		recreateTheFile(payload, targetFile, false);
 	}
 	
-	private void saveToFile(String payload, File targetFile) throws IOException {
-		String payloadCleaned = payload.replaceAll(System.lineSeparator(), "");
-		FileOutputStream fos = null;
-		try {
-			fos = new FileOutputStream(targetFile);
-			byte[] decoder = Base64.getDecoder().decode(payloadCleaned);
-			fos.write(decoder);
-		} finally {
-			if(fos != null) {
-				fos.close();
+	@Override
+	public void recreateTheFile(InputStream encodedPayload, File targetFile) throws IOException {
+		recreateTheFile(encodedPayload, targetFile, false);
+	}
+	
+	@Override
+	public void recreateTheFile(String payload, File targetFile, boolean compressed) throws IOException {
+		// reads characters of the payload in place, no copy of whole payload is made
+		try (InputStream encodedPayload = new CharSequenceInputStream(payload, StandardCharsets.US_ASCII, bufferSize)) {
+			recreateTheFile(encodedPayload, targetFile, compressed);
+		}
+	}
+	
+	@Override
+	public void recreateTheFile(InputStream encodedPayload, File targetFile, boolean compressed) throws IOException {
+		// only line separators are skipped, any other character outside of Base64 alphabet fails decoding
+		try (InputStream decoded = Base64.getDecoder().wrap(new LineSeparatorSkippingInputStream(encodedPayload));
+				InputStream content = compressed ? new GZIPInputStream(decoded, bufferSize) : decoded) {
+			writeAtomically(content, targetFile.toPath());
+		}
+	}
+	
+	@Override
+	public void recreateTheFileFromBinary(InputStream content, File targetFile) throws IOException {
+		writeAtomically(content, targetFile.toPath());
+	}
+	
+	/**
+	 * Writes content to temporary file in target directory and renames it when complete</br>
+	 * Partially written files never appear under target name
+	 */
+	private void writeAtomically(InputStream content, Path target) throws IOException {
+		Path tempFile = target.resolveSibling("." + target.getFileName().toString() + "." + UUID.randomUUID() + TEMP_FILE_SUFFIX);
+		Timer.Sample sample = metricsService.startTimer();
+		long written = 0;
+		boolean success = false;
+		try (ArtifactLock lock = artifactLockService.lockForWrite(target)) {
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+				byte[] buffer = new byte[bufferSize];
+				ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+				int read;
+				while ((read = content.read(buffer)) != -1) {
+					byteBuffer.limit(read).position(0);
+					while (byteBuffer.hasRemaining()) {
+						written += channel.write(byteBuffer);
+					}
+					byteBuffer.clear();
+				}
 			}
+			move(tempFile, target);
+			logger.info("File {} saved, {} bytes", target, written);
+			success = true;
+		} catch (ReadFileLockedException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			Files.deleteIfExists(tempFile);
+			metricsService.recordArtifactWrite(sample, success, written);
 		}
 	}
 	
-	private void saveToFileNoSpaceHandling(String payload, File targetFile) throws IOException {
-//		String payloadCleaned = payload.replaceAll(System.lineSeparator(), "");
-		FileOutputStream fos = null;
+	private void move(Path source, Path target) throws IOException {
 		try {
-			fos = new FileOutputStream(targetFile);
-			byte[] decoder = Base64.getDecoder().decode(payload);
-			fos.write(decoder);
-		} finally {
-			if(fos != null) {
-				fos.close();
-			}
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Drops CR and LF bytes, e.g. of payload encoded with line breaks
+	 */
+	private static class LineSeparatorSkippingInputStream extends FilterInputStream {
+		
+		LineSeparatorSkippingInputStream(InputStream in) {
+			super(in);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b;
+			do {
+				b = in.read();
+			} while (b == '\r' || b == '\n');
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read;
+			int kept;
+			do {
+				read = in.read(b, off, len);
+				if (read <= 0) {
+					return read;
+				}
+				kept = 0;
+				for (int i = off; i < off + read; i++) {
+					if (b[i] != '\r' && b[i] != '\n') {
+						b[off + kept++] = b[i];
+					}
+				}
+			} while (kept == 0);
+			return kept;
 		}
 	}
 }
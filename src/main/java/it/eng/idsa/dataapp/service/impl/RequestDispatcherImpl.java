@@ -0,0 +1,213 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.service.RequestDispatcher;
+
+/**
+ * Bounded thread pool dispatcher</br>
+ * When queue is full request is answered with overload response, calling thread (WebSocket listener) never runs handlers,
+ * so receiving of other messages is not stalled. Failed request is answered with failure response.</br>
+ * With ordered delivery, responses finished out of order wait until all earlier responses are sent,
+ * responses are sent by one thread at a time, outside of the lock guarding pending responses
+ *
+ */
+@Service
+public class RequestDispatcherImpl implements RequestDispatcher {
+	
+	private static final Logger logger = LogManager.getLogger(RequestDispatcherImpl.class);
+	
+	/**
+	 * 0 means number of available processors
+	 */
+	@Value("${application.dispatcher.workers:0}")
+	private int workers = 0;
+	
+	@Value("${application.dispatcher.queueCapacity:100}")
+	private int queueCapacity = 100;
+	
+	/**
+	 * Needed only for consumers with more requests in flight on one connection, transport does not correlate
+	 * responses with requests. Small response then waits behind large one requested earlier (head-of-line blocking).
+	 * Consumer of this data app sends one exchange at a time, so it does not need it
+	 */
+	@Value("${application.dispatcher.orderedDelivery:false}")
+	private boolean orderedDelivery = false;
+	
+	private ThreadPoolExecutor executor;
+	
+	private final AtomicLong sequence = new AtomicLong();
+	
+	private final AtomicLong rejected = new AtomicLong();
+	
+	private final Map<Long, PendingResponse> pending = new HashMap<>();
+	
+	private long nextToDeliver = 0;
+	
+	/**
+	 * True while some thread sends ready responses, guarded by pending
+	 */
+	private boolean delivering = false;
+	
+	@PostConstruct
+	public void init() {
+		int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				r -> {
+					Thread thread = new Thread(r, "request-dispatcher-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		logger.info("Request dispatcher started with {} workers, ordered delivery {}", poolSize, orderedDelivery);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String dispatch(Supplier<String> handler, Supplier<String> overloaded, Supplier<String> failed, Consumer<String> responder) {
+		long seq = sequence.getAndIncrement();
+		String requestId = "ws-" + seq;
+		try {
+			executor.execute(() -> handle(seq, requestId, handler, failed, responder));
+		} catch (RejectedExecutionException e) {
+			if (rejected.incrementAndGet() % 100 == 1) {
+				logger.warn("Dispatcher queue is full, {} requests rejected so far", rejected.get());
+			}
+			// overload response takes place of the request in sequence, so later responses are not blocked
+			String response = null;
+			try {
+				response = overloaded.get();
+			} catch (RuntimeException ex) {
+				logger.error("Could not create response to rejected request " + requestId, ex);
+			}
+			deliver(seq, response, responder);
+		}
+		return requestId;
+	}
+	
+	private void handle(long seq, String requestId, Supplier<String> handler, Supplier<String> failed, Consumer<String> responder) {
+		ThreadContext.put(REQUEST_ID, requestId);
+		String response = null;
+		try {
+			long start = System.nanoTime();
+			response = handler.get();
+			logger.debug("Request {} handled in {} ms", requestId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (RuntimeException e) {
+			// consumer still gets a response, so it does not take response of its next request
+			logger.error("Request " + requestId + " failed, answering with failure response", e);
+			try {
+				response = failed.get();
+			} catch (RuntimeException ex) {
+				logger.error("Could not create response to failed request " + requestId, ex);
+			}
+		} finally {
+			try {
+				deliver(seq, response, responder);
+			} finally {
+				ThreadContext.remove(REQUEST_ID);
+			}
+		}
+	}
+	
+	/**
+	 * Requests without response still take their place in sequence, so they do not block later responses</br>
+	 * Thread which finds no other thread delivering sends all ready responses, including those added while it sends
+	 */
+	private void deliver(long seq, String response, Consumer<String> responder) {
+		if (!orderedDelivery) {
+			send(response, responder);
+			return;
+		}
+		synchronized (pending) {
+			pending.put(seq, new PendingResponse(response, responder));
+			if (delivering) {
+				return;
+			}
+			delivering = true;
+		}
+		boolean done = false;
+		try {
+			while (!done) {
+				List<PendingResponse> ready = new ArrayList<>();
+				synchronized (pending) {
+					PendingResponse next;
+					while ((next = pending.remove(nextToDeliver)) != null) {
+						nextToDeliver++;
+						ready.add(next);
+					}
+					if (ready.isEmpty()) {
+						if (!pending.isEmpty()) {
+							logger.debug("{} responses waiting for response {}", pending.size(), nextToDeliver);
+						}
+						delivering = false;
+						done = true;
+					}
+				}
+				ready.forEach(next -> send(next.response, next.responder));
+			}
+		} finally {
+			if (!done) {
+				synchronized (pending) {
+					delivering = false;
+				}
+			}
+		}
+	}
+	
+	private void send(String response, Consumer<String> responder) {
+		if (response == null) {
+			return;
+		}
+		try {
+			responder.accept(response);
+		} catch (RuntimeException e) {
+			logger.error("Could not send response", e);
+		}
+	}
+	
+	private static class PendingResponse {
+		private final String response;
+		private final Consumer<String> responder;
+		
+		PendingResponse(String response, Consumer<String> responder) {
+			this.response = response;
+			this.responder = responder;
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.io.IOException;
+import java.net.URI;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.NotificationMessageBuilder;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import it.eng.idsa.dataapp.service.SerializerService;
+import it.eng.idsa.multipart.util.DateUtil;
+
+/**
+ * Serializer is not documented as thread safe, so one instance is kept per thread</br>
+ * Request threads are pooled, so instances are created once per worker thread and reused for every message
+ *
+ */
+@Service
+public class SerializerServiceImpl implements SerializerService {
+	
+	private static final Logger logger = LogManager.getLogger(SerializerServiceImpl.class);
+	
+	private final ThreadLocal<Serializer> serializers = ThreadLocal.withInitial(Serializer::new);
+	
+	/**
+	 * Round trip of a message loads information model classes and JSON-LD context on startup, 
+	 * instead of on the first received message
+	 */
+	@PostConstruct
+	public void warmUp() {
+		try {
+			Message message = new NotificationMessageBuilder()
+					._issuerConnector_(URI.create("auto-generated"))
+					._issued_(DateUtil.now())
+					._modelVersion_("4.0.0")
+					.build();
+			deserialize(serialize(message), Message.class);
+		} catch (IOException e) {
+			logger.warn("Could not warm up IDS serializer", e);
+		}
+	}
+
+	@Override
+	public String serialize(Object instance) throws IOException {
+		return serializers.get().serialize(instance);
+	}
+
+	@Override
+	public String serializePlainJson(Object instance) throws IOException {
+		return serializers.get().serializePlainJson(instance);
+	}
+
+	@Override
+	public <T> T deserialize(String serialized, Class<T> valueType) throws IOException {
+		return serializers.get().deserialize(serialized, valueType);
+	}
+}
@@ -0,0 +1,133 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.service.TraceService;
+
+/**
+ * Traces are kept in bounded in-memory history, no collector is needed</br>
+ * Duration of trace includes spans added after it was finished, so slow asynchronous stages are also reported
+ */
+@Service
+public class TraceServiceImpl implements TraceService {
+
+	private static final Logger logger = LogManager.getLogger(TraceServiceImpl.class);
+
+	private static final SpanScope NOOP_SCOPE = () -> { };
+
+	private final ThreadLocal<RequestTrace> currentTrace = new ThreadLocal<>();
+
+	private final Deque<RequestTrace> history = new ArrayDeque<>();
+
+	@Value("${application.tracing.historySize:500}")
+	private int historySize = 500;
+
+	/**
+	 * Finished traces taking at least this long are logged with INFO level, others with DEBUG
+	 */
+	@Value("${application.tracing.slowThresholdMillis:1000}")
+	private long slowThresholdMillis = 1000;
+
+	@Override
+	public RequestTrace start(String traceId, String name, long startNanos) {
+		RequestTrace trace = new RequestTrace(traceId, name, startNanos);
+		attach(trace);
+		return trace;
+	}
+
+	@Override
+	public RequestTrace current() {
+		return currentTrace.get();
+	}
+
+	@Override
+	public SpanScope span(String name) {
+		RequestTrace trace = currentTrace.get();
+		if (trace == null) {
+			return NOOP_SCOPE;
+		}
+		long start = System.nanoTime();
+		return () -> {
+			RequestTrace.Span span = trace.addSpan(name, start, System.nanoTime());
+			if (trace.isFinished()) {
+				// trace summary already logged, so span finishing late is logged on its own
+				logger.info("Span {} of trace {} took {} ms", name, trace.getTraceId(), span.getDurationMillis());
+			} else {
+				logger.debug("Span {} took {} ms", name, span.getDurationMillis());
+			}
+		};
+	}
+
+	@Override
+	public void attach(RequestTrace trace) {
+		if (trace == null) {
+			return;
+		}
+		currentTrace.set(trace);
+		ThreadContext.put(TRACE_ID, trace.getTraceId());
+	}
+
+	@Override
+	public void detach() {
+		currentTrace.remove();
+		ThreadContext.remove(TRACE_ID);
+	}
+
+	@Override
+	public void finish(RequestTrace trace) {
+		trace.finish();
+		long duration = trace.getDurationMillis();
+		if (duration >= slowThresholdMillis) {
+			logger.info("Trace {} finished in {} ms [{}]", trace.getName(), duration, trace.getSpanSummary());
+		} else {
+			logger.debug("Trace {} finished in {} ms [{}]", trace.getName(), duration, trace.getSpanSummary());
+		}
+		synchronized (history) {
+			history.addLast(trace);
+			while (history.size() > historySize) {
+				history.removeFirst();
+			}
+		}
+		if (currentTrace.get() == trace) {
+			detach();
+		}
+	}
+
+	@Override
+	public List<RequestTrace> getRecentTraces(long minDurationMillis, int limit) {
+		// late spans can extend duration while sorting, so each duration is read once
+		return snapshot().stream()
+				.map(trace -> new SimpleImmutableEntry<>(trace, trace.getDurationMillis()))
+				.filter(entry -> entry.getValue() >= minDurationMillis)
+				.sorted(Map.Entry.<RequestTrace, Long>comparingByValue().reversed())
+				.limit(limit)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<RequestTrace> getTraces(String traceId) {
+		return snapshot().stream()
+				.filter(trace -> trace.getTraceId().equals(traceId) || trace.getTraceId().endsWith("/" + traceId))
+				.collect(Collectors.toList());
+	}
+
+	private List<RequestTrace> snapshot() {
+		synchronized (history) {
+			return new ArrayList<>(history);
+		}
+	}
+}
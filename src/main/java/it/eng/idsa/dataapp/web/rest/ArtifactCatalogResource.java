@@ -0,0 +1,49 @@
+package it.eng.idsa.dataapp.web.rest;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.service.ArtifactCatalogService;
+
+/**
+ * REST controller for listing artifacts available in data lake directory
+ */
+@RestController
+@RequestMapping({ "/artifacts" })
+public class ArtifactCatalogResource {
+	
+	private static final Logger logger = LogManager.getLogger(ArtifactCatalogResource.class);
+	
+	@Autowired
+	private ArtifactCatalogService artifactCatalogService;
+	
+	@GetMapping
+	public List<ArtifactDescriptor> getArtifacts() {
+		logger.debug("GET /artifacts");
+		return artifactCatalogService.getArtifacts();
+	}
+	
+	@GetMapping("/{name:.+}")
+	public ResponseEntity<ArtifactDescriptor> getArtifact(@PathVariable("name") String name) {
+		return artifactCatalogService.getArtifact(name)
+				.map(ResponseEntity::ok)
+				.orElse(ResponseEntity.notFound().build());
+	}
+	
+	@PostMapping("/refresh")
+	public ResponseEntity<?> refresh() {
+		artifactCatalogService.refresh();
+		return ResponseEntity.accepted().build();
+	}
+
+}
@@ -0,0 +1,56 @@
+package it.eng.idsa.dataapp.web.rest;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import it.eng.idsa.dataapp.domain.SyncState;
+import it.eng.idsa.dataapp.service.DatasetSyncService;
+
+/**
+ * REST controller for scheduled dataset synchronization - state of synchronized artifacts and manual run
+ */
+@RestController
+@RequestMapping({ "/sync" })
+public class DatasetSyncResource {
+	
+	private static final Logger logger = LogManager.getLogger(DatasetSyncResource.class);
+	
+	@Autowired(required = false)
+	private DatasetSyncService datasetSyncService;
+	
+	@GetMapping
+	public ResponseEntity<List<SyncState>> getSyncStates() {
+		logger.debug("GET /sync");
+		if (datasetSyncService == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(datasetSyncService.getSyncStates());
+	}
+	
+	/**
+	 * Starts synchronization in background, its progress is visible in GET /sync
+	 * @return 202 when synchronization is started, 409 when it is already running
+	 */
+	@PostMapping
+	public ResponseEntity<?> sync() {
+		if (datasetSyncService == null) {
+			return ResponseEntity.notFound().build();
+		}
+		try {
+			datasetSyncService.submitSync();
+			return ResponseEntity.accepted().build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+		}
+	}
+
+}
@@ -3,16 +3,9 @@ package it.eng.idsa.dataapp.web.rest;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.nio.file.Path;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 
-import javax.xml.datatype.DatatypeFactory;
-
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,6 +16,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -31,22 +25,25 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.google.common.io.Files;
-
 import de.fraunhofer.iais.eis.ArtifactRequestMessage;
-import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
-import de.fraunhofer.iais.eis.ArtifactResponseMessage;
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.iais.eis.ResponseMessage;
-import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import it.eng.idsa.dataapp.domain.ArtifactBatchRequest;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult.Status;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.UploadStatus;
+import it.eng.idsa.dataapp.service.ArtifactRequestService;
+import it.eng.idsa.dataapp.service.ArtifactVersionService;
+import it.eng.idsa.dataapp.service.BinaryTransferService;
+import it.eng.idsa.dataapp.service.ChunkedTransferService;
+import it.eng.idsa.dataapp.service.MessageExchangeService;
 import it.eng.idsa.dataapp.service.OpenDataService;
 import it.eng.idsa.dataapp.service.RecreateFileService;
 import it.eng.idsa.dataapp.service.impl.MultiPartMessageServiceImpl;
 import it.eng.idsa.multipart.domain.MultipartMessage;
 import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
-import it.eng.idsa.streamer.WebSocketClientManager;
-import it.eng.idsa.streamer.util.MultiPartMessageServiceUtil;
-import it.eng.idsa.streamer.websocket.receiver.server.FileRecreatorBeanExecutor;
 
 /**
  * @author Antonio Scatoloni
@@ -67,12 +64,24 @@ public class FileSenderResource {
 	@Autowired
 	private OpenDataService opendataService;
 	
+	@Autowired
+	private ChunkedTransferService chunkedTransferService;
+	
+	@Autowired
+	private ArtifactVersionService artifactVersionService;
+	
+	@Autowired
+	private BinaryTransferService binaryTransferService;
+	
+	@Autowired
+	private ArtifactRequestService artifactRequestService;
+	
+	@Autowired
+	private MessageExchangeService messageExchangeService;
+	
 	@Value("${application.dataLakeDirectory.destination}")
 	private Path dataLakeDirectoryDestination;
 	
-	@Value("${application.opendata.ckan.datetimePattern:YYYYMMdd_HHmmss}")
-	private String dateTimePattern;
-	
 	@GetMapping("/hello")
 	@ResponseBody
 	public String hello() {
@@ -86,17 +95,16 @@ public class FileSenderResource {
 			@RequestBody String fileName) throws Exception {
 		InputStream is = this.getClass().getClassLoader().getResourceAsStream("examples-multipart-messages/" + fileName);
 		String message = IOUtils.toString(is, "UTF8");
-		FileRecreatorBeanExecutor.getInstance().setForwardTo(forwardTo);
-		String responseMessage = WebSocketClientManager.getMessageWebSocketSender()
-				.sendMultipartMessageWebSocketOverHttps(message, forwardToInternal);
+		ParsedMultipartMessage responseMessage = multiPartMessageService.parseMultipartMessage(
+				messageExchangeService.send(forwardToInternal, forwardTo, message));
 
-		String fileNameSaved = saveFileToDisk(responseMessage, message);
+		String fileNameSaved = saveFileToDisk(responseMessage, multiPartMessageService.parseMultipartMessage(message));
 
 		String payload = "{​​\"message\":\"File '" + fileNameSaved + "' created successfully\"}";
 		MultipartMessage multipartMessage = new MultipartMessage(
 				new HashMap<>(), 
 				new HashMap<>(),
-				multiPartMessageService.getMessage(responseMessage),
+				responseMessage.getMessage(),
 				new HashMap<>(), 
 				payload, 
 				new HashMap<>(),
@@ -112,9 +120,7 @@ public class FileSenderResource {
 			@RequestBody String fileName) throws Exception {
 		InputStream is = this.getClass().getClassLoader().getResourceAsStream("examples-multipart-messages/" + fileName);
 		String message = IOUtils.toString(is, "UTF8");
-		FileRecreatorBeanExecutor.getInstance().setForwardTo(forwardTo);
-		String responseMessage = WebSocketClientManager.getMessageWebSocketSender()
-				.sendMultipartMessageWebSocketOverHttps(message, forwardToInternal);
+		String responseMessage = messageExchangeService.send(forwardToInternal, forwardTo, message);
 
 		return responseMessage;
 	}
@@ -140,31 +146,31 @@ public class FileSenderResource {
 	}
 	
 	
+	/**
+	 * Request artifact, unless <i>force</i> is set the request is conditional -</br>
+	 * if provider still has the version received last time, nothing is transferred, saved or uploaded</br>
+	 * With <i>columns</i> (comma separated names), <i>rows</i> (e.g. 100-199) or <i>filter</i> (e.g. CLL = 8 AND REA &gt; 40)
+	 * only selected part of CSV artifact is transferred
+	 */
 	@PostMapping("/artifactRequestMessage")
 	@ResponseBody
 	public String requestArtifact(@RequestHeader("Forward-To-Internal") String forwardToInternal,
 			@RequestHeader("Forward-To") String forwardTo, @RequestParam String requestedArtifact,
+			@RequestParam(required = false, defaultValue = "false") boolean force,
+			@RequestParam(required = false) String columns, @RequestParam(required = false) String rows,
+			@RequestParam(required = false) String filter,
 			@Nullable @RequestBody String payload) throws Exception {
-		URI requestedArtifactURI = URI
-				.create("http://w3id.org/engrd/connector/artifact/" + requestedArtifact);
-		Message artifactRequestMessage = new ArtifactRequestMessageBuilder()
-				._issued_(DatatypeFactory.newInstance().newXMLGregorianCalendar(new GregorianCalendar()))
-				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))._modelVersion_("4.0.0")
-				._requestedArtifact_(requestedArtifactURI).build();
-		Serializer serializer = new Serializer();
-		String requestMessage = serializer.serialize(artifactRequestMessage);
-		FileRecreatorBeanExecutor.getInstance().setForwardTo(forwardTo);
-		String responseMessage = WebSocketClientManager.getMessageWebSocketSender()
-				.sendMultipartMessageWebSocketOverHttps(requestMessage, payload, forwardToInternal);
-
-		String fileNameSaved = saveFileToDisk(responseMessage, artifactRequestMessage);
+		ArtifactTransferResult result = artifactRequestService.requestArtifact(forwardToInternal, forwardTo, requestedArtifact, 
+				CsvSelection.of(columns, rows, filter), force, payload);
 
 		String payloadResponse = null;
-		if(fileNameSaved != null) {
-			String filePartName = dataLakeDirectoryDestination.resolve(fileNameSaved).toString();
-			logger.info("About to send file {}", filePartName);
-			opendataService.uploadData(filePartName);
-			payloadResponse = "{​​\"message\":\"File '" + fileNameSaved + "' uploaded to CKAN successfully\"}";
+		if (result.getStatus() == Status.NOT_MODIFIED) {
+			payloadResponse = "{\"message\":\"File '" + requestedArtifact + "' not modified\", \"notModified\":true}";
+		} else if (result.getStatus() == Status.SAVED && result.getUploadState() == null) {
+			payloadResponse = "{\"message\":\"File '" + result.getFileName() + "' saved\"}";
+		} else if (result.getStatus() == Status.SAVED) {
+			payloadResponse = "{\"message\":\"File '" + result.getFileName() + "' saved, upload to CKAN " 
+					+ result.getUploadState().name().toLowerCase() + "\", \"uploadId\":\"" + result.getUploadId() + "\"}";
 		} else {
 			payloadResponse = "{​​\"message\":\"File did not uploaded to CKAN\"}";
 		}
@@ -172,7 +178,7 @@ public class FileSenderResource {
 		MultipartMessage multipartMessage = new MultipartMessage(
 				new HashMap<>(), 
 				new HashMap<>(),
-				multiPartMessageService.getMessage(responseMessage),
+				result.getResponseMessage(),
 				new HashMap<>(), 
 				payloadResponse, 
 				new HashMap<>(),
@@ -181,11 +187,98 @@ public class FileSenderResource {
 		return MultipartMessageProcessor.multipartMessagetoString(multipartMessage, false);
 	}
 	
-	private String saveFileToDisk(String responseMessage, String requestMessage) throws IOException {
-		Message requestMsg = multiPartMessageService.getMessage(requestMessage);
-		Message responseMsg = multiPartMessageService.getMessage(responseMessage);
+	/**
+	 * Request several artifacts at once, listed by name or matched by glob patterns against provider catalog</br>
+	 * Artifacts are requested one after another, each one is saved and its upload to CKAN submitted as soon as it is received
+	 * @param forwardToInternal
+	 * @param forwardTo
+	 * @param batchRequest
+	 * @return result for each artifact
+	 */
+	@PostMapping("/artifactRequestMessage/batch")
+	public ResponseEntity<?> requestArtifacts(@RequestHeader("Forward-To-Internal") String forwardToInternal,
+			@RequestHeader("Forward-To") String forwardTo, @RequestBody ArtifactBatchRequest batchRequest) {
+		try {
+			return ResponseEntity.ok(artifactRequestService.requestArtifacts(forwardToInternal, forwardTo, 
+					batchRequest.getArtifacts(), batchRequest.getPatterns(), batchRequest.isForce()));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body("{\"message\":\"" + e.getMessage() + "\"}");
+		} catch (IOException e) {
+			logger.error("Batch request failed", e);
+			return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body("{\"message\":\"" + e.getMessage() + "\"}");
+		}
+	}
+	
+	/**
+	 * Request artifact in chunks, resuming previously interrupted transfer of the same artifact
+	 * @param forwardToInternal
+	 * @param forwardTo
+	 * @param requestedArtifact
+	 * @param chunkSize size of single chunk in bytes
+	 * @return
+	 * @throws Exception
+	 */
+	@PostMapping("/artifactRequestMessage/chunked")
+	public ResponseEntity<String> requestArtifactChunked(@RequestHeader("Forward-To-Internal") String forwardToInternal,
+			@RequestHeader("Forward-To") String forwardTo, @RequestParam String requestedArtifact,
+			@RequestParam(required = false) Integer chunkSize) throws Exception {
+		String fileNameSaved = artifactRequestService.addTimestampToFileName(requestedArtifact);
+		Path targetFile = dataLakeDirectoryDestination.resolve(fileNameSaved);
+		try {
+			chunkedTransferService.requestArtifact(forwardToInternal, forwardTo, requestedArtifact, chunkSize, targetFile);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity<>("{\"message\":\"" + e.getMessage() + "\"}", HttpStatus.BAD_REQUEST);
+		} catch (IOException e) {
+			logger.error("Chunked transfer of {} interrupted", requestedArtifact, e);
+			return new ResponseEntity<>("{\"message\":\"Transfer of '" + requestedArtifact + "' interrupted, repeat request to resume it\"}", 
+					HttpStatus.BAD_GATEWAY);
+		}
+		artifactVersionService.recordReceived(requestedArtifact, targetFile);
+		logger.info("About to send file {}", targetFile);
+		UploadStatus uploadStatus = opendataService.submitUpload(targetFile.toString());
+		return new ResponseEntity<>("{\"message\":\"File '" + fileNameSaved + "' saved, upload to CKAN " 
+				+ uploadStatus.getState().name().toLowerCase() + "\", \"uploadId\":\"" + uploadStatus.getId() + "\"}", HttpStatus.OK);
+	}
+	
+	/**
+	 * Request artifact over HTTP in binary payload mode, without Base64 encoding
+	 * @param forwardTo URL accepting multipart/mixed messages, for example <i>https://provider:8083/incoming-data-app/routerBodyBinary</i>
+	 * @param requestedArtifact
+	 * @return
+	 * @throws Exception
+	 */
+	@PostMapping("/artifactRequestMessage/binary")
+	public ResponseEntity<String> requestArtifactBinary(@RequestHeader("Forward-To") String forwardTo, 
+			@RequestParam String requestedArtifact) throws Exception {
+		String fileNameSaved = artifactRequestService.addTimestampToFileName(requestedArtifact);
+		Path targetFile = dataLakeDirectoryDestination.resolve(fileNameSaved);
+		try {
+			binaryTransferService.requestArtifact(forwardTo, requestedArtifact, targetFile);
+		} catch (IOException e) {
+			logger.error("Binary transfer of {} failed", requestedArtifact, e);
+			return new ResponseEntity<>("{\"message\":\"Transfer of '" + requestedArtifact + "' failed\"}", HttpStatus.BAD_GATEWAY);
+		}
+		artifactVersionService.recordReceived(requestedArtifact, targetFile);
+		logger.info("About to send file {}", targetFile);
+		UploadStatus uploadStatus = opendataService.submitUpload(targetFile.toString());
+		return new ResponseEntity<>("{\"message\":\"File '" + fileNameSaved + "' saved, upload to CKAN " 
+				+ uploadStatus.getState().name().toLowerCase() + "\", \"uploadId\":\"" + uploadStatus.getId() + "\"}", HttpStatus.OK);
+	}
+	
+	@GetMapping("/uploadStatus/{uploadId}")
+	public ResponseEntity<UploadStatus> uploadStatus(@PathVariable String uploadId) {
+		UploadStatus uploadStatus = opendataService.getUploadStatus(uploadId);
+		if (uploadStatus == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(uploadStatus);
+	}
+	
+	private String saveFileToDisk(ParsedMultipartMessage responseMessage, ParsedMultipartMessage requestMessage) throws IOException {
+		Message requestMsg = requestMessage.getMessage();
+		Message responseMsg = responseMessage.getMessage();
 		
-		String payload = MultiPartMessageServiceUtil.getPayload(responseMessage);
+		String payload = responseMessage.getPayload();
 
 		String requestedArtifact = null;
 		if (requestMsg instanceof ArtifactRequestMessage && responseMsg instanceof ResponseMessage) {
@@ -199,47 +292,5 @@ public class FileSenderResource {
 		
 		return requestedArtifact;
 	}
-	/**
-	 * Save payload content to file on file system</br>
-	 * If payload is null - skips creating file and returns null as file name
-	 * @param responseMessage
-	 * @param requestMessage
-	 * @return
-	 * @throws IOException
-	 */
-	private String saveFileToDisk(String responseMessage, Message requestMessage) throws IOException {
-		Message responseMsg = multiPartMessageService.getMessage(responseMessage);
-
-		String requestedArtifact = null;
-		if (requestMessage instanceof ArtifactRequestMessage && responseMsg instanceof ArtifactResponseMessage) {
-			String payload = MultiPartMessageServiceUtil.getPayload(responseMessage);
-			if(payload != null) {
-				String reqArtifact = ((ArtifactRequestMessage) requestMessage).getRequestedArtifact().getPath();
-				requestedArtifact = reqArtifact.substring(reqArtifact.lastIndexOf('/') + 1);
-				logger.info("About to save file " + requestedArtifact);
-				String finalFileName = addTimestampToFileName(requestedArtifact);
-				recreateFileService.recreateTheFile(payload, dataLakeDirectoryDestination.resolve(finalFileName).toFile());
-				requestedArtifact = finalFileName;
-				logger.info("File saved");
-			} else {
-				logger.info("Artifact response Message received, but no payload");
-				requestedArtifact = null;
-			}
-		} else {
-			logger.info("Did not have ArtifactRequestMessage and ResponseMessage - nothing to save");
-			requestedArtifact = null;
-		}
-		
-		return requestedArtifact;
-	}
-
-	private String addTimestampToFileName(String requestedArtifact) {
-		DateFormat formatter = new SimpleDateFormat(dateTimePattern);
-		String formattedDate = formatter.format(new Date());
-		String extension = Files.getFileExtension(requestedArtifact);
-		String fileName = Files.getNameWithoutExtension(requestedArtifact);
-		String finalFileName = fileName + "_" + formattedDate + "." + extension;
-		return finalFileName;
-	}
 
 }
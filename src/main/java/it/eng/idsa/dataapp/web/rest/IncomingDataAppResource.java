@@ -1,19 +1,31 @@
 package it.eng.idsa.dataapp.web.rest;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.HttpEntity;
 import org.apache.http.ParseException;
+import org.apache.http.entity.ContentType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -21,6 +33,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -29,13 +42,29 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
 import de.fraunhofer.iais.eis.Message;
-import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
-import it.eng.idsa.dataapp.domain.MessageIDS;
+import io.micrometer.core.instrument.Timer;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.MessageJournalEntry;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.domain.SelectionReport;
+import it.eng.idsa.dataapp.domain.StreamingContentBody;
+import it.eng.idsa.dataapp.exception.EmptyFileException;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.FileReaderService;
+import it.eng.idsa.dataapp.service.MessageJournalService;
+import it.eng.idsa.dataapp.service.MetricsService;
+import it.eng.idsa.dataapp.service.SerializerService;
+import it.eng.idsa.dataapp.service.TraceService;
+import it.eng.idsa.dataapp.service.TraceService.SpanScope;
 import it.eng.idsa.dataapp.service.impl.MessageServiceImpl;
 import it.eng.idsa.dataapp.service.impl.MultiPartMessageServiceImpl;
 import it.eng.idsa.multipart.builder.MultipartMessageBuilder;
@@ -62,6 +91,8 @@ import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
 public class IncomingDataAppResource {
 
 	private static final Logger logger = LogManager.getLogger(IncomingDataAppResource.class);
+	
+	private static final int DEFAULT_PAGE_SIZE = 50;
 
 	@Autowired
 	private MultiPartMessageServiceImpl multiPartMessageServiceImpl;
@@ -69,6 +100,24 @@ public class IncomingDataAppResource {
 	@Autowired
 	private MessageServiceImpl messageServiceImpl;
 	
+	@Autowired
+	private SerializerService serializerService;
+	
+	@Autowired(required = false)
+	private MessageJournalService messageJournalService;
+	
+	@Autowired
+	private FileReaderService fileReaderService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Autowired
+	private TraceService traceService;
+	
+	@Value("${application.dataLakeDirectory}")
+	private Path dataLakeDirectory;
+	
 	/*
 	@PostMapping(value="/dataAppIncomingMessage", consumes = { MediaType.MULTIPART_FORM_DATA_VALUE, "multipart/mixed", MediaType.ALL_VALUE }, produces= MediaType.MULTIPART_FORM_DATA_VALUE)
 	public ResponseEntity<?> receiveMessage(@RequestHeader (value="Content-Type", required=false) String contentType,  @RequestParam("header")  Object header,             
@@ -82,9 +131,20 @@ public class IncomingDataAppResource {
 	@PostMapping("/dataAppIncomingMessageReceiver")
 	public ResponseEntity<?> postMessageReceiver(@RequestBody String data){
 		logger.info("Enter to the end-point: dataAppIncomingMessage Receiver side");
-		String header=multiPartMessageServiceImpl.getHeader(data);
-		String payload=multiPartMessageServiceImpl.getPayload(data);
-		messageServiceImpl.setMessage("", header.toString(), payload.toString());
+		Timer.Sample sample = metricsService.startTimer();
+		Message requestMessage = null;
+		boolean recorded = false;
+		try {
+			ParsedMultipartMessage message=multiPartMessageServiceImpl.parseMultipartMessage(data);
+			requestMessage = message.getMessage();
+			messageServiceImpl.setMessage("", message.getHeader(), message.getPayload());
+			metricsService.recordMessage(sample, "dataAppIncomingMessageReceiver", requestMessage, null);
+			recorded = true;
+		} finally {
+			if (!recorded) {
+				recordError(sample, "dataAppIncomingMessageReceiver", requestMessage);
+			}
+		}
 		logger.info("message="+data);
 		return ResponseEntity.ok().build();
 	}
@@ -114,24 +174,42 @@ public class IncomingDataAppResource {
                                             @RequestPart(value = "payload", required = false) String payload) throws org.json.simple.parser.ParseException, ParseException, IOException {
 
 		logger.info("Multipart/mixed request");
+		long receivedNanos = System.nanoTime();
+		Timer.Sample sample = metricsService.startTimer();
+		boolean recorded = false;
+		String responseMessageString;
+		try {
+			// Convert de.fraunhofer.iais.eis.Message to the String
+			String headerSerialized = serializerService.serializePlainJson(headerMessage);
+			logger.info("header=" + headerSerialized);
+			logger.info("headers=" + httpHeaders);
+			if (payload != null) {
+				logger.info("payload lenght = " + payload.length());
+			} else {
+				logger.info("Payload is empty");
+			}
+			
+			if (headerMessage instanceof ArtifactRequestMessage) {
+				// outcome is recorded as the last step of creating artifact response
+				ResponseEntity<?> response = artifactResponse(sample, (ArtifactRequestMessage) headerMessage, receivedNanos);
+				recorded = true;
+				return response;
+			}
 
-		// Convert de.fraunhofer.iais.eis.Message to the String
-		String headerSerialized = new Serializer().serializePlainJson(headerMessage);
-		logger.info("header=" + headerSerialized);
-		logger.info("headers=" + httpHeaders);
-		if (payload != null) {
-			logger.info("payload lenght = " + payload.length());
-		} else {
-			logger.info("Payload is empty");
+			String headerResponse = multiPartMessageServiceImpl.getResponseHeader(headerMessage);
+			String responsePayload = createResponsePayload();
+			MultipartMessage responseMessage = new MultipartMessageBuilder()
+					.withHeaderContent(headerResponse)
+					.withPayloadContent(responsePayload)
+					.build();
+			responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessage, false);
+			metricsService.recordMessage(sample, "routerBodyBinary", headerMessage, null);
+			recorded = true;
+		} finally {
+			if (!recorded) {
+				recordError(sample, "routerBodyBinary", headerMessage);
+			}
 		}
-
-		String headerResponse = multiPartMessageServiceImpl.getResponseHeader(headerMessage);
-		String responsePayload = createResponsePayload();
-		MultipartMessage responseMessage = new MultipartMessageBuilder()
-                										.withHeaderContent(headerResponse)
-                										.withPayloadContent(responsePayload)
-                										.build();
-        String responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessage, false);
 		
 		return ResponseEntity.ok()
 				.header("foo", "bar")
@@ -155,6 +233,7 @@ public class IncomingDataAppResource {
                                             @RequestParam(value = "payload", required = false) String payload) throws ParseException, IOException {
 		
 		logger.info("Multipart/form request");
+		Timer.Sample sample = metricsService.startTimer();
 
 		// Received "header" and "payload"
 		logger.info("header"+header);
@@ -165,15 +244,28 @@ public class IncomingDataAppResource {
 			logger.info("Payload is empty");
 		}
 		
-		String headerResponse = multiPartMessageServiceImpl.getResponseHeader(header);
-		String responsePayload = createResponsePayload();
-
-		// prepare body response - multipart message.
-		MultipartMessage responseMessage = new MultipartMessageBuilder()
-				.withHeaderContent(headerResponse)
-				.withPayloadContent(responsePayload)
-				.build();
-		String responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessage, false);
+		Message headerMessage = null;
+		boolean recorded = false;
+		String responseMessageString;
+		try {
+			// header parsed once, also for message type of metrics
+			headerMessage = multiPartMessageServiceImpl.getIDSMessage(header);
+			String headerResponse = multiPartMessageServiceImpl.getResponseHeader(headerMessage);
+			String responsePayload = createResponsePayload();
+	
+			// prepare body response - multipart message.
+			MultipartMessage responseMessage = new MultipartMessageBuilder()
+					.withHeaderContent(headerResponse)
+					.withPayloadContent(responsePayload)
+					.build();
+			responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessage, false);
+			metricsService.recordMessage(sample, "routerBodyFormData", headerMessage, null);
+			recorded = true;
+		} finally {
+			if (!recorded) {
+				recordError(sample, "routerBodyFormData", headerMessage);
+			}
+		}
 		
 		return ResponseEntity.ok()
 				.header("foo", "bar")
@@ -195,6 +287,7 @@ public class IncomingDataAppResource {
 	                                                    @RequestBody(required = false) String payload) throws org.json.simple.parser.ParseException, ParseException, IOException {
 
 			logger.info("Http Header request");
+			Timer.Sample sample = metricsService.startTimer();
 //			Map<String, String> headerAsMap = new HashMap<String, String>();
 //			headerAsMap.put("@type", httpHeaders.get("IDS-Messagetype").get(0));
 //			headerAsMap.put("@id", httpHeaders.get("IDS-Id").get(0));
@@ -216,7 +309,14 @@ public class IncomingDataAppResource {
 				logger.info("Payload is empty");
 			}
 			
-			String responsePayload = createResponsePayload();
+			String responsePayload;
+			String outcome = MetricsService.OUTCOME_ERROR;
+			try {
+				responsePayload = createResponsePayload();
+				outcome = MetricsService.OUTCOME_SUCCESS;
+			} finally {
+				metricsService.recordMessage(sample, "routerHttpHeader", httpHeaderMessageType(httpHeaders), outcome);
+			}
 			return ResponseEntity.ok()
 					.header("foo", "bar")
 					.headers(createHttpHeaderResponseHeaders())
@@ -225,6 +325,21 @@ public class IncomingDataAppResource {
 			
 		}
 		
+		/**
+		 * IDS-Messagetype header without prefix, e.g. ArtifactRequestMessage
+		 */
+		private String httpHeaderMessageType(HttpHeaders httpHeaders) {
+			String messageType = httpHeaders.getFirst("IDS-Messagetype");
+			return messageType != null ? messageType.substring(messageType.indexOf(':') + 1) : null;
+		}
+		
+		/**
+		 * Outcome of message whose handler threw before response was created
+		 */
+		private void recordError(Timer.Sample sample, String endpoint, Message request) {
+			metricsService.recordMessage(sample, endpoint, MetricsService.messageType(request), MetricsService.OUTCOME_ERROR);
+		}
+		
 		private HttpHeaders createHttpHeaderResponseHeaders() {
 			HttpHeaders headers = new HttpHeaders();
 			
@@ -243,6 +358,121 @@ public class IncomingDataAppResource {
 			return headers;
 		}
 
+	/**
+	 * Artifact is sent as binary octet-stream part when consumer accepts it, otherwise Base64 encoded</br>
+	 * Binary part is streamed from the file, with Content-Length of the whole response known upfront</br>
+	 * Traced under @id of request message, the same id consumer traces the request with
+	 */
+	private ResponseEntity<?> artifactResponse(Timer.Sample sample, ArtifactRequestMessage requestMessage, long receivedNanos) throws IOException {
+		RequestTrace trace = traceService.start(requestMessage.getId().toString(), "provider." + MetricsService.messageType(requestMessage), receivedNanos);
+		try {
+			return createArtifactResponse(sample, requestMessage, trace);
+		} finally {
+			traceService.finish(trace);
+		}
+	}
+	
+	private ResponseEntity<?> createArtifactResponse(Timer.Sample sample, ArtifactRequestMessage requestMessage, RequestTrace trace) throws IOException {
+		ArtifactRequest artifactRequest = ArtifactRequest.fromRequestedArtifact(requestMessage.getRequestedArtifact());
+		String requestedArtifact = artifactRequest.getFileName();
+		trace.attribute("artifact", requestedArtifact);
+		String headerResponse = multiPartMessageServiceImpl.getResponseHeader(requestMessage);
+		MultipartMessage responseMessage;
+		Message rejectionMessage = null;
+		try {
+			CsvSelection selection = artifactRequest.getCsvSelection();
+			// whole artifact is streamed from the file, size of selected content is not known upfront, it is read into memory
+			if (selection == null) {
+				long size = Files.size(dataLakeDirectory.resolve(requestedArtifact));
+				if (size == 0) {
+					throw new EmptyFileException(String.format("File %s is empty", requestedArtifact));
+				}
+				StreamingContentBody payloadBody;
+				if (artifactRequest.isBinaryAccepted()) {
+					payloadBody = new StreamingContentBody(ContentType.APPLICATION_OCTET_STREAM, 
+							requestedArtifact, size, out -> transferArtifact(requestMessage, requestedArtifact, out));
+					logger.info("Sending {} as binary payload, {} bytes", requestedArtifact, size);
+				} else {
+					boolean compress = fileReaderService.isCompressed(requestedArtifact, artifactRequest.isGzipAccepted());
+					// consumer decodes payload as announced, not by guessing from its content
+					headerResponse = multiPartMessageServiceImpl.addPayloadEncoding(headerResponse, 
+							fileReaderService.getPayloadEncoding(requestedArtifact, artifactRequest.isGzipAccepted()));
+					// length of compressed content is known only after it is written
+					long encodedSize = compress ? -1 : (size + 2) / 3 * 4;
+					payloadBody = new StreamingContentBody(ContentType.TEXT_PLAIN, 
+							requestedArtifact, encodedSize, out -> writeArtifact(requestMessage, requestedArtifact, out, compress));
+					logger.info("Sending {} as Base64 encoded payload, {} bytes", requestedArtifact, size);
+				}
+				HttpEntity entity = multiPartMessageServiceImpl.createBinaryMultipartMessage(headerResponse, payloadBody);
+				// streamed after trace is finished, span still counts to its duration
+				StreamingResponseBody body = out -> {
+					long streamStart = System.nanoTime();
+					try {
+						entity.writeTo(out);
+					} finally {
+						trace.addSpan("provider.stream", streamStart, System.nanoTime());
+					}
+				};
+				ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+						.header(HttpHeaders.CONTENT_TYPE, entity.getContentType().getValue());
+				if (entity.getContentLength() >= 0) {
+					response.contentLength(entity.getContentLength());
+				}
+				// payload streaming is timed by file reader
+				metricsService.recordMessage(sample, "routerBodyBinary", requestMessage, null);
+				return response.body(body);
+			}
+			String payload;
+			SelectionReport report = new SelectionReport();
+			try (SpanScope span = traceService.span("provider.read")) {
+				payload = fileReaderService.readRequestedArtifact(requestMessage, requestedArtifact, selection, 
+						artifactRequest.isGzipAccepted(), report);
+			}
+			// consumer gets number of selected rows and pruned blocks together with selection
+			headerResponse = multiPartMessageServiceImpl.addSelectionReport(headerResponse, report);
+			headerResponse = multiPartMessageServiceImpl.addPayloadEncoding(headerResponse, 
+					fileReaderService.getPayloadEncoding(requestedArtifact, artifactRequest.isGzipAccepted()));
+			responseMessage = new MultipartMessageBuilder()
+					.withHeaderContent(headerResponse)
+					.withPayloadContent(payload)
+					.build();
+		} catch (ReadFileLockedException | EmptyFileException | IOException | IllegalArgumentException e) {
+			logger.error("Error while reading resource from disk - creating rejection message", e);
+			rejectionMessage = multiPartMessageServiceImpl.createRejectionCommunicationLocalIssues(requestMessage);
+			responseMessage = new MultipartMessageBuilder()
+					.withHeaderContent(rejectionMessage)
+					.withPayloadContent(null)
+					.build();
+		}
+		String responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessage, false);
+		// recorded last, caller records error when anything before throws
+		metricsService.recordMessage(sample, "routerBodyBinary", requestMessage, rejectionMessage);
+		return ResponseEntity.ok()
+				.header("Content-Type", "multipart/mixed; boundary=CQWZRdCCXr5aIuonjmRXF-QzcZ2Kyi4Dkn6;charset=UTF-8")
+				.body(responseMessageString);
+	}
+	
+	private long transferArtifact(Message requestMessage, String requestedArtifact, OutputStream out) throws IOException {
+		try {
+			return fileReaderService.transferRequestedArtifact(requestMessage, requestedArtifact, Channels.newChannel(out));
+		} catch (ReadFileLockedException | EmptyFileException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return number of written Base64 characters
+	 */
+	private long writeArtifact(Message requestMessage, String requestedArtifact, OutputStream out, boolean compress) throws IOException {
+		CountingOutputStream counting = new CountingOutputStream(out);
+		try {
+			fileReaderService.writeRequestedArtifact(requestMessage, requestedArtifact, counting, compress);
+		} catch (ReadFileLockedException | EmptyFileException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		return counting.getByteCount();
+	}
+
 	private String createResponsePayload() {
 		// Put check sum in the payload
 		DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
@@ -262,19 +492,85 @@ public class IncomingDataAppResource {
 	@PostMapping("/dataAppIncomingMessageSender")
 	public ResponseEntity<?> postMessageSender(@RequestBody String data){
 		logger.info("Enter to the end-point: dataAppIncomingMessage Sender side");
+		Timer.Sample sample = metricsService.startTimer();
 
-		String header=multiPartMessageServiceImpl.getHeader(data);
-		String payload=multiPartMessageServiceImpl.getPayload(data);
-		messageServiceImpl.setMessage("", header.toString(), payload.toString());
+		Message requestMessage = null;
+		boolean recorded = false;
+		try {
+			ParsedMultipartMessage message=multiPartMessageServiceImpl.parseMultipartMessage(data);
+			requestMessage = message.getMessage();
+			messageServiceImpl.setMessage("", message.getHeader(), message.getPayload());
+			metricsService.recordMessage(sample, "dataAppIncomingMessageSender", requestMessage, null);
+			recorded = true;
+		} finally {
+			if (!recorded) {
+				recordError(sample, "dataAppIncomingMessageSender", requestMessage);
+			}
+		}
 
 		logger.info("message="+data);
 		return ResponseEntity.ok().build();
 	}
 
 	@GetMapping("/dataAppIncomingMessage")
-	public List<MessageIDS> testReceiveMessage() {
+	public ResponseEntity<?> testReceiveMessage(@RequestParam(value = "page", required = false) Integer page,
+			@RequestParam(value = "size", required = false) Integer size,
+			@RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+			@RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to) {
 		logger.debug("GET /dataAppIncomingMessage");
-		return messageServiceImpl.getMessages();
+		if (page == null && size == null && from == null && to == null) {
+			return ResponseEntity.ok(messageServiceImpl.getMessages());
+		}
+		int pageNumber = page != null ? page : 0;
+		int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+		String invalid = validatePage(pageNumber, pageSize);
+		if (invalid != null) {
+			return ResponseEntity.badRequest().body(invalid);
+		}
+		return ResponseEntity.ok(messageServiceImpl.getMessages(pageNumber, pageSize, from, to));
+	}
+
+	@GetMapping("/messageJournal")
+	public ResponseEntity<?> getMessageJournal(@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "50") int size,
+			@RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
+			@RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+			@RequestParam(value = "correlationMessage", required = false) String correlationMessage) {
+		logger.debug("GET /messageJournal");
+		if (messageJournalService == null) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Message journal is disabled");
+		}
+		String invalid = validatePage(page, size);
+		if (invalid != null) {
+			return ResponseEntity.badRequest().body(invalid);
+		}
+		Page<MessageJournalEntry> entries = correlationMessage != null
+				? messageJournalService.getEntriesByCorrelationMessage(correlationMessage, page, size)
+				: messageJournalService.getEntries(page, size, from, to);
+		return ResponseEntity.ok(entries);
+	}
+	
+	/**
+	 * @return reason why page can not be returned, null if page and size are valid
+	 */
+	private static String validatePage(int page, int size) {
+		if (page < 0) {
+			return "Page must not be negative";
+		}
+		if (size < 1) {
+			return "Size must be positive";
+		}
+		return null;
+	}
+	
+	@GetMapping("/messageJournal/{id}/payload")
+	public ResponseEntity<?> getMessageJournalPayload(@PathVariable("id") Long id) {
+		if (messageJournalService == null) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Message journal is disabled");
+		}
+		return messageJournalService.getPayload(id)
+				.<ResponseEntity<?>>map(ResponseEntity::ok)
+				.orElse(ResponseEntity.notFound().build());
 	}
 
 }
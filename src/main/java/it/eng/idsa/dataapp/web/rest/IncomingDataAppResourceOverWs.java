@@ -17,11 +17,25 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
 import de.fraunhofer.iais.eis.Message;
+import io.micrometer.core.instrument.Timer;
+import it.eng.idsa.dataapp.domain.ArtifactChunk;
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.domain.SelectionReport;
 import it.eng.idsa.dataapp.exception.EmptyFileException;
 import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactCatalogService;
 import it.eng.idsa.dataapp.service.FileReaderService;
+import it.eng.idsa.dataapp.service.MetricsService;
 import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.RequestDispatcher;
+import it.eng.idsa.dataapp.service.TraceService;
+import it.eng.idsa.dataapp.service.TraceService.SpanScope;
 import it.eng.idsa.multipart.builder.MultipartMessageBuilder;
 import it.eng.idsa.multipart.domain.MultipartMessage;
 import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
@@ -34,6 +48,8 @@ import it.eng.idsa.streamer.WebSocketServerManager;
 public class IncomingDataAppResourceOverWs implements PropertyChangeListener {
 
 	private static final Logger logger = LogManager.getLogger(IncomingDataAppResourceOverWs.class);
+	
+	private static final String ENDPOINT = "websocket";
 
 	@Autowired
 	private MultiPartMessageService multiPartMessageService;
@@ -41,57 +57,192 @@ public class IncomingDataAppResourceOverWs implements PropertyChangeListener {
 	@Autowired
 	private FileReaderService fileReaderService;
 	
+	@Autowired
+	private RequestDispatcher requestDispatcher;
+	
+	@Autowired
+	private ArtifactCatalogService artifactCatalogService;
+	
+	@Autowired
+	private MetricsService metricsService;
+	
+	@Autowired
+	private TraceService traceService;
+	
+	/**
+	 * Only hands request over to dispatcher, so listener thread is free for next message</br>
+	 * Handling time is measured from here, so it includes time spent waiting for a worker
+	 */
 	@Override
 	public void propertyChange(PropertyChangeEvent evt) {
-		String requestMessageMultipart = (String) evt.getNewValue();
-		Message requestMessage = multiPartMessageService.getMessage(requestMessageMultipart);
-		String requestHeader = multiPartMessageService.getHeader(requestMessageMultipart);
+		String request = (String) evt.getNewValue();
+		long receivedNanos = System.nanoTime();
+		Timer.Sample sample = metricsService.startTimer();
+		String requestId = requestDispatcher.dispatch(() -> handleRequest(request, sample, receivedNanos),
+				() -> createOverloadedResponse(request, sample),
+				() -> createFailedResponse(request),
+				WebSocketServerManager.getMessageWebSocketResponse()::sendResponse);
+		logger.debug("Request {} dispatched", requestId);
+	}
+	
+	/**
+	 * Traced under @id of request message, the same id consumer traces the request with
+	 */
+	private String handleRequest(String request, Timer.Sample sample, long receivedNanos) {
+		long startNanos = System.nanoTime();
+		ParsedMultipartMessage requestMessageMultipart;
+		Message requestMessage;
+		try {
+			requestMessageMultipart = multiPartMessageService.parseMultipartMessage(request);
+			requestMessage = requestMessageMultipart.getMessage();
+		} catch (RuntimeException e) {
+			metricsService.recordMessage(sample, ENDPOINT, MetricsService.messageType(null), MetricsService.OUTCOME_ERROR);
+			throw e;
+		}
+		RequestTrace trace = null;
+		if (requestMessage != null && requestMessage.getId() != null) {
+			trace = traceService.start(requestMessage.getId().toString(), "provider." + MetricsService.messageType(requestMessage), receivedNanos);
+			trace.addSpan("provider.queue", receivedNanos, startNanos);
+			trace.addSpan("provider.parse", startNanos, System.nanoTime());
+		}
+		try {
+			return createResponse(requestMessageMultipart, requestMessage, sample);
+		} catch (RuntimeException e) {
+			metricsService.recordMessage(sample, ENDPOINT, MetricsService.messageType(requestMessage), MetricsService.OUTCOME_ERROR);
+			throw e;
+		} finally {
+			if (trace != null) {
+				traceService.finish(trace);
+			}
+		}
+	}
+	
+	/**
+	 * Request could not be queued, consumer still gets a response, so it does not take response of its next request
+	 */
+	private String createOverloadedResponse(String request, Timer.Sample sample) {
+		Message requestMessage = multiPartMessageService.parseMultipartMessage(request).getMessage();
+		Message rejectionMessage = multiPartMessageService.createRejectionTemporarilyNotAvailable(requestMessage);
+		metricsService.recordMessage(sample, ENDPOINT, requestMessage, rejectionMessage);
+		MultipartMessage responseMessageRejection = new MultipartMessageBuilder()
+				.withHeaderContent(rejectionMessage)
+				.withPayloadContent(null)
+				.build();
+		return MultipartMessageProcessor.multipartMessagetoString(responseMessageRejection, false);
+	}
+	
+	/**
+	 * Handler failed, error outcome is already recorded by handler
+	 */
+	private String createFailedResponse(String request) {
+		Message requestMessage = null;
+		try {
+			requestMessage = multiPartMessageService.parseMultipartMessage(request).getMessage();
+		} catch (RuntimeException e) {
+			logger.debug("Failed request could not be parsed", e);
+		}
+		Message rejectionMessage = multiPartMessageService.createRejectionInternalError(requestMessage);
+		MultipartMessage responseMessageRejection = new MultipartMessageBuilder()
+				.withHeaderContent(rejectionMessage)
+				.withPayloadContent(null)
+				.build();
+		return MultipartMessageProcessor.multipartMessagetoString(responseMessageRejection, false);
+	}
+	
+	private String createResponse(ParsedMultipartMessage requestMessageMultipart, Message requestMessage, Timer.Sample sample) {
 		String requestedArtifact = null;
 		String responseMessageString = null;
+		Message rejectionMessage = null;
 		if (requestMessage instanceof ArtifactRequestMessage) {
-			String reqArtifact = ((ArtifactRequestMessage) requestMessage).getRequestedArtifact().getPath();
 			// get resource from URI http://w3id.org/engrd/connector/artifact/ + requestedArtifact
-			requestedArtifact = reqArtifact.substring(reqArtifact.lastIndexOf('/') + 1);
+			ArtifactRequest artifactRequest = ArtifactRequest.fromRequestedArtifact(((ArtifactRequestMessage) requestMessage).getRequestedArtifact());
+			requestedArtifact = artifactRequest.getFileName();
 			logger.info("About to get file from " + requestedArtifact);
 			String responsePayload = null;
+			SelectionReport report = null;
 			try {
-				responsePayload = fileReaderService.readRequestedArtifact(requestMessage, requestedArtifact);
-			} catch (ReadFileLockedException | EmptyFileException | IOException e) {
+				// answered from catalog in memory, file reader checks the file itself when catalog has no current entry
+				ArtifactDescriptor descriptor = artifactCatalogService.getCurrentArtifact(requestedArtifact).orElse(null);
+				if (descriptor != null && descriptor.getSize() == 0) {
+					throw new EmptyFileException(String.format("File %s is empty", requestedArtifact));
+				}
+				String ifNoneMatch = artifactRequest.getParameter(ArtifactRequest.IF_NONE_MATCH);
+				CsvSelection selection = artifactRequest.getCsvSelection();
+				try (SpanScope span = traceService.span("provider.read")) {
+					if (artifactRequest.isChunkRequest()) {
+						ArtifactChunk chunk = fileReaderService.readRequestedArtifactChunk(requestMessage, requestedArtifact, 
+								artifactRequest.getLongParameter(ArtifactRequest.OFFSET, 0), 
+								(int) Math.min(Integer.MAX_VALUE, artifactRequest.getLongParameter(ArtifactRequest.LENGTH, Integer.MAX_VALUE)));
+						responsePayload = new GsonBuilder().create().toJson(chunk);
+					} else if (selection != null) {
+						// selection is not compared with consumer copy, always sent
+						report = new SelectionReport();
+						responsePayload = fileReaderService.readRequestedArtifact(requestMessage, requestedArtifact, 
+								selection, artifactRequest.isGzipAccepted(), report);
+					} else if (ifNoneMatch != null && artifactCatalogService.isNotModified(requestedArtifact, ifNoneMatch)) {
+						// response without payload - consumer keeps its copy
+						logger.info("Artifact {} not modified", requestedArtifact);
+					} else {
+						responsePayload = fileReaderService.readRequestedArtifact(requestMessage, requestedArtifact, artifactRequest.isGzipAccepted());
+					}
+				}
+				try (SpanScope span = traceService.span("provider.respond")) {
+					String responseMessage = multiPartMessageService.getResponseHeader(requestMessage);
+					if (report != null) {
+						// consumer gets number of selected rows and pruned blocks together with selection
+						responseMessage = multiPartMessageService.addSelectionReport(responseMessage, report);
+					}
+					if (responsePayload != null && !artifactRequest.isChunkRequest()) {
+						// consumer decodes payload as announced, not by guessing from its content
+						responseMessage = multiPartMessageService.addPayloadEncoding(responseMessage, 
+								fileReaderService.getPayloadEncoding(requestedArtifact, artifactRequest.isGzipAccepted()));
+					}
+					// prepare multipart message.
+					MultipartMessage responseMessageMultipart = new MultipartMessageBuilder().withHeaderContent(responseMessage)
+							.withPayloadContent(responsePayload).build();
+					responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessageMultipart, false);
+				}
+			} catch (ReadFileLockedException | EmptyFileException | IOException | IllegalArgumentException e) {
 				logger.error("Error while reading resource from disk - creating rejection message", e);
-				Message rejectionMessage = multiPartMessageService.createRejectionCommunicationLocalIssues(requestMessage);
+				rejectionMessage = multiPartMessageService.createRejectionCommunicationLocalIssues(requestMessage);
 				MultipartMessage responseMessageRejection = new MultipartMessageBuilder()
 						.withHeaderContent(rejectionMessage)
 						.withPayloadContent(null)
 						.build();
 				responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessageRejection, false);
 			}
-			String responseMessage = multiPartMessageService.getResponseHeader(requestMessage);
-			// prepare multipart message.
-			MultipartMessage responseMessageMultipart = new MultipartMessageBuilder().withHeaderContent(responseMessage)
-					.withPayloadContent(responsePayload).build();
+		} else if (requestMessage instanceof DescriptionRequestMessage) {
+			// catalog of artifacts, answered from memory
+			MultipartMessage responseMessageMultipart = new MultipartMessageBuilder()
+					.withHeaderContent(multiPartMessageService.getResponseHeader(requestMessage))
+					.withPayloadContent(new GsonBuilder().create().toJson(artifactCatalogService.getArtifacts()))
+					.build();
 			responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessageMultipart, false);
 		} else {
-			responseMessageString = createDummyResponse(requestHeader);
+			return createDummyResponse(requestMessageMultipart, sample);
 		}
-		WebSocketServerManager.getMessageWebSocketResponse().sendResponse(responseMessageString);
+		metricsService.recordMessage(sample, ENDPOINT, requestMessage, rejectionMessage);
+		return responseMessageString;
 	}
 
-	private String createDummyResponse(String resquestMessage) {
+	private String createDummyResponse(ParsedMultipartMessage resquestMessage, Timer.Sample sample) {
 		String responseMessageString = null;
+		Message rejectionMessage = null;
 		try {
 			String responsePayload = createResponsePayload();
 			// prepare multipart message.
-			MultipartMessage responseMessage = new MultipartMessageBuilder().withHeaderContent(resquestMessage)
+			MultipartMessage responseMessage = new MultipartMessageBuilder().withHeaderContent(resquestMessage.getHeader())
 					.withPayloadContent(responsePayload).build();
 			responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessage, false);
 
 		} catch (Exception e) {
 			logger.error("Error while creating dummy response", e);
-			Message rejectionMessage = multiPartMessageService.createRejectionMessageLocalIssues(multiPartMessageService.getMessage(resquestMessage));
+			rejectionMessage = multiPartMessageService.createRejectionMessageLocalIssues(resquestMessage.getMessage());
 			MultipartMessage responseMessageRejection = new MultipartMessageBuilder().withHeaderContent(rejectionMessage)
 					.withPayloadContent(null).build();
 			responseMessageString = MultipartMessageProcessor.multipartMessagetoString(responseMessageRejection, false);
 		}
+		metricsService.recordMessage(sample, ENDPOINT, resquestMessage.getMessage(), rejectionMessage);
 		return responseMessageString;
 	}
 
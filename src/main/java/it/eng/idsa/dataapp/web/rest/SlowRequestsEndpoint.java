@@ -0,0 +1,46 @@
+package it.eng.idsa.dataapp.web.rest;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.service.TraceService;
+
+/**
+ * Actuator endpoint listing recent slow requests with their stage timings</br>
+ * <i>/actuator/slowrequests?minMillis=500&limit=20</i>, <i>/actuator/slowrequests/{traceId}</i>
+ */
+@Component
+@Endpoint(id = "slowrequests")
+public class SlowRequestsEndpoint {
+
+	private static final int DEFAULT_LIMIT = 50;
+
+	@Autowired
+	private TraceService traceService;
+
+	@Value("${application.tracing.slowThresholdMillis:1000}")
+	private long slowThresholdMillis;
+
+	@ReadOperation
+	public List<RequestTrace> slowRequests(@Nullable Long minMillis, @Nullable Integer limit) {
+		return traceService.getRecentTraces(minMillis != null ? minMillis : slowThresholdMillis,
+				limit != null ? limit : DEFAULT_LIMIT);
+	}
+
+	/**
+	 * All traces of request, e.g. consumer and provider side when both run in this instance
+	 * @param traceId last segment of IDS message @id
+	 */
+	@ReadOperation
+	public List<RequestTrace> trace(@Selector String traceId) {
+		return traceService.getTraces(traceId);
+	}
+}
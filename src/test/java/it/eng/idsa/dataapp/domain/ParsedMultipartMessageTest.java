@@ -0,0 +1,94 @@
+package it.eng.idsa.dataapp.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.Message;
+import it.eng.idsa.multipart.builder.MultipartMessageBuilder;
+import it.eng.idsa.multipart.domain.MultipartMessage;
+import it.eng.idsa.multipart.processor.MultipartMessageProcessor;
+import it.eng.idsa.multipart.util.DateUtil;
+
+public class ParsedMultipartMessageTest {
+	
+	private static final String PAYLOAD = "YSxiCjEsMgo=";
+	
+	private ArtifactRequestMessage message;
+	private String body;
+	
+	@BeforeEach
+	public void setup() {
+		message = new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))
+				._modelVersion_("4.0.0")
+				._requestedArtifact_(new ArtifactRequest("a.csv").toRequestedArtifact())
+				.build();
+		body = MultipartMessageProcessor.multipartMessagetoString(new MultipartMessageBuilder()
+				.withHeaderContent(message)
+				.withPayloadContent(PAYLOAD)
+				.build(), false);
+	}
+	
+	@Test
+	public void accessors() {
+		ParsedMultipartMessage parsed = new ParsedMultipartMessage(body);
+		
+		assertSame(body, parsed.getBody());
+		assertTrue(parsed.getMessage() instanceof ArtifactRequestMessage);
+		assertEquals(message.getId(), parsed.getMessage().getId());
+		assertEquals(message.getRequestedArtifact(), ((ArtifactRequestMessage) parsed.getMessage()).getRequestedArtifact());
+		assertEquals(PAYLOAD, parsed.getPayload());
+		assertTrue(parsed.getHeader().contains(message.getId().toString()));
+	}
+	
+	@Test
+	public void parsedOnlyOnce() {
+		ParsedMultipartMessage parsed = new ParsedMultipartMessage(body);
+		
+		MultipartMessage multipartMessage = parsed.getMultipartMessage();
+		
+		// every accessor is served from the same parsed message
+		assertSame(multipartMessage, parsed.getMultipartMessage());
+		assertSame(multipartMessage.getHeaderContent(), parsed.getMessage());
+		assertEquals(multipartMessage.getHeaderContentString(), parsed.getHeader());
+		assertSame(multipartMessage.getPayloadContent(), parsed.getPayload());
+	}
+	
+	@Test
+	public void parsedOnlyOnce_concurrentAccess() throws Exception {
+		ParsedMultipartMessage parsed = new ParsedMultipartMessage(body);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Message>> messages = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				messages.add(executor.submit(() -> {
+					start.await();
+					return parsed.getMessage();
+				}));
+			}
+			start.countDown();
+			
+			for (Future<Message> received : messages) {
+				assertSame(parsed.getMessage(), received.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.service.ArtifactCacheService;
+
+public class ArtifactCacheServiceTest {
+	
+	private static final String VARIANT = ArtifactCacheService.VARIANT_BASE64;
+	
+	private ArtifactCacheServiceImpl cache;
+	
+	private final Path a = Paths.get("a.csv");
+	private final Path b = Paths.get("b.csv");
+	private final Path c = Paths.get("c.csv");
+	
+	@BeforeEach
+	public void setup() {
+		cache = new ArtifactCacheServiceImpl();
+		ReflectionTestUtils.setField(cache, "maxBytes", 10L);
+		ReflectionTestUtils.setField(cache, "maxEntryBytes", 6L);
+	}
+
+	@Test
+	public void leastRecentlyUsedEvictedByBytes() {
+		cache.put(a, 1, 3, VARIANT, "aaaa");
+		cache.put(b, 1, 3, VARIANT, "bbbb");
+		assertNotNull(cache.get(a, 1, 3, VARIANT));
+		cache.put(c, 1, 3, VARIANT, "cccc");
+		
+		assertNull(cache.get(b, 1, 3, VARIANT));
+		assertNotNull(cache.get(a, 1, 3, VARIANT));
+		assertNotNull(cache.get(c, 1, 3, VARIANT));
+		assertEquals(8, cache.getCurrentBytes());
+		assertEquals(1, cache.getEvictions());
+	}
+	
+	@Test
+	public void modifiedArtifactMisses() {
+		cache.put(a, 1, 3, VARIANT, "aaaa");
+		
+		assertNull(cache.get(a, 2, 3, VARIANT));
+		assertNull(cache.get(a, 1, 4, VARIANT));
+		cache.put(a, 2, 3, VARIANT, "AAAA");
+		assertEquals(1, cache.getEntryCount());
+	}
+	
+	@Test
+	public void largeEntryNotCached() {
+		cache.put(a, 1, 6, VARIANT, "aaaaaaaa");
+		
+		assertNull(cache.get(a, 1, 6, VARIANT));
+		assertEquals(0, cache.getCurrentBytes());
+	}
+	
+	@Test
+	public void watcherEventInvalidates() {
+		cache.put(a, 1, 3, VARIANT, "aaaa");
+		cache.put(b, 1, 3, VARIANT, "bbbb");
+		
+		cache.artifactChanged(a.toAbsolutePath());
+		assertNull(cache.get(a, 1, 3, VARIANT));
+		assertNotNull(cache.get(b, 1, 3, VARIANT));
+		cache.overflow();
+		assertEquals(0, cache.getEntryCount());
+	}
+}
@@ -0,0 +1,195 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.service.DataLakeWatchService;
+
+public class ArtifactCatalogServiceTest {
+	
+	private static final Path DATA_LAKE = Paths.get("target", "artifact-catalog-test");
+	
+	private ArtifactCatalogServiceImpl service;
+	
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+		Files.createDirectories(DATA_LAKE);
+		service = new ArtifactCatalogServiceImpl();
+		ArtifactLockServiceImpl artifactLockService = new ArtifactLockServiceImpl();
+		artifactLockService.init();
+		ReflectionTestUtils.setField(service, "artifactLockService", artifactLockService);
+		ReflectionTestUtils.setField(service, "dataLakeDirectory", DATA_LAKE);
+	}
+	
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+	}
+
+	@Test
+	public void csvDescribed() throws IOException, NoSuchAlgorithmException {
+		byte[] content = "a,b\n1,2\n3,4".getBytes(StandardCharsets.UTF_8);
+		Files.write(DATA_LAKE.resolve("data.csv"), content);
+		
+		assertTrue(service.index(DATA_LAKE.resolve("data.csv")));
+		ArtifactDescriptor descriptor = service.getArtifact("data.csv").get();
+		assertEquals(content.length, descriptor.getSize());
+		assertEquals("text/csv", descriptor.getMimeType());
+		// header line is not a row
+		assertEquals(Long.valueOf(2), descriptor.getRowCount());
+		assertEquals(Sha256.toHex(MessageDigest.getInstance("SHA-256").digest(content)), descriptor.getSha256());
+	}
+	
+	@Test
+	public void deletedArtifactRemoved() throws IOException {
+		Path artifact = DATA_LAKE.resolve("data.txt");
+		Files.write(artifact, "x".getBytes(StandardCharsets.UTF_8));
+		service.index(artifact);
+		assertNull(service.getArtifact("data.txt").get().getRowCount());
+		
+		Files.delete(artifact);
+		assertFalse(service.index(artifact));
+		assertFalse(service.getArtifact("data.txt").isPresent());
+	}
+	
+	@Test
+	public void notModifiedUntilContentChanges() throws IOException {
+		Path artifact = DATA_LAKE.resolve("data.csv");
+		Files.write(artifact, "a,b\n1,2".getBytes(StandardCharsets.UTF_8));
+		service.index(artifact);
+		String sha256 = service.getArtifact("data.csv").get().getSha256();
+		
+		assertTrue(service.isNotModified("data.csv", sha256.toUpperCase()));
+		assertFalse(service.isNotModified("data.csv", "abc"));
+		assertFalse(service.isNotModified("other.csv", sha256));
+		
+		// data lake is not watched, so file is checked
+		Files.write(artifact, "a,b\n1,2\n3,4".getBytes(StandardCharsets.UTF_8));
+		assertFalse(service.isNotModified("data.csv", sha256));
+	}
+	
+	@Test
+	public void watchedCatalogAnsweredFromMemory() throws IOException {
+		DataLakeWatchService dataLakeWatchService = mock(DataLakeWatchService.class);
+		when(dataLakeWatchService.isWatching()).thenReturn(true);
+		ReflectionTestUtils.setField(service, "dataLakeWatchService", dataLakeWatchService);
+		ReflectionTestUtils.setField(service, "debounceMillis", 200L);
+		Path artifact = DATA_LAKE.resolve("data.csv");
+		Files.write(artifact, "a,b\n1,2".getBytes(StandardCharsets.UTF_8));
+		service.init();
+		try {
+			assertTrue(await(service::isReady));
+			String sha256 = service.getArtifact("data.csv").get().getSha256();
+			
+			// file is not checked, change is known only from watcher event
+			Files.write(artifact, "a,b\n1,2\n3,4".getBytes(StandardCharsets.UTF_8));
+			assertTrue(service.isNotModified("data.csv", sha256));
+			
+			service.artifactChanged(artifact.toAbsolutePath());
+			assertFalse(service.getCurrentArtifact("data.csv").isPresent());
+			assertTrue(await(() -> service.getCurrentArtifact("data.csv").isPresent()));
+			assertFalse(service.isNotModified("data.csv", sha256));
+			assertEquals(Long.valueOf(2), service.getCurrentArtifact("data.csv").get().getRowCount());
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	@Test
+	public void startupScanBuildsCatalog() throws IOException {
+		Files.write(DATA_LAKE.resolve("b.csv"), "a,b\n1,2".getBytes(StandardCharsets.UTF_8));
+		Files.write(DATA_LAKE.resolve("a.txt"), "x".getBytes(StandardCharsets.UTF_8));
+		Files.write(DATA_LAKE.resolve(".b.csv.tmp"), "x".getBytes(StandardCharsets.UTF_8));
+		Files.write(DATA_LAKE.resolve("c.csv.part"), "x".getBytes(StandardCharsets.UTF_8));
+		DataLakeWatchService dataLakeWatchService = mock(DataLakeWatchService.class);
+		ReflectionTestUtils.setField(service, "dataLakeWatchService", dataLakeWatchService);
+		
+		service.init();
+		try {
+			assertTrue(await(service::isReady));
+			assertEquals(Arrays.asList("a.txt", "b.csv"), names());
+			assertEquals(Long.valueOf(1), service.getArtifact("b.csv").get().getRowCount());
+			verify(dataLakeWatchService).addListener(service);
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	@Test
+	public void watcherEventsUpdateCatalog() throws IOException {
+		ReflectionTestUtils.setField(service, "debounceMillis", 20L);
+		service.init();
+		try {
+			assertTrue(await(service::isReady));
+			Path artifact = DATA_LAKE.resolve("data.csv");
+			Files.write(artifact, "a,b\n1,2".getBytes(StandardCharsets.UTF_8));
+			service.artifactChanged(artifact);
+			service.artifactChanged(artifact);
+			assertTrue(await(() -> service.getArtifact("data.csv").isPresent()));
+			
+			Files.write(artifact, "a,b\n1,2\n3,4".getBytes(StandardCharsets.UTF_8));
+			service.artifactChanged(artifact);
+			assertTrue(await(() -> Long.valueOf(2).equals(service.getArtifact("data.csv").get().getRowCount())));
+			
+			Files.delete(artifact);
+			service.artifactChanged(artifact);
+			assertTrue(await(() -> !service.getArtifact("data.csv").isPresent()));
+			
+			Path temporary = DATA_LAKE.resolve(".data.csv.tmp");
+			Files.write(temporary, "x".getBytes(StandardCharsets.UTF_8));
+			service.artifactChanged(temporary);
+			Files.write(DATA_LAKE.resolve("other.csv"), "x".getBytes(StandardCharsets.UTF_8));
+			// events were lost, whole directory is scanned again
+			service.overflow();
+			assertTrue(await(() -> service.getArtifact("other.csv").isPresent()));
+			assertEquals(Arrays.asList("other.csv"), names());
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	private List<String> names() {
+		return service.getArtifacts().stream().map(ArtifactDescriptor::getName).collect(Collectors.toList());
+	}
+	
+	private static boolean await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+}
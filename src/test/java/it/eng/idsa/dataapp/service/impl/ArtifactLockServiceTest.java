@@ -0,0 +1,61 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.ArtifactLockService.ArtifactLock;
+
+public class ArtifactLockServiceTest {
+	
+	private static final Path ARTIFACT = Paths.get("src", "test", "resources", "lock-test.csv");
+	
+	private ArtifactLockServiceImpl service;
+	
+	private ExecutorService executor;
+	
+	@BeforeEach
+	public void setup() {
+		service = new ArtifactLockServiceImpl();
+		ReflectionTestUtils.setField(service, "timeoutMillis", 100L);
+		service.init();
+		executor = Executors.newSingleThreadExecutor();
+	}
+	
+	@AfterEach
+	public void cleanup() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void readLocksAreShared() throws Exception {
+		try (ArtifactLock first = service.lockForRead(ARTIFACT)) {
+			Future<ArtifactLock> second = executor.submit(() -> service.lockForRead(ARTIFACT));
+			ArtifactLock secondLock = second.get();
+			assertNotNull(secondLock);
+			executor.submit(secondLock::close).get();
+		}
+	}
+	
+	@Test
+	public void writeLockExcludesReaders() throws Exception {
+		try (ArtifactLock writeLock = service.lockForWrite(ARTIFACT)) {
+			Future<ArtifactLock> reader = executor.submit(() -> service.lockForRead(ARTIFACT));
+			ExecutionException e = assertThrows(ExecutionException.class, reader::get);
+			assertTrue(e.getCause() instanceof ReadFileLockedException);
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactResponseMessage;
+import de.fraunhofer.iais.eis.DescriptionResponseMessage;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionMessage;
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult.Status;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.ReceivedArtifact;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.domain.UploadStatus;
+import it.eng.idsa.dataapp.service.ArtifactCacheService;
+import it.eng.idsa.dataapp.service.ArtifactVersionService;
+import it.eng.idsa.dataapp.service.MessageExchangeService;
+import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.OpenDataService;
+import it.eng.idsa.dataapp.service.RecreateFileService;
+import it.eng.idsa.dataapp.service.SerializerService;
+
+public class ArtifactRequestServiceTest {
+
+	private static final String FORWARD_TO_INTERNAL = "wss://localhost:8887";
+	private static final String FORWARD_TO = "wss://localhost:8086";
+	private static final Path DESTINATION = Paths.get("target", "artifact-request-test");
+
+	private ArtifactRequestServiceImpl service;
+	private MessageExchangeService messageExchangeService;
+	private MultiPartMessageService multiPartMessageService;
+	private RecreateFileService recreateFileService;
+	private OpenDataService openDataService;
+	private ArtifactVersionService artifactVersionService;
+	private TraceServiceImpl traceService;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DESTINATION.toFile());
+		Files.createDirectories(DESTINATION);
+		messageExchangeService = mock(MessageExchangeService.class);
+		multiPartMessageService = mock(MultiPartMessageService.class);
+		recreateFileService = mock(RecreateFileService.class);
+		openDataService = mock(OpenDataService.class);
+		artifactVersionService = mock(ArtifactVersionService.class);
+		// serialized request is name of requested artifact, so exchange can answer each artifact differently
+		SerializerService serializerService = mock(SerializerService.class);
+		when(serializerService.serialize(any())).thenAnswer(invocation -> invocation.getArgument(0) instanceof ArtifactRequestMessage
+				? ArtifactRequest.fromRequestedArtifact(((ArtifactRequestMessage) invocation.getArgument(0)).getRequestedArtifact()).getFileName()
+				: "description");
+		when(openDataService.submitUpload(anyString())).thenAnswer(invocation -> new UploadStatus("upload-1", invocation.getArgument(0)));
+		when(artifactVersionService.recordReceived(anyString(), any())).thenAnswer(invocation -> {
+			ReceivedArtifact received = new ReceivedArtifact();
+			received.setArtifact(invocation.getArgument(0));
+			received.setSha256("abc");
+			return received;
+		});
+
+		traceService = new TraceServiceImpl();
+
+		service = new ArtifactRequestServiceImpl();
+		ReflectionTestUtils.setField(service, "messageExchangeService", messageExchangeService);
+		ReflectionTestUtils.setField(service, "multiPartMessageService", multiPartMessageService);
+		ReflectionTestUtils.setField(service, "recreateFileService", recreateFileService);
+		ReflectionTestUtils.setField(service, "opendataService", openDataService);
+		ReflectionTestUtils.setField(service, "serializerService", serializerService);
+		ReflectionTestUtils.setField(service, "artifactVersionService", artifactVersionService);
+		ReflectionTestUtils.setField(service, "traceService", traceService);
+		ReflectionTestUtils.setField(service, "dataLakeDirectoryDestination", DESTINATION);
+		ReflectionTestUtils.setField(service, "dateTimePattern", "YYYYMMdd_HHmmss");
+		ReflectionTestUtils.setField(service, "maxArtifacts", 10);
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(DESTINATION.toFile());
+	}
+
+	@Test
+	public void match_globPatterns() {
+		List<ArtifactDescriptor> catalog = Arrays.asList(descriptor("b_2020.csv"), descriptor("a_2020.csv"),
+				descriptor("a_2019.csv"), descriptor("readme.txt"));
+
+		assertEquals(Arrays.asList("a_2020.csv", "b_2020.csv"), ArtifactRequestServiceImpl.match(catalog, Arrays.asList("*_2020.csv")));
+		assertEquals(Arrays.asList("a_2019.csv", "a_2020.csv", "readme.txt"),
+				ArtifactRequestServiceImpl.match(catalog, Arrays.asList("a_*", "*.txt")));
+		assertEquals(Collections.emptyList(), ArtifactRequestServiceImpl.match(catalog, Arrays.asList("*.json")));
+	}
+
+	@Test
+	public void requestArtifacts_batchLimit() {
+		ReflectionTestUtils.setField(service, "maxArtifacts", 1);
+
+		assertThrows(IllegalArgumentException.class, () -> service.requestArtifacts(FORWARD_TO_INTERNAL, FORWARD_TO,
+				Arrays.asList("a.csv", "b.csv"), Collections.emptyList(), false));
+	}
+
+	@Test
+	public void requestArtifacts_resultOfEachArtifact() throws IOException {
+		respond("saved.csv", mock(ArtifactResponseMessage.class), "YSxi");
+		respond("empty.csv", mock(ArtifactResponseMessage.class), null);
+		respond("rejected.csv", mock(RejectionMessage.class), null);
+		when(messageExchangeService.send(anyString(), anyString(), eq("failed.csv"), any()))
+				.thenThrow(new IOException("Connection closed"));
+
+		List<ArtifactTransferResult> results = service.requestArtifacts(FORWARD_TO_INTERNAL, FORWARD_TO,
+				Arrays.asList("saved.csv", "empty.csv", "rejected.csv", "failed.csv"), Collections.emptyList(), false);
+
+		assertEquals(4, results.size());
+		assertEquals("saved.csv", results.get(0).getArtifact());
+		assertEquals(Status.SAVED, results.get(0).getStatus());
+		assertTrue(results.get(0).getFileName().startsWith("saved_"));
+		assertEquals("upload-1", results.get(0).getUploadId());
+		assertEquals(Status.NOT_SAVED, results.get(1).getStatus());
+		assertEquals(Status.FAILED, results.get(2).getStatus());
+		assertEquals("Request rejected by provider", results.get(2).getError());
+		assertEquals(Status.FAILED, results.get(3).getStatus());
+		assertEquals("Connection closed", results.get(3).getError());
+		// no encoding announced in response header
+		verify(recreateFileService).recreateTheFile(eq("YSxi"), any(File.class), eq(false));
+		verify(openDataService).submitUpload(anyString());
+	}
+
+	@Test
+	public void requestArtifact_compressedPayloadAnnouncedInHeader() throws IOException {
+		respond("a.csv", mock(ArtifactResponseMessage.class), "YSxi");
+		when(multiPartMessageService.getPayloadEncoding(any())).thenReturn(ArtifactCacheService.VARIANT_GZIP_BASE64);
+
+		ArtifactTransferResult result = service.requestArtifact(FORWARD_TO_INTERNAL, FORWARD_TO, "a.csv", false, null);
+
+		assertEquals(Status.SAVED, result.getStatus());
+		verify(recreateFileService).recreateTheFile(eq("YSxi"), any(File.class), eq(true));
+	}
+
+	@Test
+	public void requestArtifacts_tracedAsBatch() throws IOException {
+		respond("a.csv", mock(ArtifactResponseMessage.class), "YSxi");
+		respond("b.csv", mock(RejectionMessage.class), null);
+
+		service.requestArtifacts(FORWARD_TO_INTERNAL, FORWARD_TO, Arrays.asList("a.csv", "b.csv"), Collections.emptyList(), false);
+
+		List<RequestTrace> traces = traceService.getRecentTraces(0, 10);
+		assertEquals(3, traces.size());
+		RequestTrace batch = traces.stream().filter(trace -> trace.getName().equals("consumer.batch")).findFirst().get();
+		assertEquals("2", batch.getAttributes().get("artifacts"));
+		assertEquals("1", batch.getAttributes().get("saved"));
+		assertEquals("1", batch.getAttributes().get("failed"));
+		assertEquals(2, traces.stream().filter(trace -> batch.getTraceId().equals(trace.getAttributes().get("batch"))).count());
+		assertNull(traceService.current());
+	}
+
+	@Test
+	public void requestArtifacts_patternsWithoutArtifacts() throws IOException {
+		DescriptionResponseMessage descriptionResponse = mock(DescriptionResponseMessage.class);
+		respond("description", descriptionResponse, "[{\"name\":\"a.csv\"},{\"name\":\"readme.txt\"}]");
+		respond("a.csv", mock(ArtifactResponseMessage.class), "YSxi");
+
+		List<ArtifactTransferResult> results = service.requestArtifacts(FORWARD_TO_INTERNAL, FORWARD_TO,
+				null, Arrays.asList("*.csv"), false);
+
+		assertEquals(1, results.size());
+		assertEquals("a.csv", results.get(0).getArtifact());
+		assertEquals(Status.SAVED, results.get(0).getStatus());
+	}
+
+	@Test
+	public void requestArtifact_selectionNotPublished() throws IOException {
+		respond("a.csv", mock(ArtifactResponseMessage.class), "YSxi");
+
+		ArtifactTransferResult result = service.requestArtifact(FORWARD_TO_INTERNAL, FORWARD_TO, "a.csv",
+				CsvSelection.of("LOC", "0-9"), false, null);
+
+		assertEquals(Status.SAVED, result.getStatus());
+		assertTrue(result.getFileName().startsWith("a_selection_"));
+		assertNull(result.getUploadId());
+		verify(artifactVersionService, never()).recordReceived(anyString(), any());
+		verify(openDataService, never()).submitUpload(anyString());
+	}
+
+	@Test
+	public void requestArtifact_notModifiedResponse() throws IOException {
+		when(artifactVersionService.getLastHash("a.csv")).thenReturn("abc");
+		respond("a.csv", mock(ArtifactResponseMessage.class), null);
+
+		ArtifactTransferResult result = service.requestArtifact(FORWARD_TO_INTERNAL, FORWARD_TO, "a.csv", false, null);
+
+		assertEquals(Status.NOT_MODIFIED, result.getStatus());
+		assertNull(result.getFileName());
+		verify(artifactVersionService).recordNotModified("a.csv");
+		verify(recreateFileService, never()).recreateTheFile(anyString(), any(File.class), anyBoolean());
+		verify(openDataService, never()).submitUpload(anyString());
+	}
+
+	@Test
+	public void requestArtifact_sameContentNotPublished() throws IOException {
+		when(artifactVersionService.getLastHash("a.csv")).thenReturn("ABC");
+		when(artifactVersionService.recordReceived(anyString(), any())).thenAnswer(invocation -> {
+			ReceivedArtifact received = new ReceivedArtifact();
+			received.setArtifact(invocation.getArgument(0));
+			received.setSha256("abc");
+			received.setFileName("a_previous.csv");
+			return received;
+		});
+		respond("a.csv", mock(ArtifactResponseMessage.class), "YSxi");
+		doAnswer(invocation -> Files.write(((File) invocation.getArgument(1)).toPath(), "a,b".getBytes(StandardCharsets.UTF_8)))
+				.when(recreateFileService).recreateTheFile(anyString(), any(File.class), anyBoolean());
+		ArgumentCaptor<File> savedFile = ArgumentCaptor.forClass(File.class);
+
+		ArtifactTransferResult result = service.requestArtifact(FORWARD_TO_INTERNAL, FORWARD_TO, "a.csv", false, null);
+
+		assertEquals(Status.NOT_MODIFIED, result.getStatus());
+		assertEquals("a_previous.csv", result.getFileName());
+		verify(recreateFileService).recreateTheFile(eq("YSxi"), savedFile.capture(), anyBoolean());
+		assertFalse(savedFile.getValue().exists());
+		verify(openDataService, never()).submitUpload(anyString());
+	}
+
+	private void respond(String header, Message responseMessage, String payload) throws IOException {
+		String response = "response to " + header;
+		when(messageExchangeService.send(anyString(), anyString(), eq(header), any())).thenReturn(response);
+		ParsedMultipartMessage parsed = mock(ParsedMultipartMessage.class);
+		when(parsed.getMessage()).thenReturn(responseMessage);
+		when(parsed.getPayload()).thenReturn(payload);
+		when(multiPartMessageService.parseMultipartMessage(response)).thenReturn(parsed);
+	}
+
+	private ArtifactDescriptor descriptor(String name) {
+		ArtifactDescriptor descriptor = new ArtifactDescriptor();
+		descriptor.setName(name);
+		return descriptor;
+	}
+}
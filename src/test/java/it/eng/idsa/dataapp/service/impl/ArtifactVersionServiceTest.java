@@ -0,0 +1,96 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.ReceivedArtifact;
+import it.eng.idsa.dataapp.repository.ReceivedArtifactRepository;
+
+public class ArtifactVersionServiceTest {
+
+	private static final Path DESTINATION = Paths.get("target", "artifact-version-test");
+	private static final byte[] CONTENT = "LOC,CLL\nCVUT,8\n".getBytes(StandardCharsets.UTF_8);
+
+	private ArtifactVersionServiceImpl service;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DESTINATION.toFile());
+		Files.createDirectories(DESTINATION);
+		// repository backed by map
+		Map<String, ReceivedArtifact> records = new HashMap<>();
+		ReceivedArtifactRepository repository = mock(ReceivedArtifactRepository.class);
+		when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(records.get(invocation.getArgument(0))));
+		when(repository.save(any())).thenAnswer(invocation -> {
+			ReceivedArtifact receivedArtifact = invocation.getArgument(0);
+			records.put(receivedArtifact.getArtifact(), receivedArtifact);
+			return receivedArtifact;
+		});
+		service = new ArtifactVersionServiceImpl();
+		ReflectionTestUtils.setField(service, "receivedArtifactRepository", repository);
+		ReflectionTestUtils.setField(service, "dataLakeDirectoryDestination", DESTINATION);
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(DESTINATION.toFile());
+	}
+
+	@Test
+	public void recordReceived() throws IOException, NoSuchAlgorithmException {
+		Path savedFile = Files.write(DESTINATION.resolve("data_1.csv"), CONTENT);
+
+		ReceivedArtifact receivedArtifact = service.recordReceived("data.csv", savedFile);
+
+		String sha256 = Sha256.toHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+		assertEquals(sha256, receivedArtifact.getSha256());
+		assertEquals("data_1.csv", receivedArtifact.getFileName());
+		assertEquals(CONTENT.length, receivedArtifact.getSize());
+		assertEquals(sha256, service.getLastHash("data.csv"));
+	}
+
+	@Test
+	public void sameContentKeepsRecordedCopy() throws IOException {
+		service.recordReceived("data.csv", Files.write(DESTINATION.resolve("data_1.csv"), CONTENT));
+
+		ReceivedArtifact receivedArtifact = service.recordReceived("data.csv", Files.write(DESTINATION.resolve("data_2.csv"), CONTENT));
+
+		assertEquals("data_1.csv", receivedArtifact.getFileName());
+	}
+
+	@Test
+	public void lastHash_neverReceived() {
+		assertNull(service.getLastHash("data.csv"));
+	}
+
+	@Test
+	public void lastHash_copyDeleted() throws IOException {
+		Path savedFile = Files.write(DESTINATION.resolve("data_1.csv"), CONTENT);
+		service.recordReceived("data.csv", savedFile);
+
+		Files.delete(savedFile);
+
+		assertNull(service.getLastHash("data.csv"));
+	}
+}
@@ -0,0 +1,217 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.fraunhofer.iais.eis.ArtifactResponseMessage;
+import it.eng.idsa.dataapp.domain.StreamingContentBody;
+import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.RecreateFileService;
+import it.eng.idsa.dataapp.service.SerializerService;
+
+public class BinaryTransferServiceTest {
+
+	private static final Path TARGET_DIRECTORY = Paths.get("target", "binary-transfer-test");
+	private static final String HEADER = "{\"@type\":\"ids:ArtifactResponseMessage\"}";
+	private static final byte[] CONTENT = "LOC,CLL\r\nCVUT,8\n\0\1\2".getBytes(StandardCharsets.UTF_8);
+
+	private BinaryTransferServiceImpl service;
+	private CloseableHttpClient httpClient;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(TARGET_DIRECTORY.toFile());
+		Files.createDirectories(TARGET_DIRECTORY);
+		MultiPartMessageService multiPartMessageService = mock(MultiPartMessageService.class);
+		when(multiPartMessageService.getMessage(any())).thenReturn(mock(ArtifactResponseMessage.class));
+		SerializerService serializerService = mock(SerializerService.class);
+		when(serializerService.serialize(any())).thenReturn("{}");
+		RecreateFileService recreateFileService = mock(RecreateFileService.class);
+		doAnswer(invocation -> Files.copy((InputStream) invocation.getArgument(0), ((File) invocation.getArgument(1)).toPath()))
+				.when(recreateFileService).recreateTheFileFromBinary(any(InputStream.class), any(File.class));
+		httpClient = mock(CloseableHttpClient.class);
+
+		service = new BinaryTransferServiceImpl();
+		ReflectionTestUtils.setField(service, "multiPartMessageService", multiPartMessageService);
+		ReflectionTestUtils.setField(service, "serializerService", serializerService);
+		ReflectionTestUtils.setField(service, "recreateFileService", recreateFileService);
+		ReflectionTestUtils.setField(service, "httpClient", httpClient);
+		ReflectionTestUtils.setField(service, "traceService", new TraceServiceImpl());
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(TARGET_DIRECTORY.toFile());
+	}
+
+	@Test
+	public void readLine_lineSeparatorSplitAcrossReads() throws IOException {
+		InputStream in = trickle("first\r\nsecond\nthird".getBytes(StandardCharsets.UTF_8), 1);
+
+		assertEquals("first", BinaryTransferServiceImpl.readLine(in));
+		assertEquals("second", BinaryTransferServiceImpl.readLine(in));
+		assertEquals("third", BinaryTransferServiceImpl.readLine(in));
+		assertNull(BinaryTransferServiceImpl.readLine(in));
+	}
+
+	@Test
+	public void readPartHeaders_untilEmptyLine() throws IOException {
+		InputStream in = trickle("Content-Type: text/plain\r\nCONTENT-LENGTH:  12\r\ninvalid\r\n\r\nbody".getBytes(StandardCharsets.UTF_8), 3);
+
+		Map<String, String> headers = BinaryTransferServiceImpl.readPartHeaders(in);
+
+		assertEquals(2, headers.size());
+		assertEquals("text/plain", headers.get("content-type"));
+		assertEquals("12", headers.get("content-length"));
+		assertEquals("body", BinaryTransferServiceImpl.readLine(in));
+	}
+
+	@Test
+	public void readUntilBoundary_boundarySplitAcrossReads() throws IOException {
+		InputStream in = trickle("YSxi\r\nYyxk\r\n--abc123\r\nnext".getBytes(StandardCharsets.UTF_8), 5);
+
+		assertEquals("YSxiYyxk", BinaryTransferServiceImpl.readUntilBoundary(in, "abc123"));
+		assertEquals("next", BinaryTransferServiceImpl.readLine(in));
+	}
+
+	@Test
+	public void readUntilBoundary_missingClosingBoundary() {
+		InputStream in = trickle("YSxi\r\nYyxk\r\n--abc".getBytes(StandardCharsets.UTF_8), 2);
+
+		assertThrows(IOException.class, () -> BinaryTransferServiceImpl.readUntilBoundary(in, "abc123"));
+	}
+
+	@Test
+	public void binaryMessage_parsedBack() throws IOException {
+		HttpEntity entity = binaryMessage(CONTENT.length);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+		String boundary = ContentType.get(entity).getParameter("boundary");
+
+		assertEquals(out.size(), entity.getContentLength());
+		InputStream in = trickle(out.toByteArray(), 7);
+		BinaryTransferServiceImpl.readUntilBoundary(in, boundary);
+		BinaryTransferServiceImpl.readPartHeaders(in);
+		assertEquals(HEADER, BinaryTransferServiceImpl.readUntilBoundary(in, boundary));
+		Map<String, String> payloadHeaders = BinaryTransferServiceImpl.readPartHeaders(in);
+		assertEquals(String.valueOf(CONTENT.length), payloadHeaders.get("content-length"));
+		assertEquals(ContentType.APPLICATION_OCTET_STREAM.getMimeType(), payloadHeaders.get("content-type"));
+		byte[] payload = new byte[CONTENT.length];
+		assertEquals(CONTENT.length, in.readNBytes(payload, 0, payload.length));
+		assertArrayEquals(CONTENT, payload);
+	}
+
+	@Test
+	public void streamingContentBody_lengthChangedWhileSending() {
+		HttpEntity entity = binaryMessage(CONTENT.length + 1);
+
+		assertThrows(IOException.class, () -> entity.writeTo(new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void requestArtifact_binaryPayloadSaved() throws IOException {
+		respond(response(CONTENT.length));
+		Path target = TARGET_DIRECTORY.resolve("data.csv");
+
+		assertEquals(CONTENT.length, service.requestArtifact("https://localhost:8083/routerBodyBinary", "data.csv", target));
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+	}
+
+	@Test
+	public void requestArtifact_truncatedPayloadRejected() throws IOException {
+		byte[] response = response(CONTENT.length);
+		int payloadEnd = indexOf(response, CONTENT) + CONTENT.length;
+		respond(Arrays.copyOf(response, payloadEnd - 5));
+		Path target = TARGET_DIRECTORY.resolve("data.csv");
+
+		assertThrows(IOException.class, () -> service.requestArtifact("https://localhost:8083/routerBodyBinary", "data.csv", target));
+		assertFalse(Files.exists(target));
+	}
+
+	private HttpEntity binaryMessage(long declaredLength) {
+		StreamingContentBody payload = new StreamingContentBody(ContentType.APPLICATION_OCTET_STREAM, "data.csv", declaredLength, out -> {
+			out.write(CONTENT);
+			return CONTENT.length;
+		});
+		return new MultiPartMessageServiceImpl().createBinaryMultipartMessage(HEADER, payload);
+	}
+
+	/**
+	 * Serialized binary message, content type with boundary is stored as first line
+	 */
+	private byte[] response(long declaredLength) throws IOException {
+		HttpEntity entity = binaryMessage(declaredLength);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write((entity.getContentType().getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+		entity.writeTo(out);
+		return out.toByteArray();
+	}
+
+	private void respond(byte[] response) throws IOException {
+		int contentTypeEnd = indexOf(response, new byte[] { '\n' });
+		String contentType = new String(response, 0, contentTypeEnd, StandardCharsets.UTF_8);
+		ByteArrayEntity entity = new ByteArrayEntity(Arrays.copyOfRange(response, contentTypeEnd + 1, response.length));
+		entity.setContentType(contentType);
+		CloseableHttpResponse httpResponse = mock(CloseableHttpResponse.class);
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(200);
+		when(httpResponse.getStatusLine()).thenReturn(statusLine);
+		when(httpResponse.getEntity()).thenReturn(entity);
+		when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(httpResponse);
+	}
+
+	private static int indexOf(byte[] data, byte[] part) {
+		for (int i = 0; i <= data.length - part.length; i++) {
+			if (Arrays.equals(data, i, i + part.length, part, 0, part.length)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Buffered stream, as in service, whose source returns at most given number of bytes from each read
+	 */
+	private static InputStream trickle(byte[] data, int maxRead) {
+		return new BufferedInputStream(new FilterInputStream(new ByteArrayInputStream(data)) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, maxRead));
+			}
+		}, 4);
+	}
+}
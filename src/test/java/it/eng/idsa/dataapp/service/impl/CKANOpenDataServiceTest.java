@@ -0,0 +1,196 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClientException;
+
+import it.eng.idsa.dataapp.domain.UploadStatus;
+import it.eng.idsa.dataapp.domain.UploadStatus.State;
+import it.eng.idsa.dataapp.service.MetricsService;
+
+public class CKANOpenDataServiceTest {
+
+	private static final Path DATA_LAKE = Paths.get("target", "ckan-upload-test");
+	private static final String FILE_NAME = "data.csv";
+	private static final Set<State> FINAL_STATES = EnumSet.of(State.COMPLETED, State.SKIPPED, State.FAILED, State.REJECTED);
+
+	private CKANOpenDataServiceImpl service;
+	private CloseableHttpClient httpClient;
+	private MetricsService metricsService;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+		Files.createDirectories(DATA_LAKE);
+		Files.write(DATA_LAKE.resolve(FILE_NAME), "LOC,CLL\nCVUT,8\n".getBytes(StandardCharsets.UTF_8));
+		metricsService = mock(MetricsService.class);
+		service = new CKANOpenDataServiceImpl();
+		ReflectionTestUtils.setField(service, "ckanURL", "http://localhost:5000/api/action/resource_create");
+		ReflectionTestUtils.setField(service, "token", "token");
+		ReflectionTestUtils.setField(service, "packageId", "package");
+		ReflectionTestUtils.setField(service, "dataLakeDirectory", DATA_LAKE);
+		ReflectionTestUtils.setField(service, "uploadToCkan", true);
+		ReflectionTestUtils.setField(service, "workers", 1);
+		ReflectionTestUtils.setField(service, "queueCapacity", 1);
+		ReflectionTestUtils.setField(service, "maxConnections", 1);
+		ReflectionTestUtils.setField(service, "connectTimeoutMillis", 1000);
+		ReflectionTestUtils.setField(service, "socketTimeoutMillis", 1000);
+		ReflectionTestUtils.setField(service, "maxRetries", 2);
+		ReflectionTestUtils.setField(service, "initialBackoffMillis", 20L);
+		ReflectionTestUtils.setField(service, "maxBackoffMillis", 30L);
+		ReflectionTestUtils.setField(service, "statusHistorySize", 10);
+		ReflectionTestUtils.setField(service, "metricsService", metricsService);
+		ReflectionTestUtils.setField(service, "traceService", new TraceServiceImpl());
+		service.init();
+		((CloseableHttpClient) ReflectionTestUtils.getField(service, "httpClient")).close();
+		httpClient = mock(CloseableHttpClient.class);
+		ReflectionTestUtils.setField(service, "httpClient", httpClient);
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		service.shutdown();
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+	}
+
+	@Test
+	public void serverErrorRetriedWithBackoff() throws IOException {
+		CloseableHttpResponse unavailable = response(503);
+		CloseableHttpResponse created = response(200);
+		when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(unavailable, unavailable, created);
+		long start = System.nanoTime();
+
+		service.uploadData(FILE_NAME);
+
+		// 20 ms before second attempt, doubled and capped to 30 ms before third one
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+		verify(httpClient, times(3)).execute(any(HttpUriRequest.class));
+		verify(metricsService).recordUpload(any(), eq(MetricsService.OUTCOME_SUCCESS), eq(2));
+	}
+
+	@Test
+	public void clientErrorNotRetried() throws IOException {
+		CloseableHttpResponse badRequest = response(400);
+		when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(badRequest);
+
+		UploadStatus status = awaitFinished(service.submitUpload(FILE_NAME));
+
+		assertEquals(State.FAILED, status.getState());
+		assertEquals(1, status.getAttempts());
+		assertEquals("CKAN responded with status 400", status.getError());
+		verify(httpClient, times(1)).execute(any(HttpUriRequest.class));
+	}
+
+	@Test
+	public void retriesExhausted() throws IOException {
+		CloseableHttpResponse serverError = response(500);
+		when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(serverError);
+
+		assertThrows(RestClientException.class, () -> service.uploadData(FILE_NAME));
+
+		verify(httpClient, times(3)).execute(any(HttpUriRequest.class));
+		verify(metricsService).recordUpload(any(), eq(MetricsService.OUTCOME_FAILED), eq(2));
+	}
+
+	@Test
+	public void connectionErrorRetried() throws IOException {
+		CloseableHttpResponse created = response(201);
+		when(httpClient.execute(any(HttpUriRequest.class))).thenThrow(new IOException("Connection reset")).thenReturn(created);
+
+		UploadStatus status = awaitFinished(service.submitUpload(FILE_NAME));
+
+		assertEquals(State.COMPLETED, status.getState());
+		assertEquals(2, status.getAttempts());
+		assertNotNull(status.getFinished());
+	}
+
+	@Test
+	public void uploadDisabledSkipped() throws IOException {
+		ReflectionTestUtils.setField(service, "uploadToCkan", false);
+
+		UploadStatus status = awaitFinished(service.submitUpload(FILE_NAME));
+
+		assertEquals(State.SKIPPED, status.getState());
+		verify(httpClient, never()).execute(any(HttpUriRequest.class));
+	}
+
+	@Test
+	public void fullQueueRejected() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CloseableHttpResponse created = response(200);
+		when(httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return created;
+		});
+
+		UploadStatus running = service.submitUpload(FILE_NAME);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		UploadStatus queued = service.submitUpload(FILE_NAME);
+		UploadStatus rejected = service.submitUpload(FILE_NAME);
+
+		assertEquals(State.RUNNING, running.getState());
+		assertEquals(State.QUEUED, queued.getState());
+		assertEquals(State.REJECTED, rejected.getState());
+		assertEquals("Upload queue full", rejected.getError());
+		assertEquals(rejected, service.getUploadStatus(rejected.getId()));
+
+		release.countDown();
+		assertEquals(State.COMPLETED, awaitFinished(running).getState());
+		assertEquals(State.COMPLETED, awaitFinished(queued).getState());
+	}
+
+	private CloseableHttpResponse response(int statusCode) {
+		StatusLine statusLine = mock(StatusLine.class);
+		when(statusLine.getStatusCode()).thenReturn(statusCode);
+		CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+		when(response.getStatusLine()).thenReturn(statusLine);
+		return response;
+	}
+
+	/**
+	 * Waits until upload gets to final state, state is set after other fields of the status
+	 */
+	private static UploadStatus awaitFinished(UploadStatus status) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!FINAL_STATES.contains(status.getState()) && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return status;
+	}
+}
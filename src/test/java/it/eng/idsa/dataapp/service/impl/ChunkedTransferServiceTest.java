@@ -0,0 +1,191 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.gson.Gson;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactResponseMessage;
+import de.fraunhofer.iais.eis.RejectionMessage;
+import it.eng.idsa.dataapp.domain.ArtifactChunk;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.ParsedMultipartMessage;
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.service.MessageExchangeService;
+import it.eng.idsa.dataapp.service.MultiPartMessageService;
+import it.eng.idsa.dataapp.service.SerializerService;
+
+public class ChunkedTransferServiceTest {
+
+	private static final Path DESTINATION = Paths.get("target", "chunked-transfer-test");
+	private static final String ARTIFACT = "data.csv";
+	private static final String REJECTED = "rejected";
+	private static final byte[] CONTENT = "LOC,CLL\nCVUT,8\n".getBytes(StandardCharsets.UTF_8);
+
+	private ChunkedTransferServiceImpl service;
+	private MessageExchangeService messageExchangeService;
+	private TraceServiceImpl traceService;
+
+	/**
+	 * Offsets of requested chunks, in order
+	 */
+	private final List<Long> requestedOffsets = new ArrayList<>();
+	private long lastModified = 1000;
+	private boolean reject;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DESTINATION.toFile());
+		Files.createDirectories(DESTINATION);
+		// serialized request is its requestedArtifact, provider answers with payload only
+		SerializerService serializerService = mock(SerializerService.class);
+		when(serializerService.serialize(any()))
+				.thenAnswer(invocation -> ((ArtifactRequestMessage) invocation.getArgument(0)).getRequestedArtifact().toString());
+		messageExchangeService = mock(MessageExchangeService.class);
+		when(messageExchangeService.send(anyString(), anyString(), anyString(), any()))
+				.thenAnswer(invocation -> provide(invocation.getArgument(2)));
+		MultiPartMessageService multiPartMessageService = mock(MultiPartMessageService.class);
+		when(multiPartMessageService.parseMultipartMessage(anyString())).thenAnswer(invocation -> {
+			String payload = invocation.getArgument(0);
+			ParsedMultipartMessage parsed = mock(ParsedMultipartMessage.class);
+			if (REJECTED.equals(payload)) {
+				when(parsed.getMessage()).thenReturn(mock(RejectionMessage.class));
+			} else {
+				when(parsed.getMessage()).thenReturn(mock(ArtifactResponseMessage.class));
+				when(parsed.getPayload()).thenReturn(payload);
+			}
+			return parsed;
+		});
+		ArtifactLockServiceImpl artifactLockService = new ArtifactLockServiceImpl();
+		ReflectionTestUtils.setField(artifactLockService, "timeoutMillis", 100L);
+		artifactLockService.init();
+
+		traceService = new TraceServiceImpl();
+
+		service = new ChunkedTransferServiceImpl();
+		ReflectionTestUtils.setField(service, "serializerService", serializerService);
+		ReflectionTestUtils.setField(service, "messageExchangeService", messageExchangeService);
+		ReflectionTestUtils.setField(service, "multiPartMessageService", multiPartMessageService);
+		ReflectionTestUtils.setField(service, "artifactLockService", artifactLockService);
+		ReflectionTestUtils.setField(service, "traceService", traceService);
+		ReflectionTestUtils.setField(service, "dataLakeDirectoryDestination", DESTINATION);
+		ReflectionTestUtils.setField(service, "defaultChunkSize", 4);
+		ReflectionTestUtils.setField(service, "maxRetries", 3);
+		ReflectionTestUtils.setField(service, "retryDelayMillis", 1L);
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(DESTINATION.toFile());
+	}
+
+	@Test
+	public void artifactReceivedInChunks() throws IOException {
+		Path target = DESTINATION.resolve("data_1.csv");
+
+		assertEquals(CONTENT.length, service.requestArtifact("wss://localhost:8887", "wss://localhost:8086", ARTIFACT, null, target));
+
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(Arrays.asList(0L, 4L, 8L, 12L), requestedOffsets);
+		RequestTrace trace = traceService.getRecentTraces(0, 10).get(0);
+		assertEquals("consumer.chunkedRequest", trace.getName());
+		assertEquals("4", trace.getAttributes().get("chunks"));
+		assertFalse(Files.exists(DESTINATION.resolve(ARTIFACT + ChunkedTransferServiceImpl.PART_FILE_SUFFIX)));
+		assertFalse(Files.exists(DESTINATION.resolve(ARTIFACT + ChunkedTransferServiceImpl.PART_FILE_SUFFIX
+				+ ChunkedTransferServiceImpl.VERSION_FILE_SUFFIX)));
+	}
+
+	@Test
+	public void sameVersionResumed() throws IOException {
+		writePartFile(Arrays.copyOf(CONTENT, 8), CONTENT.length + ":" + lastModified);
+		Path target = DESTINATION.resolve("data_1.csv");
+
+		service.requestArtifact("wss://localhost:8887", "wss://localhost:8086", ARTIFACT, null, target);
+
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(Arrays.asList(8L, 12L), requestedOffsets);
+	}
+
+	@Test
+	public void changedVersionTransferredAgain() throws IOException {
+		writePartFile("XXXXXXXX".getBytes(StandardCharsets.UTF_8), CONTENT.length + ":" + (lastModified - 1));
+		Path target = DESTINATION.resolve("data_1.csv");
+
+		service.requestArtifact("wss://localhost:8887", "wss://localhost:8086", ARTIFACT, null, target);
+
+		assertArrayEquals(CONTENT, Files.readAllBytes(target));
+		assertEquals(Arrays.asList(8L, 0L, 4L, 8L, 12L), requestedOffsets);
+	}
+
+	@Test
+	public void rejectionNotRetried() throws IOException {
+		reject = true;
+
+		assertThrows(IOException.class, () -> service.requestArtifact("wss://localhost:8887", "wss://localhost:8086",
+				ARTIFACT, null, DESTINATION.resolve("data_1.csv")));
+		verify(messageExchangeService, times(1)).send(anyString(), anyString(), anyString(), any());
+	}
+
+	@Test
+	public void nameOutsideDestinationRejected() {
+		assertThrows(IllegalArgumentException.class, () -> service.requestArtifact("wss://localhost:8887", "wss://localhost:8086",
+				".." + File.separator + ARTIFACT, null, DESTINATION.resolve("data_1.csv")));
+	}
+
+	private void writePartFile(byte[] content, String version) throws IOException {
+		Path partFile = DESTINATION.resolve(ARTIFACT + ChunkedTransferServiceImpl.PART_FILE_SUFFIX);
+		Files.write(partFile, content);
+		Files.write(DESTINATION.resolve(partFile.getFileName() + ChunkedTransferServiceImpl.VERSION_FILE_SUFFIX),
+				version.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String provide(String requestedArtifact) {
+		if (reject) {
+			return REJECTED;
+		}
+		ArtifactRequest request = ArtifactRequest.fromRequestedArtifact(URI.create(requestedArtifact));
+		long offset = request.getLongParameter(ArtifactRequest.OFFSET, 0);
+		requestedOffsets.add(offset);
+		int length = (int) Math.min(request.getLongParameter(ArtifactRequest.LENGTH, CONTENT.length), CONTENT.length - offset);
+		byte[] data = Arrays.copyOfRange(CONTENT, (int) offset, (int) offset + length);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ArtifactChunk chunk = new ArtifactChunk();
+		chunk.setArtifact(ARTIFACT);
+		chunk.setOffset(offset);
+		chunk.setLength(length);
+		chunk.setTotalSize(CONTENT.length);
+		chunk.setLastModified(lastModified);
+		chunk.setChecksum(Long.toHexString(crc.getValue()));
+		chunk.setData(Base64.getEncoder().encodeToString(data));
+		return new Gson().toJson(chunk);
+	}
+}
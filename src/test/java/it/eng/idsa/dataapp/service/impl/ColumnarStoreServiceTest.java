@@ -0,0 +1,217 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+import it.eng.idsa.dataapp.domain.SelectionReport;
+import it.eng.idsa.dataapp.exception.ReadFileLockedException;
+import it.eng.idsa.dataapp.service.DataLakeWatchService;
+
+public class ColumnarStoreServiceTest {
+	
+	private static final Path DATA_LAKE = Paths.get("target", "columnar-store-test");
+	private static final String CSV = "LOC,CLL,REA,A1_K00W_P87,NOTE\n"
+			+ "CVUT,8,41,278.932,1\n"
+			+ "CVUT,8,50,-2698.849,1.50\n"
+			+ "\"ENG, Rome\",7,1234567890123456789,53.3,\"say \"\"hi\"\"\"\n"
+			+ "ENG,7,-0,1e3,\n"
+			+ "ENG,7,12,4239.515,x\n";
+	
+	private ColumnarStoreServiceImpl service;
+	private CsvServiceImpl csvService;
+	private SimpleMeterRegistry meterRegistry;
+	private Path csvFile;
+	
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+		Files.createDirectories(DATA_LAKE);
+		csvFile = DATA_LAKE.resolve("data.csv");
+		Files.write(csvFile, CSV.getBytes(StandardCharsets.UTF_8));
+		service = new ColumnarStoreServiceImpl();
+		ArtifactLockServiceImpl artifactLockService = new ArtifactLockServiceImpl();
+		artifactLockService.init();
+		ReflectionTestUtils.setField(service, "artifactLockService", artifactLockService);
+		ReflectionTestUtils.setField(service, "dataLakeDirectory", DATA_LAKE);
+		meterRegistry = new SimpleMeterRegistry();
+		MetricsServiceImpl metricsService = new MetricsServiceImpl();
+		ReflectionTestUtils.setField(metricsService, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(service, "metricsService", metricsService);
+		// several blocks, mixing numeric and dictionary chunks of the same column
+		ReflectionTestUtils.setField(service, "blockRows", 2);
+		csvService = new CsvServiceImpl();
+	}
+	
+	@AfterEach
+	public void cleanup() throws IOException {
+		service.shutdown();
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+	}
+	
+	@Test
+	public void selectionSameAsFromCsv() throws IOException, ReadFileLockedException {
+		assertTrue(service.convert(csvFile));
+		assertTrue(service.isCurrent(csvFile));
+		assertFalse(service.convert(csvFile));
+		
+		assertSameSelection(CsvSelection.of("A1_K00W_P87,LOC,NOTE", null));
+		assertSameSelection(CsvSelection.of("REA,CLL", "1-3"));
+		assertSameSelection(CsvSelection.of(null, "4-"));
+		assertSameSelection(new CsvSelection(null, 0, Long.MAX_VALUE));
+	}
+	
+	@Test
+	public void uncompressedChunksReadInPlace() throws IOException, ReadFileLockedException {
+		ReflectionTestUtils.setField(service, "compressionLevel", 0);
+		service.convert(csvFile);
+		
+		assertSameSelection(CsvSelection.of("LOC,REA,A1_K00W_P87", "0-2"));
+		assertThrows(IllegalArgumentException.class, () -> service.select(csvFile, CsvSelection.of("EN", null), new ByteArrayOutputStream()));
+	}
+	
+	@Test
+	public void filterPrunesBlocksByMinMax() throws IOException, ReadFileLockedException {
+		service.convert(csvFile);
+		
+		// block of rows 0-1 has CLL 8 only, REA of block of rows 2-3 is stored as dictionary
+		assertSameSelection(CsvSelection.of("LOC,REA", null, "CLL = 7 AND REA < 20"));
+		SelectionReport report = service.select(csvFile, CsvSelection.of("LOC,REA", null, "CLL = 7 AND REA < 20"), new ByteArrayOutputStream());
+		assertEquals(1, report.getPrunedBlocks());
+		assertEquals(2, report.getScannedBlocks());
+		assertEquals(2, meterRegistry.counter("dataapp.filter.blocks", "result", "pruned").count());
+		assertEquals(4, meterRegistry.counter("dataapp.filter.blocks", "result", "scanned").count());
+		
+		assertSameSelection(CsvSelection.of(null, "1-", "LOC = 'ENG, Rome' OR NOT (CLL >= 8)"));
+		assertSameSelection(CsvSelection.of("NOTE", null, "NOTE <> '1' AND A1_K00W_P87 > 0"));
+	}
+	
+	@Test
+	public void sidecarOfModifiedCsvNotCurrent() throws IOException, ReadFileLockedException {
+		service.convert(csvFile);
+		Files.setLastModifiedTime(csvFile, FileTime.fromMillis(Files.getLastModifiedTime(csvFile).toMillis() - 60000));
+		
+		assertFalse(service.isCurrent(csvFile));
+		assertTrue(service.convert(csvFile));
+		assertTrue(service.isCurrent(csvFile));
+	}
+	
+	@Test
+	public void raggedCsvNotConverted() throws IOException {
+		Files.write(csvFile, (CSV + "ENG,7,12,4239.515,x,extra\n").getBytes(StandardCharsets.UTF_8));
+		
+		assertThrows(IOException.class, () -> service.convert(csvFile));
+		assertFalse(service.isCurrent(csvFile));
+		assertFalse(Files.exists(service.sidecarOf(csvFile)));
+	}
+	
+	@Test
+	public void sidecarSharedUntilReplaced() throws IOException, ReadFileLockedException {
+		service.convert(csvFile);
+		assertSameSelection(CsvSelection.of("LOC", null));
+		Map<Path, ColumnarFile> openFiles = openFiles();
+		ColumnarFile opened = openFiles.get(service.sidecarOf(csvFile));
+		assertSameSelection(CsvSelection.of("CLL", null));
+		assertSame(opened, openFiles.get(service.sidecarOf(csvFile)));
+		
+		Files.write(csvFile, (CSV + "ENG,9,1,2,y\n").getBytes(StandardCharsets.UTF_8));
+		assertTrue(service.convert(csvFile));
+		
+		assertSameSelection(CsvSelection.of("LOC,CLL", "4-"));
+		assertNotSame(opened, openFiles.get(service.sidecarOf(csvFile)));
+		assertEquals(1, openFiles.size());
+	}
+	
+	@Test
+	public void startupScanConvertsAndDeletesOrphans() throws IOException {
+		Path orphan = service.sidecarOf(DATA_LAKE.resolve("deleted.csv"));
+		Files.write(orphan, "x".getBytes(StandardCharsets.UTF_8));
+		Files.write(DATA_LAKE.resolve("notes.txt"), "x".getBytes(StandardCharsets.UTF_8));
+		DataLakeWatchService dataLakeWatchService = mock(DataLakeWatchService.class);
+		ReflectionTestUtils.setField(service, "dataLakeWatchService", dataLakeWatchService);
+		
+		service.init();
+		try {
+			assertTrue(await(() -> service.isCurrent(csvFile)));
+			assertTrue(await(() -> !Files.exists(orphan)));
+			assertFalse(Files.exists(service.sidecarOf(DATA_LAKE.resolve("notes.txt"))));
+			verify(dataLakeWatchService).addListener(service);
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	@Test
+	public void watcherEventsUpdateSidecars() throws IOException {
+		ReflectionTestUtils.setField(service, "debounceMillis", 20L);
+		service.init();
+		try {
+			assertTrue(await(() -> service.isCurrent(csvFile)));
+			
+			Files.write(csvFile, (CSV + "ENG,9,1,2,y\n").getBytes(StandardCharsets.UTF_8));
+			service.artifactChanged(csvFile);
+			assertTrue(await(() -> service.isCurrent(csvFile)));
+			assertSameSelection(CsvSelection.of(null, "5-"));
+			
+			Files.delete(csvFile);
+			service.artifactChanged(csvFile);
+			assertTrue(await(() -> !Files.exists(service.sidecarOf(csvFile))));
+			assertTrue(await(() -> openFiles().isEmpty()));
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<Path, ColumnarFile> openFiles() {
+		return (Map<Path, ColumnarFile>) ReflectionTestUtils.getField(service, "openFiles");
+	}
+	
+	private static boolean await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void assertSameSelection(CsvSelection selection) throws IOException {
+		ByteArrayOutputStream fromCsv = new ByteArrayOutputStream();
+		ByteArrayOutputStream fromSidecar = new ByteArrayOutputStream();
+		SelectionReport report = service.select(csvFile, selection, fromSidecar);
+		assertEquals(csvService.select(csvFile, selection, fromCsv), report.getRows());
+		assertTrue(report.isColumnar());
+		assertEquals(fromCsv.toString(StandardCharsets.UTF_8.name()), fromSidecar.toString(StandardCharsets.UTF_8.name()));
+	}
+}
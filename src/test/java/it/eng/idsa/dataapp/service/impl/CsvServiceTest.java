@@ -0,0 +1,111 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.dataapp.domain.CsvSelection;
+
+public class CsvServiceTest {
+	
+	private static final Path DATA_LAKE = Paths.get("target", "csv-service-test");
+	private static final String CSV = "LOC,CLL,REA,NOTE\r\n"
+			+ "CVUT,8,41,plain\r\n"
+			+ "CVUT,8,50,\"with, comma\"\r\n"
+			+ "ENG,7,\"12\",\"multi\nline \"\"quoted\"\"\"\r\n"
+			+ "ENG,7,13\r\n";
+	
+	private CsvServiceImpl service;
+	private Path csvFile;
+	
+	@BeforeEach
+	public void setup() throws IOException {
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+		Files.createDirectories(DATA_LAKE);
+		csvFile = DATA_LAKE.resolve("data.csv");
+		Files.write(csvFile, CSV.getBytes(StandardCharsets.UTF_8));
+		service = new CsvServiceImpl();
+		// small buffer, so records span several reads
+		ReflectionTestUtils.setField(service, "bufferSize", 7);
+	}
+	
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(DATA_LAKE.toFile());
+	}
+	
+	@Test
+	public void columnsInRequestedOrder() throws IOException {
+		assertEquals("REA,LOC\n41,CVUT\n50,CVUT\n\"12\",ENG\n13,ENG\n", select(CsvSelection.of("REA, LOC", null), 4));
+	}
+	
+	@Test
+	public void rowRangeWithQuotedFields() throws IOException {
+		assertEquals("NOTE,CLL\n\"with, comma\",8\n\"multi\nline \"\"quoted\"\"\",7\n", select(CsvSelection.of("NOTE,CLL", "1-2"), 2));
+		// missing value of short row is empty
+		assertEquals("NOTE\n\n", select(CsvSelection.of("NOTE", "3-"), 1));
+		assertEquals("LOC,CLL,REA,NOTE\nCVUT,8,41,plain\n", select(CsvSelection.of(null, "0"), 1));
+	}
+	
+	@Test
+	public void unknownColumnRejected() {
+		assertThrows(IllegalArgumentException.class, () -> select(CsvSelection.of("EN", null), 0));
+		assertThrows(IllegalArgumentException.class, () -> select(CsvSelection.of(null, null, "EN = 1"), 0));
+	}
+	
+	@Test
+	public void filterAppliedToRowsInRange() throws IOException {
+		assertEquals("LOC,REA\nCVUT,41\nCVUT,50\nENG,\"12\"\n", select(CsvSelection.of("LOC,REA", null, "CLL = 8 AND REA > 40 OR REA <= 12"), 3));
+		assertEquals("LOC\nENG\n", select(CsvSelection.of("LOC", "3-", "NOT LOC = 'CVUT'"), 1));
+		// values which are not numbers never match number
+		assertEquals("NOTE\n", select(CsvSelection.of("NOTE", null, "NOTE != 0"), 0));
+		assertEquals("NOTE\nplain\n", select(CsvSelection.of("NOTE", null, "\"NOTE\" = 'plain'"), 1));
+	}
+	
+	@Test
+	public void invalidFilterRejected() {
+		assertThrows(IllegalArgumentException.class, () -> CsvFilter.parse("CLL = 8 AND"));
+		assertThrows(IllegalArgumentException.class, () -> CsvFilter.parse("CLL == 8"));
+		assertThrows(IllegalArgumentException.class, () -> CsvFilter.parse("(CLL = 8"));
+		assertThrows(IllegalArgumentException.class, () -> CsvFilter.parse("LOC = CVUT"));
+		// strings are not ordered
+		assertThrows(IllegalArgumentException.class, () -> CsvFilter.parse("LOC < 'CVUT'"));
+		assertThrows(IllegalArgumentException.class, () -> CsvFilter.parse("LOC >= '8'"));
+		// keywords are case insensitive, AND binds stronger than OR
+		assertEquals("((CLL = 8 AND REA > 40.5) OR NOT LOC = 'it's')", 
+				CsvFilter.parse("CLL = 8 and REA > 40.5 or not LOC = 'it''s'").toString());
+	}
+	
+	@Test
+	public void selectionCarriedInRequestedArtifact() {
+		ArtifactRequest request = new ArtifactRequest("data.csv").withSelection(CsvSelection.of("LOC,REA", "100-"));
+		ArtifactRequest received = ArtifactRequest.fromRequestedArtifact(request.toRequestedArtifact());
+		
+		assertEquals("data.csv", received.getFileName());
+		assertEquals("LOC,REA", received.getCsvSelection().getColumnsParameter());
+		assertEquals(100, received.getCsvSelection().getFirstRow());
+		assertEquals(Long.MAX_VALUE, received.getCsvSelection().getLastRow());
+		assertNull(new ArtifactRequest("data.csv").getCsvSelection());
+		assertThrows(IllegalArgumentException.class, () -> CsvSelection.of(null, "20-10"));
+	}
+	
+	private String select(CsvSelection selection, long expectedRows) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(expectedRows, service.select(csvFile, selection, out));
+		return out.toString(StandardCharsets.UTF_8.name());
+	}
+}
@@ -0,0 +1,138 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.ArtifactDescriptor;
+import it.eng.idsa.dataapp.domain.ArtifactTransferResult;
+import it.eng.idsa.dataapp.domain.SyncState;
+import it.eng.idsa.dataapp.domain.SyncState.Status;
+import it.eng.idsa.dataapp.repository.SyncStateRepository;
+import it.eng.idsa.dataapp.service.ArtifactRequestService;
+import it.eng.idsa.dataapp.service.ArtifactVersionService;
+
+public class DatasetSyncServiceTest {
+	
+	private static final String FORWARD_TO = "wss://localhost:8086";
+	private static final String FORWARD_TO_INTERNAL = "wss://localhost:8887";
+	
+	@InjectMocks
+	private DatasetSyncServiceImpl service;
+	
+	@Mock
+	private ArtifactRequestService artifactRequestService;
+	
+	@Mock
+	private ArtifactVersionService artifactVersionService;
+	
+	@Mock
+	private SyncStateRepository syncStateRepository;
+	
+	@Mock
+	private TaskScheduler taskScheduler;
+	
+	@BeforeEach
+	public void setup() throws IOException {
+		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(service, "forwardTo", FORWARD_TO);
+		ReflectionTestUtils.setField(service, "forwardToInternal", FORWARD_TO_INTERNAL);
+		ReflectionTestUtils.setField(service, "artifacts", new String[] { "unchanged.csv", "changed.csv" });
+		ReflectionTestUtils.setField(service, "patterns", new String[] { "" });
+		ReflectionTestUtils.setField(service, "jitterMillis", 0L);
+		when(artifactRequestService.requestCatalog(FORWARD_TO_INTERNAL, FORWARD_TO))
+				.thenReturn(Arrays.asList(descriptor("unchanged.csv", "aa"), descriptor("changed.csv", "bb")));
+		when(syncStateRepository.findById(anyString())).thenReturn(Optional.empty());
+		when(syncStateRepository.findById("unchanged.csv")).thenReturn(Optional.of(synced("unchanged.csv", "aa")));
+		when(syncStateRepository.findById("changed.csv")).thenReturn(Optional.of(synced("changed.csv", "00")));
+		when(syncStateRepository.save(any(SyncState.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		when(artifactVersionService.getLastHash(anyString())).thenReturn("cc");
+	}
+	
+	@Test
+	public void onlyChangedArtifactIsRequested() throws IOException {
+		ArtifactTransferResult saved = new ArtifactTransferResult("changed.csv");
+		saved.setStatus(ArtifactTransferResult.Status.SAVED);
+		when(artifactRequestService.requestArtifact(FORWARD_TO_INTERNAL, FORWARD_TO, "changed.csv", false, null)).thenReturn(saved);
+		
+		List<SyncState> states = service.sync();
+		
+		verify(artifactRequestService, never()).requestArtifact(anyString(), anyString(), eq("unchanged.csv"), anyBoolean(), any());
+		assertEquals(2, states.size());
+		assertEquals(Status.UNCHANGED, states.get(0).getStatus());
+		assertEquals(Status.UPDATED, states.get(1).getStatus());
+		assertEquals("bb", states.get(1).getProviderSha256());
+		assertNotNull(states.get(1).getLastChangeAt());
+	}
+	
+	@Test
+	public void failureKeepsPreviousProviderVersion() throws IOException {
+		when(artifactRequestService.requestArtifact(FORWARD_TO_INTERNAL, FORWARD_TO, "changed.csv", false, null))
+				.thenThrow(new IOException("Connection refused"));
+		
+		SyncState state = service.sync().get(1);
+		
+		assertEquals(Status.FAILED, state.getStatus());
+		assertEquals(1, state.getFailures());
+		assertEquals("00", state.getProviderSha256());
+	}
+	
+	@Test
+	public void submittedSyncRunsOnScheduler() throws IOException {
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		
+		service.submitSync();
+		
+		verify(taskScheduler).schedule(task.capture(), any(Date.class));
+		verify(artifactRequestService, never()).requestCatalog(anyString(), anyString());
+		assertThrows(IllegalStateException.class, () -> service.submitSync());
+		assertThrows(IllegalStateException.class, () -> service.sync());
+		
+		task.getValue().run();
+		
+		verify(artifactRequestService).requestCatalog(FORWARD_TO_INTERNAL, FORWARD_TO);
+		service.submitSync();
+		verify(taskScheduler, times(2)).schedule(any(Runnable.class), any(Date.class));
+	}
+	
+	private static ArtifactDescriptor descriptor(String name, String sha256) {
+		ArtifactDescriptor descriptor = new ArtifactDescriptor();
+		descriptor.setName(name);
+		descriptor.setSize(100);
+		descriptor.setLastModified(1000);
+		descriptor.setSha256(sha256);
+		return descriptor;
+	}
+	
+	private static SyncState synced(String artifact, String sha256) {
+		SyncState state = new SyncState(artifact);
+		state.setStatus(Status.UPDATED);
+		state.setProviderSize(100L);
+		state.setProviderLastModified(1000L);
+		state.setProviderSha256(sha256);
+		return state;
+	}
+}
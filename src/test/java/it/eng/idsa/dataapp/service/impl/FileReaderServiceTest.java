@@ -1,19 +1,31 @@
 package it.eng.idsa.dataapp.service.impl;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -28,6 +40,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import de.fraunhofer.iais.eis.ArtifactRequestMessage;
 import de.fraunhofer.iais.eis.ArtifactResponseMessageBuilder;
 import de.fraunhofer.iais.eis.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.eng.idsa.dataapp.exception.EmptyFileException;
 import it.eng.idsa.dataapp.exception.ReadFileLockedException;
 import it.eng.idsa.dataapp.service.MultiPartMessageService;
@@ -41,6 +54,7 @@ public class FileReaderServiceTest {
 	private static final String MOCK_MESSAGE_STRING = "mocked message string";
 	private static final String MOCK_MESSAGE_HEADER = "mocked message header";
 	private static final String REQUESTED_ARTIFACT = "test.csv";
+	private static final String READ_LOCK_FILE = "read.lock";
 	
 	@InjectMocks
 	private FileReaderServiceImpl service;
@@ -51,11 +65,21 @@ public class FileReaderServiceTest {
 	private ArtifactRequestMessage artifactRequestMessage;
 	
 	private String artifactResponseMessageString;
+	
+	private ArtifactCacheServiceImpl artifactCacheService;
 
 	@BeforeEach
 	public void setup() throws IOException {
 		MockitoAnnotations.initMocks(this);
 		ReflectionTestUtils.setField(service, "dataLakeDirectory", Paths.get("src","test","resources"));
+		ArtifactLockServiceImpl artifactLockService = new ArtifactLockServiceImpl();
+		artifactLockService.init();
+		ReflectionTestUtils.setField(service, "artifactLockService", artifactLockService);
+		artifactCacheService = new ArtifactCacheServiceImpl();
+		ReflectionTestUtils.setField(service, "artifactCacheService", artifactCacheService);
+		MetricsServiceImpl metricsService = new MetricsServiceImpl();
+		ReflectionTestUtils.setField(metricsService, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(service, "metricsService", metricsService);
 		clearFiles();
 		populateTestFile();
 		
@@ -79,9 +103,101 @@ public class FileReaderServiceTest {
 		assertNotNull(requestedArtifact);
 	}
 	
+	@Test
+	public void writeArtifact_streamsEncodedContent() throws IOException, ReadFileLockedException, EmptyFileException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long bytesRead = service.writeRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT, out);
+		
+		byte[] original = Files.readAllBytes(Paths.get("src","test","resources", REQUESTED_ARTIFACT));
+		assertEquals(original.length, bytesRead);
+		assertEquals(Base64.getEncoder().encodeToString(original), out.toString(StandardCharsets.US_ASCII.name()));
+		assertEquals(out.toString(StandardCharsets.US_ASCII.name()), 
+				service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT));
+	}
+	
+	@Test
+	public void writeArtifact_mappedRead() throws IOException, ReadFileLockedException, EmptyFileException {
+		String buffered = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT);
+		ReflectionTestUtils.setField(service, "mappedThreshold", 1L);
+		ReflectionTestUtils.setField(service, "mappedRegionSize", 4);
+		artifactCacheService.invalidateAll();
+		
+		assertEquals(buffered, service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT));
+	}
+	
+	@Test
+	public void readArtifact_compressedMappedRead() throws IOException, ReadFileLockedException, EmptyFileException {
+		ReflectionTestUtils.setField(service, "mappedThreshold", 1L);
+		ReflectionTestUtils.setField(service, "mappedRegionSize", 4);
+		String compressed = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT, true);
+		
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(compressed)))) {
+			assertArrayEquals(Files.readAllBytes(Paths.get("src","test","resources", REQUESTED_ARTIFACT)), in.readAllBytes());
+		}
+	}
+	
+	@Test
+	public void readArtifact_servedFromCacheUntilModified() throws IOException, ReadFileLockedException, EmptyFileException {
+		String first = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT);
+		assertEquals(first, service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT));
+		assertEquals(1, artifactCacheService.getHits());
+		
+		byte[] changed = "test2,test2\nC,D,E\n".getBytes(StandardCharsets.UTF_8);
+		Files.write(Paths.get("src","test","resources", REQUESTED_ARTIFACT), changed, StandardOpenOption.TRUNCATE_EXISTING);
+		String modified = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT);
+		assertEquals(Base64.getEncoder().encodeToString(changed), modified);
+		assertNotEquals(first, modified);
+		assertEquals(1, artifactCacheService.getHits());
+		assertEquals(1, artifactCacheService.getEntryCount());
+	}
+	
+	@Test
+	public void readArtifact_compressed() throws IOException, ReadFileLockedException, EmptyFileException {
+		String compressed = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT, true);
+		
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(compressed)))) {
+			assertArrayEquals(Files.readAllBytes(Paths.get("src","test","resources", REQUESTED_ARTIFACT)), in.readAllBytes());
+		}
+		assertNotEquals(compressed, service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT));
+	}
+	
+	@Test
+	public void compressionLevelValidated() throws IOException, ReadFileLockedException, EmptyFileException {
+		ReflectionTestUtils.setField(service, "compressionLevel", 10);
+		assertThrows(IllegalArgumentException.class, service::init);
+		ReflectionTestUtils.setField(service, "compressionLevel", -1);
+		assertThrows(IllegalArgumentException.class, service::init);
+		
+		// level 0 stores content, still in gzip format
+		ReflectionTestUtils.setField(service, "compressionLevel", 0);
+		service.init();
+		String compressed = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT, true);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(compressed)))) {
+			assertArrayEquals(Files.readAllBytes(Paths.get("src","test","resources", REQUESTED_ARTIFACT)), in.readAllBytes());
+		}
+	}
+	
+	@Test
+	public void transferArtifact_rawContent() throws IOException, ReadFileLockedException, EmptyFileException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.transferRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT, Channels.newChannel(out));
+		
+		assertArrayEquals(Files.readAllBytes(Paths.get("src","test","resources", REQUESTED_ARTIFACT)), out.toByteArray());
+	}
+	
+	@Test
+	public void transferArtifact_stoppedTarget() throws IOException {
+		WritableByteChannel target = mock(WritableByteChannel.class);
+		when(target.isOpen()).thenReturn(true);
+		when(target.write(any(ByteBuffer.class))).thenReturn(0);
+		
+		assertThrows(IOException.class, () -> service.transferRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT, target));
+	}
+	
 	@Test
 	public void readArtifact_readLockPresent() throws IOException, ReadFileLockedException, EmptyFileException {
-		createLockFile(FileReaderServiceImpl.READ_LOCK_FILE);
+		// leftover from global read.lock file, must not affect reading
+		createLockFile(READ_LOCK_FILE);
 
 		String requestedArtifact = service.readRequestedArtifact(artifactRequestMessage, REQUESTED_ARTIFACT);
 		assertNotNull(requestedArtifact);
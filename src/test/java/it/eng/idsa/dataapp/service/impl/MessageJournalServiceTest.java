@@ -0,0 +1,109 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.MessageJournalEntry;
+import it.eng.idsa.dataapp.repository.MessageJournalRepository;
+
+public class MessageJournalServiceTest {
+	
+	private MessageJournalServiceImpl service;
+	private MessageJournalRepository repository;
+	
+	@BeforeEach
+	public void setup() {
+		repository = mock(MessageJournalRepository.class);
+		service = new MessageJournalServiceImpl();
+		ReflectionTestUtils.setField(service, "messageJournalRepository", repository);
+		ReflectionTestUtils.setField(service, "batchSize", 2);
+		ReflectionTestUtils.setField(service, "flushIntervalMillis", 60000L);
+		ReflectionTestUtils.setField(service, "queueCapacity", 3);
+		service.init();
+	}
+	
+	@AfterEach
+	public void cleanup() {
+		service.shutdown();
+	}
+
+	@Test
+	public void fullQueueDropsMessage() {
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		assertTrue(service.append("", "{}", "a"));
+		assertTrue(service.append("", "{}", "b"));
+		assertTrue(service.append("", "{}", "c"));
+		assertFalse(service.append("", "{}", "d"));
+		
+		assertEquals(3, service.flush());
+	}
+	
+	@Test
+	public void queueBoundedBySize() {
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		ReflectionTestUtils.setField(service, "queueCapacityBytes", 10L);
+		assertTrue(service.append("", "{}", "abcdef"));
+		assertFalse(service.append("", "{}", "abc"));
+		
+		assertEquals(1, service.flush());
+		assertTrue(service.append("", "{}", "abc"));
+	}
+	
+	@Test
+	public void longPayloadTruncated() {
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		ReflectionTestUtils.setField(service, "maxPayloadLength", 4);
+		service.append("", "{}", "abcdefgh");
+		// batch list is reused after saveAll, so entries are copied
+		List<MessageJournalEntry> saved = new ArrayList<>();
+		when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+			saved.addAll(invocation.getArgument(0));
+			return null;
+		});
+		service.flush();
+		
+		assertEquals(1, saved.size());
+		MessageJournalEntry entry = saved.get(0);
+		assertEquals(8, entry.getPayloadLength());
+		assertEquals("abcd", entry.getPayload().getContent());
+		assertTrue(entry.isPayloadTruncated());
+	}
+	
+	@Test
+	public void flushWritesInBatches() {
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		service.append("", "{}", "a");
+		service.append("", "{}", "b");
+		service.append("", "{}", null);
+		ReflectionTestUtils.setField(service, "batchSize", 2);
+		
+		assertEquals(3, service.flush());
+		verify(repository, times(2)).saveAll(anyList());
+	}
+	
+	@Test
+	public void headerFieldsRead() {
+		MessageJournalEntry entry = new MessageJournalEntry();
+		MessageJournalServiceImpl.readHeaderFields("{\"@context\":{\"ids\":\"https://w3id.org/idsa/core/\"},"
+				+ "\"@type\":\"ids:ArtifactRequestMessage\",\"@id\":\"https://w3id.org/idsa/autogen/1\","
+				+ "\"ids:correlationMessage\":{\"@id\":\"https://w3id.org/idsa/autogen/0\"}}", entry);
+		
+		assertEquals("ids:ArtifactRequestMessage", entry.getMessageType());
+		assertEquals("https://w3id.org/idsa/autogen/1", entry.getMessageId());
+		assertEquals("https://w3id.org/idsa/autogen/0", entry.getCorrelationMessage());
+	}
+}
@@ -0,0 +1,61 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.MessageIDS;
+
+public class MessageServiceTest {
+	
+	private MessageServiceImpl service;
+	
+	@BeforeEach
+	public void setup() {
+		service = new MessageServiceImpl();
+		ReflectionTestUtils.setField(service, "capacity", 3);
+		ReflectionTestUtils.setField(service, "maxPayloadLength", 5);
+	}
+
+	@Test
+	public void oldestMessageEvicted() {
+		for (int i = 0; i < 5; i++) {
+			service.setMessage("", "header" + i, "p" + i);
+		}
+		
+		List<MessageIDS> messages = service.getMessages();
+		assertEquals(3, messages.size());
+		assertEquals("header2", messages.get(0).getHeader());
+		assertEquals("header4", messages.get(2).getHeader());
+	}
+	
+	@Test
+	public void longPayloadTruncated() {
+		service.setMessage("", "header", "0123456789");
+		service.setMessage("", "header", "01234");
+		
+		List<MessageIDS> messages = service.getMessages();
+		assertEquals("01234", messages.get(0).getPayload());
+		assertEquals(10, messages.get(0).getPayloadLength());
+		assertTrue(messages.get(0).isPayloadTruncated());
+		assertFalse(messages.get(1).isPayloadTruncated());
+	}
+	
+	@Test
+	public void pagedAndFilteredByTime() {
+		service.setMessage("", "header0", null);
+		service.setMessage("", "header1", null);
+		service.setMessage("", "header2", null);
+		
+		assertEquals("header1", service.getMessages(1, 1, null, null).get(0).getHeader());
+		assertEquals(0, service.getMessages(0, 10, LocalDateTime.now().plusMinutes(1), null).size());
+		assertEquals(3, service.getMessages(0, 10, LocalDateTime.now().minusMinutes(1), LocalDateTime.now().plusMinutes(1)).size());
+	}
+}
@@ -0,0 +1,75 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionMessageBuilder;
+import de.fraunhofer.iais.eis.RejectionReason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.eng.idsa.dataapp.service.MetricsService;
+import it.eng.idsa.multipart.util.DateUtil;
+
+public class MetricsServiceTest {
+
+	private MetricsServiceImpl service;
+	private SimpleMeterRegistry registry;
+	private Message artifactRequest;
+
+	@BeforeEach
+	public void setup() {
+		service = new MetricsServiceImpl();
+		registry = new SimpleMeterRegistry();
+		ReflectionTestUtils.setField(service, "meterRegistry", registry);
+		artifactRequest = new ArtifactRequestMessageBuilder()
+				._issuerConnector_(URI.create("auto-generated"))
+				._issued_(DateUtil.now())
+				._modelVersion_("4.0.0")
+				._requestedArtifact_(URI.create("http://w3id.org/engrd/connector/artifact/test.csv"))
+				.build();
+	}
+
+	@Test
+	public void messageType_interfaceName() {
+		assertEquals("ArtifactRequestMessage", MetricsService.messageType(artifactRequest));
+		assertEquals("unknown", MetricsService.messageType(null));
+	}
+
+	@Test
+	public void recordMessage_rejectionTaggedByReason() {
+		Message rejection = new RejectionMessageBuilder()
+				._issuerConnector_(URI.create("auto-generated"))
+				._issued_(DateUtil.now())
+				._modelVersion_("4.0.0")
+				._rejectionReason_(RejectionReason.NOT_FOUND)
+				.build();
+
+		service.recordMessage(service.startTimer(), "websocket", artifactRequest, null);
+		service.recordMessage(service.startTimer(), "websocket", artifactRequest, rejection);
+
+		assertEquals(1, registry.get("dataapp.message.handling")
+				.tags("messageType", "ArtifactRequestMessage", "outcome", MetricsService.OUTCOME_SUCCESS, "rejectionReason", "none")
+				.timer().count());
+		assertEquals(1, registry.get("dataapp.message.handling")
+				.tags("outcome", MetricsService.OUTCOME_REJECTED, "rejectionReason", "NOT_FOUND")
+				.timer().count());
+		assertEquals(1.0, registry.get("dataapp.message.rejections").tag("rejectionReason", "NOT_FOUND").counter().count());
+	}
+
+	@Test
+	public void recordArtifactRead_bytesOnlyOnSuccess() {
+		service.recordArtifactRead(service.startTimer(), MetricsService.READ_ENCODED, true, 100);
+		service.recordArtifactRead(service.startTimer(), MetricsService.READ_ENCODED, false, 0);
+
+		assertEquals(2, registry.get("dataapp.artifact.read").timers().stream().mapToLong(t -> t.count()).sum());
+		assertEquals(100.0, registry.get("dataapp.artifact.read.bytes").summary().totalAmount());
+		assertNull(registry.find("dataapp.ckan.upload.retries").counter());
+	}
+}
@@ -0,0 +1,120 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.fraunhofer.iais.eis.ArtifactResponseMessageBuilder;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.TokenBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import it.eng.idsa.dataapp.domain.SelectionReport;
+import it.eng.idsa.dataapp.service.ArtifactCacheService;
+import it.eng.idsa.multipart.util.DateUtil;
+
+public class MultiPartMessageServiceTest {
+	
+	private static final String TOKEN = "eyJ0eXAiOiJKV1QiLCJraWQiOiJkZWZhdWx0IiwiYWxnIjoiUlMyNTYifQ";
+	private static final String OLD_TOKEN = "old-security-token";
+	private static final String AUTHORIZATION_TOKEN = "authorization-token";
+	
+	private MultiPartMessageServiceImpl service;
+	
+	private Message message;
+	
+	@BeforeEach
+	public void setup() {
+		service = new MultiPartMessageServiceImpl();
+		message = new ArtifactResponseMessageBuilder()
+				._issuerConnector_(URI.create("auto-generated"))
+				._issued_(DateUtil.now())
+				._modelVersion_("4.0.0")
+				.build();
+	}
+
+	@Test
+	public void addToken() {
+		String messageWithToken = service.addToken(message, TOKEN);
+		
+		assertEquals(TOKEN, service.getToken(messageWithToken));
+	}
+	
+	@Test
+	public void addToken_existingTokenReplaced() {
+		String messageWithToken = service.addToken(messageWithTokens(), TOKEN);
+		
+		assertEquals(TOKEN, service.getToken(messageWithToken));
+		assertEquals(messageWithToken.indexOf("securityToken"), messageWithToken.lastIndexOf("securityToken"));
+		assertFalse(messageWithToken.contains(OLD_TOKEN));
+		assertTrue(messageWithToken.contains(AUTHORIZATION_TOKEN));
+	}
+	
+	@Test
+	public void removeToken() {
+		String messageWithoutToken = service.removeToken(message);
+		
+		assertFalse(messageWithoutToken.contains("securityToken"));
+		assertNull(service.getToken(messageWithoutToken));
+	}
+	
+	@Test
+	public void removeToken_existingTokenRemoved() {
+		String messageWithoutToken = service.removeToken(messageWithTokens());
+		
+		assertFalse(messageWithoutToken.contains("securityToken"));
+		assertFalse(messageWithoutToken.contains(OLD_TOKEN));
+		assertNull(service.getToken(messageWithoutToken));
+		// only securityToken is patched, authorizationToken is kept as it is
+		assertTrue(messageWithoutToken.contains(AUTHORIZATION_TOKEN));
+	}
+	
+	@Test
+	public void selectionReport() {
+		SelectionReport report = new SelectionReport();
+		report.setRows(2);
+		report.setColumnar(true);
+		report.setScannedBlocks(2);
+		report.setPrunedBlocks(1);
+		
+		String header = service.addSelectionReport(service.addToken(message, TOKEN), report);
+		
+		SelectionReport received = service.getSelectionReport(header);
+		assertEquals(report.toString(), received.toString());
+		assertEquals(TOKEN, service.getToken(header));
+		assertNull(service.getSelectionReport(service.addToken(message, TOKEN)));
+	}
+	
+	@Test
+	public void payloadEncoding() {
+		String header = service.addPayloadEncoding(service.addToken(message, TOKEN), ArtifactCacheService.VARIANT_GZIP_BASE64);
+		
+		assertEquals(ArtifactCacheService.VARIANT_GZIP_BASE64, service.getPayloadEncoding(header));
+		assertEquals(TOKEN, service.getToken(header));
+		assertNull(service.getPayloadEncoding(service.addToken(message, TOKEN)));
+		assertNull(service.getPayloadEncoding(null));
+	}
+	
+	/**
+	 * Message which already has securityToken and authorizationToken
+	 */
+	private Message messageWithTokens() {
+		return new ArtifactResponseMessageBuilder()
+				._issuerConnector_(URI.create("auto-generated"))
+				._issued_(DateUtil.now())
+				._modelVersion_("4.0.0")
+				._securityToken_(new DynamicAttributeTokenBuilder()
+						._tokenFormat_(TokenFormat.JWT)
+						._tokenValue_(OLD_TOKEN).build())
+				._authorizationToken_(new TokenBuilder()
+						._tokenFormat_(TokenFormat.JWT)
+						._tokenValue_(AUTHORIZATION_TOKEN).build())
+				.build();
+	}
+}
@@ -0,0 +1,95 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RecreateFileServiceTest {
+	
+	private static final Path TARGET_DIRECTORY = Paths.get("target", "recreate-file-test");
+	
+	private RecreateFileServiceImpl service;
+	
+	@BeforeEach
+	public void setup() throws IOException {
+		service = new RecreateFileServiceImpl();
+		ArtifactLockServiceImpl artifactLockService = new ArtifactLockServiceImpl();
+		artifactLockService.init();
+		ReflectionTestUtils.setField(service, "artifactLockService", artifactLockService);
+		ReflectionTestUtils.setField(service, "bufferSize", 16);
+		MetricsServiceImpl metricsService = new MetricsServiceImpl();
+		ReflectionTestUtils.setField(metricsService, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(service, "metricsService", metricsService);
+		Files.createDirectories(TARGET_DIRECTORY);
+	}
+	
+	@AfterEach
+	public void cleanup() throws IOException {
+		try (Stream<Path> files = Files.list(TARGET_DIRECTORY)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	@Test
+	public void recreateFile_payloadWithLineSeparators() throws IOException {
+		byte[] content = "LOC,CLL,EN,REA\nCVUT,8,1,41\nCVUT,8,1,50\n".getBytes(StandardCharsets.UTF_8);
+		String payload = Base64.getMimeEncoder().encodeToString(content);
+		File targetFile = TARGET_DIRECTORY.resolve("test.csv").toFile();
+		
+		service.recreateTheFile(payload + System.lineSeparator(), targetFile);
+		
+		assertArrayEquals(content, Files.readAllBytes(targetFile.toPath()));
+		assertEquals(1, Files.list(TARGET_DIRECTORY).count());
+	}
+	
+	@Test
+	public void recreateFile_compressedPayload() throws IOException {
+		byte[] content = "LOC,CLL,EN,REA\nCVUT,8,1,41\nCVUT,8,1,50\n".getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(content);
+		}
+		File targetFile = TARGET_DIRECTORY.resolve("test.csv").toFile();
+		
+		service.recreateTheFile(Base64.getEncoder().encodeToString(compressed.toByteArray()), targetFile, true);
+		
+		assertArrayEquals(content, Files.readAllBytes(targetFile.toPath()));
+	}
+	
+	@Test
+	public void recreateFile_invalidPayloadLeavesNoFile() throws IOException {
+		File targetFile = TARGET_DIRECTORY.resolve("invalid.csv").toFile();
+		
+		assertThrows(IOException.class, () -> service.recreateTheFile("QUJD=A", targetFile));
+		assertEquals(0, Files.list(TARGET_DIRECTORY).count());
+	}
+	
+	@Test
+	public void recreateFile_characterOutsideAlphabetRejected() throws IOException {
+		String payload = Base64.getEncoder().encodeToString("LOC,CLL,EN,REA\nCVUT,8,1,41\n".getBytes(StandardCharsets.UTF_8));
+		File targetFile = TARGET_DIRECTORY.resolve("corrupted.csv").toFile();
+		
+		assertThrows(IOException.class, () -> service.recreateTheFile(payload.substring(0, 8) + "*" + payload.substring(8), targetFile));
+		assertEquals(0, Files.list(TARGET_DIRECTORY).count());
+	}
+}
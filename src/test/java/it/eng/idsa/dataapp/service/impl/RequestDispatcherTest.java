@@ -0,0 +1,153 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class RequestDispatcherTest {
+	
+	private RequestDispatcherImpl dispatcher;
+	
+	@BeforeEach
+	public void setup() {
+		dispatcher = new RequestDispatcherImpl();
+		ReflectionTestUtils.setField(dispatcher, "workers", 4);
+		ReflectionTestUtils.setField(dispatcher, "queueCapacity", 10);
+	}
+	
+	@AfterEach
+	public void cleanup() {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void slowRequestDoesNotBlockOthers_responsesInOrder() throws InterruptedException {
+		ReflectionTestUtils.setField(dispatcher, "orderedDelivery", true);
+		dispatcher.init();
+		CountDownLatch releaseSlow = new CountDownLatch(1);
+		CountDownLatch fastHandled = new CountDownLatch(2);
+		CountDownLatch allSent = new CountDownLatch(3);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		
+		dispatcher.dispatch(() -> {
+			await(releaseSlow);
+			return "slow";
+		}, () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		dispatcher.dispatch(() -> { fastHandled.countDown(); return "fast1"; }, () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		dispatcher.dispatch(() -> { fastHandled.countDown(); return "fast2"; }, () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		
+		assertTrue(fastHandled.await(5, TimeUnit.SECONDS));
+		assertTrue(sent.isEmpty());
+		releaseSlow.countDown();
+		assertTrue(allSent.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("slow", "fast1", "fast2"), sent);
+	}
+	
+	@Test
+	public void slowRequestDoesNotHoldBackLaterResponses_unordered() throws InterruptedException {
+		dispatcher.init();
+		CountDownLatch releaseSlow = new CountDownLatch(1);
+		CountDownLatch fastSent = new CountDownLatch(2);
+		CountDownLatch allSent = new CountDownLatch(3);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		
+		dispatcher.dispatch(() -> {
+			await(releaseSlow);
+			return "slow";
+		}, () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		dispatcher.dispatch(() -> "fast1", () -> "overloaded", () -> "failed", r -> { sent.add(r); fastSent.countDown(); allSent.countDown(); });
+		dispatcher.dispatch(() -> "fast2", () -> "overloaded", () -> "failed", r -> { sent.add(r); fastSent.countDown(); allSent.countDown(); });
+		
+		assertTrue(fastSent.await(5, TimeUnit.SECONDS));
+		releaseSlow.countDown();
+		assertTrue(allSent.await(5, TimeUnit.SECONDS));
+		assertEquals("slow", sent.get(2));
+	}
+	
+	@Test
+	public void failedRequestAnsweredInItsPlace() throws InterruptedException {
+		ReflectionTestUtils.setField(dispatcher, "orderedDelivery", true);
+		dispatcher.init();
+		CountDownLatch sentLatch = new CountDownLatch(2);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		
+		dispatcher.dispatch(() -> { throw new IllegalStateException("test"); }, () -> "overloaded", () -> "failed", 
+				r -> { sent.add(r); sentLatch.countDown(); });
+		dispatcher.dispatch(() -> "ok", () -> "overloaded", () -> "failed", r -> { sent.add(r); sentLatch.countDown(); });
+		
+		assertTrue(sentLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("failed", "ok"), sent);
+	}
+	
+	@Test
+	public void blockedResponderKeepsOrder() throws InterruptedException {
+		ReflectionTestUtils.setField(dispatcher, "orderedDelivery", true);
+		dispatcher.init();
+		CountDownLatch releaseResponder = new CountDownLatch(1);
+		CountDownLatch allSent = new CountDownLatch(3);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		
+		// responder of the first response blocks, later requests are still handled and queued behind it
+		dispatcher.dispatch(() -> "first", () -> "overloaded", () -> "failed", r -> { 
+			await(releaseResponder); 
+			sent.add(r); 
+			allSent.countDown(); 
+		});
+		dispatcher.dispatch(() -> "second", () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		dispatcher.dispatch(() -> "third", () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		
+		assertFalse(allSent.await(200, TimeUnit.MILLISECONDS));
+		assertTrue(sent.isEmpty());
+		releaseResponder.countDown();
+		assertTrue(allSent.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("first", "second", "third"), sent);
+	}
+	
+	@Test
+	public void fullQueueAnsweredWithOverloadResponse() throws InterruptedException {
+		ReflectionTestUtils.setField(dispatcher, "workers", 1);
+		ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1);
+		ReflectionTestUtils.setField(dispatcher, "orderedDelivery", true);
+		dispatcher.init();
+		CountDownLatch releaseSlow = new CountDownLatch(1);
+		CountDownLatch allSent = new CountDownLatch(3);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		List<String> handledOn = new CopyOnWriteArrayList<>();
+		
+		dispatcher.dispatch(() -> {
+			await(releaseSlow);
+			return "slow";
+		}, () -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		dispatcher.dispatch(() -> { handledOn.add(Thread.currentThread().getName()); return "queued"; }, 
+				() -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		dispatcher.dispatch(() -> { handledOn.add(Thread.currentThread().getName()); return "rejected"; }, 
+				() -> "overloaded", () -> "failed", r -> { sent.add(r); allSent.countDown(); });
+		
+		assertTrue(sent.isEmpty());
+		releaseSlow.countDown();
+		assertTrue(allSent.await(5, TimeUnit.SECONDS));
+		// third request was not run on calling thread, its response keeps its place in order
+		assertEquals(Arrays.asList("slow", "queued", "overloaded"), sent);
+		assertEquals(1, handledOn.size());
+		assertTrue(handledOn.get(0).startsWith("request-dispatcher-"));
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import it.eng.idsa.dataapp.domain.ArtifactRequest;
+import it.eng.idsa.multipart.util.DateUtil;
+
+public class SerializerServiceTest {
+	
+	private static final int THREADS = 8;
+	private static final int MESSAGES_PER_THREAD = 50;
+	
+	private SerializerServiceImpl service;
+	
+	private ExecutorService executor;
+	
+	@BeforeEach
+	public void setup() {
+		service = new SerializerServiceImpl();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+	
+	@AfterEach
+	public void cleanup() {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void serializerReusedWithinThread() throws Exception {
+		ExecutorService worker = Executors.newSingleThreadExecutor();
+		try {
+			Serializer workerSerializer = worker.submit(() -> serializers().get()).get();
+			
+			assertSame(workerSerializer, worker.submit(() -> serializers().get()).get());
+			assertNotSame(workerSerializer, serializers().get());
+		} finally {
+			worker.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Warm-up runs on startup thread, request threads create their own serializers concurrently afterwards
+	 */
+	@Test
+	public void warmUp_concurrentRoundTrips() throws Exception {
+		service.warmUp();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int thread = 0; thread < THREADS; thread++) {
+			int threadNumber = thread;
+			Callable<Integer> roundTrips = () -> {
+				start.await();
+				for (int i = 0; i < MESSAGES_PER_THREAD; i++) {
+					String artifact = "artifact-" + threadNumber + "-" + i + ".csv";
+					ArtifactRequestMessage message = message(artifact);
+					
+					Message received = service.deserialize(service.serialize(message), Message.class);
+					
+					assertTrue(received instanceof ArtifactRequestMessage);
+					assertEquals(message.getId(), received.getId());
+					assertEquals(artifact, ArtifactRequest.fromRequestedArtifact(
+							((ArtifactRequestMessage) received).getRequestedArtifact()).getFileName());
+				}
+				return MESSAGES_PER_THREAD;
+			};
+			results.add(executor.submit(roundTrips));
+		}
+		start.countDown();
+		
+		int roundTrips = 0;
+		for (Future<Integer> result : results) {
+			roundTrips += result.get();
+		}
+		assertEquals(THREADS * MESSAGES_PER_THREAD, roundTrips);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private ThreadLocal<Serializer> serializers() {
+		return (ThreadLocal<Serializer>) ReflectionTestUtils.getField(service, "serializers");
+	}
+	
+	private ArtifactRequestMessage message(String artifact) {
+		return new ArtifactRequestMessageBuilder()
+				._issued_(DateUtil.now())
+				._issuerConnector_(URI.create("http://w3id.org/engrd/connector"))
+				._modelVersion_("4.0.0")
+				._requestedArtifact_(new ArtifactRequest(artifact).toRequestedArtifact())
+				.build();
+	}
+}
@@ -0,0 +1,88 @@
+package it.eng.idsa.dataapp.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import it.eng.idsa.dataapp.domain.RequestTrace;
+import it.eng.idsa.dataapp.service.TraceService;
+import it.eng.idsa.dataapp.service.TraceService.SpanScope;
+
+public class TraceServiceTest {
+
+	private static final String TRACE_ID = "https://w3id.org/idsa/autogen/artifactRequestMessage/1234";
+
+	private TraceServiceImpl service;
+
+	@BeforeEach
+	public void setup() {
+		service = new TraceServiceImpl();
+		ReflectionTestUtils.setField(service, "historySize", 2);
+	}
+
+	@Test
+	public void spansRecordedWhileTraceIsBound() {
+		RequestTrace trace = service.start(TRACE_ID, "consumer.artifactRequest", System.nanoTime());
+		assertSame(trace, service.current());
+		assertEquals(TRACE_ID, ThreadContext.get(TraceService.TRACE_ID));
+		try (SpanScope span = service.span("consumer.save")) {
+			// nothing to do
+		}
+		service.finish(trace);
+
+		assertNull(service.current());
+		assertNull(ThreadContext.get(TraceService.TRACE_ID));
+		assertEquals(1, trace.getSpans().size());
+		assertEquals("consumer.save", trace.getSpans().get(0).getName());
+		// span without bound trace is not recorded
+		try (SpanScope span = service.span("ckan.upload")) {
+			// nothing to do
+		}
+		assertEquals(1, trace.getSpans().size());
+	}
+
+	@Test
+	public void lateSpanCountsToDuration() {
+		long start = System.nanoTime() - TimeUnit.SECONDS.toNanos(5);
+		RequestTrace trace = service.start(TRACE_ID, "consumer.artifactRequest", System.nanoTime());
+		service.finish(trace);
+		assertTrue(service.getRecentTraces(1000, 10).isEmpty());
+
+		trace.addSpan("ckan.upload", start, start + TimeUnit.SECONDS.toNanos(10));
+		List<RequestTrace> slow = service.getRecentTraces(1000, 10);
+		assertEquals(1, slow.size());
+		assertEquals(1, service.getTraces("1234").size());
+	}
+
+	@Test
+	public void historyIsBounded() {
+		for (int i = 0; i < 3; i++) {
+			service.finish(service.start(TRACE_ID + i, "provider.ArtifactRequestMessage", System.nanoTime()));
+		}
+		assertEquals(2, service.getRecentTraces(0, 10).size());
+		assertTrue(service.getTraces("12340").isEmpty());
+	}
+
+	@Test
+	public void slowestFirst() {
+		long now = System.nanoTime();
+		RequestTrace fast = service.start(TRACE_ID + "1", "consumer.artifactRequest", now - TimeUnit.SECONDS.toNanos(1));
+		service.finish(fast);
+		RequestTrace slow = service.start(TRACE_ID + "2", "consumer.artifactRequest", now - TimeUnit.SECONDS.toNanos(3));
+		service.finish(slow);
+
+		List<RequestTrace> traces = service.getRecentTraces(0, 10);
+		assertSame(slow, traces.get(0));
+		assertSame(fast, traces.get(1));
+		assertEquals(1, service.getRecentTraces(0, 1).size());
+	}
+}